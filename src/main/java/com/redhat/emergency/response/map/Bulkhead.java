@@ -0,0 +1,135 @@
+package com.redhat.emergency.response.map;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.UniEmitter;
+
+/**
+ * Bulkhead of the requests to the MapBox API, bounding the number of pending requests.
+ * When all the permits are taken, a request waits for a permit, in arrival order, for at most the maximum wait, and is
+ * rejected if no permit is released by then. The wait never blocks the calling thread.
+ */
+class Bulkhead {
+
+    private final long maxWaitMillis;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+
+    private int available;
+
+    Bulkhead(int maxRequests, long maxWaitMillis, ScheduledExecutorService scheduler) {
+        this.available = maxRequests;
+        this.maxWaitMillis = maxWaitMillis;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @return a permit, to be given back with {@link #release()}, or a failure with a
+     * {@link RoutePlannerUnavailableException} when no permit is released within the maximum wait.
+     */
+    Uni<Void> acquire() {
+        return Uni.createFrom().deferred(() -> {
+            Waiter waiter = new Waiter();
+            return Uni.createFrom().<Void>emitter(emitter -> {
+                boolean granted;
+                synchronized (this) {
+                    waiter.emitter = emitter;
+                    granted = available > 0;
+                    if (granted) {
+                        available--;
+                        waiter.granted = true;
+                    } else if (maxWaitMillis > 0) {
+                        waiters.add(waiter);
+                    }
+                }
+                if (granted) {
+                    emitter.complete(null);
+                } else if (maxWaitMillis <= 0) {
+                    emitter.fail(rejected());
+                } else {
+                    waiter.timeout = scheduler.schedule(() -> timeout(waiter), maxWaitMillis, TimeUnit.MILLISECONDS);
+                }
+            }).onTermination().invoke((v, failure, cancelled) -> {
+                if (cancelled) {
+                    cancel(waiter);
+                }
+            });
+        });
+    }
+
+    /**
+     * Gives a permit back, to the first waiting request if any.
+     */
+    void release() {
+        Waiter waiter;
+        synchronized (this) {
+            waiter = waiters.poll();
+            if (waiter == null) {
+                available++;
+                return;
+            }
+            waiter.granted = true;
+        }
+        waiter.cancelTimeout();
+        waiter.emitter.complete(null);
+    }
+
+    synchronized int available() {
+        return available;
+    }
+
+    synchronized int waiting() {
+        return waiters.size();
+    }
+
+    private void cancel(Waiter waiter) {
+        boolean granted;
+        synchronized (this) {
+            waiters.remove(waiter);
+            granted = waiter.granted;
+        }
+        waiter.cancelTimeout();
+        // a permit granted to a cancelled request was not received, it is given back
+        if (granted) {
+            release();
+        }
+    }
+
+    private void timeout(Waiter waiter) {
+        synchronized (this) {
+            if (!waiters.remove(waiter)) {
+                // granted or cancelled in the meantime
+                return;
+            }
+        }
+        waiter.emitter.fail(rejected());
+    }
+
+    private static RoutePlannerUnavailableException rejected() {
+        return new RoutePlannerUnavailableException("Too many pending MapBox API requests");
+    }
+
+    private static class Waiter {
+
+        // guarded by the bulkhead
+        private UniEmitter<? super Void> emitter;
+
+        private boolean granted;
+
+        private volatile ScheduledFuture<?> timeout;
+
+        private void cancelTimeout() {
+            ScheduledFuture<?> future = timeout;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.redhat.emergency.response.map;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker of the requests to the MapBox API.
+ * The circuit opens after a number of consecutive failed requests. While it is open, requests are rejected without
+ * being sent. Once the open delay has elapsed, a single trial request is let through: the circuit closes if it succeeds,
+ * and opens again if it fails.
+ */
+class CircuitBreaker {
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+
+    private final long delayMillis;
+
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+
+    private int failures;
+
+    private long openedAt;
+
+    private boolean trialPending;
+
+    private long opened;
+
+    CircuitBreaker(int failureThreshold, long delayMillis, LongSupplier clock) {
+        this.failureThreshold = failureThreshold;
+        this.delayMillis = delayMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * @return <code>true</code> if a request can be sent. The outcome of the request must then be reported with
+     * {@link #onSuccess()}, {@link #onFailure()} or {@link #onCancel()}.
+     */
+    synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (clock.getAsLong() - openedAt < delayMillis) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialPending = true;
+                return true;
+            default:
+                if (trialPending) {
+                    return false;
+                }
+                trialPending = true;
+                return true;
+        }
+    }
+
+    synchronized void onSuccess() {
+        state = State.CLOSED;
+        failures = 0;
+        trialPending = false;
+    }
+
+    synchronized void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            if (state != State.OPEN) {
+                opened++;
+            }
+            state = State.OPEN;
+            openedAt = clock.getAsLong();
+            trialPending = false;
+        }
+    }
+
+    /**
+     * A cancelled request tells nothing about the MapBox API, the next request is the trial request.
+     */
+    synchronized void onCancel() {
+        trialPending = false;
+    }
+
+    /**
+     * @return <code>false</code> if the circuit is open and a request would be rejected.
+     */
+    synchronized boolean isAvailable() {
+        return state != State.OPEN || clock.getAsLong() - openedAt >= delayMillis;
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    /**
+     * @return the number of times the circuit opened.
+     */
+    synchronized long opened() {
+        return opened;
+    }
+}
@@ -0,0 +1,46 @@
+package com.redhat.emergency.response.map;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the latencies of the last requests to the MapBox API, to compute the delay after which a request is hedged.
+ */
+class LatencyTracker {
+
+    private final long[] samples;
+
+    private final int minSamples;
+
+    private int count;
+
+    private int next;
+
+    LatencyTracker(int size, int minSamples) {
+        this.samples = new long[size];
+        this.minSamples = minSamples;
+    }
+
+    synchronized void record(long latencyMillis) {
+        samples[next] = latencyMillis;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the latency under which the given percentage of the recorded requests completed, or <code>-1</code> if
+     * not enough requests were recorded yet.
+     */
+    long percentile(double percentile) {
+        long[] sorted;
+        synchronized (this) {
+            if (count < minSamples) {
+                return -1;
+            }
+            sorted = Arrays.copyOf(samples, count);
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
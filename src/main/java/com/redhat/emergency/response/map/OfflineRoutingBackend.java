@@ -0,0 +1,151 @@
+package com.redhat.emergency.response.map;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+
+import com.redhat.emergency.response.model.Location;
+import com.redhat.emergency.response.model.MissionStep;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Routing backend computing the routes in process, with A* over a road graph loaded in memory (see {@link RoadGraph}
+ * for the file format). The locations are snapped to the nearest nodes of the graph, and the route has a step at every
+ * node where the road turns by at least <code>routing.offline.turn-angle</code> degrees.
+ * The routes are computed on a worker thread, never on the event loop.
+ * No network call and no quota: suited to load tests and air-gapped deployments, given a graph of the area.
+ */
+@ApplicationScoped
+public class OfflineRoutingBackend implements RoutingBackend {
+
+    private static final Logger log = LoggerFactory.getLogger(OfflineRoutingBackend.class);
+
+    /**
+     * Road graph file, on the file system or on the classpath.
+     */
+    @ConfigProperty(name = "routing.offline.graph")
+    Optional<String> graphLocation;
+
+    @ConfigProperty(name = "routing.offline.turn-angle", defaultValue = "30")
+    double turnAngle;
+
+    /**
+     * Maximum distance in meters between a location and the node it is snapped to. A route from or to a location
+     * farther from the road graph fails, rather than starting or ending at an unrelated road.
+     */
+    @ConfigProperty(name = "routing.offline.max-snap-distance", defaultValue = "1000")
+    double maxSnapDistance;
+
+    @ConfigProperty(name = "routing.backend", defaultValue = RoutePlanner.MAPBOX)
+    String backend;
+
+    volatile RoadGraph graph;
+
+    void onStart(@Observes StartupEvent e) {
+        if (RoutePlanner.OFFLINE.equalsIgnoreCase(backend)) {
+            getGraph();
+        }
+    }
+
+    @Override
+    public Uni<List<Location>> route(Location from, Location to) {
+        return Uni.createFrom().item(() -> routeInternal(from, to))
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+    }
+
+    private List<Location> routeInternal(Location from, Location to) {
+        RoadGraph roads = getGraph();
+        int start = snap(roads, from);
+        int end = snap(roads, to);
+        int[] path = roads.shortestPath(start, end);
+        if (path == null) {
+            log.warn("No road between " + from + " and " + to);
+            return Collections.emptyList();
+        }
+        List<Location> steps = new ArrayList<>();
+        steps.add(location(roads, path[0]));
+        for (int i = 1; i < path.length - 1; i++) {
+            if (turn(roads, path[i - 1], path[i], path[i + 1]) >= turnAngle) {
+                steps.add(location(roads, path[i]));
+            }
+        }
+        steps.add(location(roads, path[path.length - 1]));
+        return steps;
+    }
+
+    private int snap(RoadGraph roads, Location location) {
+        int node = roads.nearest(location.getLatitude(), location.getLongitude(), maxSnapDistance);
+        if (node < 0) {
+            throw new RoutePlannerException("No road within " + maxSnapDistance + " m of " + location);
+        }
+        return node;
+    }
+
+    /**
+     * @return the change of direction at node <code>b</code>, in degrees between 0 and 180.
+     */
+    private static double turn(RoadGraph roads, int a, int b, int c) {
+        double change = Math.abs(bearing(roads, a, b) - bearing(roads, b, c)) % 360;
+        return change > 180 ? 360 - change : change;
+    }
+
+    private static double bearing(RoadGraph roads, int from, int to) {
+        double lat1 = Math.toRadians(roads.latitude(from));
+        double lat2 = Math.toRadians(roads.latitude(to));
+        double dLon = Math.toRadians(roads.longitude(to) - roads.longitude(from));
+        double y = Math.sin(dLon) * Math.cos(lat2);
+        double x = Math.cos(lat1) * Math.sin(lat2) - Math.sin(lat1) * Math.cos(lat2) * Math.cos(dLon);
+        return Math.toDegrees(Math.atan2(y, x));
+    }
+
+    private static Location location(RoadGraph roads, int node) {
+        // rounded once, from the coordinates of the road graph
+        return Location.of(roads.latitude(node), roads.longitude(node), MissionStep.DECIMALS);
+    }
+
+    private RoadGraph getGraph() {
+        RoadGraph roads = graph;
+        if (roads == null) {
+            synchronized (this) {
+                if (graph == null) {
+                    graph = load(graphLocation.orElseThrow(() -> new RoutePlannerException("No road graph configured. Set routing.offline.graph")));
+                }
+                roads = graph;
+            }
+        }
+        return roads;
+    }
+
+    private static RoadGraph load(String location) {
+        long start = System.currentTimeMillis();
+        Path path = Paths.get(location);
+        try (InputStream is = Files.isRegularFile(path) ? Files.newInputStream(path)
+                : Thread.currentThread().getContextClassLoader().getResourceAsStream(location)) {
+            if (is == null) {
+                throw new RoutePlannerException("Road graph " + location + " not found");
+            }
+            Reader reader = new InputStreamReader(is, StandardCharsets.UTF_8);
+            RoadGraph roads = RoadGraph.load(reader);
+            log.info("Loaded road graph " + location + " with " + roads.size() + " nodes in " + (System.currentTimeMillis() - start) + " ms");
+            return roads;
+        } catch (IOException e) {
+            throw new RoutePlannerException("Exception while loading road graph " + location + ": " + e.getMessage(), e);
+        }
+    }
+}
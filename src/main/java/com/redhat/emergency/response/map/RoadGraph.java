@@ -0,0 +1,477 @@
+package com.redhat.emergency.response.map;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Road graph of the offline routing backend, held in primitive arrays: node coordinates, and the outgoing arcs of each
+ * node in compressed sparse row form. Arc weights are their great-circle length in meters.
+ *
+ * <p>The graph is read from a text file, one record per line:</p>
+ * <pre>
+ * # comment
+ * n &lt;lat&gt; &lt;lon&gt;       a node, numbered from 0 in the order of the file
+ * e &lt;node&gt; &lt;node&gt;     a two-way road between two nodes
+ * a &lt;from&gt; &lt;to&gt;       a one-way road
+ * </pre>
+ */
+class RoadGraph {
+
+    private static final double EARTH_RADIUS = 6_371_000;
+
+    /**
+     * Size in degrees of the cells of the grid used to find the node nearest to a location.
+     */
+    private static final double CELL_SIZE = 0.01;
+
+    /**
+     * Maximum number of idle search states kept for reuse. The searches are CPU bound, so more of them than processors
+     * rarely run at the same time; a search finding no idle state allocates its own.
+     */
+    private static final int IDLE_SEARCH_STATES = Runtime.getRuntime().availableProcessors();
+
+    private final double[] lat;
+
+    private final double[] lon;
+
+    // the arcs leaving node i are arcTarget[arcStart[i]] .. arcTarget[arcStart[i + 1] - 1]
+    private final int[] arcStart;
+
+    private final int[] arcTarget;
+
+    private final double[] arcLength;
+
+    // node ids sorted by grid cell, the nodes of cellKeys[i] are cellNodes[cellStart[i]] .. cellNodes[cellStart[i + 1] - 1]
+    private final long[] cellKeys;
+
+    private final int[] cellStart;
+
+    private final int[] cellNodes;
+
+    private final int minRow;
+
+    private final int maxRow;
+
+    private final int minColumn;
+
+    private final int maxColumn;
+
+    private final Queue<SearchState> searchStates = new ArrayBlockingQueue<>(IDLE_SEARCH_STATES);
+
+    RoadGraph(double[] lat, double[] lon, int[] arcFrom, int[] arcTo) {
+        int nodes = lat.length;
+        this.lat = lat;
+        this.lon = lon;
+        this.arcStart = new int[nodes + 1];
+        for (int from : arcFrom) {
+            arcStart[from + 1]++;
+        }
+        for (int i = 0; i < nodes; i++) {
+            arcStart[i + 1] += arcStart[i];
+        }
+        this.arcTarget = new int[arcFrom.length];
+        this.arcLength = new double[arcFrom.length];
+        int[] next = Arrays.copyOf(arcStart, nodes);
+        for (int i = 0; i < arcFrom.length; i++) {
+            int position = next[arcFrom[i]]++;
+            arcTarget[position] = arcTo[i];
+            arcLength[position] = distance(lat[arcFrom[i]], lon[arcFrom[i]], lat[arcTo[i]], lon[arcTo[i]]);
+        }
+
+        long[] nodeCells = new long[nodes];
+        Integer[] byCell = new Integer[nodes];
+        int rowMin = Integer.MAX_VALUE;
+        int rowMax = Integer.MIN_VALUE;
+        int columnMin = Integer.MAX_VALUE;
+        int columnMax = Integer.MIN_VALUE;
+        for (int i = 0; i < nodes; i++) {
+            int row = cellIndex(lat[i]);
+            int column = cellIndex(lon[i]);
+            rowMin = Math.min(rowMin, row);
+            rowMax = Math.max(rowMax, row);
+            columnMin = Math.min(columnMin, column);
+            columnMax = Math.max(columnMax, column);
+            nodeCells[i] = cell(row, column);
+            byCell[i] = i;
+        }
+        this.minRow = rowMin;
+        this.maxRow = rowMax;
+        this.minColumn = columnMin;
+        this.maxColumn = columnMax;
+        Arrays.sort(byCell, (a, b) -> Long.compare(nodeCells[a], nodeCells[b]));
+        this.cellNodes = new int[nodes];
+        long[] keys = new long[nodes];
+        int[] starts = new int[nodes + 1];
+        int cells = 0;
+        for (int i = 0; i < nodes; i++) {
+            cellNodes[i] = byCell[i];
+            long key = nodeCells[byCell[i]];
+            if (cells == 0 || keys[cells - 1] != key) {
+                keys[cells] = key;
+                starts[cells] = i;
+                cells++;
+            }
+        }
+        starts[cells] = nodes;
+        this.cellKeys = Arrays.copyOf(keys, cells);
+        this.cellStart = Arrays.copyOf(starts, cells + 1);
+    }
+
+    static RoadGraph load(Reader reader) throws IOException {
+        DoubleList lat = new DoubleList();
+        DoubleList lon = new DoubleList();
+        IntList arcFrom = new IntList();
+        IntList arcTo = new IntList();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        int lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            try {
+                switch (fields[0]) {
+                    case "n":
+                        lat.add(Double.parseDouble(fields[1]));
+                        lon.add(Double.parseDouble(fields[2]));
+                        break;
+                    case "e":
+                        arcFrom.add(Integer.parseInt(fields[1]));
+                        arcTo.add(Integer.parseInt(fields[2]));
+                        arcFrom.add(Integer.parseInt(fields[2]));
+                        arcTo.add(Integer.parseInt(fields[1]));
+                        break;
+                    case "a":
+                        arcFrom.add(Integer.parseInt(fields[1]));
+                        arcTo.add(Integer.parseInt(fields[2]));
+                        break;
+                    default:
+                        throw new IOException("Unknown record type '" + fields[0] + "' at line " + lineNumber);
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IOException("Invalid record at line " + lineNumber + ": " + line, e);
+            }
+        }
+        for (int i = 0; i < arcFrom.size; i++) {
+            if (arcFrom.values[i] < 0 || arcFrom.values[i] >= lat.size || arcTo.values[i] < 0 || arcTo.values[i] >= lat.size) {
+                throw new IOException("Road between unknown nodes " + arcFrom.values[i] + " and " + arcTo.values[i]);
+            }
+        }
+        return new RoadGraph(lat.toArray(), lon.toArray(), arcFrom.toArray(), arcTo.toArray());
+    }
+
+    int size() {
+        return lat.length;
+    }
+
+    double latitude(int node) {
+        return lat[node];
+    }
+
+    double longitude(int node) {
+        return lon[node];
+    }
+
+    /**
+     * @return the node nearest to a location, or <code>-1</code> if the graph is empty.
+     */
+    int nearest(double latitude, double longitude) {
+        return nearest(latitude, longitude, Double.MAX_VALUE);
+    }
+
+    /**
+     * @return the node nearest to a location, or <code>-1</code> if no node is within <code>maxDistance</code> meters
+     * of the location.
+     */
+    int nearest(double latitude, double longitude, double maxDistance) {
+        if (lat.length == 0) {
+            return -1;
+        }
+        int row = cellIndex(latitude);
+        int column = cellIndex(longitude);
+        Nearest nearest = new Nearest(latitude, longitude);
+        // no node in the rings of cells closer to the location than the bounding box of the graph
+        int firstRing = Math.max(Math.max(minRow - row, row - maxRow), Math.max(minColumn - column, column - maxColumn));
+        for (int ring = Math.max(0, firstRing); ; ring++) {
+            if (ring == 0) {
+                scan(row, column, nearest);
+            } else {
+                for (int c = column - ring; c <= column + ring; c++) {
+                    scan(row - ring, c, nearest);
+                    scan(row + ring, c, nearest);
+                }
+                for (int r = row - ring + 1; r < row + ring; r++) {
+                    scan(r, column - ring, nearest);
+                    scan(r, column + ring, nearest);
+                }
+            }
+            boolean coversGraph = row - ring <= minRow && row + ring >= maxRow && column - ring <= minColumn && column + ring >= maxColumn;
+            // the nodes of the next ring are at least ring cells away, in latitude or in longitude
+            double ringDistance = Math.toRadians(ring * CELL_SIZE) * EARTH_RADIUS
+                    * Math.cos(Math.toRadians(Math.min(90, Math.abs(latitude) + (ring + 1) * CELL_SIZE)));
+            if (coversGraph || ringDistance >= Math.min(nearest.distance, maxDistance)) {
+                return nearest.distance <= maxDistance ? nearest.node : -1;
+            }
+        }
+    }
+
+    private void scan(int row, int column, Nearest nearest) {
+        int index = Arrays.binarySearch(cellKeys, cell(row, column));
+        if (index < 0) {
+            return;
+        }
+        for (int i = cellStart[index]; i < cellStart[index + 1]; i++) {
+            int node = cellNodes[i];
+            double d = distance(nearest.latitude, nearest.longitude, lat[node], lon[node]);
+            if (d < nearest.distance) {
+                nearest.distance = d;
+                nearest.node = node;
+            }
+        }
+    }
+
+    /**
+     * Shortest path between two nodes, with A* and the great-circle distance to the target as heuristic.
+     *
+     * @return the nodes of the path, from <code>from</code> to <code>to</code>, or <code>null</code> if <code>to</code>
+     * cannot be reached.
+     */
+    int[] shortestPath(int from, int to) {
+        SearchState state = searchStates.poll();
+        if (state == null) {
+            state = new SearchState(lat.length);
+        }
+        try {
+            return shortestPath(state, from, to);
+        } finally {
+            // dropped if enough idle states are kept already
+            searchStates.offer(state);
+        }
+    }
+
+    private int[] shortestPath(SearchState state, int from, int to) {
+        state.reset();
+        state.open(from, 0, -1, distance(from, to));
+        while (state.heapSize > 0) {
+            int node = state.poll();
+            if (node == to) {
+                return state.path(to);
+            }
+            double cost = state.cost[node];
+            for (int arc = arcStart[node]; arc < arcStart[node + 1]; arc++) {
+                int target = arcTarget[arc];
+                double targetCost = cost + arcLength[arc];
+                if (!state.closed(target) && (!state.reached(target) || targetCost < state.cost[target])) {
+                    state.open(target, targetCost, node, targetCost + distance(target, to));
+                }
+            }
+        }
+        return null;
+    }
+
+    private double distance(int a, int b) {
+        return distance(lat[a], lon[a], lat[b], lon[b]);
+    }
+
+    static double distance(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private static int cellIndex(double coordinate) {
+        return (int) Math.floor(coordinate / CELL_SIZE);
+    }
+
+    private static long cell(int row, int column) {
+        return ((long) row << 32) | (column & 0xffffffffL);
+    }
+
+    private static class Nearest {
+
+        final double latitude;
+
+        final double longitude;
+
+        int node = -1;
+
+        double distance = Double.MAX_VALUE;
+
+        Nearest(double latitude, double longitude) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+    }
+
+    /**
+     * State of an A* search, used by one search at a time and reused between searches. A node belongs to the current
+     * search only if its stamp is the stamp of the search, so that the arrays do not need to be cleared.
+     */
+    private static class SearchState {
+
+        final double[] cost;
+
+        final int[] previous;
+
+        final int[] stamp;
+
+        final boolean[] done;
+
+        // binary heap of nodes, ordered by estimated total cost, with the position of each node in the heap
+        final int[] heap;
+
+        final double[] priority;
+
+        final int[] position;
+
+        int heapSize;
+
+        int currentStamp;
+
+        SearchState(int nodes) {
+            cost = new double[nodes];
+            previous = new int[nodes];
+            stamp = new int[nodes];
+            done = new boolean[nodes];
+            heap = new int[nodes];
+            priority = new double[nodes];
+            position = new int[nodes];
+        }
+
+        void reset() {
+            heapSize = 0;
+            currentStamp++;
+            if (currentStamp == Integer.MAX_VALUE) {
+                Arrays.fill(stamp, 0);
+                currentStamp = 1;
+            }
+        }
+
+        boolean reached(int node) {
+            return stamp[node] == currentStamp;
+        }
+
+        boolean closed(int node) {
+            return reached(node) && done[node];
+        }
+
+        void open(int node, double nodeCost, int from, double estimate) {
+            boolean inHeap = reached(node);
+            stamp[node] = currentStamp;
+            done[node] = false;
+            cost[node] = nodeCost;
+            previous[node] = from;
+            priority[node] = estimate;
+            if (!inHeap) {
+                position[node] = heapSize;
+                heap[heapSize++] = node;
+            }
+            siftUp(position[node]);
+        }
+
+        int poll() {
+            int node = heap[0];
+            done[node] = true;
+            heapSize--;
+            if (heapSize > 0) {
+                heap[0] = heap[heapSize];
+                position[heap[0]] = 0;
+                siftDown(0);
+            }
+            return node;
+        }
+
+        int[] path(int to) {
+            int length = 0;
+            for (int node = to; node >= 0; node = previous[node]) {
+                length++;
+            }
+            int[] path = new int[length];
+            for (int node = to; node >= 0; node = previous[node]) {
+                path[--length] = node;
+            }
+            return path;
+        }
+
+        private void siftUp(int i) {
+            int node = heap[i];
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (priority[heap[parent]] <= priority[node]) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                position[heap[i]] = i;
+                i = parent;
+            }
+            heap[i] = node;
+            position[node] = i;
+        }
+
+        private void siftDown(int i) {
+            int node = heap[i];
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= heapSize) {
+                    break;
+                }
+                if (child + 1 < heapSize && priority[heap[child + 1]] < priority[heap[child]]) {
+                    child++;
+                }
+                if (priority[heap[child]] >= priority[node]) {
+                    break;
+                }
+                heap[i] = heap[child];
+                position[heap[i]] = i;
+                i = child;
+            }
+            heap[i] = node;
+            position[node] = i;
+        }
+    }
+
+    private static class DoubleList {
+
+        double[] values = new double[1024];
+
+        int size;
+
+        void add(double value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        double[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    private static class IntList {
+
+        int[] values = new int[1024];
+
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.redhat.emergency.response.map;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import com.redhat.emergency.response.model.Coordinates;
+import com.redhat.emergency.response.model.Location;
+import com.redhat.emergency.response.model.MissionStep;
+
+/**
+ * Bounded, least recently used cache of the route legs computed by the {@link RoutePlanner}, with a time to live.
+ * Legs are keyed by their start and end snapped to 4 decimals (about 10 meters), the precision of the
+ * {@link MissionStep}s, so that missions starting and ending at nearly the same places share their legs.
+ */
+class RouteCache {
+
+    static final int SCALE = 4;
+
+    private final Map<String, Entry> entries;
+
+    private final long ttlMillis;
+
+    private final LongSupplier clock;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    RouteCache(int maxEntries, long ttlMillis, LongSupplier clock) {
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RouteCache.Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return a copy of the cached leg, or <code>null</code> if the leg is not cached or expired.
+     */
+    List<MissionStep> get(Location from, Location to, RoutePlanner.Leg leg) {
+        String key = key(from, to, leg);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && entry.expiresAt <= clock.getAsLong()) {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return new ArrayList<>(entry.steps);
+    }
+
+    void put(Location from, Location to, RoutePlanner.Leg leg, List<MissionStep> steps) {
+        String key = key(from, to, leg);
+        Entry entry = new Entry(List.copyOf(steps), clock.getAsLong() + ttlMillis);
+        synchronized (this) {
+            entries.put(key, entry);
+        }
+    }
+
+    synchronized void invalidate(Location from, Location to, RoutePlanner.Leg leg) {
+        entries.remove(key(from, to, leg));
+    }
+
+    synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    long hits() {
+        return hits.get();
+    }
+
+    long misses() {
+        return misses.get();
+    }
+
+    static String key(Location from, Location to, RoutePlanner.Leg leg) {
+        // the steps of a leg are flagged according to the end of the leg
+        return leg + ":" + snap(from) + ";" + snap(to);
+    }
+
+    private static String snap(Location location) {
+        return snap(location.latitude()) + "," + snap(location.longitude());
+    }
+
+    private static String snap(int coordinate) {
+        return Coordinates.format(Coordinates.round(coordinate, SCALE), SCALE);
+    }
+
+    private static class Entry {
+
+        final List<MissionStep> steps;
+
+        final long expiresAt;
+
+        Entry(List<MissionStep> steps, long expiresAt) {
+            this.steps = steps;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -1,110 +1,698 @@
 package com.redhat.emergency.response.map;
 
-import java.io.IOException;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
 
 import com.mapbox.api.directions.v5.DirectionsCriteria;
-import com.mapbox.api.directions.v5.MapboxDirections;
 import com.mapbox.api.directions.v5.models.DirectionsResponse;
 import com.mapbox.api.directions.v5.models.RouteLeg;
 import com.mapbox.core.constants.Constants;
 import com.mapbox.geojson.Point;
+import com.redhat.emergency.response.model.Coordinates;
 import com.redhat.emergency.response.model.Location;
 import com.redhat.emergency.response.model.MissionStep;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
 import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.smallrye.mutiny.subscription.Cancellable;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.ext.web.client.WebClientOptions;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.ext.web.client.WebClient;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.eclipse.microprofile.metrics.annotation.Gauge;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import retrofit2.Response;
 
 @ApplicationScoped
 public class RoutePlanner {
 
     private static final Logger log = LoggerFactory.getLogger(RoutePlanner.class);
 
+    static final String MAPBOX = "mapbox";
+
+    static final String OFFLINE = "offline";
+
+    static final String SEQUENTIAL = "sequential";
+
+    static final String PARALLEL = "parallel";
+
+    static final String HEDGED = "hedged";
+
+    private static final int LATENCY_SAMPLES = 200;
+
+    private static final int LATENCY_MIN_SAMPLES = 20;
+
     @ConfigProperty(name = "mapbox.token")
     String accessToken;
 
     @ConfigProperty(name = "mapbox.url", defaultValue = Constants.BASE_API_URL)
     String mapboxUrl;
 
+    /**
+     * Maximum number of routes kept in the route cache. 0 disables the cache.
+     */
+    @ConfigProperty(name = "mapbox.route-cache.max-entries", defaultValue = "1000")
+    int routeCacheMaxEntries;
+
+    @ConfigProperty(name = "mapbox.route-cache.ttl", defaultValue = "PT1H")
+    Duration routeCacheTtl;
+
+    /**
+     * Maximum number of HTTP/1.1 connections to the MapBox API. With HTTP/2, requests are multiplexed over a single
+     * connection.
+     */
+    @ConfigProperty(name = "mapbox.client.max-pool-size", defaultValue = "20")
+    int clientMaxPoolSize;
+
+    @ConfigProperty(name = "mapbox.client.timeout", defaultValue = "PT10S")
+    Duration clientTimeout;
+
+    /**
+     * When the cycling route is requested: <code>sequential</code>, after the driving route request found no route;
+     * <code>parallel</code>, together with the driving route request; <code>hedged</code>, when the driving route
+     * request takes longer than <code>mapbox.hedge.percentile</code> percent of the recent driving route requests.
+     */
+    @ConfigProperty(name = "mapbox.profile-fallback", defaultValue = SEQUENTIAL)
+    String profileFallback;
+
+    @ConfigProperty(name = "mapbox.hedge.percentile", defaultValue = "95")
+    double hedgePercentile;
+
+    /**
+     * Hedging delay until enough driving route requests are recorded to compute the percentile.
+     */
+    @ConfigProperty(name = "mapbox.hedge.default-delay", defaultValue = "PT0.5S")
+    Duration hedgeDefaultDelay;
+
+    /**
+     * Number of consecutive failed MapBox API requests after which the circuit breaker opens.
+     */
+    @ConfigProperty(name = "mapbox.circuit-breaker.failure-threshold", defaultValue = "5")
+    int circuitBreakerFailureThreshold;
+
+    /**
+     * Time the circuit breaker stays open before a trial request is sent.
+     */
+    @ConfigProperty(name = "mapbox.circuit-breaker.delay", defaultValue = "PT30S")
+    Duration circuitBreakerDelay;
+
+    /**
+     * Maximum number of legs being requested from the MapBox API. The driving and cycling requests of a leg count as
+     * one.
+     */
+    @ConfigProperty(name = "mapbox.bulkhead.max-requests", defaultValue = "20")
+    int bulkheadMaxRequests;
+
+    /**
+     * Time a leg waits for another leg request to complete when <code>mapbox.bulkhead.max-requests</code> legs are
+     * being requested, before it is rejected.
+     */
+    @ConfigProperty(name = "mapbox.bulkhead.max-wait", defaultValue = "PT0.2S")
+    Duration bulkheadMaxWait;
+
+    /**
+     * Routing backend: <code>mapbox</code> or <code>offline</code>.
+     */
+    @ConfigProperty(name = "routing.backend", defaultValue = MAPBOX)
+    String backend;
+
+    /**
+     * Maximum number of legs of a batch of routes requested at the same time.
+     */
+    @ConfigProperty(name = "routing.batch.concurrency", defaultValue = "10")
+    int batchConcurrency;
+
+    @Inject
+    OfflineRoutingBackend offlineRoutingBackend;
+
+    @Inject
+    Vertx vertx;
+
+    volatile RouteCache routeCache;
+
+    volatile WebClient webClient;
+
+    volatile LatencyTracker latencyTracker;
+
+    volatile CircuitBreaker circuitBreaker;
+
+    volatile Bulkhead bulkhead;
+
+    /**
+     * Legs being requested from the MapBox API, keyed like the route cache. Concurrent requests for the same leg share
+     * the pending request.
+     */
+    private final Map<String, CompletableFuture<List<MissionStep>>> pendingLegs = new ConcurrentHashMap<>();
+
+    private final AtomicLong coalescedLegs = new AtomicLong();
+
+    private final AtomicLong hedgedRequests = new AtomicLong();
+
+    private final AtomicLong rejectedRequests = new AtomicLong();
+
+    /**
+     * Computes the route from the responder location (origin) to the incident (waypoint) and then to the destination.
+     * The two legs of the route are requested and cached separately, so that the responders sent to the same incident
+     * only request their leg to the incident.
+     * Fails immediately with a {@link RoutePlannerUnavailableException} when a leg is not cached and the MapBox API is
+     * not available, see {@link #minimalRoute(Location, Location, Location)}.
+     */
     public Uni<List<MissionStep>> getDirections(Location origin, Location destination, Location waypoint) {
-        return Uni.createFrom().item(() -> getDirectionsInternal(origin, destination, waypoint)).runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+        return Uni.combine().all().unis(getLeg(origin, waypoint, Leg.TO_WAYPOINT), getLeg(waypoint, destination, Leg.TO_DESTINATION))
+                .combinedWith(RoutePlanner::route);
+    }
+
+    /**
+     * Computes the routes of a batch of missions together. The legs are deduplicated across the batch, e.g. the legs
+     * from an incident to a destination shared by the responders sent to that incident are requested once, and at most
+     * <code>routing.batch.concurrency</code> legs are requested at the same time.
+     * The batch is resolved once, when the first route is subscribed. A route fails on its own when one of its legs
+     * fails, see {@link #getDirections(Location, Location, Location)}.
+     *
+     * @return the routes, in the order of the requests.
+     */
+    public List<Uni<List<MissionStep>>> getDirections(List<RouteRequest> requests) {
+        Map<String, BatchLeg> legs = new LinkedHashMap<>();
+        List<BatchLeg[]> routes = new ArrayList<>(requests.size());
+        for (RouteRequest request : requests) {
+            routes.add(new BatchLeg[]{
+                    batchLeg(legs, request.getOrigin(), request.getWaypoint(), Leg.TO_WAYPOINT),
+                    batchLeg(legs, request.getWaypoint(), request.getDestination(), Leg.TO_DESTINATION)});
+        }
+        Uni<List<MissionStep>> batch = Multi.createFrom().iterable(legs.values())
+                .onItem().transformToUni(l -> getLeg(l.from, l.to, l.leg)
+                        .onItem().invoke(steps -> l.steps.complete(steps))
+                        .onFailure().invoke(t -> l.steps.completeExceptionally(t))
+                        .onFailure().recoverWithItem(Collections.emptyList()))
+                .merge(Math.max(1, batchConcurrency))
+                .collectItems().last()
+                .memoize().indefinitely();
+        return routes.stream().map(r -> batch.onItem().transformToUni(v -> Uni.combine().all()
+                .unis(Uni.createFrom().completionStage(r[0].steps), Uni.createFrom().completionStage(r[1].steps))
+                .combinedWith(RoutePlanner::route)))
+                .collect(Collectors.toList());
+    }
+
+    private BatchLeg batchLeg(Map<String, BatchLeg> legs, Location from, Location to, Leg leg) {
+        String key = RouteCache.key(from, to, leg);
+        BatchLeg batchLeg = legs.get(key);
+        if (batchLeg != null) {
+            coalescedLegs.incrementAndGet();
+            return batchLeg;
+        }
+        batchLeg = new BatchLeg(from, to, leg);
+        legs.put(key, batchLeg);
+        return batchLeg;
+    }
+
+    private static List<MissionStep> route(List<MissionStep> toWaypoint, List<MissionStep> toDestination) {
+        List<MissionStep> missionSteps = new ArrayList<>(toWaypoint.size() + toDestination.size());
+        missionSteps.addAll(toWaypoint);
+        missionSteps.addAll(toDestination);
+        return missionSteps;
+    }
+
+    /**
+     * Removes the cached legs of the route between an origin and a destination through a waypoint, e.g. after a road
+     * closure.
+     */
+    public void invalidateRoute(Location origin, Location destination, Location waypoint) {
+        RouteCache cache = getRouteCache();
+        if (cache != null) {
+            cache.invalidate(origin, waypoint, Leg.TO_WAYPOINT);
+            cache.invalidate(waypoint, destination, Leg.TO_DESTINATION);
+        }
+    }
+
+    public void invalidateRoutes() {
+        RouteCache cache = getRouteCache();
+        if (cache != null) {
+            cache.invalidateAll();
+        }
     }
 
-    private List<MissionStep> getDirectionsInternal(Location origin, Location destination, Location waypoint) {
+    @Gauge(name = "route-cache-hits", absolute = true, unit = MetricUnits.NONE, description = "Routes served by the route cache")
+    public long routeCacheHits() {
+        RouteCache cache = routeCache;
+        return cache == null ? 0 : cache.hits();
+    }
 
+    @Gauge(name = "route-cache-misses", absolute = true, unit = MetricUnits.NONE, description = "Routes not found in the route cache")
+    public long routeCacheMisses() {
+        RouteCache cache = routeCache;
+        return cache == null ? 0 : cache.misses();
+    }
 
-        try {
-            List<MissionStep> missionSteps = new ArrayList<>();
-            Response<DirectionsResponse> response = callMapBoxAPI(DirectionsCriteria.PROFILE_DRIVING, origin, destination, waypoint);
+    @Gauge(name = "route-cache-hit-ratio", absolute = true, unit = MetricUnits.NONE, description = "Ratio of the routes served by the route cache")
+    public double routeCacheHitRatio() {
+        RouteCache cache = routeCache;
+        if (cache == null) {
+            return 0;
+        }
+        long hits = cache.hits();
+        long total = hits + cache.misses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Gauge(name = "route-cache-size", absolute = true, unit = MetricUnits.NONE, description = "Number of routes in the route cache")
+    public long routeCacheSize() {
+        RouteCache cache = routeCache;
+        return cache == null ? 0 : cache.size();
+    }
+
+    /**
+     * @return <code>false</code> while the circuit breaker of the MapBox API is open and rejects the requests.
+     */
+    public boolean isAvailable() {
+        return getCircuitBreaker().isAvailable();
+    }
 
-            if (response.body() == null || response.body().routes().isEmpty()) {
-                log.warn("No routes found. Origin: " + origin + "; Destination: " + destination + "; Waypoint: " + waypoint + ". Trying with profile cycling");
-                response = callMapBoxAPI(DirectionsCriteria.PROFILE_CYCLING, origin, destination, waypoint);
-                if (response.body() == null || response.body().routes().isEmpty()) {
-                    log.warn("No routes found with profile driving or cycling. Returning minimal mission steps array");
-                    missionSteps.add(MissionStep.builder(origin.getLatitude().setScale(4, RoundingMode.HALF_UP),
-                            origin.getLongitude().setScale(4, RoundingMode.HALF_UP)).build());
-                    missionSteps.add(MissionStep.builder(waypoint.getLatitude().setScale(4, RoundingMode.HALF_UP),
-                            waypoint.getLongitude().setScale(4, RoundingMode.HALF_UP)).wayPoint(true).build());
-                    missionSteps.add(MissionStep.builder(destination.getLatitude().setScale(4, RoundingMode.HALF_UP),
-                            destination.getLongitude().setScale(4, RoundingMode.HALF_UP)).destination(true).build());
-                    return missionSteps;
+    @Gauge(name = "route-requests-rejected", absolute = true, unit = MetricUnits.NONE, description = "MapBox API requests rejected by the circuit breaker or the bulkhead")
+    public long rejectedRequests() {
+        return rejectedRequests.get();
+    }
+
+    @Gauge(name = "route-circuit-breaker-opened", absolute = true, unit = MetricUnits.NONE, description = "Number of times the MapBox API circuit breaker opened")
+    public long circuitBreakerOpened() {
+        CircuitBreaker breaker = circuitBreaker;
+        return breaker == null ? 0 : breaker.opened();
+    }
+
+    @Gauge(name = "route-requests-hedged", absolute = true, unit = MetricUnits.NONE, description = "Cycling route requests sent because the driving route request was slow")
+    public long hedgedRequests() {
+        return hedgedRequests.get();
+    }
+
+    @Gauge(name = "route-requests-coalesced", absolute = true, unit = MetricUnits.NONE, description = "Route legs served by a pending request or by another route of the batch with the same leg")
+    public long coalescedLegs() {
+        return coalescedLegs.get();
+    }
+
+    private Uni<List<MissionStep>> getLeg(Location from, Location to, Leg leg) {
+        RouteCache cache = getRouteCache();
+        if (cache != null) {
+            List<MissionStep> cached = cache.get(from, to, leg);
+            if (cached != null) {
+                return Uni.createFrom().item(cached);
+            }
+        }
+        return Uni.createFrom().completionStage(() -> pendingLeg(from, to, leg)).onItem().transform(ArrayList::new);
+    }
+
+    private CompletableFuture<List<MissionStep>> pendingLeg(Location from, Location to, Leg leg) {
+        String key = RouteCache.key(from, to, leg);
+        CompletableFuture<List<MissionStep>> future = new CompletableFuture<>();
+        CompletableFuture<List<MissionStep>> pending = pendingLegs.putIfAbsent(key, future);
+        if (pending != null) {
+            coalescedLegs.incrementAndGet();
+            return pending;
+        }
+        // the leg is cached before the pending request is removed, so that no identical request is sent in between
+        getLegInternal(from, to, leg).subscribe().with(steps -> {
+            pendingLegs.remove(key, future);
+            future.complete(steps);
+        }, t -> {
+            pendingLegs.remove(key, future);
+            future.completeExceptionally(t);
+        });
+        return future;
+    }
+
+    private Uni<List<MissionStep>> getLegInternal(Location from, Location to, Leg leg) {
+        return getRoutingBackend().route(from, to).onItem().transform(locations -> {
+            if (locations.isEmpty()) {
+                log.warn("No routes found. Returning minimal mission steps array");
+                // not cached, so that the leg is requested again for the next mission
+                return minimalLeg(from, to, leg);
+            }
+            List<MissionStep> missionSteps = new ArrayList<>(locations.size());
+            for (int i = 0; i < locations.size(); i++) {
+                Location location = locations.get(i);
+                MissionStep.Builder builder = MissionStep.builder(location);
+                if (i == locations.size() - 1) {
+                    arrival(builder, leg);
                 }
+                missionSteps.add(builder.build());
+            }
+            RouteCache cache = getRouteCache();
+            if (cache != null) {
+                cache.put(from, to, leg, missionSteps);
             }
+            return missionSteps;
+        });
+    }
 
-            Optional<List<RouteLeg>> legs = Optional.ofNullable(response.body().routes().get(0).legs());
-            legs.orElse(Collections.emptyList()).stream().flatMap(r -> Optional.ofNullable(r.steps()).orElse(Collections.emptyList()).stream())
+    private RoutingBackend getRoutingBackend() {
+        return OFFLINE.equalsIgnoreCase(backend) ? offlineRoutingBackend : this::getMapboxRoute;
+    }
+
+    /**
+     * @return the maneuver locations of the MapBox route, the last one being the arrival.
+     */
+    private Uni<List<Location>> getMapboxRoute(Location from, Location to) {
+        return getDirectionsResponse(from, to).onItem().transform(response -> {
+            if (!hasRoutes(response)) {
+                log.warn("No routes found with profile driving or cycling. From: " + from + "; To: " + to);
+                return Collections.emptyList();
+            }
+            Optional<List<RouteLeg>> legs = Optional.ofNullable(response.routes().get(0).legs());
+            return legs.orElse(Collections.emptyList()).stream().flatMap(r -> Optional.ofNullable(r.steps()).orElse(Collections.emptyList()).stream())
                     .map(l -> {
                         Point p = l.maneuver().location();
-                        MissionStep.Builder builder = MissionStep.builder(BigDecimal.valueOf(p.latitude()).setScale(4, RoundingMode.HALF_UP),
-                                BigDecimal.valueOf(p.longitude()).setScale(4, RoundingMode.HALF_UP));
-                        if ("arrive".equalsIgnoreCase(l.maneuver().type())) {
-                            Optional<MissionStep> step = missionSteps.stream().filter(MissionStep::isWayPoint).findFirst();
-                            if (step.isEmpty()) {
-                                builder.wayPoint(true);
-                            } else {
-                                builder.destination(true);
-                            }
-                        }
-                        return builder.build();
-                    }).forEach(missionSteps::add);
-            return missionSteps;
-        } catch (IOException e) {
-            log.error("Exception while calling MapBox API", e);
-            throw new RoutePlannerException(e.getMessage(), e);
+                        // rounded once, from the coordinates of the response
+                        return Location.of(p.latitude(), p.longitude(), MissionStep.DECIMALS);
+                    }).collect(Collectors.toList());
+        });
+    }
+
+    /**
+     * Requests a leg through the bulkhead, which bounds the number of legs being requested. A leg rejected by the
+     * bulkhead fails with a {@link RoutePlannerUnavailableException}.
+     */
+    private Uni<DirectionsResponse> getDirectionsResponse(Location from, Location to) {
+        Bulkhead permits = getBulkhead();
+        return permits.acquire()
+                .onFailure().invoke(t -> rejectedRequests.incrementAndGet())
+                .onItem().transformToUni(v -> requestDirections(from, to)
+                        .onTermination().invoke((response, failure, cancelled) -> permits.release()));
+    }
+
+    /**
+     * Requests a leg with profile driving, falling back to profile cycling when no driving route is found. Depending on
+     * <code>mapbox.profile-fallback</code>, the cycling request is sent after the driving response
+     * (<code>sequential</code>), together with the driving request (<code>parallel</code>), or when the driving request
+     * is slower than most (<code>hedged</code>).
+     */
+    private Uni<DirectionsResponse> requestDirections(Location from, Location to) {
+        switch (profileFallback.toLowerCase()) {
+            case PARALLEL:
+                return getDirectionsResponse(from, to, 0);
+            case HEDGED:
+                long delay = getLatencyTracker().percentile(hedgePercentile);
+                return getDirectionsResponse(from, to, delay < 0 ? hedgeDefaultDelay.toMillis() : Math.max(1, delay));
+            default:
+                return callMapBoxAPI(DirectionsCriteria.PROFILE_DRIVING, from, to).onItem().transformToUni(response -> {
+                    if (hasRoutes(response)) {
+                        return Uni.createFrom().item(response);
+                    }
+                    log.warn("No routes found. From: " + from + "; To: " + to + ". Trying with profile cycling");
+                    return callMapBoxAPI(DirectionsCriteria.PROFILE_CYCLING, from, to);
+                });
+        }
+    }
+
+    /**
+     * Sends the cycling request <code>delay</code> milliseconds after the driving request, unless the driving request
+     * completed by then. The driving response is used when it has a route, in which case the cycling request is
+     * cancelled.
+     */
+    private Uni<DirectionsResponse> getDirectionsResponse(Location from, Location to, long delay) {
+        return Uni.createFrom().emitter(emitter -> {
+            CompletableFuture<DirectionsResponse> cycling = new CompletableFuture<>();
+            AtomicReference<Cancellable> cyclingRequest = new AtomicReference<>();
+            Runnable sendCyclingRequest = () -> {
+                if (!cycling.isDone() && cyclingRequest.compareAndSet(null, () -> {})) {
+                    cyclingRequest.set(callMapBoxAPI(DirectionsCriteria.PROFILE_CYCLING, from, to).subscribe()
+                            .with(cycling::complete, cycling::completeExceptionally));
+                }
+            };
+            Runnable cancelCyclingRequest = () -> {
+                // a cycling request sent from now on is not subscribed
+                cycling.cancel(false);
+                Cancellable request = cyclingRequest.getAndSet(() -> {});
+                if (request != null) {
+                    request.cancel();
+                }
+            };
+            long timer;
+            if (delay <= 0) {
+                timer = -1;
+                sendCyclingRequest.run();
+            } else {
+                timer = vertx.setTimer(delay, id -> {
+                    hedgedRequests.incrementAndGet();
+                    sendCyclingRequest.run();
+                });
+            }
+            Cancellable driving = callMapBoxAPI(DirectionsCriteria.PROFILE_DRIVING, from, to).subscribe().with(response -> {
+                if (timer >= 0) {
+                    vertx.cancelTimer(timer);
+                }
+                if (hasRoutes(response)) {
+                    cancelCyclingRequest.run();
+                    emitter.complete(response);
+                    return;
+                }
+                log.warn("No routes found. From: " + from + "; To: " + to + ". Using profile cycling");
+                sendCyclingRequest.run();
+                cycling.whenComplete((r, t) -> {
+                    if (t != null) {
+                        emitter.fail(t);
+                    } else {
+                        emitter.complete(r);
+                    }
+                });
+            }, t -> {
+                if (timer >= 0) {
+                    vertx.cancelTimer(timer);
+                }
+                cancelCyclingRequest.run();
+                emitter.fail(t);
+            });
+            emitter.onTermination(() -> {
+                driving.cancel();
+                if (timer >= 0) {
+                    vertx.cancelTimer(timer);
+                }
+                cancelCyclingRequest.run();
+            });
+        });
+    }
+
+    private boolean hasRoutes(DirectionsResponse response) {
+        return response != null && response.routes() != null && !response.routes().isEmpty();
+    }
+
+    /**
+     * The route reduced to its origin, waypoint and destination, used when no route can be found or requested.
+     */
+    public static List<MissionStep> minimalRoute(Location origin, Location destination, Location waypoint) {
+        List<MissionStep> missionSteps = minimalLeg(origin, waypoint, Leg.TO_WAYPOINT);
+        missionSteps.addAll(minimalLeg(waypoint, destination, Leg.TO_DESTINATION));
+        return missionSteps;
+    }
+
+    private static List<MissionStep> minimalLeg(Location from, Location to, Leg leg) {
+        List<MissionStep> missionSteps = new ArrayList<>();
+        // the start of the leg to the destination is the end of the leg to the waypoint
+        if (leg == Leg.TO_WAYPOINT) {
+            missionSteps.add(MissionStep.builder(from).build());
+        }
+        missionSteps.add(arrival(MissionStep.builder(to), leg).build());
+        return missionSteps;
+    }
+
+    private static MissionStep.Builder arrival(MissionStep.Builder builder, Leg leg) {
+        return leg == Leg.TO_WAYPOINT ? builder.wayPoint(true) : builder.destination(true);
+    }
+
+    private Uni<DirectionsResponse> callMapBoxAPI(String profile, Location from, Location to) {
+        String coordinates = coordinates(from) + ";" + coordinates(to);
+        return Uni.createFrom().deferred(() -> {
+            long start = System.nanoTime();
+            Uni<DirectionsResponse> response = callMapBoxAPI(profile, coordinates);
+            if (!DirectionsCriteria.PROFILE_DRIVING.equals(profile)) {
+                return response;
+            }
+            return response.onItem().invoke(r -> getLatencyTracker().record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        });
+    }
+
+    /**
+     * Sends a request through the circuit breaker. A rejected request fails immediately with a
+     * {@link RoutePlannerUnavailableException}.
+     */
+    private Uni<DirectionsResponse> callMapBoxAPI(String profile, String coordinates) {
+        return Uni.createFrom().deferred(() -> {
+            CircuitBreaker breaker = getCircuitBreaker();
+            if (!breaker.tryAcquire()) {
+                rejectedRequests.incrementAndGet();
+                return Uni.createFrom().failure(new RoutePlannerUnavailableException("MapBox API circuit breaker is open"));
+            }
+            return send(profile, coordinates, breaker);
+        });
+    }
+
+    /**
+     * Sends a request to the MapBox API. Only timeouts, connection errors and 5xx responses are failures of the circuit
+     * breaker: a 4xx response, e.g. for an invalid token or coordinates, is an error of the request, and tells that the
+     * MapBox API is available.
+     */
+    private Uni<DirectionsResponse> send(String profile, String coordinates, CircuitBreaker breaker) {
+        return getWebClient().getAbs(mapboxUrl + "/directions/v5/" + DirectionsCriteria.PROFILE_DEFAULT_USER + "/" + profile + "/" + coordinates)
+                .addQueryParam("access_token", accessToken)
+                .addQueryParam("geometries", DirectionsCriteria.GEOMETRY_POLYLINE6)
+                .addQueryParam("overview", DirectionsCriteria.OVERVIEW_FULL)
+                .addQueryParam("steps", "true")
+                .timeout(clientTimeout.toMillis())
+                .send()
+                .onTermination().invoke((response, failure, cancelled) -> {
+                    if (cancelled) {
+                        breaker.onCancel();
+                    } else if (failure != null || response.statusCode() >= 500) {
+                        breaker.onFailure();
+                    } else {
+                        breaker.onSuccess();
+                    }
+                })
+                .onFailure().transform(t -> {
+                    log.error("Exception while calling MapBox API", t);
+                    return new RoutePlannerException(t.getMessage(), t);
+                })
+                // the responses are large, they are parsed on a worker thread rather than on the event loop
+                .emitOn(Infrastructure.getDefaultWorkerPool())
+                .onItem().transform(response -> {
+                    // Check for error from MapBoxAPI
+                    if (response.statusCode() < 200 || response.statusCode() >= 300) {
+                        log.warn("Error when calling MapBoxAPI. Error message: " + response.statusMessage());
+                        throw new RoutePlannerException("MapBoxAPI error: " + response.statusMessage());
+                    }
+                    return DirectionsResponse.fromJson(response.bodyAsString());
+                });
+    }
+
+    /**
+     * Formats a location as <code>longitude,latitude</code>, with at most 6 decimals.
+     */
+    static String coordinates(Location location) {
+        return Coordinates.format(location.longitude(), 0) + "," + Coordinates.format(location.latitude(), 0);
+    }
+
+    private WebClient getWebClient() {
+        WebClient client = webClient;
+        if (client == null) {
+            synchronized (this) {
+                if (webClient == null) {
+                    // HTTP/2 is negotiated with ALPN, which requires TLS
+                    boolean ssl = mapboxUrl.startsWith("https");
+                    WebClientOptions options = new WebClientOptions()
+                            .setKeepAlive(true)
+                            .setMaxPoolSize(clientMaxPoolSize)
+                            .setProtocolVersion(ssl ? HttpVersion.HTTP_2 : HttpVersion.HTTP_1_1)
+                            .setUseAlpn(ssl)
+                            .setConnectTimeout((int) clientTimeout.toMillis());
+                    webClient = WebClient.create(vertx, options);
+                }
+                client = webClient;
+            }
         }
+        return client;
     }
 
-    private Response<DirectionsResponse> callMapBoxAPI(String profile, Location origin, Location destination, Location waypoint) throws IOException {
-        MapboxDirections request =  MapboxDirections.builder()
-                .baseUrl(mapboxUrl)
-                .accessToken(accessToken)
-                .origin(Point.fromLngLat(origin.getLongitude().doubleValue(), origin.getLatitude().doubleValue()))
-                .destination(Point.fromLngLat(destination.getLongitude().doubleValue(), destination.getLatitude().doubleValue()))
-                .addWaypoint(Point.fromLngLat(waypoint.getLongitude().doubleValue(), waypoint.getLatitude().doubleValue()))
-                .overview(DirectionsCriteria.OVERVIEW_FULL)
-                .profile(profile)
-                .steps(true)
-                .build();
+    @PreDestroy
+    void close() {
+        WebClient client = webClient;
+        if (client != null) {
+            client.close();
+        }
+    }
 
-        Response<DirectionsResponse> response = request.executeCall();
+    private CircuitBreaker getCircuitBreaker() {
+        CircuitBreaker breaker = circuitBreaker;
+        if (breaker == null) {
+            synchronized (this) {
+                if (circuitBreaker == null) {
+                    circuitBreaker = new CircuitBreaker(circuitBreakerFailureThreshold, circuitBreakerDelay.toMillis(), System::currentTimeMillis);
+                }
+                breaker = circuitBreaker;
+            }
+        }
+        return breaker;
+    }
 
-        // Check for error from MapBoxAPI
-        if (!response.isSuccessful()) {
-            log.warn("Error when calling MapBoxAPI. Error message: " + response.message());
-            throw new RoutePlannerException("MapBoxAPI error: " + response.message());
+    private Bulkhead getBulkhead() {
+        Bulkhead permits = bulkhead;
+        if (permits == null) {
+            synchronized (this) {
+                if (bulkhead == null) {
+                    bulkhead = new Bulkhead(bulkheadMaxRequests, bulkheadMaxWait.toMillis(), Infrastructure.getDefaultWorkerPool());
+                }
+                permits = bulkhead;
+            }
         }
+        return permits;
+    }
 
-        return response;
+    private LatencyTracker getLatencyTracker() {
+        LatencyTracker tracker = latencyTracker;
+        if (tracker == null) {
+            synchronized (this) {
+                if (latencyTracker == null) {
+                    latencyTracker = new LatencyTracker(LATENCY_SAMPLES, LATENCY_MIN_SAMPLES);
+                }
+                tracker = latencyTracker;
+            }
+        }
+        return tracker;
     }
 
+    private RouteCache getRouteCache() {
+        if (routeCacheMaxEntries <= 0) {
+            return null;
+        }
+        RouteCache cache = routeCache;
+        if (cache == null) {
+            synchronized (this) {
+                if (routeCache == null) {
+                    routeCache = new RouteCache(routeCacheMaxEntries, routeCacheTtl.toMillis(), System::currentTimeMillis);
+                }
+                cache = routeCache;
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * A leg of a batch of routes, shared by the routes of the batch with the same leg.
+     */
+    private static class BatchLeg {
+
+        private final Location from;
+
+        private final Location to;
+
+        private final Leg leg;
+
+        private final CompletableFuture<List<MissionStep>> steps = new CompletableFuture<>();
+
+        private BatchLeg(Location from, Location to, Leg leg) {
+            this.from = from;
+            this.to = to;
+            this.leg = leg;
+        }
+    }
+
+    /**
+     * The legs of a mission route: from the responder to the incident, and from the incident to the destination.
+     */
+    enum Leg {
+        TO_WAYPOINT,
+        TO_DESTINATION
+    }
 }
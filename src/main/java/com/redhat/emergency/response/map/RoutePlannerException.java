@@ -2,11 +2,13 @@ package com.redhat.emergency.response.map;
 
 public class RoutePlannerException extends RuntimeException {
 
+    private static final long serialVersionUID = 1L;
+
     public RoutePlannerException(String message) {
         super(message);
     }
 
-    public RoutePlannerException(String message, Exception cause) {
+    public RoutePlannerException(String message, Throwable cause) {
         super(message, cause);
     }
 }
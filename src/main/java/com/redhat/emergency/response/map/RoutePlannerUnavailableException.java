@@ -0,0 +1,13 @@
+package com.redhat.emergency.response.map;
+
+/**
+ * Thrown without calling the MapBox API, when its circuit breaker is open or too many requests are pending.
+ */
+public class RoutePlannerUnavailableException extends RoutePlannerException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RoutePlannerUnavailableException(String message) {
+        super(message);
+    }
+}
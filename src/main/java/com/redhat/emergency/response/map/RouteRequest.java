@@ -0,0 +1,43 @@
+package com.redhat.emergency.response.map;
+
+import com.redhat.emergency.response.model.Location;
+
+/**
+ * A route from an origin to a destination through a waypoint, as planned by
+ * {@link RoutePlanner#getDirections(java.util.List)}.
+ */
+public class RouteRequest {
+
+    private final Location origin;
+
+    private final Location destination;
+
+    private final Location waypoint;
+
+    private RouteRequest(Location origin, Location destination, Location waypoint) {
+        this.origin = origin;
+        this.destination = destination;
+        this.waypoint = waypoint;
+    }
+
+    public static RouteRequest of(Location origin, Location destination, Location waypoint) {
+        return new RouteRequest(origin, destination, waypoint);
+    }
+
+    public Location getOrigin() {
+        return origin;
+    }
+
+    public Location getDestination() {
+        return destination;
+    }
+
+    public Location getWaypoint() {
+        return waypoint;
+    }
+
+    @Override
+    public String toString() {
+        return origin + " -> " + waypoint + " -> " + destination;
+    }
+}
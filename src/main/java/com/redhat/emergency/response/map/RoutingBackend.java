@@ -0,0 +1,21 @@
+package com.redhat.emergency.response.map;
+
+import java.util.List;
+
+import com.redhat.emergency.response.model.Location;
+import com.redhat.emergency.response.model.MissionStep;
+import io.smallrye.mutiny.Uni;
+
+/**
+ * Computes the route between two locations, for the {@link RoutePlanner}. The backend is selected with
+ * <code>routing.backend</code>: <code>mapbox</code> (the MapBox directions API) or <code>offline</code> (a road graph
+ * loaded in memory, see {@link OfflineRoutingBackend}).
+ */
+interface RoutingBackend {
+
+    /**
+     * @return the locations of the steps of the route, rounded to {@link MissionStep#DECIMALS} decimals, the last one
+     * being the arrival, or an empty list if there is no route between the locations.
+     */
+    Uni<List<Location>> route(Location from, Location to);
+}
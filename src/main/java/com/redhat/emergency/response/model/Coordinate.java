@@ -0,0 +1,29 @@
+package com.redhat.emergency.response.model;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import com.fasterxml.jackson.annotation.JacksonAnnotationsInside;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * JSON property of a coordinate held in microdegrees, see {@link Coordinates}. The property is read and written as a
+ * number in degrees.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+@JacksonAnnotationsInside
+@JsonProperty
+@JsonSerialize(using = Coordinates.Serializer.class)
+@JsonDeserialize(using = Coordinates.Deserializer.class)
+public @interface Coordinate {
+
+    /**
+     * Minimum number of decimals written, e.g. 4 for the mission steps, rounded to 4 decimals.
+     */
+    int minDecimals() default 1;
+}
@@ -0,0 +1,262 @@
+package com.redhat.emergency.response.model;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.ContextualSerializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * Coordinates in fixed point, as an <code>int</code> number of microdegrees (about 10 centimeters). A coordinate takes
+ * 4 bytes in the model, rather than a <code>BigDecimal</code> and its unscaled value, and is rounded without allocation.
+ * Coordinates are written to JSON as decimal numbers, e.g. <code>40.12345</code>, see {@link Coordinate}.
+ */
+public final class Coordinates {
+
+    /**
+     * A missing coordinate, written to JSON as <code>null</code>.
+     */
+    public static final int NONE = Integer.MIN_VALUE;
+
+    static final int SCALE = 6;
+
+    private static final int[] POWERS_OF_TEN = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000};
+
+    private static final int MAX_DEGREES = 1_000;
+
+    private Coordinates() {
+    }
+
+    /**
+     * @return the coordinate rounded to microdegrees, {@link #NONE} for <code>NaN</code>.
+     * @throws IllegalArgumentException when the value is infinite or beyond {@value #MAX_DEGREES} degrees, which does
+     * not fit in an <code>int</code> number of microdegrees.
+     */
+    public static int of(double degrees) {
+        if (Double.isNaN(degrees)) {
+            return NONE;
+        }
+        if (!(Math.abs(degrees) <= MAX_DEGREES)) {
+            throw new IllegalArgumentException("Not a coordinate: " + degrees);
+        }
+        return (int) Math.round(degrees * POWERS_OF_TEN[SCALE]);
+    }
+
+    /**
+     * @return the coordinate rounded half up to the given number of decimals from the value in degrees, as
+     * <code>BigDecimal.valueOf(degrees).setScale(decimals, RoundingMode.HALF_UP)</code>, rather than from its rounded
+     * microdegrees.
+     * @throws IllegalArgumentException when the value is not a coordinate, see {@link #of(double)}.
+     */
+    public static int of(double degrees, int decimals) {
+        int coordinate = of(degrees);
+        if (coordinate == NONE || decimals >= SCALE) {
+            return coordinate;
+        }
+        return BigDecimal.valueOf(degrees).setScale(decimals, RoundingMode.HALF_UP).movePointRight(SCALE).intValue();
+    }
+
+    public static int of(Double degrees) {
+        return degrees == null ? NONE : of(degrees.doubleValue());
+    }
+
+    /**
+     * @return the coordinate in degrees, <code>NaN</code> when the coordinate is missing.
+     */
+    public static double toDegrees(int coordinate) {
+        return coordinate == NONE ? Double.NaN : (double) coordinate / POWERS_OF_TEN[SCALE];
+    }
+
+    /**
+     * @return the coordinate in degrees, <code>null</code> when the coordinate is missing.
+     */
+    public static Double toDouble(int coordinate) {
+        return coordinate == NONE ? null : toDegrees(coordinate);
+    }
+
+    /**
+     * Rounds a coordinate half up to the given number of decimals, e.g. 4 decimals for the mission steps. A coordinate
+     * with more decimals than microdegrees is rounded with {@link #of(double, int)} instead, so that it is rounded once.
+     */
+    public static int round(int coordinate, int decimals) {
+        if (coordinate == NONE || decimals >= SCALE) {
+            return coordinate;
+        }
+        int unit = POWERS_OF_TEN[SCALE - decimals];
+        int rounded = (Math.abs(coordinate) + unit / 2) / unit * unit;
+        return coordinate < 0 ? -rounded : rounded;
+    }
+
+    /**
+     * Parses a coordinate in degrees, rounded half up to microdegrees.
+     *
+     * @throws NumberFormatException when the value is not a number or a coordinate.
+     */
+    public static int parse(String value) {
+        int length = value.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+            negative = value.charAt(0) == '-';
+            i++;
+        }
+        long units = 0;
+        int decimals = -1;
+        boolean roundUp = false;
+        boolean digits = false;
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits = true;
+                if (decimals < 0) {
+                    units = units * 10 + (c - '0');
+                    if (units > MAX_DEGREES) {
+                        throw new NumberFormatException("Not a coordinate: " + value);
+                    }
+                } else if (decimals < SCALE) {
+                    units = units * 10 + (c - '0');
+                    decimals++;
+                } else if (decimals == SCALE) {
+                    roundUp = c >= '5';
+                    decimals++;
+                }
+            } else if (c == '.' && decimals < 0) {
+                decimals = 0;
+            } else if (c == 'e' || c == 'E') {
+                // e.g. 1.0E-4, as written by Double.toString
+                return of(new BigDecimal(value).setScale(SCALE, RoundingMode.HALF_UP).doubleValue());
+            } else {
+                throw new NumberFormatException("Not a coordinate: " + value);
+            }
+        }
+        if (!digits) {
+            throw new NumberFormatException("Not a coordinate: " + value);
+        }
+        units = units * POWERS_OF_TEN[SCALE - Math.min(Math.max(decimals, 0), SCALE)] + (roundUp ? 1 : 0);
+        return (int) (negative ? -units : units);
+    }
+
+    /**
+     * Formats a coordinate in degrees, without trailing zeros beyond <code>minDecimals</code> decimals.
+     */
+    public static String format(int coordinate, int minDecimals) {
+        StringBuilder sb = new StringBuilder(12);
+        long value = coordinate;
+        if (value < 0) {
+            sb.append('-');
+            value = -value;
+        }
+        sb.append(value / POWERS_OF_TEN[SCALE]);
+        int fraction = (int) (value % POWERS_OF_TEN[SCALE]);
+        int decimals = SCALE;
+        while (decimals > minDecimals && fraction % 10 == 0) {
+            fraction /= 10;
+            decimals--;
+        }
+        if (decimals > 0) {
+            sb.append('.');
+            for (int i = decimals - 1; i > 0 && fraction < POWERS_OF_TEN[i]; i--) {
+                sb.append('0');
+            }
+            sb.append(fraction);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the coordinate in degrees, without trailing zeros beyond <code>minDecimals</code> decimals, or
+     * <code>null</code> when the coordinate is missing.
+     */
+    public static BigDecimal toBigDecimal(int coordinate, int minDecimals) {
+        if (coordinate == NONE) {
+            return null;
+        }
+        long value = coordinate;
+        int decimals = SCALE;
+        while (decimals > minDecimals && value % 10 == 0) {
+            value /= 10;
+            decimals--;
+        }
+        return BigDecimal.valueOf(value, decimals);
+    }
+
+    /**
+     * Writes a coordinate as a JSON number, with at least {@link Coordinate#minDecimals()} decimals. The coordinate is
+     * written as a <code>BigDecimal</code> by every generator, so that a JSON document and a map or tree converted from
+     * the model, e.g. by <code>JsonObject.mapFrom</code>, hold the same number.
+     */
+    public static class Serializer extends StdSerializer<Integer> implements ContextualSerializer {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int minDecimals;
+
+        public Serializer() {
+            this(1);
+        }
+
+        private Serializer(int minDecimals) {
+            super(Integer.class);
+            this.minDecimals = minDecimals;
+        }
+
+        @Override
+        public JsonSerializer<?> createContextual(SerializerProvider provider, BeanProperty property) {
+            Coordinate coordinate = property == null ? null : property.getAnnotation(Coordinate.class);
+            return coordinate == null || coordinate.minDecimals() == minDecimals ? this : new Serializer(coordinate.minDecimals());
+        }
+
+        @Override
+        public void serialize(Integer value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            write(gen, value, minDecimals);
+        }
+
+        static void write(JsonGenerator gen, int coordinate, int minDecimals) throws IOException {
+            if (coordinate == NONE) {
+                gen.writeNull();
+            } else {
+                gen.writeNumber(toBigDecimal(coordinate, minDecimals));
+            }
+        }
+    }
+
+    /**
+     * Reads a coordinate from a JSON number, or a string holding a number.
+     */
+    public static class Deserializer extends StdDeserializer<Integer> {
+
+        private static final long serialVersionUID = 1L;
+
+        public Deserializer() {
+            super(Integer.class);
+        }
+
+        @Override
+        public Integer deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            JsonToken token = p.currentToken();
+            if (token != JsonToken.VALUE_NUMBER_FLOAT && token != JsonToken.VALUE_NUMBER_INT && token != JsonToken.VALUE_STRING) {
+                return (Integer) ctxt.handleUnexpectedToken(Integer.class, p);
+            }
+            String text = p.getText().trim();
+            try {
+                return parse(text);
+            } catch (NumberFormatException e) {
+                return (Integer) ctxt.handleWeirdStringValue(Integer.class, text, e.getMessage());
+            }
+        }
+
+        @Override
+        public Integer getNullValue(DeserializationContext ctxt) {
+            return NONE;
+        }
+    }
+}
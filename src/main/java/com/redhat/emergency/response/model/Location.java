@@ -1,30 +1,63 @@
 package com.redhat.emergency.response.model;
 
-import java.math.BigDecimal;
-
+/**
+ * A location, with its coordinates in microdegrees, see {@link Coordinates}.
+ */
 public class Location {
 
-    private BigDecimal latitude;
+    private final int latitude;
+
+    private final int longitude;
+
+    private Location(int latitude, int longitude) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    public static Location of(double latitude, double longitude) {
+        return new Location(Coordinates.of(latitude), Coordinates.of(longitude));
+    }
 
-    private BigDecimal longitude;
+    /**
+     * @return the location with its coordinates rounded half up to the given number of decimals, from the values in
+     * degrees, see {@link Coordinates#of(double, int)}.
+     */
+    public static Location of(double latitude, double longitude, int decimals) {
+        return new Location(Coordinates.of(latitude, decimals), Coordinates.of(longitude, decimals));
+    }
+
+    /**
+     * @param latitude the latitude in microdegrees.
+     * @param longitude the longitude in microdegrees.
+     */
+    public static Location ofMicrodegrees(int latitude, int longitude) {
+        return new Location(latitude, longitude);
+    }
+
+    public double getLatitude() {
+        return Coordinates.toDegrees(latitude);
+    }
 
-    public static Location of(BigDecimal latitude, BigDecimal longitude) {
-        Location location = new Location();
-        location.latitude = latitude;
-        location.longitude = longitude;
-        return location;
+    public double getLongitude() {
+        return Coordinates.toDegrees(longitude);
     }
 
-    public BigDecimal getLatitude() {
+    /**
+     * @return the latitude in microdegrees.
+     */
+    public int latitude() {
         return latitude;
     }
 
-    public BigDecimal getLongitude() {
+    /**
+     * @return the longitude in microdegrees.
+     */
+    public int longitude() {
         return longitude;
     }
 
     @Override
     public String toString() {
-        return "[" + latitude + "," + longitude + "]";
+        return "[" + Coordinates.format(latitude, 1) + "," + Coordinates.format(longitude, 1) + "]";
     }
 }
@@ -0,0 +1,362 @@
+package com.redhat.emergency.response.model;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import io.vertx.core.json.DecodeException;
+
+/**
+ * Responder location history of a mission, held in columns: the latitudes, the longitudes and the timestamps are each
+ * encoded as the varint of their difference with the previous location, which takes a few bytes per location rather
+ * than an object. The history is stored in the same form, see {@link #encode()}, and written to JSON as an array of
+ * locations.
+ * The locations are decoded when they are read, sequentially by the iterator, and from the nearest checkpoint, kept
+ * every {@value #CHECKPOINT_INTERVAL} locations, by {@link #get(int)}. Locations can only be appended.
+ */
+@JsonSerialize(using = LocationHistory.Serializer.class)
+public class LocationHistory extends AbstractList<ResponderLocationHistory> {
+
+    static final int CHECKPOINT_INTERVAL = 32;
+
+    private final Column lats = new Column();
+
+    private final Column lons = new Column();
+
+    private final Column timestamps = new Column();
+
+    private int size;
+
+    public LocationHistory() {
+    }
+
+    public LocationHistory(Collection<ResponderLocationHistory> locations) {
+        addAll(locations);
+    }
+
+    /**
+     * Decodes a history written by {@link #encode()}, or a JSON array of locations as stored by previous versions.
+     *
+     * @throws DecodeException if the value is not a valid history
+     */
+    public static LocationHistory decode(String value) {
+        if (value == null || value.isEmpty()) {
+            return new LocationHistory();
+        }
+        if (value.charAt(0) == '[') {
+            return MissionCodec.decodeHistory(value);
+        }
+        byte[] bytes;
+        try {
+            bytes = Base64.getDecoder().decode(value);
+        } catch (IllegalArgumentException e) {
+            throw new DecodeException("Failed to decode location history: " + e.getMessage());
+        }
+        LocationHistory history = new LocationHistory();
+        Varints varints = new Varints(bytes, 0);
+        long size = varints.next();
+        if (size < 0 || size > Integer.MAX_VALUE) {
+            throw new DecodeException("Failed to decode location history: invalid size " + size);
+        }
+        history.lats.read(varints, (int) size);
+        history.lons.read(varints, (int) size);
+        history.timestamps.read(varints, (int) size);
+        if (varints.position != bytes.length) {
+            throw new DecodeException("Failed to decode location history: unexpected bytes after the columns");
+        }
+        history.size = (int) size;
+        return history;
+    }
+
+    /**
+     * @return the history as a base64 string: the number of locations, then the length and the bytes of each column.
+     */
+    public String encode() {
+        byte[] bytes = new byte[4 * Varints.MAX_LENGTH + lats.length + lons.length + timestamps.length];
+        int position = Varints.write(bytes, 0, size);
+        position = lats.write(bytes, position);
+        position = lons.write(bytes, position);
+        position = timestamps.write(bytes, position);
+        return Base64.getEncoder().encodeToString(Arrays.copyOf(bytes, position));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean add(ResponderLocationHistory location) {
+        lats.append(size, location.lat());
+        lons.append(size, location.lon());
+        timestamps.append(size, location.getTimestamp());
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public ResponderLocationHistory get(int index) {
+        Objects.checkIndex(index, size);
+        Cursor cursor = new Cursor(index);
+        cursor.next();
+        return cursor.location();
+    }
+
+    @Override
+    public Iterator<ResponderLocationHistory> iterator() {
+        Cursor cursor = new Cursor(0);
+        return new Iterator<>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public ResponderLocationHistory next() {
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                index++;
+                cursor.next();
+                return cursor.location();
+            }
+        };
+    }
+
+    /**
+     * Drops the locations from <code>size</code> on.
+     */
+    public void truncate(int size) {
+        if (size < this.size) {
+            Cursor cursor = new Cursor(size);
+            lats.truncate(cursor.lat);
+            lons.truncate(cursor.lon);
+            timestamps.truncate(cursor.timestamp);
+            this.size = size;
+            modCount++;
+        }
+    }
+
+    /**
+     * Writes the history as a JSON array of locations, without creating the locations.
+     */
+    void writeTo(JsonGenerator gen) throws IOException {
+        gen.writeStartArray();
+        Cursor cursor = new Cursor(0);
+        for (int i = 0; i < size; i++) {
+            cursor.next();
+            gen.writeStartObject();
+            gen.writeFieldName("lat");
+            Coordinates.Serializer.write(gen, (int) cursor.lat.value, 1);
+            gen.writeFieldName("lon");
+            Coordinates.Serializer.write(gen, (int) cursor.lon.value, 1);
+            gen.writeNumberField("timestamp", cursor.timestamp.value);
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+    }
+
+    /**
+     * Reads the locations in sequence from a position in the history.
+     */
+    private final class Cursor {
+
+        private final Column.Reader lat;
+
+        private final Column.Reader lon;
+
+        private final Column.Reader timestamp;
+
+        Cursor(int index) {
+            lat = lats.reader(index);
+            lon = lons.reader(index);
+            timestamp = timestamps.reader(index);
+        }
+
+        void next() {
+            lat.next();
+            lon.next();
+            timestamp.next();
+        }
+
+        ResponderLocationHistory location() {
+            return ResponderLocationHistory.ofMicrodegrees((int) lat.value, (int) lon.value, timestamp.value);
+        }
+    }
+
+    /**
+     * A column of values, as the zigzag varints of the differences between consecutive values.
+     */
+    private static final class Column {
+
+        private byte[] bytes = new byte[16];
+
+        private int length;
+
+        private long last;
+
+        // position in the column of every CHECKPOINT_INTERVAL-th value, and the value before it
+        private int[] checkpoints = new int[1];
+
+        private long[] checkpointValues = new long[1];
+
+        void append(int index, long value) {
+            if (index % CHECKPOINT_INTERVAL == 0) {
+                checkpoint(index / CHECKPOINT_INTERVAL, length, last);
+            }
+            if (length + Varints.MAX_LENGTH > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + Varints.MAX_LENGTH));
+            }
+            length = Varints.write(bytes, length, Varints.zigzag(value - last));
+            last = value;
+        }
+
+        Reader reader(int index) {
+            int checkpoint = index / CHECKPOINT_INTERVAL;
+            Reader reader = new Reader(checkpoints[checkpoint], checkpointValues[checkpoint]);
+            for (int i = checkpoint * CHECKPOINT_INTERVAL; i < index; i++) {
+                reader.next();
+            }
+            return reader;
+        }
+
+        void truncate(Reader reader) {
+            length = reader.varints.position;
+            last = reader.value;
+        }
+
+        int write(byte[] target, int position) {
+            position = Varints.write(target, position, length);
+            System.arraycopy(bytes, 0, target, position, length);
+            return position + length;
+        }
+
+        void read(Varints source, int size) {
+            long columnLength = source.next();
+            if (columnLength < 0 || columnLength > source.bytes.length - source.position) {
+                throw new DecodeException("Failed to decode location history: column of " + columnLength + " bytes truncated");
+            }
+            length = (int) columnLength;
+            bytes = Arrays.copyOfRange(source.bytes, source.position, source.position + length);
+            source.position += length;
+            Reader reader = new Reader(0, 0);
+            for (int i = 0; i < size; i++) {
+                if (i % CHECKPOINT_INTERVAL == 0) {
+                    checkpoint(i / CHECKPOINT_INTERVAL, reader.varints.position, reader.value);
+                }
+                reader.next();
+            }
+            if (reader.varints.position != length) {
+                throw new DecodeException("Failed to decode location history: column does not hold " + size + " values");
+            }
+            last = reader.value;
+        }
+
+        private void checkpoint(int checkpoint, int position, long value) {
+            if (checkpoint == checkpoints.length) {
+                checkpoints = Arrays.copyOf(checkpoints, checkpoints.length * 2);
+                checkpointValues = Arrays.copyOf(checkpointValues, checkpointValues.length * 2);
+            }
+            checkpoints[checkpoint] = position;
+            checkpointValues[checkpoint] = value;
+        }
+
+        private final class Reader {
+
+            private final Varints varints;
+
+            private long value;
+
+            Reader(int position, long value) {
+                varints = new Varints(bytes, position);
+                this.value = value;
+            }
+
+            void next() {
+                value += Varints.unzigzag(varints.next());
+            }
+        }
+    }
+
+    /**
+     * Unsigned LEB128 varints.
+     */
+    private static final class Varints {
+
+        static final int MAX_LENGTH = 10;
+
+        private final byte[] bytes;
+
+        private int position;
+
+        Varints(byte[] bytes, int position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        /**
+         * @throws DecodeException if the bytes end before the varint or the varint is longer than {@value #MAX_LENGTH}
+         * bytes
+         */
+        long next() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (position >= bytes.length || shift > 63) {
+                    throw new DecodeException("Failed to decode location history: invalid varint");
+                }
+                b = bytes[position++];
+                value |= (long) (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+
+        static int write(byte[] target, int position, long value) {
+            while ((value & ~0x7fL) != 0) {
+                target[position++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            target[position++] = (byte) value;
+            return position;
+        }
+
+        static long zigzag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+
+        static long unzigzag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+
+    /**
+     * Writes the history as a JSON array of locations, see {@link #writeTo(JsonGenerator)}.
+     */
+    public static class Serializer extends StdSerializer<LocationHistory> {
+
+        private static final long serialVersionUID = 1L;
+
+        public Serializer() {
+            super(LocationHistory.class);
+        }
+
+        @Override
+        public void serialize(LocationHistory history, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            history.writeTo(gen);
+        }
+    }
+}
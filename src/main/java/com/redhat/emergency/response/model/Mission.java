@@ -1,49 +1,89 @@
 package com.redhat.emergency.response.model;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-import io.vertx.core.json.Json;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class Mission {
 
-    private String id;
+    String id;
 
-    private String incidentId;
+    String incidentId;
 
-    private String responderId;
+    String responderId;
 
-    private BigDecimal responderStartLat;
+    // microdegrees, see Coordinates
+    @Coordinate
+    int responderStartLat = Coordinates.NONE;
 
-    private BigDecimal responderStartLong;
+    @Coordinate
+    int responderStartLong = Coordinates.NONE;
 
-    private BigDecimal incidentLat;
+    @Coordinate
+    int incidentLat = Coordinates.NONE;
 
-    private BigDecimal incidentLong;
+    @Coordinate
+    int incidentLong = Coordinates.NONE;
 
-    private BigDecimal destinationLat;
+    @Coordinate
+    int destinationLat = Coordinates.NONE;
 
-    private BigDecimal destinationLong;
+    @Coordinate
+    int destinationLong = Coordinates.NONE;
 
-    private List<ResponderLocationHistory> responderLocationHistory;
+    // full location history, stored separately from the mission and only populated when assembled by the repository
+    LocationHistory responderLocationHistory;
 
-    private String status;
+    ResponderLocationHistory lastLocation;
 
-    private List<MissionStep> steps;
+    int historySize;
 
+    String status;
+
+    // route, stored separately from the mission and only populated when assembled by the repository
+    List<MissionStep> steps;
+
+    // incremented when the route is replaced, e.g. a minimal route by the full route, so that routes cached by the
+    // repository are only used for the version of the route they were read for
+    int routeVersion;
+
+    // status transition not yet reflected in the repository indexes, never serialized
+    transient boolean statusChanged;
+
+    transient String previousStatus;
+
+    // route not yet stored in the repository, never serialized
+    transient boolean routeChanged;
+
+    // locations not yet appended to the repository location history, stored with the mission until they are, so that
+    // a write of the mission interrupted before the append is completed by the next write
+    List<ResponderLocationHistory> newLocations;
+
+    // serialized forms of the mission, cleared when the mission changes, never serialized
+    transient String storedJson;
+
+    transient byte[] jsonBytes;
+
+    /**
+     * Mission without an id: new missions get a generated id when it is first read, missions read from the repository
+     * get their stored id. The location history and the route are only created when they are set.
+     */
     public Mission() {
-        id = UUID.randomUUID().toString();
-        responderLocationHistory = new ArrayList<>();
-        steps = new ArrayList<>();
     }
 
     public String getId() {
+        String id = this.id;
+        if (id == null) {
+            // generated on first use, so that missions read from the repository do not pay for SecureRandom
+            this.id = id = UUID.randomUUID().toString();
+        }
         return id;
     }
 
@@ -55,32 +95,106 @@ public class Mission {
         return responderId;
     }
 
-    public BigDecimal getResponderStartLat() {
-        return responderStartLat;
+    /**
+     * @return the coordinate in degrees, <code>NaN</code> when missing.
+     */
+    @JsonIgnore
+    public double getResponderStartLat() {
+        return Coordinates.toDegrees(responderStartLat);
     }
 
-    public BigDecimal getResponderStartLong() {
-        return responderStartLong;
+    @JsonIgnore
+    public double getResponderStartLong() {
+        return Coordinates.toDegrees(responderStartLong);
     }
 
-    public BigDecimal getIncidentLat() {
-        return incidentLat;
+    @JsonIgnore
+    public double getIncidentLat() {
+        return Coordinates.toDegrees(incidentLat);
     }
 
-    public BigDecimal getIncidentLong() {
-        return incidentLong;
+    @JsonIgnore
+    public double getIncidentLong() {
+        return Coordinates.toDegrees(incidentLong);
     }
 
-    public BigDecimal getDestinationLat() {
-        return destinationLat;
+    @JsonIgnore
+    public double getDestinationLat() {
+        return Coordinates.toDegrees(destinationLat);
     }
 
-    public BigDecimal getDestinationLong() {
-        return destinationLong;
+    @JsonIgnore
+    public double getDestinationLong() {
+        return Coordinates.toDegrees(destinationLong);
     }
 
+    /**
+     * @return a read-only view of the location history, which changes with {@link #addLocation(ResponderLocationHistory)}
+     * only, so that the encoded forms of the mission are cleared when it changes.
+     */
     public List<ResponderLocationHistory> getResponderLocationHistory() {
-        return responderLocationHistory;
+        return responderLocationHistory == null ? Collections.emptyList() : Collections.unmodifiableList(responderLocationHistory);
+    }
+
+    // stored with the mission, read but not written by the data binding: not part of the mission events
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+    public ResponderLocationHistory getLastLocation() {
+        return lastLocation;
+    }
+
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+    public int getHistorySize() {
+        return historySize;
+    }
+
+    public Mission addLocation(ResponderLocationHistory location) {
+        if (responderLocationHistory == null) {
+            responderLocationHistory = new LocationHistory();
+        }
+        responderLocationHistory.add(location);
+        if (newLocations == null) {
+            newLocations = new ArrayList<>();
+        }
+        newLocations.add(location);
+        lastLocation = location;
+        historySize++;
+        changed();
+        return this;
+    }
+
+    public List<ResponderLocationHistory> newLocations() {
+        return newLocations == null ? Collections.emptyList() : newLocations;
+    }
+
+    /**
+     * Marks the new locations as appended to the repository location history. The document stored with them is kept:
+     * they are appended again, at the same positions, if it is written again.
+     */
+    public void locationsStored() {
+        newLocations = null;
+    }
+
+    /**
+     * Sets the location history assembled by the repository.
+     * Locations added since the mission was read are not yet in the repository, and are kept at the end of the history.
+     */
+    public void history(LocationHistory history) {
+        responderLocationHistory = history;
+        responderLocationHistory.addAll(newLocations());
+        // the history is not part of the stored document
+        jsonBytes = null;
+    }
+
+    /**
+     * Moves a location history stored inline in the mission, before the history was stored separately, to the new
+     * locations, so that it is appended to the repository location history with the next write of the mission.
+     */
+    public void detachInlineHistory() {
+        if (historySize == 0 && responderLocationHistory != null && !responderLocationHistory.isEmpty()) {
+            LocationHistory inline = responderLocationHistory;
+            responderLocationHistory = new LocationHistory();
+            inline.forEach(this::addLocation);
+        }
     }
 
     public String getStatus() {
@@ -88,28 +202,141 @@ public class Mission {
     }
 
     public Mission status(MissionStatus status) {
-        this.status = status.name();
+        if (!status.name().equals(this.status)) {
+            if (!statusChanged) {
+                statusChanged = true;
+                previousStatus = this.status;
+            }
+            this.status = status.name();
+            changed();
+        }
         return this;
     }
 
+    public boolean statusChanged() {
+        return statusChanged;
+    }
+
+    public String previousStatus() {
+        return previousStatus;
+    }
+
+    public void statusIndexed() {
+        statusChanged = false;
+        previousStatus = null;
+    }
+
+    /**
+     * @return a read-only view of the route, which changes with {@link #route(List)} only, so that the encoded forms of
+     * the mission are cleared when it changes.
+     */
     public List<MissionStep> getSteps() {
-        return steps;
+        return steps == null ? Collections.emptyList() : Collections.unmodifiableList(steps);
+    }
+
+    public Mission route(List<MissionStep> route) {
+        steps = new ArrayList<>(route);
+        routeVersion++;
+        routeChanged = true;
+        changed();
+        return this;
+    }
+
+    // stored with the mission, read but not written by the data binding: not part of the mission events
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+    public int getRouteVersion() {
+        return routeVersion;
+    }
+
+    public boolean routeChanged() {
+        return routeChanged;
+    }
+
+    public void routeStored() {
+        routeChanged = false;
+    }
+
+    /**
+     * Sets the route assembled by the repository.
+     */
+    public void steps(List<MissionStep> route) {
+        steps = new ArrayList<>(route);
+        // the route is not part of the stored document
+        jsonBytes = null;
+    }
+
+    /**
+     * Marks a route stored inline in the mission, before the route was stored separately, as changed, so that it is
+     * stored with the next write of the mission.
+     */
+    public void detachInlineRoute() {
+        if (steps != null && !steps.isEmpty()) {
+            routeChanged = true;
+        }
     }
 
     public Location responderLocation() {
-        return Location.of(responderStartLat, responderStartLong);
+        return Location.ofMicrodegrees(responderStartLat, responderStartLong);
     }
 
     public Location incidentLocation() {
-        return Location.of(incidentLat, incidentLong);
+        return Location.ofMicrodegrees(incidentLat, incidentLong);
     }
 
     public Location destinationLocation() {
-        return Location.of(destinationLat, destinationLong);
+        return Location.ofMicrodegrees(destinationLat, destinationLong);
+    }
+
+    /**
+     * Copy of this mission, as it would be read back from the repository: the location history and the route are not
+     * included, and pending status transitions are not carried over. Locations not yet appended to the repository
+     * location history are.
+     */
+    public Mission copy() {
+        Mission copy = new Mission();
+        copy.id = getId();
+        copy.incidentId = incidentId;
+        copy.responderId = responderId;
+        copy.responderStartLat = responderStartLat;
+        copy.responderStartLong = responderStartLong;
+        copy.incidentLat = incidentLat;
+        copy.incidentLong = incidentLong;
+        copy.destinationLat = destinationLat;
+        copy.destinationLong = destinationLong;
+        copy.lastLocation = lastLocation;
+        copy.historySize = historySize;
+        copy.newLocations = newLocations == null ? null : new ArrayList<>(newLocations);
+        copy.status = status;
+        copy.routeVersion = routeVersion;
+        return copy;
     }
 
     public String toJson() {
-        return Json.encode(this);
+        return MissionCodec.encode(this);
+    }
+
+    /**
+     * @return the JSON document stored in the repository, without the location history. The document is encoded once,
+     * until the mission changes.
+     */
+    public String toStoredJson() {
+        String json = storedJson;
+        if (json == null) {
+            storedJson = json = MissionCodec.encodeStored(this);
+        }
+        return json;
+    }
+
+    /**
+     * @return the document of {@link #toJson()} as UTF-8 encoded JSON, e.g. for the mission events. The document is
+     * encoded once, until the mission changes: the returned array must not be modified.
+     */
+    public byte[] toJsonBytes() {
+        byte[] bytes = jsonBytes;
+        if (bytes == null) {
+            jsonBytes = bytes = MissionCodec.encodeBytes(this);
+        }
+        return bytes;
     }
 
     @Override
@@ -117,6 +344,11 @@ public class Mission {
         return toJson();
     }
 
+    private void changed() {
+        storedJson = null;
+        jsonBytes = null;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
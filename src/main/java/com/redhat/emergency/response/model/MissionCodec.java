@@ -0,0 +1,463 @@
+package com.redhat.emergency.response.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SegmentedStringWriter;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.EncodeException;
+
+/**
+ * JSON codec of the mission model, written with the Jackson streaming API: no reflection, and no intermediate
+ * <code>JsonObject</code> or tree. The documents are the ones of the Jackson data binding of the model classes, which
+ * is kept for the other conversions, e.g. <code>JsonObject.mapFrom</code>, and are pinned in <code>MissionCodecTest</code>.
+ * Like the data binding, unknown properties are ignored, and strings holding numbers are accepted for the numbers.
+ */
+public final class MissionCodec {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private MissionCodec() {
+    }
+
+    /**
+     * @return the mission with its location history and route, as in the mission events.
+     */
+    public static String encode(Mission mission) {
+        return write(gen -> writeMission(gen, mission, true));
+    }
+
+    /**
+     * @return the document of {@link #encode(Mission)}, as UTF-8 encoded JSON.
+     */
+    public static byte[] encodeBytes(Mission mission) {
+        ByteArrayBuilder out = new ByteArrayBuilder(FACTORY._getBufferRecycler());
+        try (JsonGenerator gen = FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+            writeMission(gen, mission, true);
+        } catch (IOException e) {
+            throw new EncodeException("Failed to encode as JSON: " + e.getMessage());
+        }
+        byte[] bytes = out.toByteArray();
+        out.release();
+        return bytes;
+    }
+
+    /**
+     * @return the mission document stored in the repository: without its location history and route, which are stored
+     * separately, but with its last location, the size of its history and the locations not yet appended to it.
+     */
+    public static String encodeStored(Mission mission) {
+        return write(gen -> writeMission(gen, mission, false));
+    }
+
+    public static String encodeSteps(List<MissionStep> steps) {
+        return write(gen -> writeSteps(gen, steps));
+    }
+
+    public static String encodeHistory(List<ResponderLocationHistory> history) {
+        return write(gen -> writeHistory(gen, history));
+    }
+
+    /**
+     * Reads a stored mission, with its stored id. A document without an id is rejected.
+     */
+    public static Mission decodeMission(String json) {
+        return read(json, p -> {
+            Mission mission = readMission(p, new Mission());
+            if (mission != null && mission.id == null) {
+                throw new JsonParseException(p, "Missing mission id");
+            }
+            return mission;
+        });
+    }
+
+    /**
+     * Reads a new mission from the body of a <code>CreateMissionCommand</code>, its id is generated when first read.
+     */
+    public static Mission decodeCommand(String json) {
+        return read(json, p -> readMission(p, new Mission()));
+    }
+
+    public static List<MissionStep> decodeSteps(String json) {
+        return read(json, MissionCodec::readSteps);
+    }
+
+    public static LocationHistory decodeHistory(String json) {
+        return read(json, MissionCodec::readHistory);
+    }
+
+    public static ResponderLocationUpdate decodeLocationUpdate(String json) {
+        return read(json, MissionCodec::readLocationUpdate);
+    }
+
+    private static void writeMission(JsonGenerator gen, Mission mission, boolean detached) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("id", mission.getId());
+        gen.writeStringField("incidentId", mission.incidentId);
+        gen.writeStringField("responderId", mission.responderId);
+        writeCoordinate(gen, "responderStartLat", mission.responderStartLat, 1);
+        writeCoordinate(gen, "responderStartLong", mission.responderStartLong, 1);
+        writeCoordinate(gen, "incidentLat", mission.incidentLat, 1);
+        writeCoordinate(gen, "incidentLong", mission.incidentLong, 1);
+        writeCoordinate(gen, "destinationLat", mission.destinationLat, 1);
+        writeCoordinate(gen, "destinationLong", mission.destinationLong, 1);
+        if (detached) {
+            gen.writeFieldName("responderLocationHistory");
+            // the history itself rather than its read-only view, which it writes without creating the locations
+            writeHistory(gen, mission.responderLocationHistory == null ? Collections.emptyList() : mission.responderLocationHistory);
+        }
+        // only stored with the mission, so that the history is not read to get them: the mission events keep their document
+        if (!detached) {
+            gen.writeFieldName("lastLocation");
+            writeLocation(gen, mission.lastLocation);
+            gen.writeNumberField("historySize", mission.historySize);
+            if (mission.newLocations != null && !mission.newLocations.isEmpty()) {
+                gen.writeFieldName("newLocations");
+                writeHistory(gen, mission.newLocations);
+            }
+        }
+        gen.writeStringField("status", mission.status);
+        if (!detached && mission.routeVersion != 0) {
+            gen.writeNumberField("routeVersion", mission.routeVersion);
+        }
+        if (detached) {
+            gen.writeFieldName("steps");
+            writeSteps(gen, mission.getSteps());
+        }
+        gen.writeEndObject();
+    }
+
+    private static void writeSteps(JsonGenerator gen, List<MissionStep> steps) throws IOException {
+        if (steps == null) {
+            gen.writeNull();
+            return;
+        }
+        gen.writeStartArray();
+        for (MissionStep step : steps) {
+            gen.writeStartObject();
+            writeCoordinate(gen, "lat", step.lat, 4);
+            writeCoordinate(gen, "lon", step.lon, 4);
+            gen.writeBooleanField("wayPoint", step.wayPoint);
+            gen.writeBooleanField("destination", step.destination);
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+    }
+
+    private static void writeHistory(JsonGenerator gen, List<ResponderLocationHistory> history) throws IOException {
+        if (history instanceof LocationHistory) {
+            ((LocationHistory) history).writeTo(gen);
+        } else if (history == null) {
+            gen.writeNull();
+        } else {
+            gen.writeStartArray();
+            for (ResponderLocationHistory location : history) {
+                writeLocation(gen, location);
+            }
+            gen.writeEndArray();
+        }
+    }
+
+    private static void writeLocation(JsonGenerator gen, ResponderLocationHistory location) throws IOException {
+        if (location == null) {
+            gen.writeNull();
+            return;
+        }
+        gen.writeStartObject();
+        writeCoordinate(gen, "lat", location.lat(), 1);
+        writeCoordinate(gen, "lon", location.lon(), 1);
+        gen.writeNumberField("timestamp", location.getTimestamp());
+        gen.writeEndObject();
+    }
+
+    private static void writeCoordinate(JsonGenerator gen, String name, int coordinate, int minDecimals) throws IOException {
+        gen.writeFieldName(name);
+        Coordinates.Serializer.write(gen, coordinate, minDecimals);
+    }
+
+    private static Mission readMission(JsonParser p, Mission mission) throws IOException {
+        if (p.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expect(p, JsonToken.START_OBJECT);
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.getCurrentName();
+            p.nextToken();
+            switch (name) {
+                case "id":
+                    mission.id = readString(p);
+                    break;
+                case "incidentId":
+                    mission.incidentId = readString(p);
+                    break;
+                case "responderId":
+                    mission.responderId = readString(p);
+                    break;
+                case "responderStartLat":
+                    mission.responderStartLat = readCoordinate(p);
+                    break;
+                case "responderStartLong":
+                    mission.responderStartLong = readCoordinate(p);
+                    break;
+                case "incidentLat":
+                    mission.incidentLat = readCoordinate(p);
+                    break;
+                case "incidentLong":
+                    mission.incidentLong = readCoordinate(p);
+                    break;
+                case "destinationLat":
+                    mission.destinationLat = readCoordinate(p);
+                    break;
+                case "destinationLong":
+                    mission.destinationLong = readCoordinate(p);
+                    break;
+                case "responderLocationHistory":
+                    mission.responderLocationHistory = readHistory(p);
+                    break;
+                case "lastLocation":
+                    mission.lastLocation = readLocation(p);
+                    break;
+                case "historySize":
+                    mission.historySize = (int) readLong(p);
+                    break;
+                case "newLocations":
+                    List<ResponderLocationHistory> newLocations = readHistory(p);
+                    mission.newLocations = newLocations == null || newLocations.isEmpty() ? null : new ArrayList<>(newLocations);
+                    break;
+                case "status":
+                    mission.status = readString(p);
+                    break;
+                case "steps":
+                    mission.steps = readSteps(p);
+                    break;
+                case "routeVersion":
+                    mission.routeVersion = (int) readLong(p);
+                    break;
+                default:
+                    p.skipChildren();
+            }
+        }
+        expect(p, JsonToken.END_OBJECT);
+        return mission;
+    }
+
+    private static List<MissionStep> readSteps(JsonParser p) throws IOException {
+        if (p.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expect(p, JsonToken.START_ARRAY);
+        List<MissionStep> steps = new ArrayList<>();
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+            expect(p, JsonToken.START_OBJECT);
+            MissionStep step = new MissionStep();
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String name = p.getCurrentName();
+                p.nextToken();
+                switch (name) {
+                    case "lat":
+                        step.lat = readCoordinate(p);
+                        break;
+                    case "lon":
+                        step.lon = readCoordinate(p);
+                        break;
+                    case "wayPoint":
+                        step.wayPoint = readBoolean(p);
+                        break;
+                    case "destination":
+                        step.destination = readBoolean(p);
+                        break;
+                    default:
+                        p.skipChildren();
+                }
+            }
+            expect(p, JsonToken.END_OBJECT);
+            steps.add(step);
+        }
+        return steps;
+    }
+
+    private static LocationHistory readHistory(JsonParser p) throws IOException {
+        if (p.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expect(p, JsonToken.START_ARRAY);
+        LocationHistory history = new LocationHistory();
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+            // unlike the last location of a mission, a location of the history is never null
+            if (p.currentToken() == JsonToken.VALUE_NULL) {
+                throw new JsonParseException(p, "Null location in location history");
+            }
+            history.add(readLocation(p));
+        }
+        return history;
+    }
+
+    private static ResponderLocationHistory readLocation(JsonParser p) throws IOException {
+        if (p.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expect(p, JsonToken.START_OBJECT);
+        int lat = Coordinates.NONE;
+        int lon = Coordinates.NONE;
+        long timestamp = 0;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.getCurrentName();
+            p.nextToken();
+            switch (name) {
+                case "lat":
+                    lat = readCoordinate(p);
+                    break;
+                case "lon":
+                    lon = readCoordinate(p);
+                    break;
+                case "timestamp":
+                    timestamp = readLong(p);
+                    break;
+                default:
+                    p.skipChildren();
+            }
+        }
+        expect(p, JsonToken.END_OBJECT);
+        return ResponderLocationHistory.ofMicrodegrees(lat, lon, timestamp);
+    }
+
+    private static ResponderLocationUpdate readLocationUpdate(JsonParser p) throws IOException {
+        expect(p, JsonToken.START_OBJECT);
+        ResponderLocationUpdate update = new ResponderLocationUpdate();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.getCurrentName();
+            p.nextToken();
+            switch (name) {
+                case "responderId":
+                    update.responderId = readString(p);
+                    break;
+                case "missionId":
+                    update.missionId = readString(p);
+                    break;
+                case "incidentId":
+                    update.incidentId = readString(p);
+                    break;
+                case "status":
+                    update.status = readString(p);
+                    break;
+                case "lat":
+                    update.lat = readCoordinate(p);
+                    break;
+                case "lon":
+                    update.lon = readCoordinate(p);
+                    break;
+                case "human":
+                    update.human = p.currentToken() == JsonToken.VALUE_NULL ? null : readBoolean(p);
+                    break;
+                case "continue":
+                    update.continues = p.currentToken() == JsonToken.VALUE_NULL ? null : readBoolean(p);
+                    break;
+                default:
+                    p.skipChildren();
+            }
+        }
+        expect(p, JsonToken.END_OBJECT);
+        return update;
+    }
+
+    private static String readString(JsonParser p) throws IOException {
+        JsonToken token = p.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (!token.isScalarValue()) {
+            throw new JsonParseException(p, "Expected a string, got " + token);
+        }
+        return p.getText();
+    }
+
+    private static int readCoordinate(JsonParser p) throws IOException {
+        JsonToken token = p.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return Coordinates.NONE;
+        }
+        if (!token.isNumeric() && token != JsonToken.VALUE_STRING) {
+            throw new JsonParseException(p, "Expected a coordinate, got " + token);
+        }
+        try {
+            return Coordinates.parse(p.getText().trim());
+        } catch (NumberFormatException e) {
+            throw new JsonParseException(p, e.getMessage(), e);
+        }
+    }
+
+    private static long readLong(JsonParser p) throws IOException {
+        JsonToken token = p.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return 0;
+        }
+        if (token.isNumeric()) {
+            return p.getValueAsLong();
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            try {
+                return Long.parseLong(p.getText().trim());
+            } catch (NumberFormatException e) {
+                throw new JsonParseException(p, e.getMessage(), e);
+            }
+        }
+        throw new JsonParseException(p, "Expected a number, got " + token);
+    }
+
+    private static boolean readBoolean(JsonParser p) throws IOException {
+        JsonToken token = p.currentToken();
+        if (token == JsonToken.VALUE_TRUE || token == JsonToken.VALUE_FALSE) {
+            return token == JsonToken.VALUE_TRUE;
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            return false;
+        }
+        throw new JsonParseException(p, "Expected a boolean, got " + token);
+    }
+
+    private static void expect(JsonParser p, JsonToken expected) throws IOException {
+        if (p.currentToken() != expected) {
+            throw new JsonParseException(p, "Expected " + expected + ", got " + p.currentToken());
+        }
+    }
+
+    private static String write(Writer writer) {
+        SegmentedStringWriter out = new SegmentedStringWriter(FACTORY._getBufferRecycler());
+        try (JsonGenerator gen = FACTORY.createGenerator(out)) {
+            writer.write(gen);
+        } catch (IOException e) {
+            throw new EncodeException("Failed to encode as JSON: " + e.getMessage());
+        }
+        return out.getAndClear();
+    }
+
+    private static <T> T read(String json, Reader<T> reader) {
+        try (JsonParser p = FACTORY.createParser(json)) {
+            if (p.nextToken() == null) {
+                throw new JsonParseException(p, "No content");
+            }
+            return reader.read(p);
+        } catch (IOException e) {
+            throw new DecodeException("Failed to decode:" + e.getMessage());
+        }
+    }
+
+    @FunctionalInterface
+    private interface Writer {
+        void write(JsonGenerator gen) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Reader<T> {
+        T read(JsonParser p) throws IOException;
+    }
+}
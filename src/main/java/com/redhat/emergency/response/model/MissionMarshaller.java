@@ -0,0 +1,68 @@
+package com.redhat.emergency.response.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.infinispan.protostream.MessageMarshaller;
+
+// the Infinispan client extension registers MessageMarshaller beans, it does not support its replacement yet
+@SuppressWarnings("deprecation")
+public class MissionMarshaller implements MessageMarshaller<Mission> {
+
+    @Override
+    public Mission readFrom(ProtoStreamReader reader) throws IOException {
+        Mission mission = new Mission();
+        // required in mission.proto: a message without an id is rejected
+        mission.id = reader.readString("id");
+        mission.incidentId = reader.readString("incidentId");
+        mission.responderId = reader.readString("responderId");
+        mission.responderStartLat = Coordinates.of(reader.readDouble("responderStartLat"));
+        mission.responderStartLong = Coordinates.of(reader.readDouble("responderStartLong"));
+        mission.incidentLat = Coordinates.of(reader.readDouble("incidentLat"));
+        mission.incidentLong = Coordinates.of(reader.readDouble("incidentLong"));
+        mission.destinationLat = Coordinates.of(reader.readDouble("destinationLat"));
+        mission.destinationLong = Coordinates.of(reader.readDouble("destinationLong"));
+        // only written by versions storing the location history and the route inline
+        LocationHistory history = reader.readCollection("responderLocationHistory", new LocationHistory(), ResponderLocationHistory.class);
+        mission.responderLocationHistory = history.isEmpty() ? null : history;
+        mission.status = reader.readString("status");
+        List<MissionStep> steps = reader.readCollection("steps", new ArrayList<>(), MissionStep.class);
+        mission.steps = steps.isEmpty() ? null : steps;
+        mission.lastLocation = reader.readObject("lastLocation", ResponderLocationHistory.class);
+        mission.historySize = reader.readInt("historySize");
+        List<ResponderLocationHistory> newLocations = reader.readCollection("newLocations", new ArrayList<>(), ResponderLocationHistory.class);
+        mission.newLocations = newLocations.isEmpty() ? null : newLocations;
+        mission.routeVersion = reader.readInt("routeVersion");
+        return mission;
+    }
+
+    @Override
+    public void writeTo(ProtoStreamWriter writer, Mission mission) throws IOException {
+        writer.writeString("id", mission.getId());
+        writer.writeString("incidentId", mission.incidentId);
+        writer.writeString("responderId", mission.responderId);
+        writer.writeDouble("responderStartLat", Coordinates.toDouble(mission.responderStartLat));
+        writer.writeDouble("responderStartLong", Coordinates.toDouble(mission.responderStartLong));
+        writer.writeDouble("incidentLat", Coordinates.toDouble(mission.incidentLat));
+        writer.writeDouble("incidentLong", Coordinates.toDouble(mission.incidentLong));
+        writer.writeDouble("destinationLat", Coordinates.toDouble(mission.destinationLat));
+        writer.writeDouble("destinationLong", Coordinates.toDouble(mission.destinationLong));
+        // the location history and the route are stored separately
+        writer.writeString("status", mission.status);
+        writer.writeObject("lastLocation", mission.lastLocation, ResponderLocationHistory.class);
+        writer.writeInt("historySize", mission.historySize);
+        writer.writeCollection("newLocations", mission.newLocations, ResponderLocationHistory.class);
+        writer.writeInt("routeVersion", mission.routeVersion);
+    }
+
+    @Override
+    public Class<? extends Mission> getJavaClass() {
+        return Mission.class;
+    }
+
+    @Override
+    public String getTypeName() {
+        return "com.redhat.emergency.response.model.Mission";
+    }
+}
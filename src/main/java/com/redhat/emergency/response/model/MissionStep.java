@@ -1,24 +1,49 @@
 package com.redhat.emergency.response.model;
 
-import java.math.BigDecimal;
+import java.util.Objects;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.vertx.core.json.Json;
 
 public class MissionStep {
 
-    private BigDecimal lat;
+    /**
+     * Number of decimals of the coordinates of the steps (about 10 meters).
+     */
+    public static final int DECIMALS = 4;
 
-    private BigDecimal lon;
+    // microdegrees
+    @Coordinate(minDecimals = 4)
+    int lat = Coordinates.NONE;
 
-    private boolean wayPoint = false;
+    @Coordinate(minDecimals = 4)
+    int lon = Coordinates.NONE;
 
-    private boolean destination = false;
+    boolean wayPoint = false;
 
-    public BigDecimal getLat() {
+    boolean destination = false;
+
+    @JsonIgnore
+    public double getLat() {
+        return Coordinates.toDegrees(lat);
+    }
+
+    @JsonIgnore
+    public double getLon() {
+        return Coordinates.toDegrees(lon);
+    }
+
+    /**
+     * @return the latitude in microdegrees.
+     */
+    public int lat() {
         return lat;
     }
 
-    public BigDecimal getLon() {
+    /**
+     * @return the longitude in microdegrees.
+     */
+    public int lon() {
         return lon;
     }
 
@@ -36,10 +61,12 @@ public class MissionStep {
         if (o == null || getClass() != o.getClass()) return false;
         MissionStep step = (MissionStep) o;
 
-        return (lat != null && step.lat != null && lat.compareTo(step.lat) == 0) || (lat == null && step.lat == null) &&
-                (lon != null && step.lon != null && lon.compareTo(step.lon) == 0) || (lat == null && step.lat == null) &&
-                step.destination == destination &&
-                step.wayPoint == wayPoint;
+        return lat == step.lat && lon == step.lon && step.destination == destination && step.wayPoint == wayPoint;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(lat, lon, wayPoint, destination);
     }
 
     public String toJson() {
@@ -51,15 +78,28 @@ public class MissionStep {
         return toJson();
     }
 
-    public static Builder builder(BigDecimal lat, BigDecimal lon) {
-        return new Builder(lat, lon);
+    /**
+     * @return a builder of the step at the coordinates, rounded half up to {@value #DECIMALS} decimals from the values
+     * in degrees.
+     */
+    public static Builder builder(double lat, double lon) {
+        return new Builder(Coordinates.of(lat, DECIMALS), Coordinates.of(lon, DECIMALS));
+    }
+
+    /**
+     * @return a builder of the step at the location, rounded half up to {@value #DECIMALS} decimals from its
+     * microdegrees. The routing backends round the locations of a route to {@value #DECIMALS} decimals from the values
+     * they read, so that the steps are only rounded once.
+     */
+    public static Builder builder(Location location) {
+        return new Builder(Coordinates.round(location.latitude(), DECIMALS), Coordinates.round(location.longitude(), DECIMALS));
     }
 
     public static class Builder {
 
         private final MissionStep missionStep = new MissionStep();
 
-        public Builder(BigDecimal lat, BigDecimal lon) {
+        private Builder(int lat, int lon) {
             missionStep.lat = lat;
             missionStep.lon = lon;
         }
@@ -0,0 +1,38 @@
+package com.redhat.emergency.response.model;
+
+import java.io.IOException;
+
+import org.infinispan.protostream.MessageMarshaller;
+
+// the Infinispan client extension registers MessageMarshaller beans, it does not support its replacement yet
+@SuppressWarnings("deprecation")
+public class MissionStepMarshaller implements MessageMarshaller<MissionStep> {
+
+    @Override
+    public MissionStep readFrom(ProtoStreamReader reader) throws IOException {
+        MissionStep missionStep = new MissionStep();
+        missionStep.lat = Coordinates.of(reader.readDouble("lat"));
+        missionStep.lon = Coordinates.of(reader.readDouble("lon"));
+        missionStep.wayPoint = reader.readBoolean("wayPoint");
+        missionStep.destination = reader.readBoolean("destination");
+        return missionStep;
+    }
+
+    @Override
+    public void writeTo(ProtoStreamWriter writer, MissionStep missionStep) throws IOException {
+        writer.writeDouble("lat", Coordinates.toDouble(missionStep.lat()));
+        writer.writeDouble("lon", Coordinates.toDouble(missionStep.lon()));
+        writer.writeBoolean("wayPoint", missionStep.isWayPoint());
+        writer.writeBoolean("destination", missionStep.isDestination());
+    }
+
+    @Override
+    public Class<? extends MissionStep> getJavaClass() {
+        return MissionStep.class;
+    }
+
+    @Override
+    public String getTypeName() {
+        return "com.redhat.emergency.response.model.MissionStep";
+    }
+}
@@ -1,32 +1,78 @@
 package com.redhat.emergency.response.model;
 
-import java.math.BigDecimal;
+import java.util.Objects;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 public class ResponderLocationHistory {
 
-    private BigDecimal lat;
+    // microdegrees
+    @Coordinate
+    private int lat = Coordinates.NONE;
 
-    private BigDecimal lon;
+    @Coordinate
+    private int lon = Coordinates.NONE;
 
     private long timestamp;
 
     private ResponderLocationHistory() {}
 
-    public ResponderLocationHistory(BigDecimal lat, BigDecimal lon, long timestamp) {
-        this.lat = lat;
-        this.lon = lon;
+    public ResponderLocationHistory(double lat, double lon, long timestamp) {
+        this.lat = Coordinates.of(lat);
+        this.lon = Coordinates.of(lon);
         this.timestamp = timestamp;
     }
 
-    public BigDecimal getLat() {
+    /**
+     * @param lat the latitude in microdegrees.
+     * @param lon the longitude in microdegrees.
+     */
+    public static ResponderLocationHistory ofMicrodegrees(int lat, int lon, long timestamp) {
+        ResponderLocationHistory location = new ResponderLocationHistory();
+        location.lat = lat;
+        location.lon = lon;
+        location.timestamp = timestamp;
+        return location;
+    }
+
+    @JsonIgnore
+    public double getLat() {
+        return Coordinates.toDegrees(lat);
+    }
+
+    @JsonIgnore
+    public double getLon() {
+        return Coordinates.toDegrees(lon);
+    }
+
+    /**
+     * @return the latitude in microdegrees.
+     */
+    public int lat() {
         return lat;
     }
 
-    public BigDecimal getLon() {
+    /**
+     * @return the longitude in microdegrees.
+     */
+    public int lon() {
         return lon;
     }
 
     public long getTimestamp() {
         return timestamp;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ResponderLocationHistory location = (ResponderLocationHistory) o;
+        return lat == location.lat && lon == location.lon && timestamp == location.timestamp;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(lat, lon, timestamp);
+    }
 }
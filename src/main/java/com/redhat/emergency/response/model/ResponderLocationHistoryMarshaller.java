@@ -0,0 +1,33 @@
+package com.redhat.emergency.response.model;
+
+import java.io.IOException;
+
+import org.infinispan.protostream.MessageMarshaller;
+
+// the Infinispan client extension registers MessageMarshaller beans, it does not support its replacement yet
+@SuppressWarnings("deprecation")
+public class ResponderLocationHistoryMarshaller implements MessageMarshaller<ResponderLocationHistory> {
+
+    @Override
+    public ResponderLocationHistory readFrom(ProtoStreamReader reader) throws IOException {
+        return ResponderLocationHistory.ofMicrodegrees(Coordinates.of(reader.readDouble("lat")), Coordinates.of(reader.readDouble("lon")),
+                reader.readLong("timestamp"));
+    }
+
+    @Override
+    public void writeTo(ProtoStreamWriter writer, ResponderLocationHistory responderLocationHistory) throws IOException {
+        writer.writeDouble("lat", Coordinates.toDouble(responderLocationHistory.lat()));
+        writer.writeDouble("lon", Coordinates.toDouble(responderLocationHistory.lon()));
+        writer.writeLong("timestamp", responderLocationHistory.getTimestamp());
+    }
+
+    @Override
+    public Class<? extends ResponderLocationHistory> getJavaClass() {
+        return ResponderLocationHistory.class;
+    }
+
+    @Override
+    public String getTypeName() {
+        return "com.redhat.emergency.response.model.ResponderLocationHistory";
+    }
+}
@@ -0,0 +1,74 @@
+package com.redhat.emergency.response.model;
+
+/**
+ * Payload of a <code>ResponderLocationUpdatedEvent</code>, read by {@link MissionCodec#decodeLocationUpdate(String)}.
+ * Properties missing from the payload are <code>null</code>, and <code>NaN</code> for the coordinates.
+ */
+public class ResponderLocationUpdate {
+
+    String responderId;
+
+    String missionId;
+
+    String incidentId;
+
+    String status;
+
+    // microdegrees
+    int lat = Coordinates.NONE;
+
+    int lon = Coordinates.NONE;
+
+    Boolean human;
+
+    Boolean continues;
+
+    ResponderLocationUpdate() {
+    }
+
+    public String getResponderId() {
+        return responderId;
+    }
+
+    public String getMissionId() {
+        return missionId;
+    }
+
+    public String getIncidentId() {
+        return incidentId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public double getLat() {
+        return Coordinates.toDegrees(lat);
+    }
+
+    public double getLon() {
+        return Coordinates.toDegrees(lon);
+    }
+
+    public Boolean getHuman() {
+        return human;
+    }
+
+    /**
+     * @return the <code>continue</code> property of the payload.
+     */
+    public Boolean getContinue() {
+        return continues;
+    }
+
+    /**
+     * @return the key of the mission of the responder.
+     */
+    public String getKey() {
+        return incidentId + ":" + responderId;
+    }
+
+    public ResponderLocationHistory toLocation(long timestamp) {
+        return ResponderLocationHistory.ofMicrodegrees(lat, lon, timestamp);
+    }
+}
@@ -0,0 +1,48 @@
+package com.redhat.emergency.response.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Selects the first keys, in key order, after the last key of a page. Only the <code>limit</code> smallest keys seen so
+ * far are kept, so that a page does not sort, nor hold, all the keys it scans.
+ */
+class FirstKeys {
+
+    private final String after;
+
+    private final int limit;
+
+    // the greatest kept key first, so that it is the one replaced by a smaller key
+    private final PriorityQueue<String> keys;
+
+    FirstKeys(String after, int limit) {
+        this.after = after;
+        this.limit = limit;
+        this.keys = new PriorityQueue<>(Math.max(limit, 1), Comparator.reverseOrder());
+    }
+
+    void offer(String key) {
+        if (limit <= 0 || (after != null && key.compareTo(after) <= 0)) {
+            return;
+        }
+        if (keys.size() < limit) {
+            keys.add(key);
+        } else if (key.compareTo(keys.peek()) < 0) {
+            keys.poll();
+            keys.add(key);
+        }
+    }
+
+    /**
+     * @return the selected keys, in key order.
+     */
+    List<String> sorted() {
+        List<String> sorted = new ArrayList<>(keys);
+        Collections.sort(sorted);
+        return sorted;
+    }
+}
@@ -0,0 +1,10 @@
+package com.redhat.emergency.response.repository;
+
+public class LocationHistoryConflictException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public LocationHistoryConflictException(String message) {
+        super(message);
+    }
+}
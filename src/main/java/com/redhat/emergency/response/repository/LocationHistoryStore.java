@@ -0,0 +1,152 @@
+package com.redhat.emergency.response.repository;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import com.redhat.emergency.response.model.LocationHistory;
+import com.redhat.emergency.response.model.ResponderLocationHistory;
+import io.smallrye.mutiny.Uni;
+import org.infinispan.client.hotrod.MetadataValue;
+import org.infinispan.client.hotrod.RemoteCache;
+
+/**
+ * Append-only store of the responder location history of the missions, in its own remote cache.
+ * The history of a mission is split in time-ordered segments of a fixed number of locations, keyed by mission key and
+ * segment number (e.g. <code>incident1:64:0</code>), so that appending a location rewrites one segment rather than the
+ * whole history.
+ * Locations are written at their position in the history, so that a retried append does not duplicate them: locations
+ * already written at their position are skipped. Other locations at the position, or missing locations before it, fail
+ * the append with a {@link LocationHistoryConflictException} rather than being overwritten. Segments are updated with
+ * versioned operations, like the {@link MissionIndex}.
+ * A segment is stored in the columnar, delta encoded form of {@link LocationHistory#encode()}. Segments stored as a JSON
+ * array of locations by previous versions are read as well, and rewritten in the new form when they are next appended.
+ */
+public class LocationHistoryStore {
+
+    private final RemoteCache<String, String> cache;
+
+    private final int segmentSize;
+
+    public LocationHistoryStore(RemoteCache<String, String> cache, int segmentSize) {
+        this.cache = cache;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Writes locations to the history of a mission. The positions are owned by the caller, e.g. by the write of the
+     * mission that counted the locations in its history size.
+     *
+     * @param missionKey the key of the mission
+     * @param position the position of the first location in the history
+     * @param locations the locations to write
+     */
+    public Uni<Void> append(String missionKey, int position, List<ResponderLocationHistory> locations) {
+        Uni<Void> uni = Uni.createFrom().voidItem();
+        int start = 0;
+        while (start < locations.size()) {
+            int segment = (position + start) / segmentSize;
+            int offset = (position + start) % segmentSize;
+            int end = Math.min(locations.size(), start + segmentSize - offset);
+            List<ResponderLocationHistory> chunk = locations.subList(start, end);
+            if (start == 0 && offset == 0 && segment > 0) {
+                // the previous segment is not written by this append: when it exists, it must be complete
+                uni = checkComplete(segmentKey(missionKey, segment - 1));
+            }
+            uni = uni.onItem().transformToUni(v -> write(segmentKey(missionKey, segment), offset, chunk));
+            start = end;
+        }
+        return uni;
+    }
+
+    public Uni<LocationHistory> get(String missionKey, int size) {
+        return get(Collections.singletonMap(missionKey, size)).onItem().transform(histories -> histories.get(missionKey));
+    }
+
+    /**
+     * Reads the histories of several missions with a single remote call.
+     *
+     * @param sizes the number of locations in the history, by mission key
+     * @return the location history, by mission key
+     */
+    public Uni<Map<String, LocationHistory>> get(Map<String, Integer> sizes) {
+        Set<String> keys = new LinkedHashSet<>();
+        sizes.forEach((missionKey, size) -> {
+            for (int segment = 0; segment * segmentSize < size; segment++) {
+                keys.add(segmentKey(missionKey, segment));
+            }
+        });
+        Uni<Map<String, String>> segments = keys.isEmpty() ? Uni.createFrom().item(Collections.<String, String>emptyMap())
+                : Uni.createFrom().completionStage(() -> cache.getAllAsync(keys));
+        return segments.onItem().transform(values -> {
+            Map<String, LocationHistory> histories = new HashMap<>();
+            sizes.forEach((missionKey, size) -> {
+                LocationHistory history = new LocationHistory();
+                for (int segment = 0; segment * segmentSize < size; segment++) {
+                    history.addAll(LocationHistory.decode(values.get(segmentKey(missionKey, segment))));
+                }
+                // locations beyond the size of the mission history were appended by a later write of the mission
+                history.truncate(size);
+                histories.put(missionKey, history);
+            });
+            return histories;
+        });
+    }
+
+    public Uni<Void> clear() {
+        return Uni.createFrom().completionStage(cache::clearAsync);
+    }
+
+    private Uni<Void> checkComplete(String segmentKey) {
+        return Uni.createFrom().completionStage(() -> cache.getWithMetadataAsync(segmentKey)).onItem().transformToUni(value -> {
+            // a segment removed in the meantime, e.g. with its mission, is not checked
+            int size = value == null ? segmentSize : LocationHistory.decode(value.getValue()).size();
+            if (size < segmentSize) {
+                return Uni.createFrom().failure(new LocationHistoryConflictException("Segment '" + segmentKey + "' holds "
+                        + size + " locations, locations are missing before the next segment"));
+            }
+            return Uni.createFrom().voidItem();
+        });
+    }
+
+    private Uni<Void> write(String segmentKey, int offset, List<ResponderLocationHistory> locations) {
+        return Uni.createFrom().completionStage(() -> cache.getWithMetadataAsync(segmentKey))
+                .onItem().transformToUni(value -> tryWrite(segmentKey, offset, locations, value))
+                .onItem().transformToUni(done -> done ? Uni.createFrom().voidItem() : write(segmentKey, offset, locations));
+    }
+
+    private Uni<Boolean> tryWrite(String segmentKey, int offset, List<ResponderLocationHistory> locations,
+                                  MetadataValue<String> value) {
+        LocationHistory segment = LocationHistory.decode(value == null ? null : value.getValue());
+        int size = segment.size();
+        if (size < offset) {
+            return Uni.createFrom().failure(new LocationHistoryConflictException("Segment '" + segmentKey + "' holds "
+                    + size + " locations, locations are missing before position " + offset));
+        }
+        // locations already written, by an earlier attempt or by a concurrent write of the same locations
+        int written = Math.min(size - offset, locations.size());
+        for (int i = 0; i < written; i++) {
+            if (!segment.get(offset + i).equals(locations.get(i))) {
+                return Uni.createFrom().failure(new LocationHistoryConflictException("Segment '" + segmentKey
+                        + "' holds another location at position " + (offset + i)));
+            }
+        }
+        if (written == locations.size()) {
+            return Uni.createFrom().item(true);
+        }
+        segment.addAll(locations.subList(written, locations.size()));
+        String encoded = segment.encode();
+        if (value == null) {
+            return Uni.createFrom().completionStage(() -> cache.putIfAbsentAsync(segmentKey, encoded)).onItem().transform(Objects::isNull);
+        }
+        return Uni.createFrom().completionStage(() -> cache.replaceWithVersionAsync(segmentKey, encoded, value.getVersion()));
+    }
+
+    private String segmentKey(String missionKey, int segment) {
+        return missionKey + ":" + segment;
+    }
+}
@@ -0,0 +1,55 @@
+package com.redhat.emergency.response.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position of a page in the iteration over the missions: the segment of the mission cache and the last mission key
+ * returned in that segment. Encoded as an opaque URL-safe string.
+ */
+class MissionCursor {
+
+    /**
+     * Segment of the cursors over keys read from the mission index rather than from the cache segments.
+     */
+    static final int INDEX = -1;
+
+    private static final String SEPARATOR = "/";
+
+    final int segment;
+
+    final String lastKey;
+
+    MissionCursor(int segment, String lastKey) {
+        this.segment = segment;
+        this.lastKey = lastKey;
+    }
+
+    String encode() {
+        String cursor = segment + SEPARATOR + (lastKey == null ? "" : lastKey);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the decoded cursor, or <code>null</code> for a <code>null</code> cursor (first page).
+     * @throws IllegalArgumentException if the cursor is not a valid cursor
+     */
+    static MissionCursor decode(String cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        int separator = decoded.indexOf(SEPARATOR);
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid cursor '" + cursor + "'");
+        }
+        int segment;
+        try {
+            segment = Integer.parseInt(decoded.substring(0, separator));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor '" + cursor + "'");
+        }
+        String lastKey = decoded.substring(separator + 1);
+        return new MissionCursor(segment, lastKey.isEmpty() ? null : lastKey);
+    }
+}
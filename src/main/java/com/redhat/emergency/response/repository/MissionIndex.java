@@ -0,0 +1,151 @@
+package com.redhat.emergency.response.repository;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import io.smallrye.mutiny.Uni;
+import org.infinispan.client.hotrod.MetadataValue;
+import org.infinispan.client.hotrod.RemoteCache;
+
+/**
+ * Secondary index on the mission cache, stored in its own remote cache.
+ * Each entry maps an index key (e.g. <code>responder:64</code>) to the set of mission keys with that value, so that a
+ * lookup costs one remote call instead of a scan of the mission cache.
+ * Updates use versioned operations, so that concurrent writers from several service instances do not lose entries.
+ * <p>
+ * The cache also holds the key of the active (created or updated) mission of each responder, e.g. <code>active:64</code>,
+ * and the keys of the missions whose minimal route is to be refreshed, under <code>route-refresh</code>.
+ */
+public class MissionIndex {
+
+    static final String RESPONDER = "responder:";
+
+    static final String STATUS = "status:";
+
+    static final String ACTIVE = "active:";
+
+    static final String ROUTE_REFRESH = "route-refresh";
+
+    private static final String SEPARATOR = "\n";
+
+    private final RemoteCache<String, String> cache;
+
+    public MissionIndex(RemoteCache<String, String> cache) {
+        this.cache = cache;
+    }
+
+    public Uni<Set<String>> get(String indexKey) {
+        return Uni.createFrom().completionStage(() -> cache.getAsync(indexKey)).onItem().transform(this::toSet);
+    }
+
+    /**
+     * @return the first <code>limit</code> mission keys of an index entry after a key, in key order, selected while the
+     * entry is scanned rather than by sorting all its keys.
+     */
+    public Uni<List<String>> getRange(String indexKey, String after, int limit, Predicate<String> filter) {
+        return Uni.createFrom().completionStage(() -> cache.getAsync(indexKey)).onItem().transform(value -> {
+            FirstKeys keys = new FirstKeys(after, limit);
+            if (value != null) {
+                int start = 0;
+                while (start < value.length()) {
+                    int end = value.indexOf(SEPARATOR, start);
+                    if (end < 0) {
+                        end = value.length();
+                    }
+                    String key = value.substring(start, end);
+                    if (!key.isEmpty() && filter.test(key)) {
+                        keys.offer(key);
+                    }
+                    start = end + SEPARATOR.length();
+                }
+            }
+            return keys.sorted();
+        });
+    }
+
+    public Uni<Void> add(String indexKey, String missionKey) {
+        return Uni.createFrom().completionStage(() -> cache.getWithMetadataAsync(indexKey))
+                .onItem().transformToUni(value -> tryAdd(indexKey, missionKey, value))
+                .onItem().transformToUni(done -> done ? Uni.createFrom().voidItem() : add(indexKey, missionKey));
+    }
+
+    public Uni<Void> remove(String indexKey, String missionKey) {
+        return Uni.createFrom().completionStage(() -> cache.getWithMetadataAsync(indexKey))
+                .onItem().transformToUni(value -> tryRemove(indexKey, missionKey, value))
+                .onItem().transformToUni(done -> done ? Uni.createFrom().voidItem() : remove(indexKey, missionKey));
+    }
+
+    /**
+     * @return the key of the active mission of a responder, or <code>null</code> if the responder has no active mission.
+     */
+    public Uni<String> getActive(String responderId) {
+        return Uni.createFrom().completionStage(() -> cache.getAsync(ACTIVE + responderId));
+    }
+
+    public Uni<Void> setActive(String responderId, String missionKey) {
+        return Uni.createFrom().completionStage(() -> cache.putAsync(ACTIVE + responderId, missionKey)).onItem().transform(v -> null);
+    }
+
+    /**
+     * Removes the active mission of a responder, unless another mission became active for the responder in the meantime.
+     */
+    public Uni<Void> clearActive(String responderId, String missionKey) {
+        return Uni.createFrom().completionStage(() -> cache.getWithMetadataAsync(ACTIVE + responderId))
+                .onItem().transformToUni(value -> {
+                    if (value == null || !missionKey.equals(value.getValue())) {
+                        return Uni.createFrom().item(true);
+                    }
+                    return Uni.createFrom().completionStage(() -> cache.removeWithVersionAsync(ACTIVE + responderId, value.getVersion()));
+                })
+                .onItem().transformToUni(done -> done ? Uni.createFrom().voidItem() : clearActive(responderId, missionKey));
+    }
+
+    public boolean isEmpty() {
+        return cache.isEmpty();
+    }
+
+    public Uni<Void> clear() {
+        return Uni.createFrom().completionStage(cache::clearAsync);
+    }
+
+    private Uni<Boolean> tryAdd(String indexKey, String missionKey, MetadataValue<String> value) {
+        if (value == null) {
+            return Uni.createFrom().completionStage(() -> cache.putIfAbsentAsync(indexKey, missionKey))
+                    .onItem().transform(previous -> previous == null);
+        }
+        Set<String> keys = toSet(value.getValue());
+        if (!keys.add(missionKey)) {
+            return Uni.createFrom().item(true);
+        }
+        return Uni.createFrom().completionStage(() -> cache.replaceWithVersionAsync(indexKey, toValue(keys), value.getVersion()));
+    }
+
+    private Uni<Boolean> tryRemove(String indexKey, String missionKey, MetadataValue<String> value) {
+        if (value == null) {
+            return Uni.createFrom().item(true);
+        }
+        Set<String> keys = toSet(value.getValue());
+        if (!keys.remove(missionKey)) {
+            return Uni.createFrom().item(true);
+        }
+        if (keys.isEmpty()) {
+            return Uni.createFrom().completionStage(() -> cache.removeWithVersionAsync(indexKey, value.getVersion()));
+        }
+        return Uni.createFrom().completionStage(() -> cache.replaceWithVersionAsync(indexKey, toValue(keys), value.getVersion()));
+    }
+
+    private Set<String> toSet(String value) {
+        Set<String> keys = new LinkedHashSet<>();
+        if (value != null && !value.isEmpty()) {
+            keys.addAll(Arrays.asList(value.split(SEPARATOR)));
+        }
+        return keys;
+    }
+
+    private String toValue(Set<String> keys) {
+        return String.join(SEPARATOR, keys);
+    }
+}
@@ -0,0 +1,166 @@
+package com.redhat.emergency.response.repository;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.redhat.emergency.response.model.Mission;
+import org.infinispan.client.hotrod.annotation.ClientCacheEntryCreated;
+import org.infinispan.client.hotrod.annotation.ClientCacheEntryExpired;
+import org.infinispan.client.hotrod.annotation.ClientCacheEntryModified;
+import org.infinispan.client.hotrod.annotation.ClientCacheEntryRemoved;
+import org.infinispan.client.hotrod.annotation.ClientCacheFailover;
+import org.infinispan.client.hotrod.annotation.ClientListener;
+import org.infinispan.client.hotrod.event.ClientCacheEntryCreatedEvent;
+import org.infinispan.client.hotrod.event.ClientCacheEntryExpiredEvent;
+import org.infinispan.client.hotrod.event.ClientCacheEntryModifiedEvent;
+import org.infinispan.client.hotrod.event.ClientCacheEntryRemovedEvent;
+import org.infinispan.client.hotrod.event.ClientCacheFailoverEvent;
+
+/**
+ * Bounded, least recently used, local copy of the most recently read or written missions.
+ * The cache is registered as a client listener on the mission cache: every write on the server, by this service
+ * instance or by another one, invalidates the local entry unless it is the write the entry was populated from.
+ * <p>
+ * Entries are tagged with the version of the server entry they hold, and only an event for that same version leaves
+ * them in place. Entries are only populated from reads that return the version of the server entry: a mission written
+ * by this service instance is read back once the write completed, as Hot Rod writes do not return the new version. A
+ * generation counter, incremented on every invalidation, prevents a read that raced with a write on the server from
+ * populating the cache with a stale value.
+ */
+@ClientListener
+public class MissionNearCache {
+
+    private final Map<String, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private long generation;
+
+    MissionNearCache(int maxEntries) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MissionNearCache.Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return a copy of the cached mission, or <code>null</code> if the mission is not cached.
+     */
+    Mission get(String key) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.mission.copy();
+    }
+
+    /**
+     * @return a copy of the cached mission with the version of the server entry, or <code>null</code> if the mission is
+     * not cached.
+     */
+    VersionedMission getVersioned(String key) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return new VersionedMission(entry.mission.copy(), entry.version);
+    }
+
+    /**
+     * @return the generation to pass to {@link #populate(String, Mission, long, long)} after the remote read.
+     */
+    synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Caches a mission read from the server, unless an entry was invalidated since <code>generation</code> was obtained.
+     */
+    synchronized void populate(String key, Mission mission, long version, long generation) {
+        if (generation == this.generation && !entries.containsKey(key)) {
+            entries.put(key, new Entry(mission.copy(), version));
+        }
+    }
+
+    synchronized void invalidate(String key) {
+        generation++;
+        entries.remove(key);
+    }
+
+    synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    long hits() {
+        return hits.get();
+    }
+
+    long misses() {
+        return misses.get();
+    }
+
+    @ClientCacheEntryCreated
+    public void created(ClientCacheEntryCreatedEvent<String> event) {
+        written(event.getKey(), event.getVersion());
+    }
+
+    @ClientCacheEntryModified
+    public void modified(ClientCacheEntryModifiedEvent<String> event) {
+        written(event.getKey(), event.getVersion());
+    }
+
+    @ClientCacheEntryRemoved
+    public void removed(ClientCacheEntryRemovedEvent<String> event) {
+        invalidate(event.getKey());
+    }
+
+    @ClientCacheEntryExpired
+    public void expired(ClientCacheEntryExpiredEvent<String> event) {
+        invalidate(event.getKey());
+    }
+
+    @ClientCacheFailover
+    public void failover(ClientCacheFailoverEvent event) {
+        // events may have been missed while the listener was moved to another server
+        invalidateAll();
+    }
+
+    synchronized void written(String key, long version) {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.version != version) {
+            invalidate(key);
+        }
+    }
+
+    private static class Entry {
+
+        final Mission mission;
+
+        final long version;
+
+        Entry(Mission mission, long version) {
+            this.mission = mission;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.redhat.emergency.response.repository;
+
+import java.util.List;
+
+import com.redhat.emergency.response.model.Mission;
+
+/**
+ * A page of missions, with the cursor of the next page.
+ */
+public class MissionPage {
+
+    private final List<Mission> missions;
+
+    private final String next;
+
+    public MissionPage(List<Mission> missions, String next) {
+        this.missions = missions;
+        this.next = next;
+    }
+
+    public List<Mission> getMissions() {
+        return missions;
+    }
+
+    /**
+     * @return the cursor of the next page, or <code>null</code> if this is the last page.
+     */
+    public String getNext() {
+        return next;
+    }
+}
@@ -1,20 +1,37 @@
 package com.redhat.emergency.response.repository;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.event.Observes;
 import javax.inject.Inject;
 
 import com.redhat.emergency.response.model.Mission;
+import com.redhat.emergency.response.model.MissionCodec;
+import com.redhat.emergency.response.model.MissionStatus;
+import com.redhat.emergency.response.model.ResponderLocationHistory;
 import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
 import io.smallrye.mutiny.infrastructure.Infrastructure;
 import io.vertx.core.json.DecodeException;
-import io.vertx.core.json.Json;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.eclipse.microprofile.metrics.annotation.Gauge;
 import org.infinispan.client.hotrod.RemoteCache;
 import org.infinispan.client.hotrod.RemoteCacheManager;
 import org.slf4j.Logger;
@@ -25,91 +42,688 @@ public class MissionRepository {
 
     private static final Logger log = LoggerFactory.getLogger(MissionRepository.class);
 
+    static final String FORMAT_JSON = "json";
+
+    static final String FORMAT_PROTOSTREAM = "protostream";
+
+    /**
+     * Filter converter of the Hot Rod server which sends the keys of the iterated entries without their values, as used
+     * by <code>RemoteCache.keySet()</code>.
+     */
+    static final String KEYS_ONLY = "org.infinispan.server.hotrod.HotRodServer$ToEmptyBytesKeyValueFilterConverter";
+
     @ConfigProperty(name = "infinispan.cache.name.mission", defaultValue = "mission")
     String cacheName;
 
+    @ConfigProperty(name = "infinispan.cache.name.mission-index", defaultValue = "mission-index")
+    String indexCacheName;
+
+    @ConfigProperty(name = "infinispan.cache.name.mission-history", defaultValue = "mission-history")
+    String historyCacheName;
+
+    /**
+     * Number of responder locations per segment of the mission location history.
+     */
+    @ConfigProperty(name = "infinispan.cache.mission.history.segment-size", defaultValue = "50")
+    int historySegmentSize;
+
+    @ConfigProperty(name = "infinispan.cache.name.mission-route", defaultValue = "mission-route")
+    String routeCacheName;
+
+    /**
+     * Maximum number of mission routes kept in memory. A route is read again when the route version of its mission
+     * changes.
+     */
+    @ConfigProperty(name = "infinispan.cache.mission.route.local-max-entries", defaultValue = "1000")
+    int routeLocalMaxEntries;
+
+    @ConfigProperty(name = "infinispan.cache.mission.batch-size", defaultValue = "100")
+    int batchSize;
+
+    /**
+     * Maximum time the listing and the pages of missions, which iterate over the mission cache, wait for their missions.
+     */
+    @ConfigProperty(name = "infinispan.cache.mission.blocking-timeout", defaultValue = "PT30S")
+    Duration blockingTimeout;
+
     @ConfigProperty(name = "infinispan.cache.create.lazy", defaultValue = "false")
     boolean lazy;
 
+    /**
+     * Storage format of the missions in the remote cache: <code>json</code> (mission serialized as a JSON string) or
+     * <code>protostream</code> (mission marshalled as a binary Protobuf message, see <code>META-INF/mission.proto</code>).
+     */
+    @ConfigProperty(name = "infinispan.cache.mission.format", defaultValue = FORMAT_JSON)
+    String format;
+
+    /**
+     * When true and the storage format is <code>protostream</code>, missions stored as JSON strings are rewritten in the
+     * binary format at startup.
+     */
+    @ConfigProperty(name = "infinispan.cache.mission.migrate", defaultValue = "false")
+    boolean migrate;
+
+    /**
+     * When true, missions read or written by this service instance are kept in a local near cache, invalidated by the
+     * events of the remote cache.
+     */
+    @ConfigProperty(name = "infinispan.cache.mission.near-cache.enabled", defaultValue = "false")
+    boolean nearCacheEnabled;
+
+    @ConfigProperty(name = "infinispan.cache.mission.near-cache.max-entries", defaultValue = "1000")
+    int nearCacheMaxEntries;
+
+    /**
+     * Number of times an update is applied again to the current version of a mission modified concurrently.
+     */
+    @ConfigProperty(name = "infinispan.cache.mission.update.max-retries", defaultValue = "10")
+    int updateMaxRetries;
+
     @Inject
     RemoteCacheManager cacheManager;
 
-    volatile RemoteCache<String, String> missionCache;
+    volatile RemoteCache<String, Object> missionCache;
+
+    volatile MissionIndex missionIndex;
+
+    volatile MissionNearCache nearCache;
+
+    volatile LocationHistoryStore historyStore;
+
+    volatile MissionRouteStore routeStore;
+
+    private final AtomicLong updates = new AtomicLong();
+
+    private final AtomicLong updateConflicts = new AtomicLong();
+
+    private final AtomicLong updateFailures = new AtomicLong();
 
     void onStart(@Observes StartupEvent e) {
         // do not initialize the cache at startup when remote cache is not available, e.g. in QuarkusTests
         if (!lazy) {
             log.info("Creating remote cache");
             missionCache = initCache();
+            missionIndex = initIndex();
+            historyStore = initHistoryStore();
+            routeStore = initRouteStore();
+            if (missionIndex.isEmpty()) {
+                rebuildIndex().subscribe().with(count -> log.info("Indexed " + count + " missions"),
+                        t -> log.error("Exception while indexing missions", t));
+            }
+            if (migrate) {
+                migrate().subscribe().with(count -> log.info("Migrated " + count + " missions to format '" + format + "'"),
+                        t -> log.error("Exception while migrating missions to format '" + format + "'", t));
+            }
         }
     }
 
     // todo: error handling
     public Uni<Void> add(Mission mission) {
 
-       return Uni.createFrom().<Void>item(() -> {
-            getCache().put(mission.getKey(), mission.toJson());
-            return null;
-        }).runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+        return storeRoute(mission).onItem().transformToUni(v -> put(mission))
+                .onItem().transformToUni(v -> appendHistory(mission)).onItem().transformToUni(v -> index(mission));
+    }
+
+    /**
+     * Applies a mutation to a mission with an optimistic compare-and-set: the mission is only written if it was not
+     * modified since it was read. Otherwise the mutation is applied again to the current version of the mission, at most
+     * <code>infinispan.cache.mission.update.max-retries</code> times, after which the update fails with a
+     * {@link MissionUpdateConflictException}.
+     *
+     * @param key the key of the mission
+     * @param mutation the mutation, applied to a fresh copy of the mission for every attempt. It should not have side
+     *                 effects outside of the mission.
+     * @return the updated mission, or an empty optional if the mission does not exist.
+     */
+    public Uni<Optional<Mission>> update(String key, UnaryOperator<Mission> mutation) {
+
+        return update(key, mutation, 0);
+    }
+
+    private Uni<Optional<Mission>> update(String key, UnaryOperator<Mission> mutation, int attempt) {
+        return getVersioned(key).onItem().transformToUni(current -> {
+            if (current == null) {
+                return Uni.createFrom().item(Optional.<Mission>empty());
+            }
+            // locations stored with the current version but not appended yet, e.g. by an instance stopped after it wrote the
+            // mission, are appended before they are dropped from the mission
+            return appendHistory(current.mission).onItem().transformToUni(a -> {
+                Mission mission = mutation.apply(current.mission);
+                return storeRoute(mission).onItem().transformToUni(v -> replace(mission, current.version))
+                        .onItem().transformToUni(replaced -> {
+                            if (replaced) {
+                                updates.incrementAndGet();
+                                // the new locations are appended once the mission is written with them, the positions in
+                                // the history are then owned by this update
+                                return appendHistory(mission).onItem().transformToUni(v -> index(mission))
+                                        .onItem().transform(v -> Optional.of(mission));
+                            }
+                            updateConflicts.incrementAndGet();
+                            if (attempt >= updateMaxRetries) {
+                                updateFailures.incrementAndGet();
+                                return Uni.createFrom().failure(new MissionUpdateConflictException("Mission with key '" + key
+                                        + "' could not be updated after " + (attempt + 1) + " attempts"));
+                            }
+                            log.debug("Concurrent update of mission with key '" + key + "', retrying");
+                            return update(key, mutation, attempt + 1);
+                        });
+            });
+        });
     }
 
     public Uni<Optional<Mission>> get(String key) {
 
-        return Uni.createFrom().<Optional<Mission>>item(() -> {
-            try {
-                String s = getCache().get(key);
-                if (s == null) {
+        MissionNearCache near = getNearCache();
+        if (near != null) {
+            return getNear(near, key);
+        }
+        return Uni.createFrom().completionStage(() -> getCache().getAsync(key))
+                .onItem().transform(value -> value == null ? Optional.<Mission>empty() : Optional.of(decode(value)))
+                .onFailure().recoverWithItem(t -> {
+                    log.error("Error when retrieving mission with id '" + key + "'.", t);
                     return Optional.empty();
-                } else {
-                    Mission mission = Json.decodeValue(s, Mission.class);
-                    return Optional.of(mission);
-                }
-            } catch (Exception e) {
-                log.error("Error when retrieving mission with id '" + key + "'.", e);
-                return Optional.empty();
-            }
-        }).runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+                });
     }
 
     public Uni<List<Mission>> getAll() {
-        return Uni.createFrom().<List<Mission>>item(() -> {
-            return getCache().keySet().stream().map(key -> {
-                Mission mission = null;
-                try {
-                    mission = Json.decodeValue(getCache().get(key), Mission.class);
-                } catch (DecodeException e) {
-                    log.error("Exception decoding mission with id = " + key, e);
-                }
-                return mission;
-            }).filter(Objects::nonNull).collect(Collectors.toList());
-        }).runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+        // entries are streamed from the server in batches, rather than fetched one key at a time
+        return entries(null).groupItems().intoLists().of(batchSize)
+                // the batches are decoded off the Hot Rod client threads
+                .emitOn(Infrastructure.getDefaultWorkerPool())
+                .collectItems().<List<Mission>>in(ArrayList::new, (missions, batch) -> decodeAll(batch, missions))
+                .ifNoItem().after(blockingTimeout).fail();
+    }
+
+    /**
+     * Streams all the missions. Missions are decoded one at a time, as they are requested, while the cache entries are
+     * fetched in batches of <code>batchSize</code> entries, so that they are never all in memory.
+     */
+    public Multi<Mission> stream() {
+        return entries(null).onItem().transformToMulti(entry -> {
+            try {
+                return Multi.createFrom().item(decode(entry.getValue()));
+            } catch (DecodeException e) {
+                log.error("Exception decoding mission with id = " + entry.getKey(), e);
+                return Multi.createFrom().<Mission>empty();
+            }
+        }).concatenate();
+    }
+
+    /**
+     * Reads a page of missions. Missions are returned in key order within each segment of the mission cache, so a page
+     * only iterates over one segment at a time rather than over all the missions before the cursor. Missions filtered by
+     * status are read from the status index.
+     *
+     * @param cursor the cursor of the page, as returned with the previous page, or <code>null</code> for the first page
+     * @param limit the maximum number of missions in the page
+     * @param status only return missions with this status, or <code>null</code>
+     * @param incidentId only return missions of this incident, or <code>null</code>
+     * @return the page, failed with an {@link IllegalArgumentException} if the cursor is not valid
+     */
+    public Uni<MissionPage> getPage(String cursor, int limit, MissionStatus status, String incidentId) {
+
+        MissionCursor from;
+        try {
+            from = MissionCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return Uni.createFrom().failure(e);
+        }
+        if (status != null) {
+            return getPageByStatus(from, limit, status, incidentId);
+        }
+        return getPageBySegment(from == null ? 0 : Math.max(from.segment, 0), from == null ? null : from.lastKey, limit,
+                incidentId, new ArrayList<>(limit))
+                .ifNoItem().after(blockingTimeout).fail();
     }
 
     public Uni<Void> clear() {
 
-        return Uni.createFrom().<Void>item(() -> {
-            getCache().clear();
-            return null;
-        }).runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+        return Uni.createFrom().completionStage(() -> getCache().clearAsync())
+                .onItem().invoke(v -> {
+                    MissionNearCache near = getNearCache();
+                    if (near != null) {
+                        near.invalidateAll();
+                    }
+                })
+                .onItem().transformToUni(v -> getIndex().clear())
+                .onItem().transformToUni(v -> getHistoryStore().clear())
+                .onItem().transformToUni(v -> getRouteStore().clear());
+    }
+
+    /**
+     * Assembles the location history and the route of a mission, which are not read together with the mission.
+     */
+    public Uni<Mission> assemble(Mission mission) {
+
+        return assemble(Collections.singletonList(mission)).onItem().transform(l -> mission);
+    }
+
+    /**
+     * Assembles the location history and the route of missions, with one remote call for the histories and at most one
+     * for the routes.
+     */
+    public Uni<List<Mission>> assemble(List<Mission> missions) {
 
+        Map<String, Integer> sizes = new HashMap<>();
+        // the new locations of a mission are not in the history store yet
+        missions.forEach(m -> sizes.put(m.getKey(), m.getHistorySize() - m.newLocations().size()));
+        Uni<List<Mission>> withHistory = getHistoryStore().get(sizes).onItem().transform(histories -> {
+            missions.forEach(m -> m.history(histories.get(m.getKey())));
+            return missions;
+        });
+        // missions with a route not yet stored already hold their route
+        Map<String, Integer> versions = missions.stream().filter(m -> !m.routeChanged())
+                .collect(Collectors.toMap(Mission::getId, Mission::getRouteVersion, (v1, v2) -> v2));
+        return withHistory.onItem().transformToUni(l -> getRouteStore().get(versions)).onItem().transform(routes -> {
+            missions.stream().filter(m -> routes.containsKey(m.getId())).forEach(m -> m.steps(routes.get(m.getId())));
+            return missions;
+        });
     }
 
     public Uni<List<Mission>> getByResponderId(String responderId) {
 
-        return Uni.createFrom().item(() -> getCache().keySet().stream().map(key -> {
-            Mission mission = null;
+        return getByIndex(MissionIndex.RESPONDER + responderId).onItem().transform(l -> l.stream()
+                .filter(m -> responderId.equals(m.getResponderId())).collect(Collectors.toList()));
+    }
+
+    /**
+     * @return the active (created or updated) mission of a responder, with a lookup of the active mission key and a
+     * read of the mission.
+     */
+    public Uni<Optional<Mission>> getActiveByResponderId(String responderId) {
+
+        return getIndex().getActive(responderId).onItem().transformToUni(key -> key == null
+                ? Uni.createFrom().item(Optional.<Mission>empty()) : get(key))
+                .onItem().transform(o -> o.filter(m -> responderId.equals(m.getResponderId()) && isActive(m.getStatus())));
+    }
+
+    public Uni<List<Mission>> getByStatus(MissionStatus status) {
+
+        return getByIndex(MissionIndex.STATUS + status.name()).onItem().transform(l -> l.stream()
+                .filter(m -> status.name().equals(m.getStatus())).collect(Collectors.toList()));
+    }
+
+    /**
+     * Records that the route of a mission is to be refreshed, so that the refresh is not lost when the service
+     * restarts.
+     */
+    public Uni<Void> addRouteRefresh(String key) {
+
+        return getIndex().add(MissionIndex.ROUTE_REFRESH, key);
+    }
+
+    public Uni<Void> removeRouteRefresh(String key) {
+
+        return getIndex().remove(MissionIndex.ROUTE_REFRESH, key);
+    }
+
+    /**
+     * @return the keys of the missions whose route is to be refreshed.
+     */
+    public Uni<Set<String>> getRouteRefreshes() {
+
+        return getIndex().get(MissionIndex.ROUTE_REFRESH);
+    }
+
+    /**
+     * Adds all the missions in the cache to the responder and status indexes, e.g. for missions stored before the
+     * indexes existed.
+     *
+     * @return the number of indexed missions
+     */
+    public Uni<Integer> rebuildIndex() {
+
+        return count(entries(null).onItem().transformToUniAndConcatenate(entry -> {
+            String key = entry.getKey();
+            Mission mission;
             try {
-                mission = Json.decodeValue(getCache().get(key), Mission.class);
+                mission = decode(entry.getValue());
             } catch (DecodeException e) {
                 log.error("Exception decoding mission with id = " + key, e);
+                return Uni.createFrom().item(false);
+            }
+            Uni<Void> indexed = getIndex().add(MissionIndex.RESPONDER + mission.getResponderId(), key);
+            if (mission.getStatus() != null) {
+                indexed = indexed.onItem().transformToUni(v -> getIndex().add(MissionIndex.STATUS + mission.getStatus(), key));
+            }
+            if (isActive(mission.getStatus())) {
+                indexed = indexed.onItem().transformToUni(v -> getIndex().setActive(mission.getResponderId(), key));
+            }
+            return indexed.onItem().transform(v -> true);
+        }));
+    }
+
+    /**
+     * Rewrites the missions stored as JSON strings in the configured storage format.
+     * Missions in the legacy format remain readable until they are migrated, so migration can run while the service is live.
+     *
+     * @return the number of migrated missions
+     */
+    public Uni<Integer> migrate() {
+
+        if (!isProtoStream()) {
+            return Uni.createFrom().item(0);
+        }
+        return count(Multi.createFrom().publisher(getCache().publishEntriesWithMetadata(null, batchSize))
+                .transform().byFilteringItemsWith(entry -> entry.getValue().getValue() instanceof String)
+                .onItem().transformToUniAndConcatenate(entry -> {
+                    String key = entry.getKey();
+                    Mission mission;
+                    try {
+                        mission = decode(entry.getValue().getValue());
+                    } catch (DecodeException e) {
+                        log.error("Exception decoding mission with id = " + key, e);
+                        return Uni.createFrom().item(false);
+                    }
+                    long version = entry.getValue().getVersion();
+                    return appendHistory(mission).onItem().transformToUni(v -> storeRoute(mission))
+                            // only replace the entry if it was not modified in the meantime
+                            .onItem().transformToUni(v -> Uni.createFrom().completionStage(() -> getCache().replaceWithVersionAsync(key, mission, version)));
+                }));
+    }
+
+    @Gauge(name = "mission-updates", absolute = true, unit = MetricUnits.NONE, description = "Successful compare-and-set mission updates")
+    public long updates() {
+        return updates.get();
+    }
+
+    @Gauge(name = "mission-update-conflicts", absolute = true, unit = MetricUnits.NONE, description = "Mission updates retried because the mission was modified concurrently")
+    public long updateConflicts() {
+        return updateConflicts.get();
+    }
+
+    @Gauge(name = "mission-update-failures", absolute = true, unit = MetricUnits.NONE, description = "Mission updates abandoned after the maximum number of retries")
+    public long updateFailures() {
+        return updateFailures.get();
+    }
+
+    @Gauge(name = "mission-near-cache-hits", absolute = true, unit = MetricUnits.NONE, description = "Mission reads served by the near cache")
+    public long nearCacheHits() {
+        MissionNearCache near = nearCache;
+        return near == null ? 0 : near.hits();
+    }
+
+    @Gauge(name = "mission-near-cache-misses", absolute = true, unit = MetricUnits.NONE, description = "Mission reads not found in the near cache")
+    public long nearCacheMisses() {
+        MissionNearCache near = nearCache;
+        return near == null ? 0 : near.misses();
+    }
+
+    @Gauge(name = "mission-near-cache-size", absolute = true, unit = MetricUnits.NONE, description = "Number of missions in the near cache")
+    public long nearCacheSize() {
+        MissionNearCache near = nearCache;
+        return near == null ? 0 : near.size();
+    }
+
+    private Uni<Optional<Mission>> getNear(MissionNearCache near, String key) {
+        Mission cached = near.get(key);
+        if (cached != null) {
+            return Uni.createFrom().item(Optional.of(cached));
+        }
+        return readNear(near, key)
+                .onFailure().recoverWithItem(t -> {
+                    log.error("Error when retrieving mission with id '" + key + "'.", t);
+                    return Optional.empty();
+                });
+    }
+
+    /**
+     * Reads a mission with the version of the server entry, and caches it in the near cache.
+     */
+    private Uni<Optional<Mission>> readNear(MissionNearCache near, String key) {
+        long generation = near.generation();
+        return Uni.createFrom().completionStage(() -> getCache().getWithMetadataAsync(key))
+                .onItem().transform(value -> {
+                    if (value == null) {
+                        return Optional.<Mission>empty();
+                    }
+                    Mission mission = decode(value.getValue());
+                    // a mission with an inline route is only cached once it is moved to its own store, new locations are
+                    // kept by the cached copy and appended by the next update
+                    if (!mission.routeChanged()) {
+                        near.populate(key, mission, value.getVersion(), generation);
+                    }
+                    return Optional.of(mission);
+                });
+    }
+
+    private Uni<MissionPage> getPageByStatus(MissionCursor from, int limit, MissionStatus status, String incidentId) {
+        String after = from == null ? null : from.lastKey;
+        // one more key than the page tells whether there is a next page
+        return getIndex().getRange(MissionIndex.STATUS + status.name(), after, limit + 1, k -> isOfIncident(k, incidentId))
+                .onItem().transformToUni(keys -> {
+                    List<String> pageKeys = keys.subList(0, Math.min(limit, keys.size()));
+                    String next = keys.size() > limit ? new MissionCursor(MissionCursor.INDEX, pageKeys.get(limit - 1)).encode() : null;
+                    // the index can be behind the missions
+                    return getAll(pageKeys).onItem().transform(missions -> new MissionPage(missions.stream()
+                            .filter(m -> status.name().equals(m.getStatus())).collect(Collectors.toList()), next));
+                });
+    }
+
+    /**
+     * Reads a page from the missions of a segment of the mission cache, then of the next segments until the page is
+     * full. Only the keys of the segment are read from the server, and only the missions of the page are then read and
+     * decoded.
+     */
+    private Uni<MissionPage> getPageBySegment(int segment, String after, int limit, String incidentId, List<Mission> page) {
+        Integer numSegments = getCache().getCacheTopologyInfo().getNumSegments();
+        // a cache without segments is iterated as a single segment
+        int segments = numSegments == null || numSegments <= 0 ? 1 : numSegments;
+        if (segment >= segments) {
+            return Uni.createFrom().item(new MissionPage(page, null));
+        }
+        Set<Integer> filter = numSegments == null || numSegments <= 0 ? null : Collections.singleton(segment);
+        int remaining = limit - page.size();
+        return keys(filter)
+                // missions are filtered on their key before they are read
+                .transform().byFilteringItemsWith(key -> isOfIncident(key, incidentId))
+                // one more key than the page tells whether the page ends in this segment
+                .collectItems().in(() -> new FirstKeys(after, remaining + 1), FirstKeys::offer)
+                .onItem().transformToUni(first -> {
+                    List<String> keys = first.sorted();
+                    List<String> pageKeys = keys.subList(0, Math.min(remaining, keys.size()));
+                    return getAll(pageKeys).onItem().transformToUni(missions -> {
+                        page.addAll(missions);
+                        if (keys.size() > remaining) {
+                            return Uni.createFrom().item(new MissionPage(page, new MissionCursor(segment, pageKeys.get(remaining - 1)).encode()));
+                        }
+                        if (keys.size() == remaining) {
+                            return Uni.createFrom().item(new MissionPage(page, segment + 1 < segments ? new MissionCursor(segment + 1, null).encode() : null));
+                        }
+                        return getPageBySegment(segment + 1, null, limit, incidentId, page);
+                    });
+                });
+    }
+
+    private static boolean isOfIncident(String missionKey, String incidentId) {
+        return incidentId == null || missionKey.startsWith(incidentId + ":");
+    }
+
+    /**
+     * @return the missions of the keys, in key order, read with one remote call.
+     */
+    private Uni<List<Mission>> getAll(List<String> keys) {
+        if (keys.isEmpty()) {
+            return Uni.createFrom().item(Collections.<Mission>emptyList());
+        }
+        return Uni.createFrom().completionStage(() -> getCache().getAllAsync(new LinkedHashSet<>(keys))).onItem().transform(values -> {
+            List<Mission> missions = new ArrayList<>(values.size());
+            decodeAll(values.entrySet(), missions);
+            missions.sort(Comparator.comparing(Mission::getKey));
+            return missions;
+        });
+    }
+
+    private Uni<List<Mission>> getByIndex(String indexKey) {
+        return getIndex().get(indexKey).onItem().transformToUni(keys -> {
+            if (keys.isEmpty()) {
+                return Uni.createFrom().item(Collections.<Mission>emptyList());
+            }
+            return Uni.createFrom().completionStage(() -> getCache().getAllAsync(keys)).onItem().transform(values -> {
+                List<Mission> missions = new ArrayList<>(keys.size());
+                decodeAll(values.entrySet(), missions);
+                return missions;
+            });
+        });
+    }
+
+    /**
+     * Publishes the entries of the mission cache, or of some of its segments, fetched from the server in batches of
+     * <code>batchSize</code> entries without blocking a thread.
+     */
+    private Multi<Map.Entry<String, Object>> entries(Set<Integer> segments) {
+        return Multi.createFrom().publisher(getCache().<Object>publishEntries(null, null, segments, batchSize));
+    }
+
+    /**
+     * Publishes the keys of the mission cache, or of some of its segments, without their missions.
+     */
+    private Multi<String> keys(Set<Integer> segments) {
+        return Multi.createFrom().publisher(getCache().<Object>publishEntries(KEYS_ONLY, null, segments, batchSize))
+                .onItem().transform(Map.Entry::getKey);
+    }
+
+    private static Uni<Integer> count(Multi<Boolean> results) {
+        return results.collectItems().in(AtomicInteger::new, (count, result) -> {
+            if (result) {
+                count.incrementAndGet();
+            }
+        }).onItem().transform(AtomicInteger::get);
+    }
+
+    private void decodeAll(Collection<? extends Map.Entry<?, ?>> entries, List<Mission> missions) {
+        entries.parallelStream().map(e -> {
+            Mission mission = null;
+            try {
+                mission = decode(e.getValue());
+            } catch (DecodeException ex) {
+                log.error("Exception decoding mission with id = " + e.getKey(), ex);
             }
             return mission;
-        }).filter(Objects::nonNull).filter(m -> m.getResponderId().equals(responderId)).collect(Collectors.toList()))
-                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+        }).filter(Objects::nonNull).forEachOrdered(missions::add);
+    }
+
+    private Uni<Void> put(Mission mission) {
+        return Uni.createFrom().completionStage(() -> getCache().putAsync(mission.getKey(), encode(mission)))
+                .onItem().transformToUni(v -> refreshNear(mission.getKey()))
+                .onFailure().invoke(t -> invalidateNear(mission.getKey()));
+    }
+
+    private Uni<VersionedMission> getVersioned(String key) {
+        MissionNearCache near = getNearCache();
+        VersionedMission cached = near == null ? null : near.getVersioned(key);
+        if (cached != null) {
+            return Uni.createFrom().item(cached);
+        }
+        return Uni.createFrom().completionStage(() -> getCache().getWithMetadataAsync(key))
+                .onItem().transform(value -> value == null ? null : new VersionedMission(decode(value.getValue()), value.getVersion()));
+    }
+
+    private Uni<Boolean> replace(Mission mission, long version) {
+        return Uni.createFrom().completionStage(() -> getCache().replaceWithVersionAsync(mission.getKey(), encode(mission), version))
+                .onItem().transformToUni(replaced -> {
+                    if (!replaced) {
+                        invalidateNear(mission.getKey());
+                        return Uni.createFrom().item(false);
+                    }
+                    return refreshNear(mission.getKey()).onItem().transform(v -> true);
+                })
+                .onFailure().invoke(t -> invalidateNear(mission.getKey()));
+    }
+
+    /**
+     * Caches a mission written by this service instance in the near cache, with the version the server gave to the
+     * write. Hot Rod writes do not return the version of the entry, so the mission is read back once it is written.
+     */
+    private Uni<Void> refreshNear(String key) {
+        MissionNearCache near = getNearCache();
+        if (near == null) {
+            return Uni.createFrom().voidItem();
+        }
+        near.invalidate(key);
+        return readNear(near, key).onItem().transform(m -> (Void) null)
+                .onFailure().recoverWithItem(t -> {
+                    // the write succeeded, the mission is read from the server the next time
+                    log.debug("Error when reading back mission with id '" + key + "'.", t);
+                    return null;
+                });
+    }
+
+    private void invalidateNear(String key) {
+        MissionNearCache near = getNearCache();
+        if (near != null) {
+            near.invalidate(key);
+        }
+    }
+
+    private Uni<Void> appendHistory(Mission mission) {
+        List<ResponderLocationHistory> locations = mission.newLocations();
+        if (locations.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        return getHistoryStore().append(mission.getKey(), mission.getHistorySize() - locations.size(), locations)
+                .onItem().invoke(v -> mission.locationsStored());
+    }
+
+    private Uni<Void> storeRoute(Mission mission) {
+        if (!mission.routeChanged()) {
+            return Uni.createFrom().voidItem();
+        }
+        return getRouteStore().put(mission.getId(), mission.getRouteVersion(), mission.getSteps()).onItem().invoke(v -> mission.routeStored());
     }
 
-    private RemoteCache<String, String> getCache() {
-        RemoteCache<String, String> cache = missionCache;
+    private Uni<Void> index(Mission mission) {
+        if (!mission.statusChanged()) {
+            return Uni.createFrom().voidItem();
+        }
+        String key = mission.getKey();
+        Uni<Void> previous = mission.previousStatus() == null
+                // new mission
+                ? getIndex().add(MissionIndex.RESPONDER + mission.getResponderId(), key)
+                : getIndex().remove(MissionIndex.STATUS + mission.previousStatus(), key);
+        return previous.onItem().transformToUni(v -> getIndex().add(MissionIndex.STATUS + mission.getStatus(), key))
+                .onItem().transformToUni(v -> indexActive(mission))
+                .onItem().invoke(v -> mission.statusIndexed());
+    }
+
+    private Uni<Void> indexActive(Mission mission) {
+        if (isActive(mission.getStatus())) {
+            return getIndex().setActive(mission.getResponderId(), mission.getKey());
+        }
+        if (isActive(mission.previousStatus())) {
+            return getIndex().clearActive(mission.getResponderId(), mission.getKey());
+        }
+        return Uni.createFrom().voidItem();
+    }
+
+    private static boolean isActive(String status) {
+        return MissionStatus.CREATED.name().equals(status) || MissionStatus.UPDATED.name().equals(status);
+    }
+
+    private Object encode(Mission mission) {
+        return isProtoStream() ? mission : mission.toStoredJson();
+    }
+
+    private Mission decode(Object value) {
+        Mission mission;
+        if (value instanceof Mission) {
+            mission = (Mission) value;
+        } else {
+            // missions stored as JSON, either in json format or not yet migrated to protostream
+            mission = MissionCodec.decodeMission((String) value);
+        }
+        // missions stored before the history and route stores existed
+        mission.detachInlineHistory();
+        mission.detachInlineRoute();
+        return mission;
+    }
+
+    private boolean isProtoStream() {
+        return FORMAT_PROTOSTREAM.equalsIgnoreCase(format);
+    }
+
+    private RemoteCache<String, Object> getCache() {
+        RemoteCache<String, Object> cache = missionCache;
         if (cache == null) {
             synchronized(this) {
                 if (missionCache == null) {
@@ -120,9 +734,77 @@ public class MissionRepository {
         return cache;
     }
 
-    private RemoteCache<String, String> initCache() {
+    private MissionNearCache getNearCache() {
+        if (!nearCacheEnabled) {
+            return null;
+        }
+        // the near cache is created and registered as listener together with the remote cache
+        getCache();
+        return nearCache;
+    }
+
+    private MissionIndex getIndex() {
+        MissionIndex index = missionIndex;
+        if (index == null) {
+            synchronized(this) {
+                if (missionIndex == null) {
+                    missionIndex = index = initIndex();
+                }
+            }
+        }
+        return index;
+    }
+
+    private LocationHistoryStore getHistoryStore() {
+        LocationHistoryStore store = historyStore;
+        if (store == null) {
+            synchronized(this) {
+                if (historyStore == null) {
+                    historyStore = store = initHistoryStore();
+                }
+            }
+        }
+        return store;
+    }
+
+    private LocationHistoryStore initHistoryStore() {
+        Configuration configuration = Configuration.builder().name(historyCacheName).mode("SYNC").owners(2).build();
+        return new LocationHistoryStore(cacheManager.administration().getOrCreateCache(historyCacheName, configuration),
+                historySegmentSize);
+    }
+
+    private MissionRouteStore getRouteStore() {
+        MissionRouteStore store = routeStore;
+        if (store == null) {
+            synchronized(this) {
+                if (routeStore == null) {
+                    routeStore = store = initRouteStore();
+                }
+            }
+        }
+        return store;
+    }
+
+    private MissionRouteStore initRouteStore() {
+        Configuration configuration = Configuration.builder().name(routeCacheName).mode("SYNC").owners(2).build();
+        return new MissionRouteStore(cacheManager.administration().getOrCreateCache(routeCacheName, configuration),
+                routeLocalMaxEntries);
+    }
+
+    private MissionIndex initIndex() {
+        Configuration configuration = Configuration.builder().name(indexCacheName).mode("SYNC").owners(2).build();
+        return new MissionIndex(cacheManager.administration().getOrCreateCache(indexCacheName, configuration));
+    }
+
+    private RemoteCache<String, Object> initCache() {
         Configuration configuration = Configuration.builder().name("mission").mode("SYNC").owners(2).build();
-        return cacheManager.administration().getOrCreateCache(cacheName, configuration);
+        RemoteCache<String, Object> cache = cacheManager.administration().getOrCreateCache(cacheName, configuration);
+        if (nearCacheEnabled) {
+            MissionNearCache near = new MissionNearCache(nearCacheMaxEntries);
+            cache.addClientListener(near);
+            nearCache = near;
+        }
+        return cache;
     }
 
 }
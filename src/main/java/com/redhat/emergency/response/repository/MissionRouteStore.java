@@ -0,0 +1,113 @@
+package com.redhat.emergency.response.repository;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.redhat.emergency.response.model.MissionCodec;
+import com.redhat.emergency.response.model.MissionStep;
+import io.smallrye.mutiny.Uni;
+import org.infinispan.client.hotrod.RemoteCache;
+
+/**
+ * Store of the mission routes, in their own remote cache, keyed by mission id.
+ * The route of a mission is written when the mission is created, and again only when it is replaced, e.g. when the
+ * minimal route of a mission created while the route planner was not available is refreshed, rather than with every
+ * update of the mission.
+ * Routes are kept in a local cache together with the route version of the mission they were read for. A mission with
+ * another route version, e.g. after its route was refreshed by another service instance, reads its route from the
+ * remote cache again.
+ */
+public class MissionRouteStore {
+
+    private final RemoteCache<String, String> cache;
+
+    private final Map<String, LocalRoute> local;
+
+    public MissionRouteStore(RemoteCache<String, String> cache, int localMaxEntries) {
+        this.cache = cache;
+        this.local = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LocalRoute> eldest) {
+                return size() > localMaxEntries;
+            }
+        };
+    }
+
+    /**
+     * @param version the route version of the mission, see {@link com.redhat.emergency.response.model.Mission#getRouteVersion()}
+     */
+    public Uni<Void> put(String missionId, int version, List<MissionStep> route) {
+        List<MissionStep> steps = List.copyOf(route);
+        return Uni.createFrom().completionStage(() -> cache.putAsync(missionId, MissionCodec.encodeSteps(steps)))
+                .onItem().invoke(v -> cacheLocally(missionId, version, steps))
+                .onItem().transform(v -> null);
+    }
+
+    /**
+     * Reads the routes of several missions, with at most one remote call for the routes not cached locally with the
+     * requested version.
+     *
+     * @param versions the route version of the missions, by mission id
+     * @return the route, by mission id. Missions without a stored route are not in the map.
+     */
+    public Uni<Map<String, List<MissionStep>>> get(Map<String, Integer> versions) {
+        Map<String, List<MissionStep>> routes = new HashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        synchronized (local) {
+            versions.forEach((id, version) -> {
+                LocalRoute route = local.get(id);
+                if (route == null || route.version != version) {
+                    missing.add(id);
+                } else {
+                    routes.put(id, route.steps);
+                }
+            });
+        }
+        if (missing.isEmpty()) {
+            return Uni.createFrom().item(routes);
+        }
+        return Uni.createFrom().completionStage(() -> cache.getAllAsync(missing)).onItem().transform(values -> {
+            values.forEach((id, value) -> {
+                List<MissionStep> route = List.copyOf(MissionCodec.decodeSteps(value));
+                // the remote route is at least as recent as the requested version: the route is stored before the mission
+                cacheLocally(id, versions.get(id), route);
+                routes.put(id, route);
+            });
+            return routes;
+        });
+    }
+
+    public Uni<Void> clear() {
+        return Uni.createFrom().completionStage(cache::clearAsync).onItem().invoke(v -> {
+            synchronized (local) {
+                local.clear();
+            }
+        });
+    }
+
+    private void cacheLocally(String missionId, int version, List<MissionStep> route) {
+        synchronized (local) {
+            LocalRoute cached = local.get(missionId);
+            // a route read for an older version of the mission does not replace a more recent one
+            if (cached == null || cached.version <= version) {
+                local.put(missionId, new LocalRoute(version, route));
+            }
+        }
+    }
+
+    private static class LocalRoute {
+
+        private final int version;
+
+        private final List<MissionStep> steps;
+
+        private LocalRoute(int version, List<MissionStep> steps) {
+            this.version = version;
+            this.steps = steps;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.redhat.emergency.response.repository;
+
+public class MissionUpdateConflictException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public MissionUpdateConflictException(String message) {
+        super(message);
+    }
+}
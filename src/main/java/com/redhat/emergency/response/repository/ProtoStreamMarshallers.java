@@ -0,0 +1,34 @@
+package com.redhat.emergency.response.repository;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Produces;
+
+import com.redhat.emergency.response.model.MissionMarshaller;
+import com.redhat.emergency.response.model.MissionStepMarshaller;
+import com.redhat.emergency.response.model.ResponderLocationHistoryMarshaller;
+import org.infinispan.protostream.MessageMarshaller;
+
+/**
+ * Registers the ProtoStream marshallers for the types declared in <code>META-INF/mission.proto</code>
+ * with the Hot Rod client's serialization context.
+ * The Infinispan client extension registers <code>MessageMarshaller</code> beans, it does not support its replacement yet.
+ */
+@ApplicationScoped
+@SuppressWarnings({"rawtypes", "deprecation"})
+public class ProtoStreamMarshallers {
+
+    @Produces
+    MessageMarshaller missionMarshaller() {
+        return new MissionMarshaller();
+    }
+
+    @Produces
+    MessageMarshaller missionStepMarshaller() {
+        return new MissionStepMarshaller();
+    }
+
+    @Produces
+    MessageMarshaller responderLocationHistoryMarshaller() {
+        return new ResponderLocationHistoryMarshaller();
+    }
+}
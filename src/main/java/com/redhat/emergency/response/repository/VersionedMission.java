@@ -0,0 +1,18 @@
+package com.redhat.emergency.response.repository;
+
+import com.redhat.emergency.response.model.Mission;
+
+/**
+ * A mission together with the version of the remote cache entry it was read from.
+ */
+class VersionedMission {
+
+    final Mission mission;
+
+    final long version;
+
+    VersionedMission(Mission mission, long version) {
+        this.mission = mission;
+        this.version = version;
+    }
+}
@@ -0,0 +1,106 @@
+package com.redhat.emergency.response.rest;
+
+import com.redhat.emergency.response.model.Mission;
+import io.vertx.core.Context;
+import io.vertx.core.http.HttpServerResponse;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes a stream of missions to a chunked HTTP response, one mission per chunk, either as a JSON array or as
+ * newline-delimited JSON. Missions are requested one at a time, once the previous mission is written and the write queue
+ * of the response is not full, so that a slow client does not cause the missions to pile up in memory. The signals of
+ * the stream are handled on the context of the request, as the response is not thread safe.
+ */
+class MissionStreamWriter implements Subscriber<Mission> {
+
+    static final String NDJSON = "application/x-ndjson";
+
+    private static final Logger log = LoggerFactory.getLogger(MissionStreamWriter.class);
+
+    private final Context context;
+
+    private final HttpServerResponse response;
+
+    private final boolean ndjson;
+
+    private Subscription subscription;
+
+    private boolean started;
+
+    private boolean first = true;
+
+    MissionStreamWriter(Context context, HttpServerResponse response, boolean ndjson) {
+        this.context = context;
+        this.response = response;
+        this.ndjson = ndjson;
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        context.runOnContext(v -> {
+            this.subscription = subscription;
+            response.closeHandler(c -> subscription.cancel());
+            subscription.request(1);
+        });
+    }
+
+    @Override
+    public void onNext(Mission mission) {
+        context.runOnContext(v -> write(mission));
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        context.runOnContext(v -> {
+            log.error("Error when streaming missions", t);
+            if (started) {
+                // the status is already sent, the client sees a truncated response
+                response.close();
+            } else {
+                response.setStatusCode(500).end();
+            }
+        });
+    }
+
+    @Override
+    public void onComplete() {
+        context.runOnContext(v -> {
+            start();
+            response.end(ndjson ? "" : "]");
+        });
+    }
+
+    private void write(Mission mission) {
+        start();
+        String json = mission.toJson();
+        if (ndjson) {
+            response.write(json + "\n");
+        } else {
+            response.write(first ? json : "," + json);
+        }
+        first = false;
+        // the next mission is requested either now or once the queue is drained, never both
+        if (response.writeQueueFull()) {
+            response.drainHandler(d -> {
+                response.drainHandler(null);
+                subscription.request(1);
+            });
+        } else {
+            subscription.request(1);
+        }
+    }
+
+    private void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        response.setChunked(true).putHeader("Content-Type", ndjson ? NDJSON : "application/json").setStatusCode(200);
+        if (!ndjson) {
+            response.write("[");
+        }
+    }
+}
@@ -1,24 +1,113 @@
 package com.redhat.emergency.response.rest;
 
+import java.util.Optional;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 
+import com.redhat.emergency.response.map.RoutePlanner;
+import com.redhat.emergency.response.model.MissionStatus;
 import com.redhat.emergency.response.repository.MissionRepository;
+import com.redhat.emergency.response.sink.MissionBroadcaster;
 import io.quarkus.vertx.web.Route;
 import io.quarkus.vertx.web.RoutingExchange;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Context;
 import io.vertx.core.http.HttpMethod;
-import io.vertx.core.json.Json;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 @ApplicationScoped
 public class RestApi {
 
+    static final String NEXT_CURSOR = "X-Next-Cursor";
+
     @Inject
     MissionRepository repository;
 
-    @Route(path = "/api/missions", methods = HttpMethod.GET, produces = "application/json")
+    @Inject
+    MissionBroadcaster broadcaster;
+
+    @Inject
+    RoutePlanner routePlanner;
+
+    @ConfigProperty(name = "mission.api.page-size.default", defaultValue = "100")
+    int defaultPageSize;
+
+    @ConfigProperty(name = "mission.api.page-size.max", defaultValue = "1000")
+    int maxPageSize;
+
+    /**
+     * Returns all the missions, or a page of missions when one of the <code>limit</code>, <code>cursor</code>,
+     * <code>status</code> or <code>incidentId</code> query parameters is set. The cursor of the next page, if any, is
+     * returned in the <code>X-Next-Cursor</code> header.
+     * The missions are streamed as a JSON array, or as newline-delimited JSON when the client accepts
+     * <code>application/x-ndjson</code>.
+     */
+    @Route(path = "/api/missions", methods = HttpMethod.GET, produces = {"application/json", MissionStreamWriter.NDJSON})
     void allMissions(RoutingExchange ex) {
-        repository.getAll().subscribe().with(missions -> ex.response().putHeader("Content-Type", "application/json")
-                .setStatusCode(200).end(Json.encode(missions)));
+        Optional<String> limit = ex.getParam("limit");
+        Optional<String> cursor = ex.getParam("cursor");
+        Optional<String> status = ex.getParam("status");
+        Optional<String> incidentId = ex.getParam("incidentId");
+        // the missions are emitted on other threads, and written to the response on the context of the request
+        Context context = ex.context().vertx().getOrCreateContext();
+        if (limit.isPresent() || cursor.isPresent() || status.isPresent() || incidentId.isPresent()) {
+            missionPage(ex, context, limit, cursor, status, incidentId);
+            return;
+        }
+        // one mission at a time is assembled, and only once the response requests it
+        repository.stream().onItem().transformToUni(mission -> repository.assemble(mission)).concatenate()
+                .subscribe().withSubscriber(new MissionStreamWriter(context, ex.response(), isNdjson(ex)));
+    }
+
+    private void missionPage(RoutingExchange ex, Context context, Optional<String> limit, Optional<String> cursor,
+                             Optional<String> status, Optional<String> incidentId) {
+        int pageSize;
+        MissionStatus missionStatus;
+        try {
+            pageSize = limit.map(Integer::parseInt).orElse(defaultPageSize);
+            missionStatus = status.map(MissionStatus::valueOf).orElse(null);
+        } catch (IllegalArgumentException e) {
+            ex.response().setStatusCode(400).end();
+            return;
+        }
+        if (pageSize < 1 || pageSize > maxPageSize) {
+            ex.response().setStatusCode(400).end();
+            return;
+        }
+        repository.getPage(cursor.orElse(null), pageSize, missionStatus, incidentId.orElse(null))
+                .onItem().transformToUni(page -> repository.assemble(page.getMissions()).onItem().transform(missions -> page))
+                .subscribe().with(page -> {
+                    if (page.getNext() != null) {
+                        ex.response().putHeader(NEXT_CURSOR, page.getNext());
+                    }
+                    Multi.createFrom().iterable(page.getMissions()).subscribe()
+                            .withSubscriber(new MissionStreamWriter(context, ex.response(), isNdjson(ex)));
+                }, t -> context.runOnContext(v -> ex.response().setStatusCode(t instanceof IllegalArgumentException ? 400 : 500).end()));
+    }
+
+    private boolean isNdjson(RoutingExchange ex) {
+        // a client accepting any content type gets a JSON array
+        String accept = ex.request().getHeader("Accept");
+        return accept != null && accept.contains(MissionStreamWriter.NDJSON)
+                && MissionStreamWriter.NDJSON.equals(ex.context().getAcceptableContentType());
+    }
+
+    /**
+     * Server-sent events stream of the changes of all the missions.
+     */
+    @Route(path = "/api/missions/stream", methods = HttpMethod.GET, produces = "text/event-stream")
+    void missionStream(RoutingExchange ex) {
+        broadcaster.subscribe(ex.response(), null);
+    }
+
+    /**
+     * Server-sent events stream of the changes of the missions of a responder.
+     */
+    @Route(path = "/api/missions/responders/:id/stream", methods = HttpMethod.GET, produces = "text/event-stream")
+    void missionStreamByResponder(RoutingExchange ex) {
+        ex.getParam("id").ifPresentOrElse(responderId -> broadcaster.subscribe(ex.response(), responderId),
+                () -> ex.response().setStatusCode(404).end());
     }
 
     @Route(path = "/api/missions/clear", methods = HttpMethod.POST, produces = "application/json")
@@ -27,13 +116,22 @@ public class RestApi {
                 .setStatusCode(204).end());
     }
 
+    /**
+     * Empties the route cache, e.g. after road closures.
+     */
+    @Route(path = "/api/routes/clear", methods = HttpMethod.POST, produces = "application/json")
+    void clearRoutes(RoutingExchange ex) {
+        routePlanner.invalidateRoutes();
+        ex.response().setStatusCode(204).end();
+    }
+
     @Route(path = "/api/missions/responders/:id", methods = HttpMethod.GET, produces = "application/json")
     void missionByResponder(RoutingExchange ex) {
 
-        ex.getParam("id").ifPresentOrElse(responderId -> repository.getByResponderId(responderId).onItem().transform(l -> l.stream()
-                .filter(m -> m.getStatus().equalsIgnoreCase("UPDATED") || (m.getStatus().equalsIgnoreCase("CREATED"))).findFirst())
+        ex.getParam("id").ifPresentOrElse(responderId -> repository.getActiveByResponderId(responderId)
+                .onItem().transformToUni(o -> o.isPresent() ? repository.assemble(o.get()).map(Optional::of) : Uni.createFrom().item(o))
                 .subscribe().with(o -> o.ifPresentOrElse(m -> ex.response().putHeader("Content-Type", "application/json").setStatusCode(200)
-                        .end(Json.encode(m)), () -> ex.response().setStatusCode(204).end())), () -> ex.response().setStatusCode(204).end());
+                        .end(m.toJson()), () -> ex.response().setStatusCode(204).end())), () -> ex.response().setStatusCode(204).end());
     }
 
 }
@@ -1,5 +1,6 @@
 package com.redhat.emergency.response.sink;
 
+import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
@@ -9,7 +10,6 @@ import io.smallrye.mutiny.Uni;
 import io.smallrye.mutiny.operators.multi.processors.UnicastProcessor;
 import io.smallrye.reactive.messaging.ce.OutgoingCloudEventMetadata;
 import io.smallrye.reactive.messaging.kafka.KafkaRecord;
-import io.vertx.core.json.JsonObject;
 import org.eclipse.microprofile.reactive.messaging.Channel;
 import org.eclipse.microprofile.reactive.messaging.Emitter;
 import org.eclipse.microprofile.reactive.messaging.Message;
@@ -23,7 +23,7 @@ public class EventSink {
 
     @Inject
     @Channel("mission-event")
-    Emitter<String> missionEventEmitter;
+    Emitter<byte[]> missionEventEmitter;
 
     private final UnicastProcessor<String> missionProcessor = UnicastProcessor.create();
 
@@ -42,16 +42,19 @@ public class EventSink {
     public Uni<Void> missionEvent(Mission mission, String type) {
 
         return Uni.createFrom().item(() -> {
-            String payload = JsonObject.mapFrom(mission).encode();
-            log.debug("Sending message to mission-event channel. Key: " + mission.getIncidentId() + " - Message = " + payload);
+            // the mission is encoded once, and shared with the repository write, the payload is sent as is
+            byte[] payload = mission.toJsonBytes();
+            if (log.isDebugEnabled()) {
+                log.debug("Sending " + type + " to mission-event channel. Key: " + mission.getIncidentId() + " - Message = "
+                        + new String(payload, StandardCharsets.UTF_8));
+            }
             missionEventEmitter.send(toMessage(mission.getIncidentId(), payload, type));
             return null;
         });
     }
 
-    private Message<String> toMessage(String key, String payload, String messageType) {
-        log.debug(messageType + ": " + payload);
-        OutgoingCloudEventMetadata<String> cloudEventMetadata = OutgoingCloudEventMetadata.<String>builder().withType(messageType)
+    private Message<byte[]> toMessage(String key, byte[] payload, String messageType) {
+        OutgoingCloudEventMetadata<byte[]> cloudEventMetadata = OutgoingCloudEventMetadata.<byte[]>builder().withType(messageType)
                 .withTimestamp(OffsetDateTime.now().toZonedDateTime()).build();
         return KafkaRecord.of(key, payload).addMetadata(cloudEventMetadata);
     }
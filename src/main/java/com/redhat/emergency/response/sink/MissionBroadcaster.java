@@ -0,0 +1,157 @@
+package com.redhat.emergency.response.sink;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+
+import com.redhat.emergency.response.model.Mission;
+import io.quarkus.runtime.StartupEvent;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.eclipse.microprofile.metrics.annotation.Gauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pushes mission changes to the clients subscribed to the mission stream, as server-sent events.
+ * Clients subscribe to the changes of all the missions, or of the missions of one responder. Each change is encoded
+ * once and written to all the subscribed clients. A client whose response write queue is full is disconnected rather
+ * than buffered without bound; it resynchronizes when it reconnects.
+ */
+@ApplicationScoped
+public class MissionBroadcaster {
+
+    private static final Logger log = LoggerFactory.getLogger(MissionBroadcaster.class);
+
+    private static final Buffer HEARTBEAT = Buffer.buffer(":\n\n");
+
+    /**
+     * Maximum number of bytes buffered for a client before it is disconnected.
+     */
+    @ConfigProperty(name = "mission.stream.client.max-buffer-size", defaultValue = "65536")
+    int maxBufferSize;
+
+    /**
+     * Interval in milliseconds of the comments sent to keep idle connections open.
+     */
+    @ConfigProperty(name = "mission.stream.heartbeat-interval", defaultValue = "15000")
+    long heartbeatInterval;
+
+    @Inject
+    Vertx vertx;
+
+    private final Set<Client> clients = ConcurrentHashMap.newKeySet();
+
+    private final Map<String, Set<Client>> responderClients = new ConcurrentHashMap<>();
+
+    private final AtomicLong disconnectedClients = new AtomicLong();
+
+    void onStart(@Observes StartupEvent e) {
+        vertx.setPeriodic(heartbeatInterval, id -> heartbeat());
+    }
+
+    /**
+     * Subscribes a client to the mission changes.
+     *
+     * @param response the response the events are written to
+     * @param responderId only send the changes of the missions of this responder, or <code>null</code> for all the missions
+     */
+    public void subscribe(HttpServerResponse response, String responderId) {
+        response.setChunked(true).setWriteQueueMaxSize(maxBufferSize).setStatusCode(200)
+                .putHeader("Content-Type", "text/event-stream").putHeader("Cache-Control", "no-cache");
+        Client client = new Client(response, responderId);
+        if (responderId == null) {
+            clients.add(client);
+        } else {
+            responderClients.compute(responderId, (k, set) -> {
+                Set<Client> subscribed = set == null ? ConcurrentHashMap.newKeySet() : set;
+                subscribed.add(client);
+                return subscribed;
+            });
+        }
+        response.closeHandler(v -> remove(client));
+        // sends the headers, so that the client knows the stream is open
+        response.write(HEARTBEAT);
+    }
+
+    /**
+     * Sends a mission change, as an event named after the status of the mission (<code>created</code>,
+     * <code>updated</code>, <code>completed</code>). The event data is the mission document of the mission events, with
+     * its location history and route, but without the fields only stored in the repository. Never fails, so that the
+     * processing of the change is not affected.
+     */
+    public void publish(Mission mission) {
+        Set<Client> subscribed = responderClients.get(mission.getResponderId());
+        if (clients.isEmpty() && (subscribed == null || subscribed.isEmpty())) {
+            return;
+        }
+        Buffer event;
+        try {
+            String name = mission.getStatus() == null ? "updated" : mission.getStatus().toLowerCase();
+            event = Buffer.buffer("event: " + name + "\ndata: ").appendBytes(mission.toJsonBytes()).appendString("\n\n");
+        } catch (RuntimeException e) {
+            log.error("Exception encoding mission with key " + mission.getKey(), e);
+            return;
+        }
+        clients.forEach(c -> send(c, event));
+        if (subscribed != null) {
+            subscribed.forEach(c -> send(c, event));
+        }
+    }
+
+    @Gauge(name = "mission-stream-clients", absolute = true, unit = MetricUnits.NONE, description = "Clients subscribed to the mission stream")
+    public long clients() {
+        return clients.size() + responderClients.values().stream().mapToLong(Set::size).sum();
+    }
+
+    @Gauge(name = "mission-stream-disconnected-clients", absolute = true, unit = MetricUnits.NONE, description = "Mission stream clients disconnected because they did not keep up with the changes")
+    public long disconnectedClients() {
+        return disconnectedClients.get();
+    }
+
+    void heartbeat() {
+        clients.forEach(c -> send(c, HEARTBEAT));
+        responderClients.values().forEach(set -> set.forEach(c -> send(c, HEARTBEAT)));
+    }
+
+    private void send(Client client, Buffer event) {
+        if (client.response.writeQueueFull()) {
+            log.warn("Mission stream client does not keep up with the mission changes. Disconnecting.");
+            disconnectedClients.incrementAndGet();
+            remove(client);
+            client.response.close();
+            return;
+        }
+        client.response.write(event);
+    }
+
+    private void remove(Client client) {
+        if (client.responderId == null) {
+            clients.remove(client);
+        } else {
+            responderClients.computeIfPresent(client.responderId, (k, set) -> {
+                set.remove(client);
+                return set.isEmpty() ? null : set;
+            });
+        }
+    }
+
+    private static class Client {
+
+        final HttpServerResponse response;
+
+        final String responderId;
+
+        Client(HttpServerResponse response, String responderId) {
+            this.response = response;
+            this.responderId = responderId;
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.redhat.emergency.response.source;
 
 public class MessageIgnoredException extends RuntimeException {
 
+    private static final long serialVersionUID = 1L;
+
     public MessageIgnoredException() {
         super();
     }
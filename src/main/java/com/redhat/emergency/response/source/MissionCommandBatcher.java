@@ -0,0 +1,111 @@
+package com.redhat.emergency.response.source;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import io.smallrye.mutiny.Uni;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Subscriber processing the incoming messages in micro-batches: the messages received while a batch is processed make
+ * up the next batch. A single message is processed as soon as it is received, and batches form under load only.
+ * At most <code>maxBatchSize</code> messages are requested and not yet processed, and the batches are processed one at
+ * a time, in the order of the messages.
+ * The failure or completion of the stream is recorded, and reported by {@link MissionCommandHealthCheck}: the stream is
+ * not subscribed again, and the service stops consuming mission commands until it is restarted.
+ */
+class MissionCommandBatcher implements Subscriber<Message<String>> {
+
+    private static final Logger log = LoggerFactory.getLogger(MissionCommandBatcher.class);
+
+    private final int maxBatchSize;
+
+    private final Function<List<Message<String>>, Uni<Void>> processor;
+
+    private final List<Message<String>> pending = new ArrayList<>();
+
+    private boolean processing;
+
+    private volatile Subscription subscription;
+
+    private volatile boolean terminated;
+
+    private volatile Throwable failure;
+
+    MissionCommandBatcher(int maxBatchSize, Function<List<Message<String>>, Uni<Void>> processor) {
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.processor = processor;
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        subscription = s;
+        s.request(maxBatchSize);
+    }
+
+    @Override
+    public void onNext(Message<String> message) {
+        synchronized (this) {
+            pending.add(message);
+            if (processing) {
+                return;
+            }
+            processing = true;
+        }
+        processNext();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        log.error("Mission command stream failed", t);
+        failure = t;
+        terminated = true;
+    }
+
+    @Override
+    public void onComplete() {
+        log.warn("Mission command stream completed");
+        terminated = true;
+    }
+
+    /**
+     * @return <code>true</code> once the stream failed or completed: no more mission commands are received.
+     */
+    boolean terminated() {
+        return terminated;
+    }
+
+    /**
+     * @return the failure of the stream, <code>null</code> when it did not fail.
+     */
+    Throwable failure() {
+        return failure;
+    }
+
+    private void processNext() {
+        List<Message<String>> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                processing = false;
+                return;
+            }
+            batch = new ArrayList<>(pending);
+            pending.clear();
+        }
+        if (batch.size() > 1) {
+            log.debug("Processing a batch of " + batch.size() + " mission commands");
+        }
+        Uni.createFrom().deferred(() -> processor.apply(batch))
+                .onFailure().invoke(t -> log.error("Exception while processing mission commands", t))
+                .onFailure().recoverWithNull()
+                .subscribe().with(v -> {
+                    subscription.request(batch.size());
+                    processNext();
+                });
+    }
+}
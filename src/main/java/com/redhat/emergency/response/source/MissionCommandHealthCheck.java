@@ -0,0 +1,37 @@
+package com.redhat.emergency.response.source;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.HealthCheckResponseBuilder;
+import org.eclipse.microprofile.health.Readiness;
+
+/**
+ * Readiness of the consumption of the mission commands: down once the mission command stream failed or completed, as
+ * the stream is not subscribed again.
+ */
+@Readiness
+@ApplicationScoped
+public class MissionCommandHealthCheck implements HealthCheck {
+
+    static final String NAME = "mission-command";
+
+    @Inject
+    MissionCommandSource source;
+
+    @Override
+    public HealthCheckResponse call() {
+        HealthCheckResponseBuilder builder = HealthCheckResponse.named(NAME);
+        MissionCommandBatcher batcher = source.batcher();
+        if (batcher == null) {
+            return builder.down().withData("reason", "not subscribed").build();
+        }
+        if (!batcher.terminated()) {
+            return builder.up().build();
+        }
+        Throwable failure = batcher.failure();
+        return builder.down().withData("reason", failure == null ? "completed" : "failed: " + failure.getMessage()).build();
+    }
+}
@@ -1,23 +1,35 @@
 package com.redhat.emergency.response.source;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.CompletionStage;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 
 import com.redhat.emergency.response.map.RoutePlanner;
+import com.redhat.emergency.response.map.RoutePlannerUnavailableException;
+import com.redhat.emergency.response.map.RouteRequest;
 import com.redhat.emergency.response.model.Mission;
+import com.redhat.emergency.response.model.MissionCodec;
 import com.redhat.emergency.response.model.MissionStatus;
+import com.redhat.emergency.response.model.MissionStep;
 import com.redhat.emergency.response.repository.MissionRepository;
 import com.redhat.emergency.response.sink.EventSink;
+import com.redhat.emergency.response.sink.MissionBroadcaster;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
 import io.smallrye.reactive.messaging.ce.IncomingCloudEventMetadata;
 import io.smallrye.reactive.messaging.kafka.IncomingKafkaRecordMetadata;
-import io.vertx.core.json.JsonObject;
+import org.apache.kafka.common.TopicPartition;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.reactive.messaging.Acknowledgment;
 import org.eclipse.microprofile.reactive.messaging.Incoming;
 import org.eclipse.microprofile.reactive.messaging.Message;
+import org.reactivestreams.Subscriber;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,13 +50,108 @@ public class MissionCommandSource {
     @Inject
     EventSink eventSink;
 
+    @Inject
+    MissionBroadcaster broadcaster;
+
     @Inject
     MissionSourceRebalanceListener rebalanceListener;
 
+    @Inject
+    MissionRouteRefresher routeRefresher;
+
+    /**
+     * Maximum number of mission commands processed together. The routes of the missions of a batch are planned
+     * together, see {@link RoutePlanner#getDirections(List)}.
+     */
+    @ConfigProperty(name = "mission.command.batch-size", defaultValue = "20")
+    int batchSize;
+
+    private volatile MissionCommandBatcher batcher;
+
     @Incoming("mission-command")
     @Acknowledgment(Acknowledgment.Strategy.MANUAL)
-    public Uni<CompletionStage<Void>> process(Message<String> missionCommandMessage) {
+    public Subscriber<Message<String>> process() {
+        batcher = new MissionCommandBatcher(batchSize, this::process);
+        return batcher;
+    }
 
+    /**
+     * @return the batcher consuming the mission commands, <code>null</code> until the stream is subscribed.
+     */
+    MissionCommandBatcher batcher() {
+        return batcher;
+    }
+
+    /**
+     * Processes a batch of mission commands: the routes of the missions are planned together, then the messages are
+     * processed one at a time, in order. The messages of a paused partition, received before it was paused, are not
+     * processed and their routes are not planned. Once a message pauses its partition, the later messages of that
+     * partition are not processed either: they are left unacknowledged, and are consumed again when the partition
+     * resumes from the offset of that message. The messages of the other partitions are processed.
+     */
+    Uni<Void> process(List<Message<String>> missionCommandMessages) {
+        List<Message<String>> messages = new ArrayList<>(missionCommandMessages.size());
+        for (Message<String> missionCommandMessage : missionCommandMessages) {
+            TopicPartition partition = partition(missionCommandMessage);
+            if (partition != null && rebalanceListener.isPaused(partition.topic(), partition.partition())) {
+                log.debug("Partition " + partition.partition() + " is paused. Message is consumed again when it resumes");
+            } else {
+                messages.add(missionCommandMessage);
+            }
+        }
+        List<Optional<Mission>> missions = new ArrayList<>(messages.size());
+        for (Message<String> message : messages) {
+            missions.add(accept(message).flatMap(this::validate));
+        }
+        List<Uni<List<MissionStep>>> routes = routes(missions);
+        // partitions paused by a message of this batch, the batch is processed sequentially
+        Set<TopicPartition> paused = new HashSet<>();
+        return Multi.createFrom().range(0, messages.size())
+                .onItem().transformToUniAndConcatenate(i -> {
+                    TopicPartition partition = partition(messages.get(i));
+                    if (partition != null && paused.contains(partition)) {
+                        return Uni.createFrom().item(false);
+                    }
+                    return process(messages.get(i), missions.get(i), routes.get(i)).onItem().invoke(processed -> {
+                        if (!processed && partition != null) {
+                            paused.add(partition);
+                        }
+                    });
+                })
+                .collectItems().last()
+                .onItem().transform(v -> null);
+    }
+
+    /**
+     * @return the routes of the missions, <code>null</code> for the ignored messages.
+     */
+    private List<Uni<List<MissionStep>>> routes(List<Optional<Mission>> missions) {
+        List<RouteRequest> requests = new ArrayList<>(missions.size());
+        for (Optional<Mission> mission : missions) {
+            mission.ifPresent(m -> requests.add(RouteRequest.of(m.responderLocation(), m.destinationLocation(), m.incidentLocation())));
+        }
+        List<Uni<List<MissionStep>>> batch = requests.size() > 1 ? routePlanner.getDirections(requests) : null;
+        List<Uni<List<MissionStep>>> routes = new ArrayList<>(missions.size());
+        int index = 0;
+        for (Optional<Mission> mission : missions) {
+            if (mission.isEmpty()) {
+                routes.add(null);
+            } else if (batch == null) {
+                RouteRequest request = requests.get(index++);
+                routes.add(Uni.createFrom().deferred(() -> routePlanner.getDirections(request.getOrigin(), request.getDestination(), request.getWaypoint())));
+            } else {
+                routes.add(batch.get(index++));
+            }
+        }
+        return routes;
+    }
+
+    /**
+     * @return <code>false</code> when the consumer was paused on the message, <code>true</code> otherwise.
+     */
+    private Uni<Boolean> process(Message<String> missionCommandMessage, Optional<Mission> mission, Uni<List<MissionStep>> route) {
+
+        AtomicBoolean minimalRoute = new AtomicBoolean();
         return Uni.createFrom().item(missionCommandMessage)
                 .onItem().transform(mcm -> {
                     IncomingKafkaRecordMetadata<String, String> metadata = metadata(mcm);
@@ -53,31 +160,45 @@ public class MissionCommandSource {
                     }
                     return mcm;
                 })
-                .onItem().transform(mcm -> accept(missionCommandMessage))
-                .onItem().transform(o -> o.flatMap(this::validate).orElseThrow(MessageIgnoredException::new))
+                .onItem().transform(mcm -> mission.orElseThrow(MessageIgnoredException::new))
                 .onItem().transform(m -> m.status(MissionStatus.CREATED))
-                .onItem().transformToUni(this::addRoute)
+                .onItem().transformToUni(m -> addRoute(m, route, minimalRoute))
                 .onItem().transformToUni(this::addToRepositoryAsync)
+                .onItem().transformToUni(m -> minimalRoute.get() ? routeRefresher.schedule(m).map(v -> m) : Uni.createFrom().item(m))
+                .onItem().invoke(broadcaster::publish)
                 .onItem().transformToUni(this::publishMissionStartedEventAsync)
-                .onItem().transform(m -> missionCommandMessage.ack())
-                .onFailure(MessageIgnoredException.class).recoverWithItem(t -> missionCommandMessage.ack())
+                .onItem().transform(m -> ack(missionCommandMessage))
+                .onFailure(MessageIgnoredException.class).recoverWithItem(t -> ack(missionCommandMessage))
                 .onFailure().recoverWithItem(t -> {
                     log.error(t.getMessage(), t);
                     IncomingKafkaRecordMetadata<String, String> metadata = metadata(missionCommandMessage);
                     if (metadata != null) {
-                        return rebalanceListener.pause(metadata.getTopic(), metadata.getPartition(), metadata.getOffset());
+                        rebalanceListener.pause(metadata.getTopic(), metadata.getPartition(), metadata.getOffset());
+                        return false;
                     } else {
                         log.warn("Not able to extract metadata from message. Acking message");
-                        return missionCommandMessage.ack();
+                        return ack(missionCommandMessage);
                     }
                 });
     }
 
-    private Uni<Mission> addRoute(Mission mission) {
-        return routePlanner.getDirections(mission.responderLocation(), mission.destinationLocation(), mission.incidentLocation())
-                .map(missionSteps -> {
-                    mission.getSteps().addAll(missionSteps);
-                    return mission;
+    private boolean ack(Message<String> missionCommandMessage) {
+        missionCommandMessage.ack();
+        return true;
+    }
+
+    /**
+     * Adds the route to the mission. While the route planner is not available, the mission gets a minimal route rather
+     * than waiting for the route planner, and its route is refreshed later.
+     */
+    private Uni<Mission> addRoute(Mission mission, Uni<List<MissionStep>> route, AtomicBoolean minimalRoute) {
+        return route.map(mission::route)
+                .onFailure(RoutePlannerUnavailableException.class).recoverWithItem(t -> {
+                    log.warn(t.getMessage() + ". Mission for incident " + mission.getIncidentId() + " and responder "
+                            + mission.getResponderId() + " created with a minimal route");
+                    minimalRoute.set(true);
+                    return mission.route(RoutePlanner.minimalRoute(mission.responderLocation(), mission.destinationLocation(),
+                            mission.incidentLocation()));
                 });
     }
 
@@ -113,13 +234,12 @@ public class MissionCommandSource {
 
     private Optional<Mission> validate(String jsonAsString) {
         try {
-            JsonObject json = new JsonObject(jsonAsString);
-            Optional<Mission> mission = Optional.of(json.mapTo(Mission.class))
+            Optional<Mission> mission = Optional.ofNullable(MissionCodec.decodeCommand(jsonAsString))
                     .filter(m -> m.getIncidentId() != null && !(m.getIncidentId().isBlank()))
                     .filter(m -> m.getResponderId() != null && !(m.getResponderId().isBlank()))
-                    .filter(m -> m.getIncidentLat() != null && m.getIncidentLong() != null)
-                    .filter(m -> m.getResponderStartLat() != null && m.getResponderStartLong() != null)
-                    .filter(m -> m.getDestinationLat() != null && m.getDestinationLong() != null);
+                    .filter(m -> !Double.isNaN(m.getIncidentLat()) && !Double.isNaN(m.getIncidentLong()))
+                    .filter(m -> !Double.isNaN(m.getResponderStartLat()) && !Double.isNaN(m.getResponderStartLong()))
+                    .filter(m -> !Double.isNaN(m.getDestinationLat()) && !Double.isNaN(m.getDestinationLong()));
             if (mission.isEmpty()) {
                 log.warn("Missing data in Mission object. Ignoring.");
             }
@@ -130,6 +250,11 @@ public class MissionCommandSource {
         return Optional.empty();
     }
 
+    private TopicPartition partition(Message<String> missionCommandMessage) {
+        IncomingKafkaRecordMetadata<String, String> metadata = metadata(missionCommandMessage);
+        return metadata == null ? null : new TopicPartition(metadata.getTopic(), metadata.getPartition());
+    }
+
     @SuppressWarnings("unchecked")
     private IncomingKafkaRecordMetadata<String, String> metadata(Message<String> missionCommandMessage) {
         return missionCommandMessage.getMetadata(IncomingKafkaRecordMetadata.class).orElse(null);
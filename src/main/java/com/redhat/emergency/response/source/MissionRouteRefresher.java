@@ -0,0 +1,137 @@
+package com.redhat.emergency.response.source;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+
+import com.redhat.emergency.response.map.RoutePlanner;
+import com.redhat.emergency.response.model.Mission;
+import com.redhat.emergency.response.repository.MissionRepository;
+import com.redhat.emergency.response.sink.MissionBroadcaster;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.vertx.core.Vertx;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.eclipse.microprofile.metrics.annotation.Gauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replaces the minimal routes of the missions created while the route planner was not available with their full
+ * route, once the route planner is available again.
+ * The pending refreshes are recorded in the repository and loaded again when the service starts, so that they are not
+ * lost with a restart. A refresh loaded by several service instances is done more than once, with the same outcome.
+ */
+@ApplicationScoped
+public class MissionRouteRefresher {
+
+    private static final Logger log = LoggerFactory.getLogger(MissionRouteRefresher.class);
+
+    /**
+     * Interval in milliseconds between two attempts to refresh the pending routes.
+     */
+    @ConfigProperty(name = "mission.route.refresh-interval", defaultValue = "30000")
+    long refreshInterval;
+
+    @ConfigProperty(name = "infinispan.cache.create.lazy", defaultValue = "false")
+    boolean lazy;
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    RoutePlanner routePlanner;
+
+    @Inject
+    MissionRepository repository;
+
+    @Inject
+    MissionBroadcaster broadcaster;
+
+    private final Map<String, Mission> pending = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    void onStart(@Observes StartupEvent e) {
+        // like the repository, do not access the remote cache at startup when it is created lazily, e.g. in QuarkusTests
+        if (!lazy) {
+            load().runSubscriptionOn(Infrastructure.getDefaultWorkerPool()).subscribe().with(count -> {
+                if (count > 0) {
+                    log.info("Loaded " + count + " missions waiting for the refresh of their route");
+                }
+            }, t -> log.error("Exception while loading the missions waiting for the refresh of their route", t));
+        }
+        vertx.setPeriodic(refreshInterval, id -> refresh().subscribe().with(count -> {
+            if (count > 0) {
+                log.info("Refreshed the route of " + count + " missions");
+            }
+        }, t -> log.error("Exception while refreshing mission routes", t)));
+    }
+
+    /**
+     * Schedules the refresh of the route of a stored mission, and records it in the repository.
+     */
+    public Uni<Void> schedule(Mission mission) {
+        return repository.addRouteRefresh(mission.getKey()).onItem().invoke(v -> pending.put(mission.getKey(), mission));
+    }
+
+    /**
+     * Loads the refreshes recorded in the repository, e.g. before the service restarted.
+     *
+     * @return the number of loaded refreshes.
+     */
+    Uni<Integer> load() {
+        return repository.getRouteRefreshes()
+                .onItem().transformToMulti(keys -> Multi.createFrom().iterable(keys))
+                .onItem().transformToUniAndConcatenate(key -> repository.get(key).onItem().transformToUni(mission -> {
+                    if (mission.isEmpty()) {
+                        // the mission was removed in the meantime
+                        return repository.removeRouteRefresh(key).onItem().transform(v -> false);
+                    }
+                    pending.putIfAbsent(key, mission.get());
+                    return Uni.createFrom().item(true);
+                }))
+                .collectItems().asList()
+                .onItem().transform(loaded -> (int) loaded.stream().filter(b -> b).count());
+    }
+
+    @Gauge(name = "mission-routes-pending-refresh", absolute = true, unit = MetricUnits.NONE, description = "Missions with a minimal route waiting for their full route")
+    public long pendingRefreshes() {
+        return pending.size();
+    }
+
+    /**
+     * @return the number of refreshed routes. The missions whose route could not be computed are refreshed again later.
+     */
+    Uni<Integer> refresh() {
+        if (pending.isEmpty() || !routePlanner.isAvailable() || !refreshing.compareAndSet(false, true)) {
+            return Uni.createFrom().item(0);
+        }
+        return Multi.createFrom().iterable(new ArrayList<>(pending.values()))
+                .onItem().transformToUniAndConcatenate(this::refresh)
+                .collectItems().asList()
+                .onItem().transform(refreshed -> (int) refreshed.stream().filter(b -> b).count())
+                .onTermination().invoke(() -> refreshing.set(false));
+    }
+
+    private Uni<Boolean> refresh(Mission mission) {
+        return routePlanner.getDirections(mission.responderLocation(), mission.destinationLocation(), mission.incidentLocation())
+                .onItem().transformToUni(route -> repository.update(mission.getKey(), m -> m.route(route)))
+                .onItem().transformToUni(updated -> repository.removeRouteRefresh(mission.getKey()).onItem().transform(v -> {
+                    pending.remove(mission.getKey(), mission);
+                    updated.ifPresent(broadcaster::publish);
+                    return true;
+                }))
+                .onFailure().recoverWithItem(t -> {
+                    log.warn("Route of mission with key " + mission.getKey() + " not refreshed: " + t.getMessage());
+                    return false;
+                });
+    }
+}
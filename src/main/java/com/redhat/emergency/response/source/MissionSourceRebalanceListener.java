@@ -89,6 +89,17 @@ public class MissionSourceRebalanceListener implements KafkaConsumerRebalanceLis
         }
     }
 
+    /**
+     * @return <code>true</code> when the partition is paused, until it resumes from the offset of the message that
+     * paused it.
+     */
+    public boolean isPaused(String topic, int partition) {
+        synchronized (this) {
+            Pair<Long, Boolean> pair = offsets.get(new TopicPartition(topic, partition));
+            return pair != null && pair.getRight();
+        }
+    }
+
     public CompletionStage<Void> pause(String topic, int partition, long offset) {
         TopicPartition topicPartition = new TopicPartition(topic, partition);
 
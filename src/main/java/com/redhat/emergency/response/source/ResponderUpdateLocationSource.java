@@ -1,6 +1,5 @@
 package com.redhat.emergency.response.source;
 
-import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.Optional;
@@ -9,14 +8,16 @@ import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 
 import com.redhat.emergency.response.model.Mission;
+import com.redhat.emergency.response.model.MissionCodec;
 import com.redhat.emergency.response.model.MissionStatus;
 import com.redhat.emergency.response.model.ResponderLocationHistory;
 import com.redhat.emergency.response.model.ResponderLocationStatus;
+import com.redhat.emergency.response.model.ResponderLocationUpdate;
 import com.redhat.emergency.response.repository.MissionRepository;
 import com.redhat.emergency.response.sink.EventSink;
+import com.redhat.emergency.response.sink.MissionBroadcaster;
 import io.smallrye.mutiny.Uni;
 import io.smallrye.reactive.messaging.ce.IncomingCloudEventMetadata;
-import io.vertx.core.json.JsonObject;
 import org.eclipse.microprofile.reactive.messaging.Acknowledgment;
 import org.eclipse.microprofile.reactive.messaging.Incoming;
 import org.eclipse.microprofile.reactive.messaging.Message;
@@ -35,6 +36,9 @@ public class ResponderUpdateLocationSource {
     @Inject
     EventSink eventSink;
 
+    @Inject
+    MissionBroadcaster broadcaster;
+
     private static final Logger log = LoggerFactory.getLogger(ResponderUpdateLocationSource.class);
 
     @Incoming("responder-location-update")
@@ -51,31 +55,37 @@ public class ResponderUpdateLocationSource {
                 });
     }
 
-    private Uni<Void> processLocationUpdate(JsonObject locationUpdate) {
-        Uni<Optional<Mission>> mission = repository.get(getKey(locationUpdate));
-        return mission.map(m -> {
-            if (m.isPresent()) {
-                ResponderLocationHistory rlh = new ResponderLocationHistory(BigDecimal.valueOf(locationUpdate.getDouble("lat")),
-                        BigDecimal.valueOf(locationUpdate.getDouble("lon")), Instant.now().toEpochMilli());
-                m.get().getResponderLocationHistory().add(rlh);
-                return m.get();
-            } else {
-                log.warn("Mission with key = " + getKey(locationUpdate) + " could not be retrieved of could not be not found in the repository.");
-                return null;
-            }
-        })
-                .onItem().ifNotNull().transformToUni(m -> emitMissionEvent(locationUpdate.getString("status"), m))
-                .onItem().ifNotNull().transformToUni(m -> repository.add(m))
+    private Uni<Void> processLocationUpdate(ResponderLocationUpdate locationUpdate) {
+        ResponderLocationHistory rlh = locationUpdate.toLocation(Instant.now().toEpochMilli());
+        String status = locationUpdate.getStatus();
+        // the update is applied again if the mission is modified concurrently, so the events are only emitted once it succeeded
+        return repository.update(locationUpdate.getKey(), m -> updateStatus(status, m.addLocation(rlh)))
+                .onItem().transformToUni(m -> {
+                    if (m.isPresent()) {
+                        broadcaster.publish(m.get());
+                        return emitMissionEvent(status, m.get());
+                    } else {
+                        log.warn("Mission with key = " + locationUpdate.getKey() + " could not be retrieved of could not be not found in the repository.");
+                        return Uni.createFrom().<Mission>nullItem();
+                    }
+                })
                 .onItem().transformToUni(m -> Uni.createFrom().item(() -> null));
     }
 
-    private Uni<Mission> emitMissionEvent(String status, Mission mission) {
+    private Mission updateStatus(String status, Mission mission) {
         if (ResponderLocationStatus.PICKEDUP.name().equals(status)) {
             mission.status(MissionStatus.UPDATED);
-            return eventSink.missionPickedUp(mission).map(v -> mission);
         } else if (ResponderLocationStatus.DROPPED.name().equals(status)) {
             mission.status(MissionStatus.COMPLETED);
-            return eventSink.missionCompleted(mission).map(v -> mission);
+        }
+        return mission;
+    }
+
+    private Uni<Mission> emitMissionEvent(String status, Mission mission) {
+        if (ResponderLocationStatus.PICKEDUP.name().equals(status)) {
+            return repository.assemble(mission).onItem().transformToUni(eventSink::missionPickedUp).map(v -> mission);
+        } else if (ResponderLocationStatus.DROPPED.name().equals(status)) {
+            return repository.assemble(mission).onItem().transformToUni(eventSink::missionCompleted).map(v -> mission);
         } else {
             //do nothing
             return Uni.createFrom().item(mission);
@@ -83,7 +93,7 @@ public class ResponderUpdateLocationSource {
     }
 
     @SuppressWarnings({"rawtypes", "unchecked"})
-    private JsonObject getLocationUpdate(Message<String> message) {
+    private ResponderLocationUpdate getLocationUpdate(Message<String> message) {
         Optional<IncomingCloudEventMetadata> metadata = message.getMetadata(IncomingCloudEventMetadata.class);
         if (metadata.isEmpty()) {
             log.warn("Incoming message is not a CloudEvent");
@@ -101,26 +111,23 @@ public class ResponderUpdateLocationSource {
             return null;
         }
         try {
-            JsonObject json = new JsonObject(message.getPayload());
-            if (json.getString("responderId") == null || json.getString("responderId").isBlank()
-                    || json.getString("missionId") == null || json.getString("missionId").isBlank()
-                    || json.getString("incidentId") == null || json.getString("incidentId").isBlank()
-                    || json.getString("status") == null || json.getString("status").isBlank()
-                    || json.getDouble("lat") == null || json.getDouble("lon") == null
-                    || json.getBoolean("human") == null || json.getBoolean("continue") == null) {
+            ResponderLocationUpdate update = MissionCodec.decodeLocationUpdate(message.getPayload());
+            if (isBlank(update.getResponderId()) || isBlank(update.getMissionId()) || isBlank(update.getIncidentId())
+                    || isBlank(update.getStatus()) || Double.isNaN(update.getLat()) || Double.isNaN(update.getLon())
+                    || update.getHuman() == null || update.getContinue() == null) {
                 log.warn("Unexpected message structure. Message is ignored");
                 return null;
             }
-            log.debug("Processing message: " + json.toString());
-            return json;
+            log.debug("Processing message: " + message.getPayload());
+            return update;
         } catch (Exception e) {
             log.warn("Unexpected message structure. Message is ignored");
             return null;
         }
     }
 
-    private String getKey(JsonObject json) {
-        return json.getString("incidentId") + ":" + json.getString("responderId");
+    private boolean isBlank(String value) {
+        return value == null || value.isBlank();
     }
 
 }
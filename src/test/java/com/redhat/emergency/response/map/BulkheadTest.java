@@ -0,0 +1,91 @@
+package com.redhat.emergency.response.map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import io.smallrye.mutiny.subscription.Cancellable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class BulkheadTest {
+
+    private ScheduledExecutorService scheduler;
+
+    @BeforeEach
+    void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void testRejectsWithoutWait() {
+        Bulkhead bulkhead = new Bulkhead(2, 0, scheduler);
+
+        bulkhead.acquire().await().indefinitely();
+        bulkhead.acquire().await().indefinitely();
+
+        assertThrows(RoutePlannerUnavailableException.class, () -> bulkhead.acquire().await().indefinitely());
+
+        bulkhead.release();
+
+        bulkhead.acquire().await().indefinitely();
+        assertThat(bulkhead.available(), equalTo(0));
+    }
+
+    @Test
+    void testWaitsForRelease() throws Exception {
+        Bulkhead bulkhead = new Bulkhead(1, 10000, scheduler);
+        bulkhead.acquire().await().indefinitely();
+
+        CompletableFuture<Void> waiting = bulkhead.acquire().subscribeAsCompletionStage();
+
+        assertThat(waiting.isDone(), is(false));
+        assertThat(bulkhead.waiting(), equalTo(1));
+
+        bulkhead.release();
+
+        waiting.get(1, TimeUnit.SECONDS);
+        assertThat(bulkhead.waiting(), equalTo(0));
+        assertThat(bulkhead.available(), equalTo(0));
+    }
+
+    @Test
+    void testRejectsAfterMaxWait() {
+        Bulkhead bulkhead = new Bulkhead(1, 50, scheduler);
+        bulkhead.acquire().await().indefinitely();
+
+        assertThrows(RoutePlannerUnavailableException.class, () -> bulkhead.acquire().await().atMost(Duration.ofSeconds(1)));
+        assertThat(bulkhead.waiting(), equalTo(0));
+
+        // the permit released after the wait is not lost
+        bulkhead.release();
+
+        assertThat(bulkhead.available(), equalTo(1));
+    }
+
+    @Test
+    void testCancelledWaiterIsNotGranted() {
+        Bulkhead bulkhead = new Bulkhead(1, 10000, scheduler);
+        bulkhead.acquire().await().indefinitely();
+        Cancellable waiting = bulkhead.acquire().subscribe().with(v -> {});
+
+        waiting.cancel();
+        bulkhead.release();
+
+        assertThat(bulkhead.waiting(), equalTo(0));
+        assertThat(bulkhead.available(), equalTo(1));
+    }
+}
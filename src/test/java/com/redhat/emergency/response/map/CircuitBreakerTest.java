@@ -0,0 +1,91 @@
+package com.redhat.emergency.response.map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private CircuitBreaker breaker;
+
+    @BeforeEach
+    void init() {
+        breaker = new CircuitBreaker(3, 1000, now::get);
+    }
+
+    @Test
+    void testOpensAfterConsecutiveFailures() {
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+        breaker.onFailure();
+
+        assertThat(breaker.state(), equalTo(CircuitBreaker.State.CLOSED));
+        assertThat(breaker.tryAcquire(), is(true));
+
+        breaker.onFailure();
+
+        assertThat(breaker.state(), equalTo(CircuitBreaker.State.OPEN));
+        assertThat(breaker.tryAcquire(), is(false));
+        assertThat(breaker.isAvailable(), is(false));
+        assertThat(breaker.opened(), equalTo(1L));
+    }
+
+    @Test
+    void testClosesAfterSuccessfulTrial() {
+        open();
+        now.set(1000);
+
+        assertThat(breaker.isAvailable(), is(true));
+        assertThat(breaker.tryAcquire(), is(true));
+        assertThat(breaker.state(), equalTo(CircuitBreaker.State.HALF_OPEN));
+        // a single trial request at a time
+        assertThat(breaker.tryAcquire(), is(false));
+
+        breaker.onSuccess();
+
+        assertThat(breaker.state(), equalTo(CircuitBreaker.State.CLOSED));
+        assertThat(breaker.tryAcquire(), is(true));
+    }
+
+    @Test
+    void testOpensAgainAfterFailedTrial() {
+        open();
+        now.set(1000);
+        breaker.tryAcquire();
+
+        breaker.onFailure();
+
+        assertThat(breaker.state(), equalTo(CircuitBreaker.State.OPEN));
+        assertThat(breaker.tryAcquire(), is(false));
+        now.set(2000);
+        assertThat(breaker.tryAcquire(), is(true));
+        assertThat(breaker.opened(), equalTo(2L));
+    }
+
+    @Test
+    void testCancelledTrial() {
+        open();
+        now.set(1000);
+        breaker.tryAcquire();
+
+        breaker.onCancel();
+
+        assertThat(breaker.state(), equalTo(CircuitBreaker.State.HALF_OPEN));
+        assertThat(breaker.tryAcquire(), is(true));
+    }
+
+    private void open() {
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.redhat.emergency.response.map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import org.junit.jupiter.api.Test;
+
+public class LatencyTrackerTest {
+
+    @Test
+    void testPercentile() {
+        LatencyTracker tracker = new LatencyTracker(100, 10);
+        for (int i = 100; i > 0; i--) {
+            tracker.record(i);
+        }
+
+        assertThat(tracker.percentile(95), equalTo(95L));
+        assertThat(tracker.percentile(50), equalTo(50L));
+        assertThat(tracker.percentile(100), equalTo(100L));
+        assertThat(tracker.percentile(0), equalTo(1L));
+    }
+
+    @Test
+    void testNotEnoughSamples() {
+        LatencyTracker tracker = new LatencyTracker(100, 10);
+        for (int i = 0; i < 9; i++) {
+            tracker.record(i);
+        }
+
+        assertThat(tracker.percentile(95), equalTo(-1L));
+        tracker.record(9);
+        assertThat(tracker.percentile(95), equalTo(9L));
+    }
+
+    @Test
+    void testOldestSamplesAreReplaced() {
+        LatencyTracker tracker = new LatencyTracker(10, 5);
+        for (int i = 0; i < 10; i++) {
+            tracker.record(1000);
+        }
+        for (int i = 0; i < 10; i++) {
+            tracker.record(10);
+        }
+
+        assertThat(tracker.percentile(100), equalTo(10L));
+    }
+}
@@ -0,0 +1,100 @@
+package com.redhat.emergency.response.map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class RoadGraphTest {
+
+    private RoadGraph graph;
+
+    @BeforeEach
+    void init() throws IOException {
+        try (Reader reader = new InputStreamReader(Thread.currentThread().getContextClassLoader()
+                .getResourceAsStream("routing/graph.txt"), StandardCharsets.UTF_8)) {
+            graph = RoadGraph.load(reader);
+        }
+    }
+
+    @Test
+    void testLoad() {
+        assertThat(graph.size(), equalTo(8));
+        assertThat(graph.latitude(2), equalTo(34.1841));
+        assertThat(graph.longitude(2), equalTo(-77.8486));
+    }
+
+    @Test
+    void testNearest() {
+        assertThat(graph.nearest(34.18323, -77.90999), equalTo(0));
+        assertThat(graph.nearest(34.18408, -77.84856), equalTo(2));
+        assertThat(graph.nearest(34.9, -78.4), equalTo(6));
+        // far outside of the graph
+        assertThat(graph.nearest(0, 0), equalTo(2));
+    }
+
+    @Test
+    void testNearestWithinDistance() {
+        // about 100 meters from node 0
+        assertThat(graph.nearest(34.1841, -77.9100, 200), equalTo(0));
+        assertThat(graph.nearest(34.1841, -77.9100, 50), equalTo(-1));
+        assertThat(graph.nearest(0, 0, 1000), equalTo(-1));
+    }
+
+    @Test
+    void testShortestPathConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<int[]>> paths = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                paths.add(executor.submit(() -> graph.shortestPath(0, 4)));
+            }
+            for (Future<int[]> path : paths) {
+                assertThat(path.get(), equalTo(new int[]{0, 3, 4}));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testShortestPath() {
+        assertThat(graph.shortestPath(0, 2), equalTo(new int[]{0, 1, 2}));
+        assertThat(graph.shortestPath(2, 4), equalTo(new int[]{2, 3, 4}));
+        assertThat(graph.shortestPath(4, 4), equalTo(new int[]{4}));
+    }
+
+    @Test
+    void testShortestPathUnreachable() {
+        assertThat(graph.shortestPath(0, 6), nullValue());
+    }
+
+    @Test
+    void testOneWay() throws IOException {
+        RoadGraph oneWay = RoadGraph.load(new StringReader("n 34.0 -77.0\nn 34.0 -77.1\nn 34.1 -77.05\na 0 1\ne 1 2\ne 2 0\n"));
+
+        assertThat(oneWay.shortestPath(0, 1), equalTo(new int[]{0, 1}));
+        assertThat(oneWay.shortestPath(1, 0), equalTo(new int[]{1, 2, 0}));
+    }
+
+    @Test
+    void testInvalidGraph() {
+        assertThrows(IOException.class, () -> RoadGraph.load(new StringReader("n 34.0 -77.0\nx 1 2\n")));
+        assertThrows(IOException.class, () -> RoadGraph.load(new StringReader("n 34.0\n")));
+        assertThrows(IOException.class, () -> RoadGraph.load(new StringReader("n 34.0 -77.0\ne 0 1\n")));
+    }
+}
@@ -0,0 +1,104 @@
+package com.redhat.emergency.response.map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.redhat.emergency.response.map.RoutePlanner.Leg;
+import com.redhat.emergency.response.model.Location;
+import com.redhat.emergency.response.model.MissionStep;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class RouteCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private final Location waypoint = location("34.18408", "-77.84856");
+
+    private RouteCache cache;
+
+    @BeforeEach
+    void init() {
+        cache = new RouteCache(2, 1000, now::get);
+    }
+
+    @Test
+    void testGetSnapsCoordinates() {
+        List<MissionStep> route = route();
+        cache.put(location("34.18323", "-77.90999"), waypoint, Leg.TO_WAYPOINT, route);
+
+        List<MissionStep> cached = cache.get(location("34.18318", "-77.91004"), waypoint, Leg.TO_WAYPOINT);
+
+        assertThat(cached, equalTo(route));
+        assertThat(cached, not(sameInstance(route)));
+        assertThat(cache.get(location("34.18338", "-77.90999"), waypoint, Leg.TO_WAYPOINT), nullValue());
+        assertThat(cache.hits(), equalTo(1L));
+        assertThat(cache.misses(), equalTo(1L));
+    }
+
+    @Test
+    void testEntryExpires() {
+        cache.put(location("34.18323", "-77.90999"), waypoint, Leg.TO_WAYPOINT, route());
+
+        now.set(999);
+        assertThat(cache.get(location("34.18323", "-77.90999"), waypoint, Leg.TO_WAYPOINT), notNullValue());
+        now.set(1000);
+        assertThat(cache.get(location("34.18323", "-77.90999"), waypoint, Leg.TO_WAYPOINT), nullValue());
+        assertThat(cache.size(), equalTo(0));
+    }
+
+    @Test
+    void testLeastRecentlyUsedEntryIsEvicted() {
+        cache.put(location("34.1", "-77.9"), waypoint, Leg.TO_WAYPOINT, route());
+        cache.put(location("34.2", "-77.9"), waypoint, Leg.TO_WAYPOINT, route());
+        cache.get(location("34.1", "-77.9"), waypoint, Leg.TO_WAYPOINT);
+
+        cache.put(location("34.3", "-77.9"), waypoint, Leg.TO_WAYPOINT, route());
+
+        assertThat(cache.size(), equalTo(2));
+        assertThat(cache.get(location("34.1", "-77.9"), waypoint, Leg.TO_WAYPOINT), notNullValue());
+        assertThat(cache.get(location("34.2", "-77.9"), waypoint, Leg.TO_WAYPOINT), nullValue());
+    }
+
+    @Test
+    void testInvalidate() {
+        cache.put(location("34.1", "-77.9"), waypoint, Leg.TO_WAYPOINT, route());
+        cache.put(location("34.2", "-77.9"), waypoint, Leg.TO_WAYPOINT, route());
+
+        cache.invalidate(location("34.10001", "-77.9"), waypoint, Leg.TO_WAYPOINT);
+
+        assertThat(cache.get(location("34.1", "-77.9"), waypoint, Leg.TO_WAYPOINT), nullValue());
+        assertThat(cache.size(), equalTo(1));
+
+        cache.invalidateAll();
+
+        assertThat(cache.size(), equalTo(0));
+    }
+
+    @Test
+    void testLegsAreNotInterchangeable() {
+        cache.put(location("34.1", "-77.9"), waypoint, Leg.TO_WAYPOINT, route());
+
+        assertThat(cache.get(location("34.1", "-77.9"), waypoint, Leg.TO_DESTINATION), nullValue());
+    }
+
+    private List<MissionStep> route() {
+        List<MissionStep> route = new ArrayList<>();
+        route.add(MissionStep.builder(34.1832, -77.9100).build());
+        route.add(MissionStep.builder(34.1841, -77.8486).wayPoint(true).build());
+        route.add(MissionStep.builder(34.1706, -77.9490).destination(true).build());
+        return route;
+    }
+
+    private Location location(String lat, String lon) {
+        return Location.of(Double.parseDouble(lat), Double.parseDouble(lon));
+    }
+}
@@ -2,25 +2,34 @@ package com.redhat.emergency.response.map;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
 import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathMatching;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.Matchers.startsWith;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
-import java.math.BigDecimal;
 import java.nio.charset.Charset;
+import java.time.Duration;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import com.github.tomakehurst.wiremock.WireMockServer;
 import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
 import com.redhat.emergency.response.model.Location;
 import com.redhat.emergency.response.model.MissionStep;
 import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.Vertx;
 import org.apache.commons.io.IOUtils;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -28,10 +37,18 @@ import org.junit.jupiter.api.Test;
 
 public class RoutePlannerTest {
 
+    private static final String LEG_1 = "-77.90999,34.18323;-77.84856,34.18408";
+
+    private static final String LEG_2 = "-77.84856,34.18408;-77.949,34.1706";
+
+    private static final String NO_ROUTE = "{\"code\": \"NoRoute\", \"message\": \"No route found\", \"routes\": []}";
+
     RoutePlanner routePlanner;
 
     private WireMockServer mockServer;
 
+    private Vertx vertx;
+
     @BeforeEach
     void setup() {
         mockServer = new WireMockServer(WireMockConfiguration.wireMockConfig().dynamicPort());
@@ -39,24 +56,35 @@ public class RoutePlannerTest {
         routePlanner = new RoutePlanner();
         setField(routePlanner, "mapboxUrl", "http://localhost:" + mockServer.port());
         setField(routePlanner, "accessToken", "pk.replaceme");
+        setField(routePlanner, "clientMaxPoolSize", 20);
+        setField(routePlanner, "clientTimeout", Duration.ofSeconds(10));
+        setField(routePlanner, "profileFallback", RoutePlanner.SEQUENTIAL);
+        setField(routePlanner, "hedgePercentile", 95.0);
+        setField(routePlanner, "hedgeDefaultDelay", Duration.ofMillis(500));
+        setField(routePlanner, "circuitBreakerFailureThreshold", 5);
+        setField(routePlanner, "circuitBreakerDelay", Duration.ofSeconds(30));
+        setField(routePlanner, "bulkheadMaxRequests", 20);
+        setField(routePlanner, "bulkheadMaxWait", Duration.ofMillis(200));
+        setField(routePlanner, "backend", RoutePlanner.MAPBOX);
+        vertx = Vertx.vertx();
+        setField(routePlanner, "vertx", vertx);
     }
 
     @AfterEach
     void tearDown() {
+        routePlanner.close();
+        vertx.closeAndAwait();
         mockServer.stop();
     }
 
     @Test
     void testRoutePlanner() throws IOException {
 
-        String url = "/directions/v5/mapbox/driving/-77.90999,34.18323;-77.84856,34.18408;-77.949,34.1706?access_token=pk.replaceme&geometries=polyline6&overview=full&steps=true";
-        InputStream is = Thread.currentThread().getContextClassLoader().getResourceAsStream("mapbox/directions.json");
-        String json = IOUtils.toString(is, Charset.defaultCharset());
-        mockServer.stubFor(get(urlEqualTo(url))
-                .willReturn(aResponse().withStatus(200).withBody(json)));
-        Location start = Location.of(new BigDecimal("34.18323"), new BigDecimal("-77.90999"));
-        Location destination = Location.of(new BigDecimal("34.1706"), new BigDecimal("-77.949"));
-        Location waypoint = Location.of(new BigDecimal("34.18408"), new BigDecimal("-77.84856"));
+        mockServer.stubFor(get(urlEqualTo(url("driving", LEG_1))).willReturn(aResponse().withStatus(200).withBody(fixture("mapbox/directions-leg1.json"))));
+        mockServer.stubFor(get(urlEqualTo(url("driving", LEG_2))).willReturn(aResponse().withStatus(200).withBody(fixture("mapbox/directions-leg2.json"))));
+        Location start = Location.of(34.18323, -77.90999);
+        Location destination = Location.of(34.1706, -77.949);
+        Location waypoint = Location.of(34.18408, -77.84856);
         Uni<List<MissionStep>> uni = routePlanner.getDirections(start, destination, waypoint);
         List<MissionStep> steps = uni.await().indefinitely();
 
@@ -73,14 +101,15 @@ public class RoutePlannerTest {
     @Test
     void testRoutePlannerBadToken() throws IOException {
 
-        String url = "/directions/v5/mapbox/driving/-87.90999,34.18323;-87.84856,34.18408;-87.949,34.1706?access_token=pk.replaceme&geometries=polyline6&overview=full&steps=true";
-        InputStream is = Thread.currentThread().getContextClassLoader().getResourceAsStream("mapbox/directions.json");
-        String json = IOUtils.toString(is, Charset.defaultCharset());
-        mockServer.stubFor(get(urlEqualTo(url))
+        String leg1 = "-87.90999,34.18323;-87.84856,34.18408";
+        String leg2 = "-87.84856,34.18408;-87.949,34.1706";
+        mockServer.stubFor(get(urlEqualTo(url("driving", leg1)))
                 .willReturn(aResponse().withStatus(401).withBody("{\"message\": \"Not Authorized - Invalid Token\"}")));
-        Location start = Location.of(new BigDecimal("34.18323"), new BigDecimal("-87.90999"));
-        Location destination = Location.of(new BigDecimal("34.1706"), new BigDecimal("-87.949"));
-        Location waypoint = Location.of(new BigDecimal("34.18408"), new BigDecimal("-87.84856"));
+        mockServer.stubFor(get(urlEqualTo(url("driving", leg2)))
+                .willReturn(aResponse().withStatus(401).withBody("{\"message\": \"Not Authorized - Invalid Token\"}")));
+        Location start = Location.of(34.18323, -87.90999);
+        Location destination = Location.of(34.1706, -87.949);
+        Location waypoint = Location.of(34.18408, -87.84856);
 
         Uni<List<MissionStep>> uni = Uni.createFrom().voidItem().onItem()
                 .transformToUni(v -> routePlanner.getDirections(start, destination, waypoint));
@@ -97,19 +126,13 @@ public class RoutePlannerTest {
     @Test
     void testRoutePlannerNoRouteFoundForProfileDriving() throws IOException {
 
-        String urlProfileDriving = "/directions/v5/mapbox/driving/-77.90999,34.18323;-77.84856,34.18408;-77.949,34.1706?access_token=pk.replaceme&geometries=polyline6&overview=full&steps=true";
-        String urlProfileCycling = "/directions/v5/mapbox/cycling/-77.90999,34.18323;-77.84856,34.18408;-77.949,34.1706?access_token=pk.replaceme&geometries=polyline6&overview=full&steps=true";
-        InputStream is = Thread.currentThread().getContextClassLoader().getResourceAsStream("mapbox/directions.json");
-        String json = IOUtils.toString(is, Charset.defaultCharset());
-        mockServer.stubFor(get(urlEqualTo(urlProfileDriving))
-                .willReturn(aResponse().withStatus(200).withBody("{\"code\": \"NoRoute\"," +
-                        "    \"message\": \"No route found\"," +
-                        "    \"routes\": []}")));
-        mockServer.stubFor(get(urlEqualTo(urlProfileCycling))
-                .willReturn(aResponse().withStatus(200).withBody(json)));
-        Location start = Location.of(new BigDecimal("34.18323"), new BigDecimal("-77.90999"));
-        Location destination = Location.of(new BigDecimal("34.1706"), new BigDecimal("-77.949"));
-        Location waypoint = Location.of(new BigDecimal("34.18408"), new BigDecimal("-77.84856"));
+        mockServer.stubFor(get(urlEqualTo(url("driving", LEG_1))).willReturn(aResponse().withStatus(200).withBody(NO_ROUTE)));
+        mockServer.stubFor(get(urlEqualTo(url("driving", LEG_2))).willReturn(aResponse().withStatus(200).withBody(NO_ROUTE)));
+        mockServer.stubFor(get(urlEqualTo(url("cycling", LEG_1))).willReturn(aResponse().withStatus(200).withBody(fixture("mapbox/directions-leg1.json"))));
+        mockServer.stubFor(get(urlEqualTo(url("cycling", LEG_2))).willReturn(aResponse().withStatus(200).withBody(fixture("mapbox/directions-leg2.json"))));
+        Location start = Location.of(34.18323, -77.90999);
+        Location destination = Location.of(34.1706, -77.949);
+        Location waypoint = Location.of(34.18408, -77.84856);
 
         Uni<List<MissionStep>> uni = Uni.createFrom().voidItem().onItem()
                 .transformToUni(v -> routePlanner.getDirections(start, destination, waypoint));
@@ -128,21 +151,13 @@ public class RoutePlannerTest {
     @Test
     void testRoutePlannerNoRouteFound() throws IOException {
 
-        String urlProfileDriving = "/directions/v5/mapbox/driving/-77.90999,34.18323;-77.84856,34.18408;-77.949,34.1706?access_token=pk.replaceme&geometries=polyline6&overview=full&steps=true";
-        String urlProfileCycling = "/directions/v5/mapbox/cycling/-77.90999,34.18323;-77.84856,34.18408;-77.949,34.1706?access_token=pk.replaceme&geometries=polyline6&overview=full&steps=true";
-        InputStream is = Thread.currentThread().getContextClassLoader().getResourceAsStream("mapbox/directions.json");
-        String json = IOUtils.toString(is, Charset.defaultCharset());
-        mockServer.stubFor(get(urlEqualTo(urlProfileDriving))
-                .willReturn(aResponse().withStatus(200).withBody("{\"code\": \"NoRoute\"," +
-                        "    \"message\": \"No route found\"," +
-                        "    \"routes\": []}")));
-        mockServer.stubFor(get(urlEqualTo(urlProfileCycling))
-                .willReturn(aResponse().withStatus(200).withBody("{\"code\": \"NoRoute\"," +
-                        "    \"message\": \"No route found\"," +
-                        "    \"routes\": []}")));
-        Location start = Location.of(new BigDecimal("34.18323"), new BigDecimal("-77.90999"));
-        Location destination = Location.of(new BigDecimal("34.1706"), new BigDecimal("-77.949"));
-        Location waypoint = Location.of(new BigDecimal("34.18408"), new BigDecimal("-77.84856"));
+        mockServer.stubFor(get(urlEqualTo(url("driving", LEG_1))).willReturn(aResponse().withStatus(200).withBody(NO_ROUTE)));
+        mockServer.stubFor(get(urlEqualTo(url("driving", LEG_2))).willReturn(aResponse().withStatus(200).withBody(NO_ROUTE)));
+        mockServer.stubFor(get(urlEqualTo(url("cycling", LEG_1))).willReturn(aResponse().withStatus(200).withBody(NO_ROUTE)));
+        mockServer.stubFor(get(urlEqualTo(url("cycling", LEG_2))).willReturn(aResponse().withStatus(200).withBody(NO_ROUTE)));
+        Location start = Location.of(34.18323, -77.90999);
+        Location destination = Location.of(34.1706, -77.949);
+        Location waypoint = Location.of(34.18408, -77.84856);
 
         Uni<List<MissionStep>> uni = Uni.createFrom().voidItem().onItem()
                 .transformToUni(v -> routePlanner.getDirections(start, destination, waypoint));
@@ -152,16 +167,431 @@ public class RoutePlannerTest {
         assertThat(steps.size(), equalTo(3));
         assertThat(steps.get(0).isWayPoint(), is(false));
         assertThat(steps.get(0).isDestination(), is(false));
-        assertThat(steps.get(0).getLat(), equalTo(new BigDecimal("34.1832")));
-        assertThat(steps.get(0).getLon(), equalTo(new BigDecimal("-77.9100")));
+        assertThat(steps.get(0).getLat(), equalTo(34.1832));
+        assertThat(steps.get(0).getLon(), equalTo(-77.9100));
         assertThat(steps.get(1).isWayPoint(), is(true));
         assertThat(steps.get(1).isDestination(), is(false));
-        assertThat(steps.get(1).getLat(), equalTo(new BigDecimal("34.1841")));
-        assertThat(steps.get(1).getLon(), equalTo(new BigDecimal("-77.8486")));
+        assertThat(steps.get(1).getLat(), equalTo(34.1841));
+        assertThat(steps.get(1).getLon(), equalTo(-77.8486));
         assertThat(steps.get(2).isWayPoint(), is(false));
         assertThat(steps.get(2).isDestination(), is(true));
-        assertThat(steps.get(2).getLat(), equalTo(new BigDecimal("34.1706")));
-        assertThat(steps.get(2).getLon(), equalTo(new BigDecimal("-77.9490")));
+        assertThat(steps.get(2).getLat(), equalTo(34.1706));
+        assertThat(steps.get(2).getLon(), equalTo(-77.9490));
+    }
+
+    @Test
+    void testRoutePlannerNoRouteFoundForOneLeg() throws IOException {
+
+        mockServer.stubFor(get(urlEqualTo(url("driving", LEG_1))).willReturn(aResponse().withStatus(200).withBody(fixture("mapbox/directions-leg1.json"))));
+        mockServer.stubFor(get(urlEqualTo(url("driving", LEG_2))).willReturn(aResponse().withStatus(200).withBody(NO_ROUTE)));
+        mockServer.stubFor(get(urlEqualTo(url("cycling", LEG_2))).willReturn(aResponse().withStatus(200).withBody(NO_ROUTE)));
+        Location start = Location.of(34.18323, -77.90999);
+        Location destination = Location.of(34.1706, -77.949);
+        Location waypoint = Location.of(34.18408, -77.84856);
+
+        List<MissionStep> steps = routePlanner.getDirections(start, destination, waypoint).await().indefinitely();
+
+        assertThat(steps.size(), equalTo(15));
+        assertThat(steps.get(13).isWayPoint(), is(true));
+        assertThat(steps.get(14).isDestination(), is(true));
+        assertThat(steps.get(14).getLat(), equalTo(34.1706));
+        assertThat(steps.get(14).getLon(), equalTo(-77.9490));
+    }
+
+    @Test
+    void testRoutePlannerRouteCache() throws IOException {
+
+        setField(routePlanner, "routeCacheMaxEntries", 10);
+        setField(routePlanner, "routeCacheTtl", Duration.ofHours(1));
+        mockServer.stubFor(get(urlEqualTo(url("driving", LEG_1))).willReturn(aResponse().withStatus(200).withBody(fixture("mapbox/directions-leg1.json"))));
+        mockServer.stubFor(get(urlEqualTo(url("driving", LEG_2))).willReturn(aResponse().withStatus(200).withBody(fixture("mapbox/directions-leg2.json"))));
+        Location start = Location.of(34.18323, -77.90999);
+        Location destination = Location.of(34.1706, -77.949);
+        Location waypoint = Location.of(34.18408, -77.84856);
+        // same location at the precision of the mission steps
+        Location nearbyStart = Location.of(34.18321, -77.91001);
+
+        List<MissionStep> steps = routePlanner.getDirections(start, destination, waypoint).await().indefinitely();
+        List<MissionStep> cached = routePlanner.getDirections(nearbyStart, destination, waypoint).await().indefinitely();
+
+        assertThat(cached.size(), equalTo(22));
+        assertThat(cached, equalTo(steps));
+        mockServer.verify(1, getRequestedFor(urlEqualTo(url("driving", LEG_1))));
+        mockServer.verify(1, getRequestedFor(urlEqualTo(url("driving", LEG_2))));
+        assertThat(routePlanner.routeCacheHits(), equalTo(2L));
+        assertThat(routePlanner.routeCacheMisses(), equalTo(2L));
+        assertThat(routePlanner.routeCacheHitRatio(), equalTo(0.5));
+
+        routePlanner.invalidateRoute(start, destination, waypoint);
+        routePlanner.getDirections(start, destination, waypoint).await().indefinitely();
+
+        mockServer.verify(2, getRequestedFor(urlEqualTo(url("driving", LEG_1))));
+        mockServer.verify(2, getRequestedFor(urlEqualTo(url("driving", LEG_2))));
+    }
+
+    @Test
+    void testRoutePlannerLegToDestinationIsShared() throws IOException {
+
+        setField(routePlanner, "routeCacheMaxEntries", 10);
+        setField(routePlanner, "routeCacheTtl", Duration.ofHours(1));
+        String otherLeg1 = "-77.8,34.2;-77.84856,34.18408";
+        mockServer.stubFor(get(urlEqualTo(url("driving", LEG_1))).willReturn(aResponse().withStatus(200).withBody(fixture("mapbox/directions-leg1.json"))));
+        mockServer.stubFor(get(urlEqualTo(url("driving", otherLeg1))).willReturn(aResponse().withStatus(200).withBody(fixture("mapbox/directions-leg1.json"))));
+        mockServer.stubFor(get(urlEqualTo(url("driving", LEG_2))).willReturn(aResponse().withStatus(200).withBody(fixture("mapbox/directions-leg2.json"))));
+        Location start = Location.of(34.18323, -77.90999);
+        Location otherStart = Location.of(34.2, -77.8);
+        Location destination = Location.of(34.1706, -77.949);
+        Location waypoint = Location.of(34.18408, -77.84856);
+
+        routePlanner.getDirections(start, destination, waypoint).await().indefinitely();
+        List<MissionStep> steps = routePlanner.getDirections(otherStart, destination, waypoint).await().indefinitely();
+
+        assertThat(steps.size(), equalTo(22));
+        assertThat(steps.get(21).isDestination(), equalTo(true));
+        mockServer.verify(1, getRequestedFor(urlEqualTo(url("driving", otherLeg1))));
+        mockServer.verify(1, getRequestedFor(urlEqualTo(url("driving", LEG_2))));
+    }
+
+    @Test
+    void testRoutePlannerMinimalRouteNotCached() throws IOException {
+
+        setField(routePlanner, "routeCacheMaxEntries", 10);
+        setField(routePlanner, "routeCacheTtl", Duration.ofHours(1));
+        mockServer.stubFor(get(urlEqualTo(url("driving", LEG_1))).willReturn(aResponse().withStatus(200).withBody(NO_ROUTE)));
+        mockServer.stubFor(get(urlEqualTo(url("driving", LEG_2))).willReturn(aResponse().withStatus(200).withBody(NO_ROUTE)));
+        mockServer.stubFor(get(urlEqualTo(url("cycling", LEG_1))).willReturn(aResponse().withStatus(200).withBody(NO_ROUTE)));
+        mockServer.stubFor(get(urlEqualTo(url("cycling", LEG_2))).willReturn(aResponse().withStatus(200).withBody(NO_ROUTE)));
+        Location start = Location.of(34.18323, -77.90999);
+        Location destination = Location.of(34.1706, -77.949);
+        Location waypoint = Location.of(34.18408, -77.84856);
+
+        routePlanner.getDirections(start, destination, waypoint).await().indefinitely();
+        List<MissionStep> steps = routePlanner.getDirections(start, destination, waypoint).await().indefinitely();
+
+        assertThat(steps.size(), equalTo(3));
+        mockServer.verify(2, getRequestedFor(urlEqualTo(url("driving", LEG_1))));
+    }
+
+    @Test
+    void testRoutePlannerConcurrentRequestsAreCoalesced() throws IOException {
+
+        mockServer.stubFor(get(urlEqualTo(url("driving", LEG_1))).willReturn(aResponse().withStatus(200).withFixedDelay(500)
+                .withBody(fixture("mapbox/directions-leg1.json"))));
+        mockServer.stubFor(get(urlEqualTo(url("driving", LEG_2))).willReturn(aResponse().withStatus(200).withFixedDelay(500)
+                .withBody(fixture("mapbox/directions-leg2.json"))));
+        Location start = Location.of(34.18323, -77.90999);
+        Location destination = Location.of(34.1706, -77.949);
+        Location waypoint = Location.of(34.18408, -77.84856);
+        // same location at the precision of the mission steps
+        Location nearbyStart = Location.of(34.18321, -77.91001);
+
+        CompletableFuture<List<MissionStep>> first = routePlanner.getDirections(start, destination, waypoint).subscribeAsCompletionStage();
+        CompletableFuture<List<MissionStep>> second = routePlanner.getDirections(nearbyStart, destination, waypoint).subscribeAsCompletionStage();
+
+        assertThat(first.join().size(), equalTo(22));
+        assertThat(second.join(), equalTo(first.join()));
+        assertThat(second.join(), not(sameInstance(first.join())));
+        mockServer.verify(1, getRequestedFor(urlEqualTo(url("driving", LEG_1))));
+        mockServer.verify(1, getRequestedFor(urlEqualTo(url("driving", LEG_2))));
+        assertThat(routePlanner.coalescedLegs(), equalTo(2L));
+
+        // the route cache is disabled, once completed the legs are requested again
+        routePlanner.getDirections(start, destination, waypoint).await().indefinitely();
+
+        mockServer.verify(2, getRequestedFor(urlEqualTo(url("driving", LEG_1))));
+        mockServer.verify(2, getRequestedFor(urlEqualTo(url("driving", LEG_2))));
+    }
+
+    @Test
+    void testRoutePlannerBatch() throws IOException {
+
+        mockServer.stubFor(get(urlEqualTo(url("driving", LEG_1))).willReturn(aResponse().withStatus(200).withBody(fixture("mapbox/directions-leg1.json"))));
+        mockServer.stubFor(get(urlEqualTo(url("driving", LEG_2))).willReturn(aResponse().withStatus(200).withBody(fixture("mapbox/directions-leg2.json"))));
+        mockServer.stubFor(get(urlEqualTo(url("driving", "-77.9,34.2;-77.84856,34.18408"))).willReturn(aResponse().withStatus(503)));
+        setField(routePlanner, "batchConcurrency", 2);
+        Location start = Location.of(34.18323, -77.90999);
+        Location otherStart = Location.of(34.2, -77.9);
+        Location destination = Location.of(34.1706, -77.949);
+        Location waypoint = Location.of(34.18408, -77.84856);
+
+        List<Uni<List<MissionStep>>> routes = routePlanner.getDirections(List.of(RouteRequest.of(start, destination, waypoint),
+                RouteRequest.of(otherStart, destination, waypoint), RouteRequest.of(start, destination, waypoint)));
+
+        assertThat(routes.size(), equalTo(3));
+        assertThat(routes.get(0).await().indefinitely().size(), equalTo(22));
+        try {
+            routes.get(1).await().indefinitely();
+            assertThat("Not expected", false);
+        } catch (RoutePlannerException e) {
+            assertThat("Expected", true);
+        }
+        assertThat(routes.get(2).await().indefinitely().size(), equalTo(22));
+        // the batch is resolved once, and the leg to the destination is requested once
+        mockServer.verify(1, getRequestedFor(urlEqualTo(url("driving", LEG_1))));
+        mockServer.verify(1, getRequestedFor(urlEqualTo(url("driving", LEG_2))));
+        assertThat(routePlanner.coalescedLegs(), equalTo(3L));
+    }
+
+    @Test
+    void testRoutePlannerParallelProfiles() throws IOException {
+
+        setField(routePlanner, "profileFallback", RoutePlanner.PARALLEL);
+        mockServer.stubFor(get(urlEqualTo(url("driving", LEG_1))).willReturn(aResponse().withStatus(200).withFixedDelay(300).withBody(NO_ROUTE)));
+        mockServer.stubFor(get(urlEqualTo(url("cycling", LEG_1))).willReturn(aResponse().withStatus(200).withFixedDelay(300)
+                .withBody(fixture("mapbox/directions-leg1.json"))));
+        mockServer.stubFor(get(urlEqualTo(url("driving", LEG_2))).willReturn(aResponse().withStatus(200).withBody(fixture("mapbox/directions-leg2.json"))));
+        mockServer.stubFor(get(urlEqualTo(url("cycling", LEG_2))).willReturn(aResponse().withStatus(200).withFixedDelay(300).withBody(NO_ROUTE)));
+        Location start = Location.of(34.18323, -77.90999);
+        Location destination = Location.of(34.1706, -77.949);
+        Location waypoint = Location.of(34.18408, -77.84856);
+
+        long begin = System.currentTimeMillis();
+        List<MissionStep> steps = routePlanner.getDirections(start, destination, waypoint).await().indefinitely();
+
+        // sequential requests would take at least 600 ms
+        assertThat(System.currentTimeMillis() - begin < 600, is(true));
+        // the driving route is used for the second leg, even though a cycling route is requested
+        assertThat(steps.size(), equalTo(22));
+        assertThat(steps.get(21).isDestination(), is(true));
+        mockServer.verify(1, getRequestedFor(urlEqualTo(url("cycling", LEG_1))));
+        mockServer.verify(1, getRequestedFor(urlEqualTo(url("cycling", LEG_2))));
+    }
+
+    @Test
+    void testRoutePlannerHedgedProfiles() throws IOException {
+
+        // opens the connections of the client first, so that the hedge delay is not spent connecting
+        mockServer.stubFor(get(urlPathMatching("/directions/v5/mapbox/driving/-78\\..*")).willReturn(aResponse().withStatus(200).withBody(fixture("mapbox/directions-leg1.json"))));
+        routePlanner.getDirections(Location.of(34.0, -78.1), Location.of(34.0, -78.3), Location.of(34.0, -78.2)).await().indefinitely();
+        setField(routePlanner, "profileFallback", RoutePlanner.HEDGED);
+        setField(routePlanner, "hedgeDefaultDelay", Duration.ofMillis(100));
+        mockServer.stubFor(get(urlEqualTo(url("driving", LEG_1))).willReturn(aResponse().withStatus(200).withFixedDelay(500).withBody(NO_ROUTE)));
+        mockServer.stubFor(get(urlEqualTo(url("cycling", LEG_1))).willReturn(aResponse().withStatus(200).withBody(fixture("mapbox/directions-leg1.json"))));
+        mockServer.stubFor(get(urlEqualTo(url("driving", LEG_2))).willReturn(aResponse().withStatus(200).withBody(fixture("mapbox/directions-leg2.json"))));
+        mockServer.stubFor(get(urlEqualTo(url("cycling", LEG_2))).willReturn(aResponse().withStatus(200).withBody(NO_ROUTE)));
+        Location start = Location.of(34.18323, -77.90999);
+        Location destination = Location.of(34.1706, -77.949);
+        Location waypoint = Location.of(34.18408, -77.84856);
+
+        List<MissionStep> steps = routePlanner.getDirections(start, destination, waypoint).await().indefinitely();
+
+        assertThat(steps.size(), equalTo(22));
+        // only the slow driving request is hedged
+        mockServer.verify(1, getRequestedFor(urlEqualTo(url("cycling", LEG_1))));
+        mockServer.verify(0, getRequestedFor(urlEqualTo(url("cycling", LEG_2))));
+        assertThat(routePlanner.hedgedRequests(), equalTo(1L));
+    }
+
+    @Test
+    void testRoutePlannerCircuitBreakerOpens() throws IOException {
+
+        setField(routePlanner, "circuitBreakerFailureThreshold", 1);
+        // both legs are requested before the first failure opens the circuit
+        mockServer.stubFor(get(urlEqualTo(url("driving", LEG_1))).willReturn(aResponse().withStatus(503).withFixedDelay(200)));
+        mockServer.stubFor(get(urlEqualTo(url("driving", LEG_2))).willReturn(aResponse().withStatus(503).withFixedDelay(200)));
+        Location start = Location.of(34.18323, -77.90999);
+        Location destination = Location.of(34.1706, -77.949);
+        Location waypoint = Location.of(34.18408, -77.84856);
+
+        try {
+            routePlanner.getDirections(start, destination, waypoint).await().indefinitely();
+            assertThat("Not expected", false);
+        } catch (RoutePlannerException e) {
+            assertThat(e instanceof RoutePlannerUnavailableException, is(false));
+        }
+        assertThat(routePlanner.isAvailable(), is(false));
+
+        try {
+            routePlanner.getDirections(start, destination, waypoint).await().indefinitely();
+            assertThat("Not expected", false);
+        } catch (RoutePlannerUnavailableException e) {
+            assertThat("Expected", true);
+        }
+        mockServer.verify(1, getRequestedFor(urlEqualTo(url("driving", LEG_1))));
+        mockServer.verify(1, getRequestedFor(urlEqualTo(url("driving", LEG_2))));
+        assertThat(routePlanner.rejectedRequests(), greaterThan(0L));
+        assertThat(routePlanner.circuitBreakerOpened(), equalTo(1L));
+    }
+
+    @Test
+    void testRoutePlannerClientErrorDoesNotOpenCircuitBreaker() throws IOException {
+
+        setField(routePlanner, "circuitBreakerFailureThreshold", 1);
+        String leg1 = "-87.90999,34.18323;-87.84856,34.18408";
+        String leg2 = "-87.84856,34.18408;-87.949,34.1706";
+        mockServer.stubFor(get(urlEqualTo(url("driving", leg1)))
+                .willReturn(aResponse().withStatus(422).withBody("{\"message\": \"Invalid coordinates\"}")));
+        mockServer.stubFor(get(urlEqualTo(url("driving", leg2)))
+                .willReturn(aResponse().withStatus(422).withBody("{\"message\": \"Invalid coordinates\"}")));
+        mockServer.stubFor(get(urlEqualTo(url("driving", LEG_1))).willReturn(aResponse().withStatus(200).withBody(fixture("mapbox/directions-leg1.json"))));
+        mockServer.stubFor(get(urlEqualTo(url("driving", LEG_2))).willReturn(aResponse().withStatus(200).withBody(fixture("mapbox/directions-leg2.json"))));
+
+        try {
+            routePlanner.getDirections(Location.of(34.18323, -87.90999), Location.of(34.1706, -87.949),
+                    Location.of(34.18408, -87.84856)).await().indefinitely();
+            assertThat("Not expected", false);
+        } catch (RoutePlannerException e) {
+            assertThat(e instanceof RoutePlannerUnavailableException, is(false));
+        }
+        // the MapBox API answered, the error is in the request
+        assertThat(routePlanner.isAvailable(), is(true));
+
+        List<MissionStep> steps = routePlanner.getDirections(Location.of(34.18323, -77.90999), Location.of(34.1706, -77.949),
+                Location.of(34.18408, -77.84856)).await().indefinitely();
+
+        assertThat(steps.size(), equalTo(22));
+        assertThat(routePlanner.circuitBreakerOpened(), equalTo(0L));
+        assertThat(routePlanner.rejectedRequests(), equalTo(0L));
+    }
+
+    @Test
+    void testRoutePlannerBulkhead() throws IOException {
+
+        setField(routePlanner, "bulkheadMaxRequests", 1);
+        setField(routePlanner, "bulkheadMaxWait", Duration.ofMillis(50));
+        mockServer.stubFor(get(urlEqualTo(url("driving", LEG_1))).willReturn(aResponse().withStatus(200).withFixedDelay(300)
+                .withBody(fixture("mapbox/directions-leg1.json"))));
+        mockServer.stubFor(get(urlEqualTo(url("driving", LEG_2))).willReturn(aResponse().withStatus(200).withFixedDelay(300)
+                .withBody(fixture("mapbox/directions-leg2.json"))));
+        Location start = Location.of(34.18323, -77.90999);
+        Location destination = Location.of(34.1706, -77.949);
+        Location waypoint = Location.of(34.18408, -77.84856);
+
+        try {
+            routePlanner.getDirections(start, destination, waypoint).await().indefinitely();
+            assertThat("Not expected", false);
+        } catch (RoutePlannerUnavailableException e) {
+            assertThat("Expected", true);
+        }
+        assertThat(routePlanner.rejectedRequests(), equalTo(1L));
+        // rejected requests do not open the circuit breaker
+        assertThat(routePlanner.isAvailable(), is(true));
+    }
+
+    @Test
+    void testRoutePlannerBulkheadWait() throws IOException {
+
+        setField(routePlanner, "bulkheadMaxRequests", 1);
+        setField(routePlanner, "bulkheadMaxWait", Duration.ofSeconds(5));
+        setField(routePlanner, "profileFallback", RoutePlanner.PARALLEL);
+        mockServer.stubFor(get(urlEqualTo(url("driving", LEG_1))).willReturn(aResponse().withStatus(200).withFixedDelay(300)
+                .withBody(fixture("mapbox/directions-leg1.json"))));
+        mockServer.stubFor(get(urlEqualTo(url("driving", LEG_2))).willReturn(aResponse().withStatus(200).withFixedDelay(300)
+                .withBody(fixture("mapbox/directions-leg2.json"))));
+        mockServer.stubFor(get(urlEqualTo(url("cycling", LEG_1))).willReturn(aResponse().withStatus(200).withFixedDelay(300)
+                .withBody(fixture("mapbox/directions-leg1.json"))));
+        mockServer.stubFor(get(urlEqualTo(url("cycling", LEG_2))).willReturn(aResponse().withStatus(200).withFixedDelay(300)
+                .withBody(fixture("mapbox/directions-leg2.json"))));
+        Location start = Location.of(34.18323, -77.90999);
+        Location destination = Location.of(34.1706, -77.949);
+        Location waypoint = Location.of(34.18408, -77.84856);
+
+        List<MissionStep> steps = routePlanner.getDirections(start, destination, waypoint).await().indefinitely();
+
+        // the driving and cycling requests of a leg take one permit, the second leg waits for the first one
+        assertThat(steps.size(), greaterThan(0));
+        assertThat(routePlanner.rejectedRequests(), equalTo(0L));
+        mockServer.verify(1, getRequestedFor(urlEqualTo(url("driving", LEG_1))));
+        mockServer.verify(1, getRequestedFor(urlEqualTo(url("driving", LEG_2))));
+    }
+
+    @Test
+    void testMinimalRoute() {
+        Location start = Location.of(34.18323, -77.90999);
+        Location destination = Location.of(34.1706, -77.949);
+        Location waypoint = Location.of(34.18408, -77.84856);
+
+        List<MissionStep> steps = RoutePlanner.minimalRoute(start, destination, waypoint);
+
+        assertThat(steps.size(), equalTo(3));
+        assertThat(steps.get(0).getLat(), equalTo(34.1832));
+        assertThat(steps.get(1).isWayPoint(), is(true));
+        assertThat(steps.get(2).isDestination(), is(true));
+        assertThat(steps.get(2).getLon(), equalTo(-77.9490));
+    }
+
+    @Test
+    void testRoutePlannerOfflineBackend() {
+
+        OfflineRoutingBackend offlineRoutingBackend = new OfflineRoutingBackend();
+        setField(offlineRoutingBackend, "graphLocation", Optional.of("routing/graph.txt"));
+        setField(offlineRoutingBackend, "turnAngle", 30.0);
+        setField(offlineRoutingBackend, "maxSnapDistance", 1000.0);
+        setField(routePlanner, "offlineRoutingBackend", offlineRoutingBackend);
+        setField(routePlanner, "backend", RoutePlanner.OFFLINE);
+        Location start = Location.of(34.18323, -77.90999);
+        Location destination = Location.of(34.1706, -77.949);
+        Location waypoint = Location.of(34.18408, -77.84856);
+
+        List<MissionStep> steps = routePlanner.getDirections(start, destination, waypoint).await().indefinitely();
+
+        // the road turns at the second node of both legs, only on the first leg by more than 30 degrees
+        assertThat(steps.size(), equalTo(5));
+        assertThat(steps.get(1).getLat(), equalTo(34.1950));
+        assertThat(steps.get(1).getLon(), equalTo(-77.8800));
+        assertThat(steps.get(2).isWayPoint(), is(true));
+        assertThat(steps.get(3).getLat(), equalTo(34.1841));
+        assertThat(steps.get(4).isDestination(), is(true));
+        assertThat(steps.get(4).getLon(), equalTo(-77.9490));
+        assertThat(mockServer.getAllServeEvents().size(), equalTo(0));
+    }
+
+    @Test
+    void testRoutePlannerOfflineBackendFarFromRoads() {
+
+        OfflineRoutingBackend offlineRoutingBackend = new OfflineRoutingBackend();
+        setField(offlineRoutingBackend, "graphLocation", Optional.of("routing/graph.txt"));
+        setField(offlineRoutingBackend, "turnAngle", 30.0);
+        setField(offlineRoutingBackend, "maxSnapDistance", 1000.0);
+        setField(routePlanner, "offlineRoutingBackend", offlineRoutingBackend);
+        setField(routePlanner, "backend", RoutePlanner.OFFLINE);
+        Location start = Location.of(34.18323, -77.90999);
+        // about 5 km from the nearest node
+        Location destination = Location.of(34.1706, -78.0);
+        Location waypoint = Location.of(34.18408, -77.84856);
+
+        try {
+            routePlanner.getDirections(start, destination, waypoint).await().indefinitely();
+            assertThat("Not expected", false);
+        } catch (RoutePlannerException e) {
+            assertThat(e.getMessage(), startsWith("No road within"));
+        }
+    }
+
+    @Test
+    void testRoutePlannerOfflineBackendNoRoad() {
+
+        OfflineRoutingBackend offlineRoutingBackend = new OfflineRoutingBackend();
+        setField(offlineRoutingBackend, "graphLocation", Optional.of("routing/graph.txt"));
+        setField(offlineRoutingBackend, "turnAngle", 30.0);
+        setField(offlineRoutingBackend, "maxSnapDistance", 1000.0);
+        setField(routePlanner, "offlineRoutingBackend", offlineRoutingBackend);
+        setField(routePlanner, "backend", RoutePlanner.OFFLINE);
+        Location start = Location.of(35.0001, -78.5);
+        Location destination = Location.of(34.1706, -77.949);
+        Location waypoint = Location.of(34.18408, -77.84856);
+
+        List<MissionStep> steps = routePlanner.getDirections(start, destination, waypoint).await().indefinitely();
+
+        assertThat(steps.size(), equalTo(4));
+        assertThat(steps.get(0).getLat(), equalTo(35.0001));
+        assertThat(steps.get(1).isWayPoint(), is(true));
+        assertThat(steps.get(3).isDestination(), is(true));
+    }
+
+    @Test
+    void testCoordinates() {
+        assertThat(RoutePlanner.coordinates(Location.of(34.1706, -77.949)), equalTo("-77.949,34.1706"));
+        assertThat(RoutePlanner.coordinates(Location.of(34.18323001, -77.90000)), equalTo("-77.9,34.18323"));
+    }
+
+    private String url(String profile, String coordinates) {
+        return "/directions/v5/mapbox/" + profile + "/" + coordinates + "?access_token=pk.replaceme&geometries=polyline6&overview=full&steps=true";
+    }
+
+    private String fixture(String name) throws IOException {
+        InputStream is = Thread.currentThread().getContextClassLoader().getResourceAsStream(name);
+        return IOUtils.toString(is, Charset.defaultCharset());
     }
 
     private void setField(Object targetObject, String name, Object value) {
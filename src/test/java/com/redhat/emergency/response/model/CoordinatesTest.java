@@ -0,0 +1,109 @@
+package com.redhat.emergency.response.model;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+public class CoordinatesTest {
+
+    @Test
+    void testParse() {
+        assertThat(Coordinates.parse("40.12345"), equalTo(40123450));
+        assertThat(Coordinates.parse("-80.98765"), equalTo(-80987650));
+        assertThat(Coordinates.parse("-90"), equalTo(-90000000));
+        assertThat(Coordinates.parse("12.3456785"), equalTo(12345679));
+        assertThat(Coordinates.parse("-12.3456785"), equalTo(-12345679));
+        assertThat(Coordinates.parse("1.0E-4"), equalTo(100));
+        assertThrows(NumberFormatException.class, () -> Coordinates.parse("north"));
+        assertThrows(NumberFormatException.class, () -> Coordinates.parse("-"));
+        assertThrows(NumberFormatException.class, () -> Coordinates.parse("12345678"));
+    }
+
+    @Test
+    void testFormat() {
+        assertThat(Coordinates.format(40123450, 1), equalTo("40.12345"));
+        assertThat(Coordinates.format(-90000000, 1), equalTo("-90.0"));
+        assertThat(Coordinates.format(100, 1), equalTo("0.0001"));
+        assertThat(Coordinates.format(-77949000, 4), equalTo("-77.9490"));
+        assertThat(Coordinates.format(-77949000, 0), equalTo("-77.949"));
+        assertThat(Coordinates.format(34000000, 0), equalTo("34"));
+    }
+
+    @Test
+    void testRound() {
+        assertThat(Coordinates.round(34183230, 4), equalTo(34183200));
+        assertThat(Coordinates.round(34183250, 4), equalTo(34183300));
+        assertThat(Coordinates.round(-34183250, 4), equalTo(-34183300));
+        assertThat(Coordinates.round(Coordinates.NONE, 4), equalTo(Coordinates.NONE));
+        // rounded once from the degrees, rather than to microdegrees (34.18325) then to 4 decimals (34.1833)
+        assertThat(Coordinates.of(34.1832499, 4), equalTo(34183200));
+        assertThat(Coordinates.of(-34.1832499, 4), equalTo(-34183200));
+        assertThat(Coordinates.of(34.18325, 4), equalTo(34183300));
+        assertThat(Coordinates.of(Double.NaN, 4), equalTo(Coordinates.NONE));
+        assertThat(MissionStep.builder(34.1832499, -77.9489501).build().lat(), equalTo(34183200));
+        assertThat(MissionStep.builder(34.1832499, -77.9489501).build().lon(), equalTo(-77949000));
+    }
+
+    @Test
+    void testDegrees() {
+        assertThat(Coordinates.of(40.12345), equalTo(40123450));
+        assertThat(Coordinates.toDegrees(40123450), equalTo(40.12345));
+        assertThat(Coordinates.of((Double) null), equalTo(Coordinates.NONE));
+        assertThat(Double.isNaN(Coordinates.toDegrees(Coordinates.NONE)), is(true));
+        assertThat(Coordinates.of(-180.0), equalTo(-180000000));
+        // beyond the range of an int number of microdegrees
+        assertThrows(IllegalArgumentException.class, () -> Coordinates.of(2200.0));
+        assertThrows(IllegalArgumentException.class, () -> Coordinates.of(-2200.0));
+        assertThrows(IllegalArgumentException.class, () -> Coordinates.of(Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    void testJson() {
+        String json = "{\"id\":\"f5a9bc5e-408c-4f86-8592-6f67bb73c5fd\",\"incidentId\":\"incident123\",\"responderId\":\"responder123\","
+                + "\"responderStartLat\":40.12345,\"responderStartLong\":-80.98765,\"incidentLat\":30.0,\"incidentLong\":-70.98765,"
+                + "\"destinationLat\":50.12345,\"destinationLong\":null,"
+                + "\"lastLocation\":{\"lat\":30.78452,\"lon\":-70.85252,\"timestamp\":1593872667576},\"historySize\":1,\"status\":\"CREATED\"}";
+
+        Mission mission = MissionCodec.decodeMission(json);
+        mission.route(List.of(MissionStep.builder(Location.of(34.17055, -77.94899)).destination(true).build()));
+
+        assertThat(mission.toStoredJson(), equalTo(json.substring(0, json.length() - 1) + ",\"routeVersion\":1}"));
+        assertThat(mission.getIncidentLat(), equalTo(30.0));
+        assertThat(Double.isNaN(mission.getDestinationLong()), is(true));
+        assertThat(Json.encode(mission.getSteps()), equalTo("[{\"lat\":34.1706,\"lon\":-77.9490,\"wayPoint\":false,\"destination\":true}]"));
+        // converted to a map, e.g. for the mission events
+        JsonObject step = JsonObject.mapFrom(mission).getJsonArray("steps").getJsonObject(0);
+        assertThat(step.encode(), equalTo("{\"lat\":34.1706,\"lon\":-77.9490,\"wayPoint\":false,\"destination\":true}"));
+    }
+
+    @Test
+    void testMapFrom() {
+        Mission mission = Json.decodeValue("{\"incidentLat\":30,\"incidentLong\":-70.98765,\"destinationLat\":null}", Mission.class);
+
+        JsonObject json = JsonObject.mapFrom(mission);
+
+        // the same number as in the encoded document
+        assertThat(json.getValue("incidentLat"), instanceOf(Number.class));
+        assertThat(json.getDouble("incidentLat"), equalTo(30.0));
+        assertThat(json.getDouble("incidentLong"), equalTo(-70.98765));
+        assertThat(json.getValue("destinationLat"), equalTo(null));
+        assertThat(json.encode(), equalTo(Json.encode(mission)));
+    }
+
+    @Test
+    void testToBigDecimal() {
+        assertThat(Coordinates.toBigDecimal(40123450, 1).toString(), equalTo("40.12345"));
+        assertThat(Coordinates.toBigDecimal(-90000000, 1).toString(), equalTo("-90.0"));
+        assertThat(Coordinates.toBigDecimal(-1, 1).toString(), equalTo("-0.000001"));
+        assertThat(Coordinates.toBigDecimal(-77949000, 4).toString(), equalTo("-77.9490"));
+        assertThat(Coordinates.toBigDecimal(Coordinates.NONE, 1), equalTo(null));
+    }
+}
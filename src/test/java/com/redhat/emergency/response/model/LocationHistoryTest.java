@@ -0,0 +1,131 @@
+package com.redhat.emergency.response.model;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+public class LocationHistoryTest {
+
+    private static final String JSON = "[{\"lat\":30.12345,\"lon\":-70.98765,\"timestamp\":1593872667576},"
+            + "{\"lat\":30.23456,\"lon\":-70.87654,\"timestamp\":1593872672576},"
+            + "{\"lat\":null,\"lon\":null,\"timestamp\":0}]";
+
+    @Test
+    void testJson() {
+        LocationHistory history = Json.decodeValue(JSON, LocationHistory.class);
+
+        assertThat(history.size(), equalTo(3));
+        assertThat(history.get(1).getLat(), equalTo(30.23456));
+        assertThat(Json.encode(history), equalTo(JSON));
+        assertThat(new JsonArray(JSON).encode(), equalTo(JSON));
+        assertThat(JsonObject.mapFrom(new Holder(history)).getJsonArray("history").encode(), equalTo(JSON));
+    }
+
+    @Test
+    void testEncode() {
+        LocationHistory history = history(100);
+
+        String encoded = history.encode();
+        LocationHistory decoded = LocationHistory.decode(encoded);
+
+        assertThat(decoded.size(), equalTo(100));
+        assertThat(Json.encode(decoded), equalTo(Json.encode(history)));
+        // a few bytes per location
+        assertThat(encoded.length(), lessThan(100 * 8));
+        decoded.add(new ResponderLocationHistory(31.0, -71.0, 1593872667576L + 100 * 5000));
+        assertThat(decoded.get(100).getTimestamp(), equalTo(1593872667576L + 100 * 5000));
+    }
+
+    @Test
+    void testDecodeJson() {
+        LocationHistory history = LocationHistory.decode(JSON);
+
+        assertThat(history.size(), equalTo(3));
+        assertThat(history.get(0).getTimestamp(), equalTo(1593872667576L));
+        assertThat(LocationHistory.decode(null).size(), equalTo(0));
+    }
+
+    @Test
+    void testDecodeInvalid() {
+        String encoded = history(100).encode();
+        byte[] bytes = Base64.getDecoder().decode(encoded);
+
+        assertThrows(DecodeException.class, () -> LocationHistory.decode("not base64!"));
+        // truncated columns
+        assertThrows(DecodeException.class, () -> LocationHistory.decode(Base64.getEncoder().encodeToString(Arrays.copyOf(bytes, bytes.length - 1))));
+        assertThrows(DecodeException.class, () -> LocationHistory.decode(Base64.getEncoder().encodeToString(Arrays.copyOf(bytes, 3))));
+        // unterminated varint
+        assertThrows(DecodeException.class, () -> LocationHistory.decode(Base64.getEncoder().encodeToString(new byte[]{(byte) 0x80})));
+        // more locations than the columns hold
+        byte[] size = Arrays.copyOf(bytes, bytes.length);
+        size[0] = 101;
+        assertThrows(DecodeException.class, () -> LocationHistory.decode(Base64.getEncoder().encodeToString(size)));
+        // unexpected bytes
+        assertThrows(DecodeException.class, () -> LocationHistory.decode(Base64.getEncoder().encodeToString(Arrays.copyOf(bytes, bytes.length + 1))));
+        assertThrows(DecodeException.class, () -> LocationHistory.decode("[null]"));
+    }
+
+    @Test
+    void testGet() {
+        LocationHistory history = history(100);
+        List<ResponderLocationHistory> locations = new ArrayList<>(history);
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(history.get(i).lat(), equalTo(30000000 + i * 123));
+            assertThat(history.get(i).lon(), equalTo(-70000000 - i * 45));
+            assertThat(history.get(i).getTimestamp(), equalTo(1593872667576L + i * 5000));
+            assertThat(locations.get(i).getTimestamp(), equalTo(1593872667576L + i * 5000));
+        }
+    }
+
+    @Test
+    void testTruncate() {
+        LocationHistory history = history(100);
+
+        history.truncate(64);
+        assertThat(history.size(), equalTo(64));
+        history.add(ResponderLocationHistory.ofMicrodegrees(1, 2, 3L));
+        assertThat(history.get(63).getTimestamp(), equalTo(1593872667576L + 63 * 5000));
+        assertThat(history.get(64).lat(), equalTo(1));
+        assertThat(history.get(64).lon(), equalTo(2));
+        assertThat(history.get(64).getTimestamp(), equalTo(3L));
+        assertThat(LocationHistory.decode(history.encode()).get(64).getTimestamp(), equalTo(3L));
+
+        history.truncate(0);
+        assertThat(history.size(), equalTo(0));
+        assertThat(LocationHistory.decode(history.encode()).size(), equalTo(0));
+    }
+
+    private LocationHistory history(int size) {
+        LocationHistory history = new LocationHistory();
+        for (int i = 0; i < size; i++) {
+            history.add(ResponderLocationHistory.ofMicrodegrees(30000000 + i * 123, -70000000 - i * 45, 1593872667576L + i * 5000));
+        }
+        return history;
+    }
+
+    public static class Holder {
+
+        private final LocationHistory history;
+
+        Holder(LocationHistory history) {
+            this.history = history;
+        }
+
+        public LocationHistory getHistory() {
+            return history;
+        }
+    }
+}
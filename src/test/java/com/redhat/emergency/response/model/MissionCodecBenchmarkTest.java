@@ -0,0 +1,93 @@
+package com.redhat.emergency.response.model;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Compares the throughput of {@link MissionCodec} with the reflective Jackson data binding it replaces, on the
+ * conversions of the mission command, location update, repository and mission event paths. Only run on demand:
+ * <code>mvn test -Dtest=MissionCodecBenchmarkTest -Dbenchmark=true</code>. The results are printed to the standard
+ * output, as the unit tests run without the Quarkus log handlers.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class MissionCodecBenchmarkTest {
+
+    private static final long WARMUP_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    private static final long MEASUREMENT_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final Mission mission = MissionCodecTest.mission();
+
+    private int sink;
+
+    @Test
+    void benchmarkDecodeCommand() {
+        compare("decode mission command",
+                () -> new JsonObject(MissionCodecTest.COMMAND).mapTo(Mission.class),
+                () -> MissionCodec.decodeCommand(MissionCodecTest.COMMAND));
+    }
+
+    @Test
+    void benchmarkDecodeLocationUpdate() {
+        compare("decode location update",
+                () -> new JsonObject(MissionCodecTest.LOCATION_UPDATE),
+                () -> MissionCodec.decodeLocationUpdate(MissionCodecTest.LOCATION_UPDATE));
+    }
+
+    @Test
+    void benchmarkDecodeStoredMission() {
+        compare("decode stored mission",
+                () -> Json.decodeValue(MissionCodecTest.STORED, Mission.class),
+                () -> MissionCodec.decodeMission(MissionCodecTest.STORED));
+    }
+
+    @Test
+    void benchmarkDecodeMissionEvent() {
+        compare("decode mission event",
+                () -> Json.decodeValue(MissionCodecTest.MISSION, Mission.class),
+                () -> MissionCodec.decodeMission(MissionCodecTest.MISSION));
+    }
+
+    @Test
+    void benchmarkEncodeMissionEvent() {
+        compare("encode mission event",
+                () -> Json.encode(mission),
+                () -> MissionCodec.encode(mission));
+    }
+
+    @Test
+    void benchmarkEncodeMissionEventBytes() {
+        compare("encode mission event as bytes",
+                () -> Json.encodeToBuffer(mission).getBytes(),
+                () -> MissionCodec.encodeBytes(mission));
+    }
+
+    private void compare(String name, Supplier<Object> dataBinding, Supplier<Object> codec) {
+        run(dataBinding, WARMUP_NANOS);
+        run(codec, WARMUP_NANOS);
+        double dataBindingOps = run(dataBinding, MEASUREMENT_NANOS);
+        double codecOps = run(codec, MEASUREMENT_NANOS);
+        System.out.println(String.format("%s: data binding %.0f ops/s, codec %.0f ops/s (x%.2f)", name, dataBindingOps,
+                codecOps, codecOps / dataBindingOps));
+    }
+
+    private double run(Supplier<Object> operation, long nanos) {
+        long start = System.nanoTime();
+        long end = start + nanos;
+        long count = 0;
+        long now;
+        do {
+            for (int i = 0; i < 100; i++) {
+                sink += System.identityHashCode(operation.get());
+            }
+            count += 100;
+            now = System.nanoTime();
+        } while (now < end);
+        return count * 1e9 / (now - start);
+    }
+}
@@ -0,0 +1,147 @@
+package com.redhat.emergency.response.model;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import io.vertx.core.json.DecodeException;
+import org.junit.jupiter.api.Test;
+
+public class MissionCodecTest {
+
+    static final String COMMAND = "{\"incidentId\":\"incident123\",\"responderId\":\"responder123\",\"processId\":\"5\","
+            + "\"responderStartLat\":\"40.12345\",\"responderStartLong\":-80.98765,\"incidentLat\":30,\"incidentLong\":-70.98765,"
+            + "\"destinationLat\":50.12345,\"destinationLong\":-90.98765,\"tags\":[{\"a\":1}]}";
+
+    static final String LOCATION_UPDATE = "{\"responderId\":\"responder123\",\"missionId\":\"mission123\",\"incidentId\":\"incident123\","
+            + "\"status\":\"MOVING\",\"lat\":30.12345,\"lon\":-70.98765,\"human\":false,\"continue\":true}";
+
+    static final String HISTORY = "[{\"lat\":40.12345,\"lon\":-80.98765,\"timestamp\":1593872667576},"
+            + "{\"lat\":40.2,\"lon\":-80.9,\"timestamp\":1593872672576},{\"lat\":null,\"lon\":null,\"timestamp\":0}]";
+
+    // the locations are stored with the mission until they are appended to the location history
+    static final String STORED = "{\"id\":\"f5a9bc5e-408c-4f86-8592-6f67bb73c5fd\",\"incidentId\":\"incident123\",\"responderId\":\"responder123\","
+            + "\"responderStartLat\":40.12345,\"responderStartLong\":-80.98765,\"incidentLat\":30.0,\"incidentLong\":-70.98765,"
+            + "\"destinationLat\":50.12345,\"destinationLong\":-90.98765,"
+            + "\"lastLocation\":{\"lat\":null,\"lon\":null,\"timestamp\":0},\"historySize\":3,\"newLocations\":" + HISTORY + ","
+            + "\"status\":\"CREATED\",\"routeVersion\":1}";
+
+    static final String STEPS = "[{\"lat\":40.1235,\"lon\":-80.9877,\"wayPoint\":false,\"destination\":false},"
+            + "{\"lat\":30.0000,\"lon\":-70.9877,\"wayPoint\":true,\"destination\":false},"
+            + "{\"lat\":50.1235,\"lon\":-90.9877,\"wayPoint\":false,\"destination\":true}]";
+
+    // the document of the mission events and the REST API
+    static final String MISSION = "{\"id\":\"f5a9bc5e-408c-4f86-8592-6f67bb73c5fd\",\"incidentId\":\"incident123\",\"responderId\":\"responder123\","
+            + "\"responderStartLat\":40.12345,\"responderStartLong\":-80.98765,\"incidentLat\":30.0,\"incidentLong\":-70.98765,"
+            + "\"destinationLat\":50.12345,\"destinationLong\":-90.98765,"
+            + "\"responderLocationHistory\":" + HISTORY + ",\"status\":\"CREATED\",\"steps\":" + STEPS + "}";
+
+    @Test
+    void testEncode() {
+        Mission mission = mission();
+
+        assertThat(MissionCodec.encode(mission), equalTo(MISSION));
+        assertThat(new String(MissionCodec.encodeBytes(mission), StandardCharsets.UTF_8), equalTo(MISSION));
+        assertThat(MissionCodec.encodeStored(mission), equalTo(STORED));
+        assertThat(MissionCodec.encodeSteps(mission.getSteps()), equalTo(STEPS));
+        assertThat(MissionCodec.encodeHistory(mission.getResponderLocationHistory()), equalTo(HISTORY));
+        assertThat(MissionCodec.encodeHistory(List.copyOf(mission.getResponderLocationHistory())), equalTo(HISTORY));
+    }
+
+    @Test
+    void testEncodeMissingValues() {
+        Mission mission = MissionCodec.decodeMission("{\"id\":\"mission123\",\"incidentId\":null,\"responderLocationHistory\":null,\"steps\":null}");
+
+        assertThat(MissionCodec.encode(mission), equalTo("{\"id\":\"mission123\",\"incidentId\":null,\"responderId\":null,"
+                + "\"responderStartLat\":null,\"responderStartLong\":null,\"incidentLat\":null,\"incidentLong\":null,"
+                + "\"destinationLat\":null,\"destinationLong\":null,\"responderLocationHistory\":[],\"status\":null,\"steps\":[]}"));
+    }
+
+    @Test
+    void testDecode() {
+        assertThat(MissionCodec.decodeMission(MISSION).toJson(), equalTo(MISSION));
+        assertThat(MissionCodec.decodeMission(STORED).toStoredJson(), equalTo(STORED));
+        assertThat(MissionCodec.decodeMission(STORED).newLocations(), equalTo(mission().newLocations()));
+        assertThat(MissionCodec.decodeSteps(STEPS), equalTo(mission().getSteps()));
+        assertThat(MissionCodec.encodeHistory(MissionCodec.decodeHistory(HISTORY)), equalTo(HISTORY));
+    }
+
+    @Test
+    void testDecodeCommand() {
+        Mission mission = MissionCodec.decodeCommand(COMMAND);
+
+        assertThat(mission.getId().length(), equalTo(36));
+        assertThat(mission.getIncidentId(), equalTo("incident123"));
+        assertThat(mission.getResponderStartLat(), equalTo(40.12345));
+        assertThat(mission.getIncidentLat(), equalTo(30.0));
+        assertThat(mission.toStoredJson(), equalTo("{\"id\":\"" + mission.getId() + "\",\"incidentId\":\"incident123\","
+                + "\"responderId\":\"responder123\",\"responderStartLat\":40.12345,\"responderStartLong\":-80.98765,"
+                + "\"incidentLat\":30.0,\"incidentLong\":-70.98765,\"destinationLat\":50.12345,\"destinationLong\":-90.98765,"
+                + "\"lastLocation\":null,\"historySize\":0,\"status\":null}"));
+    }
+
+    @Test
+    void testDecodeStoredMission() {
+        Mission mission = MissionCodec.decodeMission("{\"id\":\"f5a9bc5e-408c-4f86-8592-6f67bb73c5fd\",\"incidentId\":\"incident123\"}");
+
+        assertThat(mission.getId(), equalTo("f5a9bc5e-408c-4f86-8592-6f67bb73c5fd"));
+        assertThat(mission.responderLocationHistory, nullValue());
+        assertThat(mission.steps, nullValue());
+        assertThat(mission.getResponderLocationHistory(), empty());
+        assertThat(mission.getSteps(), empty());
+        // no id is generated for a stored mission
+        assertThrows(DecodeException.class, () -> MissionCodec.decodeMission(COMMAND));
+        assertThrows(DecodeException.class, () -> MissionCodec.decodeMission("{\"id\":null,\"incidentId\":\"incident123\"}"));
+    }
+
+    @Test
+    void testDecodeInvalid() {
+        assertThrows(DecodeException.class, () -> MissionCodec.decodeMission("{\"incidentId\":\"incident123\""));
+        assertThrows(DecodeException.class, () -> MissionCodec.decodeMission("{\"incidentLat\":\"north\"}"));
+        assertThrows(DecodeException.class, () -> MissionCodec.decodeMission("{\"incidentId\":{}}"));
+        assertThrows(DecodeException.class, () -> MissionCodec.decodeMission("[]"));
+        assertThrows(DecodeException.class, () -> MissionCodec.decodeMission(""));
+        assertThrows(DecodeException.class, () -> MissionCodec.decodeMission("{\"id\":\"mission123\",\"responderLocationHistory\":[null]}"));
+        assertThrows(DecodeException.class, () -> MissionCodec.decodeHistory("[{\"lat\":30.1,\"lon\":-70.1,\"timestamp\":0},null]"));
+    }
+
+    @Test
+    void testDecodeLocationUpdate() {
+        ResponderLocationUpdate update = MissionCodec.decodeLocationUpdate(LOCATION_UPDATE);
+
+        assertThat(update.getResponderId(), equalTo("responder123"));
+        assertThat(update.getMissionId(), equalTo("mission123"));
+        assertThat(update.getStatus(), equalTo("MOVING"));
+        assertThat(update.getLat(), equalTo(30.12345));
+        assertThat(update.getLon(), equalTo(-70.98765));
+        assertThat(update.getHuman(), is(false));
+        assertThat(update.getContinue(), is(true));
+        assertThat(update.getKey(), equalTo("incident123:responder123"));
+
+        ResponderLocationUpdate missing = MissionCodec.decodeLocationUpdate("{\"responderId\":\"responder123\",\"human\":null}");
+        assertThat(missing.getIncidentId(), nullValue());
+        assertThat(Double.isNaN(missing.getLat()), is(true));
+        assertThat(missing.getHuman(), nullValue());
+        assertThrows(DecodeException.class, () -> MissionCodec.decodeLocationUpdate("{\"human\":\"yes\"}"));
+    }
+
+    static Mission mission() {
+        Mission mission = MissionCodec.decodeCommand(COMMAND);
+        mission.id = "f5a9bc5e-408c-4f86-8592-6f67bb73c5fd";
+        mission.status(MissionStatus.CREATED);
+        mission.addLocation(new ResponderLocationHistory(40.12345, -80.98765, 1593872667576L));
+        mission.addLocation(new ResponderLocationHistory(40.2, -80.9, 1593872672576L));
+        mission.addLocation(ResponderLocationHistory.ofMicrodegrees(Coordinates.NONE, Coordinates.NONE, 0L));
+        mission.route(List.of(
+                MissionStep.builder(Location.of(40.12345, -80.98765)).build(),
+                MissionStep.builder(Location.of(30.0, -70.98765)).wayPoint(true).build(),
+                MissionStep.builder(Location.of(50.12345, -90.98765)).destination(true).build()));
+        return mission;
+    }
+}
@@ -0,0 +1,91 @@
+package com.redhat.emergency.response.model;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.IOException;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.infinispan.protostream.FileDescriptorSource;
+import org.infinispan.protostream.ProtobufUtil;
+import org.infinispan.protostream.SerializationContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class MissionMarshallerTest {
+
+    SerializationContext context;
+
+    @BeforeEach
+    void init() throws IOException {
+        context = ProtobufUtil.newSerializationContext();
+        context.registerProtoFiles(FileDescriptorSource.fromResources("META-INF/mission.proto"));
+        context.registerMarshaller(new MissionMarshaller());
+        context.registerMarshaller(new MissionStepMarshaller());
+        context.registerMarshaller(new ResponderLocationHistoryMarshaller());
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+
+        JsonObject json = new JsonObject().put("id", "f5a9bc5e-408c-4f86-8592-6f67bb73c5fd").put("incidentId", "incident123")
+                .put("incidentLat", 30.12345).put("incidentLong", -70.98765)
+                .put("responderId", "responder123")
+                .put("responderStartLat", 31.12345).put("responderStartLong", -71.98765)
+                .put("destinationLat", 32.12345).put("destinationLong", -72.98765)
+                .put("status", "UPDATED").put("routeVersion", 2)
+                .put("steps", new JsonArray().add(new JsonObject().put("lat", 30.9877)
+                        .put("lon", -70.1235).put("wayPoint", true).put("destination", false)));
+        Mission mission = json.mapTo(Mission.class)
+                .addLocation(new ResponderLocationHistory(30.98765, -70.12345, 12345L));
+
+        byte[] bytes = ProtobufUtil.toWrappedByteArray(context, mission);
+        Object unmarshalled = ProtobufUtil.fromWrappedByteArray(context, bytes);
+
+        assertThat(unmarshalled, instanceOf(Mission.class));
+        Mission result = (Mission) unmarshalled;
+        assertThat(result.getId(), equalTo("f5a9bc5e-408c-4f86-8592-6f67bb73c5fd"));
+        assertThat(result.getIncidentId(), equalTo("incident123"));
+        assertThat(result.getResponderId(), equalTo("responder123"));
+        assertThat(result.getIncidentLat(), equalTo(30.12345));
+        assertThat(result.getIncidentLong(), equalTo(-70.98765));
+        assertThat(result.getResponderStartLat(), equalTo(31.12345));
+        assertThat(result.getResponderStartLong(), equalTo(-71.98765));
+        assertThat(result.getDestinationLat(), equalTo(32.12345));
+        assertThat(result.getDestinationLong(), equalTo(-72.98765));
+        assertThat(result.getStatus(), equalTo("UPDATED"));
+        // the location history is stored separately
+        assertThat(result.getResponderLocationHistory().size(), equalTo(0));
+        assertThat(result.getHistorySize(), equalTo(1));
+        assertThat(result.getLastLocation().getLat(), equalTo(30.98765));
+        assertThat(result.getLastLocation().getTimestamp(), equalTo(12345L));
+        // until it is appended to the location history
+        assertThat(result.newLocations(), equalTo(mission.newLocations()));
+        // the route is stored separately
+        assertThat(result.getSteps().size(), equalTo(0));
+        assertThat(result.getRouteVersion(), equalTo(2));
+    }
+
+    @Test
+    void testRoundTripMissingCoordinates() throws IOException {
+
+        JsonObject json = new JsonObject().put("incidentId", "incident123").put("responderId", "responder123");
+        Mission mission = json.mapTo(Mission.class);
+
+        Mission result = (Mission) ProtobufUtil.fromWrappedByteArray(context, ProtobufUtil.toWrappedByteArray(context, mission));
+
+        assertThat(result.getId(), equalTo(mission.getId()));
+        assertThat(Double.isNaN(result.getIncidentLat()), is(true));
+        assertThat(Double.isNaN(result.getResponderStartLat()), is(true));
+        assertThat(result.getResponderLocationHistory().size(), equalTo(0));
+        assertThat(result.getLastLocation(), nullValue());
+        assertThat(result.getHistorySize(), equalTo(0));
+        assertThat(result.newLocations().size(), equalTo(0));
+        assertThat(result.getSteps().size(), equalTo(0));
+        assertThat(result.getRouteVersion(), equalTo(0));
+    }
+}
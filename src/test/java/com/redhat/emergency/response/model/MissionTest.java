@@ -3,11 +3,16 @@ package com.redhat.emergency.response.model;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
-import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
-import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
 
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonObject;
 import org.junit.jupiter.api.Test;
 
@@ -30,12 +35,12 @@ public class MissionTest {
         assertThat(mission.getSteps().size(), equalTo(0));
         assertThat(mission.getIncidentId(), equalTo(jsonObject.getString("incidentId")));
         assertThat(mission.getResponderId(), equalTo(jsonObject.getString("responderId")));
-        assertThat(mission.getResponderStartLat(), equalTo(new BigDecimal(jsonObject.getString("responderStartLat"))));
-        assertThat(mission.getResponderStartLong(), equalTo(new BigDecimal(jsonObject.getString("responderStartLong"))));
-        assertThat(mission.getIncidentLat(), equalTo(new BigDecimal(jsonObject.getString("incidentLat"))));
-        assertThat(mission.getIncidentLong(), equalTo(new BigDecimal(jsonObject.getString("incidentLong"))));
-        assertThat(mission.getDestinationLat(), equalTo(new BigDecimal(jsonObject.getString("destinationLat"))));
-        assertThat(mission.getDestinationLong(), equalTo(new BigDecimal(jsonObject.getString("destinationLong"))));
+        assertThat(mission.getResponderStartLat(), equalTo(Double.parseDouble(jsonObject.getString("responderStartLat"))));
+        assertThat(mission.getResponderStartLong(), equalTo(Double.parseDouble(jsonObject.getString("responderStartLong"))));
+        assertThat(mission.getIncidentLat(), equalTo(Double.parseDouble(jsonObject.getString("incidentLat"))));
+        assertThat(mission.getIncidentLong(), equalTo(Double.parseDouble(jsonObject.getString("incidentLong"))));
+        assertThat(mission.getDestinationLat(), equalTo(Double.parseDouble(jsonObject.getString("destinationLat"))));
+        assertThat(mission.getDestinationLong(), equalTo(Double.parseDouble(jsonObject.getString("destinationLong"))));
     }
 
     @Test
@@ -54,12 +59,75 @@ public class MissionTest {
         assertThat(mission.getSteps().size(), equalTo(0));
         assertThat(mission.getIncidentId(), equalTo(jsonObject.getString("incidentId")));
         assertThat(mission.getResponderId(), equalTo(jsonObject.getString("responderId")));
-        assertThat(mission.getResponderStartLat(), nullValue());
-        assertThat(mission.getResponderStartLong(), nullValue());
-        assertThat(mission.getIncidentLat(), equalTo(new BigDecimal(jsonObject.getString("incidentLat"))));
-        assertThat(mission.getIncidentLong(), equalTo(new BigDecimal(jsonObject.getString("incidentLong"))));
-        assertThat(mission.getDestinationLat(), equalTo(new BigDecimal(jsonObject.getString("destinationLat"))));
-        assertThat(mission.getDestinationLong(), equalTo(new BigDecimal(jsonObject.getString("destinationLong"))));
+        assertThat(Double.isNaN(mission.getResponderStartLat()), is(true));
+        assertThat(Double.isNaN(mission.getResponderStartLong()), is(true));
+        assertThat(mission.getIncidentLat(), equalTo(Double.parseDouble(jsonObject.getString("incidentLat"))));
+        assertThat(mission.getIncidentLong(), equalTo(Double.parseDouble(jsonObject.getString("incidentLong"))));
+        assertThat(mission.getDestinationLat(), equalTo(Double.parseDouble(jsonObject.getString("destinationLat"))));
+        assertThat(mission.getDestinationLong(), equalTo(Double.parseDouble(jsonObject.getString("destinationLong"))));
     }
 
+
+    @Test
+    void testJsonBytes() {
+
+        JsonObject jsonObject = new JsonObject().put("incidentId", "incident1").put("responderId", "15")
+                .put("responderStartLat", 30.12345).put("responderStartLong", -70.98765)
+                .put("incidentLat", 31.98765).put("incidentLong", -71.12345)
+                .put("destinationLat", 32.85263).put("destinationLong", -72.15975)
+                .put("status", "CREATED").put("historySize", 2);
+
+        Mission mission = jsonObject.mapTo(Mission.class)
+                .addLocation(new ResponderLocationHistory(30.5, -70.5, 1L))
+                .route(List.of(MissionStep.builder(Location.of(32.85263, -72.15975)).destination(true).build()));
+
+        byte[] bytes = mission.toJsonBytes();
+
+        assertThat(new JsonObject(Buffer.buffer(bytes)), equalTo(JsonObject.mapFrom(mission)));
+        // the mission events keep their document
+        assertThat(new JsonObject(Buffer.buffer(bytes)).fieldNames(), equalTo(Set.of("id", "incidentId", "responderId",
+                "responderStartLat", "responderStartLong", "incidentLat", "incidentLong", "destinationLat", "destinationLong",
+                "responderLocationHistory", "status", "steps")));
+        assertThat(mission.toJsonBytes(), sameInstance(bytes));
+        assertThat(new JsonObject(mission.toStoredJson()).getInteger("historySize"), equalTo(3));
+        assertThat(new JsonObject(mission.toStoredJson()).getInteger("routeVersion"), equalTo(1));
+        String stored = mission.toStoredJson();
+        assertThat(mission.toStoredJson(), sameInstance(stored));
+
+        mission.status(MissionStatus.UPDATED);
+
+        assertThat(mission.toStoredJson(), not(sameInstance(stored)));
+        assertThat(new JsonObject(mission.toStoredJson()).getString("status"), equalTo("UPDATED"));
+        assertThat(new JsonObject(Buffer.buffer(mission.toJsonBytes())).getString("status"), equalTo("UPDATED"));
+
+        mission.addLocation(new ResponderLocationHistory(30.6, -70.6, 2L));
+
+        assertThat(new JsonObject(Buffer.buffer(mission.toJsonBytes())).getJsonArray("responderLocationHistory").size(), equalTo(2));
+
+        // the history and the route assembled by the repository are not part of the stored document
+        stored = mission.toStoredJson();
+        bytes = mission.toJsonBytes();
+        mission.history(new LocationHistory());
+        mission.steps(List.of());
+
+        assertThat(mission.toStoredJson(), sameInstance(stored));
+        assertThat(mission.toJsonBytes(), not(sameInstance(bytes)));
+        assertThat(new JsonObject(Buffer.buffer(mission.toJsonBytes())).getJsonArray("steps").size(), equalTo(0));
+    }
+
+    @Test
+    void testReadOnlyHistoryAndRoute() {
+
+        Mission mission = new JsonObject().put("incidentId", "incident1").put("responderId", "15").mapTo(Mission.class)
+                .addLocation(new ResponderLocationHistory(30.5, -70.5, 1L))
+                .route(List.of(MissionStep.builder(32.85263, -72.15975).destination(true).build()));
+        byte[] bytes = mission.toJsonBytes();
+
+        // the history and the route only change through the mission, which clears its encoded forms
+        assertThrows(UnsupportedOperationException.class, () -> mission.getResponderLocationHistory().add(new ResponderLocationHistory(30.6, -70.6, 2L)));
+        assertThrows(UnsupportedOperationException.class, () -> mission.getSteps().clear());
+        assertThat(mission.toJsonBytes(), sameInstance(bytes));
+        assertThat(mission.getResponderLocationHistory().size(), equalTo(1));
+        assertThat(mission.getSteps().size(), equalTo(1));
+    }
 }
@@ -0,0 +1,249 @@
+package com.redhat.emergency.response.repository;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.redhat.emergency.response.model.LocationHistory;
+import com.redhat.emergency.response.model.ResponderLocationHistory;
+import org.infinispan.client.hotrod.MetadataValue;
+import org.infinispan.client.hotrod.RemoteCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+
+public class LocationHistoryStoreTest {
+
+    private static final String LOCATION_1 = "{\"lat\":30.12345,\"lon\":-70.98765,\"timestamp\":1}";
+
+    private static final String LOCATION_2 = "{\"lat\":30.23456,\"lon\":-70.87654,\"timestamp\":2}";
+
+    private static final String LOCATION_3 = "{\"lat\":30.34567,\"lon\":-70.76543,\"timestamp\":3}";
+
+    @Mock
+    RemoteCache<String, String> cache;
+
+    LocationHistoryStore store;
+
+    @BeforeEach
+    void init() {
+        openMocks(this);
+        store = new LocationHistoryStore(cache, 2);
+        when(cache.getWithMetadataAsync(any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(cache.putIfAbsentAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testAppendRetriesOnConcurrentUpdate() {
+        MetadataValue<String> v1 = metadataValue("[" + LOCATION_1 + "]", 1L);
+        MetadataValue<String> v2 = metadataValue("[" + LOCATION_1 + "]", 2L);
+        when(cache.getWithMetadataAsync("incident1:64:0")).thenReturn(CompletableFuture.completedFuture(v1), CompletableFuture.completedFuture(v2));
+        when(cache.replaceWithVersionAsync("incident1:64:0", encoded(LOCATION_1, LOCATION_2), 1L)).thenReturn(CompletableFuture.completedFuture(false));
+        when(cache.replaceWithVersionAsync("incident1:64:0", encoded(LOCATION_1, LOCATION_2), 2L)).thenReturn(CompletableFuture.completedFuture(true));
+
+        store.append("incident1:64", 1, Collections.singletonList(location("30.23456", "-70.87654", 2L))).await().indefinitely();
+
+        verify(cache, times(2)).getWithMetadataAsync("incident1:64:0");
+        verify(cache).replaceWithVersionAsync("incident1:64:0", encoded(LOCATION_1, LOCATION_2), 2L);
+    }
+
+    @Test
+    void testAppendSkipsLocationsAlreadyWritten() {
+        MetadataValue<String> v1 = metadataValue("[" + LOCATION_1 + "," + LOCATION_2 + "]", 1L);
+        when(cache.getWithMetadataAsync("incident1:64:0")).thenReturn(CompletableFuture.completedFuture(v1));
+
+        store.append("incident1:64", 0, Arrays.asList(location("30.12345", "-70.98765", 1L), location("30.23456", "-70.87654", 2L)))
+                .await().indefinitely();
+
+        verify(cache, never()).replaceWithVersionAsync(any(), any(), anyLong());
+        verify(cache, never()).putIfAbsentAsync(any(), any());
+    }
+
+    @Test
+    void testAppendConflictWithAnotherLocation() {
+        MetadataValue<String> v1 = metadataValue("[" + LOCATION_1 + "," + LOCATION_3 + "]", 1L);
+        when(cache.getWithMetadataAsync("incident1:64:0")).thenReturn(CompletableFuture.completedFuture(v1));
+
+        assertThrows(LocationHistoryConflictException.class, () -> store.append("incident1:64", 1,
+                Collections.singletonList(location("30.23456", "-70.87654", 2L))).await().indefinitely());
+
+        verify(cache, never()).replaceWithVersionAsync(any(), any(), anyLong());
+    }
+
+    @Test
+    void testAppendConflictWithMissingLocations() {
+        MetadataValue<String> v1 = metadataValue("[" + LOCATION_1 + "]", 1L);
+        when(cache.getWithMetadataAsync("incident1:64:0")).thenReturn(CompletableFuture.completedFuture(v1));
+
+        assertThrows(LocationHistoryConflictException.class, () -> store.append("incident1:64", 2,
+                Collections.singletonList(location("30.34567", "-70.76543", 3L))).await().indefinitely());
+        // the first location of a segment is never written after a missing segment
+        assertThrows(LocationHistoryConflictException.class, () -> store.append("incident1:64", 3,
+                Collections.singletonList(location("30.34567", "-70.76543", 3L))).await().indefinitely());
+
+        verify(cache, never()).replaceWithVersionAsync(any(), any(), anyLong());
+        verify(cache, never()).putIfAbsentAsync(any(), any());
+    }
+
+    @Test
+    void testConcurrentAppendsOfTheSameLocation() {
+        List<CompletableFuture<Void>> appends = appendConcurrently(location("30.23456", "-70.87654", 2L),
+                location("30.23456", "-70.87654", 2L));
+
+        appends.forEach(CompletableFuture::join);
+
+        // the second append fails to replace the segment it read, then finds its location at its position
+        verify(cache, times(3)).getWithMetadataAsync("incident1:64:0");
+        verify(cache, times(2)).replaceWithVersionAsync("incident1:64:0", encoded(LOCATION_1, LOCATION_2), 1L);
+        verify(cache, never()).replaceWithVersionAsync(any(), any(), eq(2L));
+    }
+
+    @Test
+    void testConcurrentAppendsOfDifferentLocations() {
+        List<CompletableFuture<Void>> appends = appendConcurrently(location("30.23456", "-70.87654", 2L),
+                location("30.34567", "-70.76543", 3L));
+
+        appends.get(0).join();
+        CompletionException e = assertThrows(CompletionException.class, () -> appends.get(1).join());
+
+        assertThat(e.getCause(), instanceOf(LocationHistoryConflictException.class));
+        // the location written first is kept
+        verify(cache).replaceWithVersionAsync("incident1:64:0", encoded(LOCATION_1, LOCATION_2), 1L);
+        verify(cache, never()).replaceWithVersionAsync(any(), any(), eq(2L));
+    }
+
+    @Test
+    void testGetIgnoresLocationsBeyondSize() {
+        when(cache.getAllAsync(any())).thenReturn(CompletableFuture.completedFuture(Collections.singletonMap("incident1:64:0",
+                "[" + LOCATION_1 + "," + LOCATION_2 + "]")));
+
+        List<ResponderLocationHistory> history = store.get("incident1:64", 1).await().indefinitely();
+
+        assertThat(history.size(), equalTo(1));
+        assertThat(history.get(0).getTimestamp(), equalTo(1L));
+    }
+
+    @Test
+    void testAppendNewSegment() {
+        store.append("incident1:64", 2, Collections.singletonList(location("30.34567", "-70.76543", 3L))).await().indefinitely();
+
+        verify(cache).putIfAbsentAsync("incident1:64:1", encoded(LOCATION_3));
+    }
+
+    @Test
+    void testGetEncodedSegments() {
+        when(cache.getAllAsync(any())).thenReturn(CompletableFuture.completedFuture(Map.of("incident1:64:0",
+                encoded(LOCATION_1, LOCATION_2), "incident1:64:1", encoded(LOCATION_3))));
+
+        List<ResponderLocationHistory> history = store.get("incident1:64", 3).await().indefinitely();
+
+        assertThat(history.size(), equalTo(3));
+        assertThat(history.get(1).getLat(), equalTo(30.23456));
+        assertThat(history.get(2).getTimestamp(), equalTo(3L));
+    }
+
+    @Test
+    void testGetEmptyHistory() {
+        List<ResponderLocationHistory> history = store.get("incident1:64", 0).await().indefinitely();
+
+        assertThat(history, empty());
+        verify(cache, never()).getAllAsync(any());
+    }
+
+    @Test
+    void testGetMultipleSegments() {
+        when(cache.getAllAsync(new LinkedHashSet<>(Arrays.asList("incident1:64:0", "incident1:64:1"))))
+                .thenReturn(CompletableFuture.completedFuture(Map.of("incident1:64:0", "[" + LOCATION_1 + "," + LOCATION_2 + "]",
+                        "incident1:64:1", "[" + LOCATION_3 + "]")));
+
+        List<ResponderLocationHistory> history = store.get("incident1:64", 3).await().indefinitely();
+
+        assertThat(history.size(), equalTo(3));
+        assertThat(history.get(2).getTimestamp(), equalTo(3L));
+    }
+
+    /**
+     * Appends two locations at the second position of a segment holding one location. Both appends read the segment
+     * before either of them writes it, and the first one writes it first.
+     */
+    private List<CompletableFuture<Void>> appendConcurrently(ResponderLocationHistory first, ResponderLocationHistory second) {
+        AtomicReference<MetadataValue<String>> segment = new AtomicReference<>(metadataValue("[" + LOCATION_1 + "]", 1L));
+        List<CompletableFuture<MetadataValue<String>>> reads = new ArrayList<>();
+        when(cache.getWithMetadataAsync("incident1:64:0")).thenAnswer(invocation -> {
+            if (reads.size() < 2) {
+                CompletableFuture<MetadataValue<String>> read = new CompletableFuture<>();
+                reads.add(read);
+                return read;
+            }
+            return CompletableFuture.completedFuture(segment.get());
+        });
+        when(cache.replaceWithVersionAsync(eq("incident1:64:0"), any(), anyLong())).thenAnswer(invocation -> {
+            long version = invocation.getArgument(2);
+            MetadataValue<String> current = segment.get();
+            if (current.getVersion() != version) {
+                return CompletableFuture.completedFuture(false);
+            }
+            segment.set(versioned(invocation.getArgument(1), version + 1));
+            return CompletableFuture.completedFuture(true);
+        });
+
+        CompletableFuture<Void> firstAppend = store.append("incident1:64", 1, Collections.singletonList(first)).subscribeAsCompletionStage();
+        CompletableFuture<Void> secondAppend = store.append("incident1:64", 1, Collections.singletonList(second)).subscribeAsCompletionStage();
+        MetadataValue<String> read = segment.get();
+        reads.forEach(r -> r.complete(read));
+        return Arrays.asList(firstAppend, secondAppend);
+    }
+
+    private String encoded(String... locations) {
+        return LocationHistory.decode("[" + String.join(",", locations) + "]").encode();
+    }
+
+    private ResponderLocationHistory location(String lat, String lon, long timestamp) {
+        return new ResponderLocationHistory(Double.parseDouble(lat), Double.parseDouble(lon), timestamp);
+    }
+
+    // created while the cache mock is invoked, so not stubbed with when()
+    @SuppressWarnings("unchecked")
+    private MetadataValue<String> versioned(String value, long version) {
+        return mock(MetadataValue.class, invocation -> {
+            switch (invocation.getMethod().getName()) {
+                case "getValue":
+                    return value;
+                case "getVersion":
+                    return version;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private MetadataValue<String> metadataValue(String value, long version) {
+        MetadataValue<String> metadataValue = mock(MetadataValue.class);
+        when(metadataValue.getValue()).thenReturn(value);
+        when(metadataValue.getVersion()).thenReturn(version);
+        return metadataValue;
+    }
+}
@@ -0,0 +1,187 @@
+package com.redhat.emergency.response.repository;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.infinispan.client.hotrod.MetadataValue;
+import org.infinispan.client.hotrod.RemoteCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+
+public class MissionIndexTest {
+
+    @Mock
+    RemoteCache<String, String> cache;
+
+    MissionIndex index;
+
+    @BeforeEach
+    void init() {
+        openMocks(this);
+        index = new MissionIndex(cache);
+        when(cache.getAsync(any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(cache.getWithMetadataAsync(any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(cache.putIfAbsentAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+    }
+
+    @Test
+    void testGet() {
+        when(cache.getAsync("responder:64")).thenReturn(CompletableFuture.completedFuture("incident1:64\nincident2:64"));
+
+        assertThat(index.get("responder:64").await().indefinitely(), contains("incident1:64", "incident2:64"));
+    }
+
+    @Test
+    void testGetNotFound() {
+        assertThat(index.get("responder:64").await().indefinitely(), empty());
+    }
+
+    @Test
+    void testGetRange() {
+        when(cache.getAsync("status:UPDATED")).thenReturn(CompletableFuture.completedFuture(
+                "incident5:64\nincident1:64\nincident4:64\nincident2:64\nincident3:64\nincident6:65"));
+
+        assertThat(index.getRange("status:UPDATED", null, 2, k -> true).await().indefinitely(), contains("incident1:64", "incident2:64"));
+        assertThat(index.getRange("status:UPDATED", "incident2:64", 2, k -> true).await().indefinitely(), contains("incident3:64", "incident4:64"));
+        assertThat(index.getRange("status:UPDATED", "incident4:64", 3, k -> k.endsWith(":64")).await().indefinitely(), contains("incident5:64"));
+        assertThat(index.getRange("responder:64", null, 2, k -> true).await().indefinitely(), empty());
+    }
+
+    @Test
+    void testAddNewIndexKey() {
+        index.add("responder:64", "incident1:64").await().indefinitely();
+
+        verify(cache).putIfAbsentAsync("responder:64", "incident1:64");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testAddNewIndexKeyConcurrentlyCreated() {
+        MetadataValue<String> v1 = metadataValue("incident2:64", 1L);
+        when(cache.getWithMetadataAsync("responder:64")).thenReturn(CompletableFuture.completedFuture(null), CompletableFuture.completedFuture(v1));
+        when(cache.putIfAbsentAsync("responder:64", "incident1:64")).thenReturn(CompletableFuture.completedFuture("incident2:64"));
+        when(cache.replaceWithVersionAsync("responder:64", "incident2:64\nincident1:64", 1L)).thenReturn(CompletableFuture.completedFuture(true));
+
+        index.add("responder:64", "incident1:64").await().indefinitely();
+
+        verify(cache).replaceWithVersionAsync("responder:64", "incident2:64\nincident1:64", 1L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testAddRetriesOnConcurrentUpdate() {
+        MetadataValue<String> v1 = metadataValue("incident1:64", 1L);
+        MetadataValue<String> v2 = metadataValue("incident1:64\nincident2:64", 2L);
+        when(cache.getWithMetadataAsync("responder:64")).thenReturn(CompletableFuture.completedFuture(v1), CompletableFuture.completedFuture(v2));
+        when(cache.replaceWithVersionAsync("responder:64", "incident1:64\nincident3:64", 1L)).thenReturn(CompletableFuture.completedFuture(false));
+        when(cache.replaceWithVersionAsync("responder:64", "incident1:64\nincident2:64\nincident3:64", 2L)).thenReturn(CompletableFuture.completedFuture(true));
+
+        index.add("responder:64", "incident3:64").await().indefinitely();
+
+        verify(cache, times(2)).getWithMetadataAsync("responder:64");
+        verify(cache).replaceWithVersionAsync("responder:64", "incident1:64\nincident2:64\nincident3:64", 2L);
+    }
+
+    @Test
+    void testAddAlreadyIndexed() {
+        MetadataValue<String> v1 = metadataValue("incident1:64", 1L);
+        when(cache.getWithMetadataAsync("responder:64")).thenReturn(CompletableFuture.completedFuture(v1));
+
+        index.add("responder:64", "incident1:64").await().indefinitely();
+
+        verify(cache, never()).replaceWithVersionAsync(any(), any(), anyLong());
+    }
+
+    @Test
+    void testRemoveLastKey() {
+        MetadataValue<String> v1 = metadataValue("incident1:64", 1L);
+        when(cache.getWithMetadataAsync("status:CREATED")).thenReturn(CompletableFuture.completedFuture(v1));
+        when(cache.removeWithVersionAsync("status:CREATED", 1L)).thenReturn(CompletableFuture.completedFuture(true));
+
+        index.remove("status:CREATED", "incident1:64").await().indefinitely();
+
+        verify(cache).removeWithVersionAsync("status:CREATED", 1L);
+    }
+
+    @Test
+    void testRemove() {
+        MetadataValue<String> v1 = metadataValue("incident1:64\nincident2:64", 1L);
+        when(cache.getWithMetadataAsync("status:CREATED")).thenReturn(CompletableFuture.completedFuture(v1));
+        when(cache.replaceWithVersionAsync("status:CREATED", "incident2:64", 1L)).thenReturn(CompletableFuture.completedFuture(true));
+
+        index.remove("status:CREATED", "incident1:64").await().indefinitely();
+
+        verify(cache).replaceWithVersionAsync("status:CREATED", "incident2:64", 1L);
+    }
+
+    @Test
+    void testRemoveNotIndexed() {
+        index.remove("status:CREATED", "incident1:64").await().indefinitely();
+
+        verify(cache, never()).removeWithVersionAsync(any(), anyLong());
+        verify(cache, never()).replaceWithVersionAsync(any(), any(), anyLong());
+    }
+
+    @Test
+    void testGetActive() {
+        when(cache.getAsync("active:64")).thenReturn(CompletableFuture.completedFuture("incident1:64"));
+
+        assertThat(index.getActive("64").await().indefinitely(), equalTo("incident1:64"));
+    }
+
+    @Test
+    void testClearActive() {
+        MetadataValue<String> v1 = metadataValue("incident1:64", 1L);
+        when(cache.getWithMetadataAsync("active:64")).thenReturn(CompletableFuture.completedFuture(v1));
+        when(cache.removeWithVersionAsync("active:64", 1L)).thenReturn(CompletableFuture.completedFuture(true));
+
+        index.clearActive("64", "incident1:64").await().indefinitely();
+
+        verify(cache).removeWithVersionAsync("active:64", 1L);
+    }
+
+    @Test
+    void testClearActiveOtherMissionActive() {
+        MetadataValue<String> v1 = metadataValue("incident2:64", 1L);
+        when(cache.getWithMetadataAsync("active:64")).thenReturn(CompletableFuture.completedFuture(v1));
+
+        index.clearActive("64", "incident1:64").await().indefinitely();
+
+        verify(cache, never()).removeWithVersionAsync(any(), anyLong());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testClearActiveRetriesOnConcurrentUpdate() {
+        MetadataValue<String> v1 = metadataValue("incident1:64", 1L);
+        MetadataValue<String> v2 = metadataValue("incident1:64", 2L);
+        when(cache.getWithMetadataAsync("active:64")).thenReturn(CompletableFuture.completedFuture(v1), CompletableFuture.completedFuture(v2));
+        when(cache.removeWithVersionAsync("active:64", 1L)).thenReturn(CompletableFuture.completedFuture(false));
+        when(cache.removeWithVersionAsync("active:64", 2L)).thenReturn(CompletableFuture.completedFuture(true));
+
+        index.clearActive("64", "incident1:64").await().indefinitely();
+
+        verify(cache).removeWithVersionAsync("active:64", 2L);
+    }
+
+    @SuppressWarnings("unchecked")
+    private MetadataValue<String> metadataValue(String value, long version) {
+        MetadataValue<String> metadataValue = mock(MetadataValue.class);
+        when(metadataValue.getValue()).thenReturn(value);
+        when(metadataValue.getVersion()).thenReturn(version);
+        return metadataValue;
+    }
+}
@@ -0,0 +1,120 @@
+package com.redhat.emergency.response.repository;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+
+import com.redhat.emergency.response.model.Mission;
+import com.redhat.emergency.response.model.MissionStatus;
+import io.vertx.core.json.JsonObject;
+import org.infinispan.client.hotrod.event.ClientCacheFailoverEvent;
+import org.junit.jupiter.api.Test;
+
+public class MissionNearCacheTest {
+
+    @Test
+    void testGetReturnsCopy() {
+
+        MissionNearCache nearCache = new MissionNearCache(10);
+        Mission mission = mission("incident1", "responder1");
+        nearCache.populate(mission.getKey(), mission, 1L, nearCache.generation());
+
+        Mission cached = nearCache.get(mission.getKey());
+        assertThat(cached, notNullValue());
+        assertThat(cached, not(sameInstance(mission)));
+        assertThat(cached.getId(), equalTo(mission.getId()));
+
+        cached.status(MissionStatus.UPDATED);
+        assertThat(nearCache.get(mission.getKey()).getStatus(), equalTo("CREATED"));
+        assertThat(nearCache.hits(), equalTo(2L));
+        assertThat(nearCache.misses(), equalTo(0L));
+    }
+
+    @Test
+    void testLeastRecentlyUsedIsEvicted() {
+
+        MissionNearCache nearCache = new MissionNearCache(2);
+        Mission mission1 = mission("incident1", "responder1");
+        Mission mission2 = mission("incident2", "responder2");
+        Mission mission3 = mission("incident3", "responder3");
+        nearCache.populate(mission1.getKey(), mission1, 1L, nearCache.generation());
+        nearCache.populate(mission2.getKey(), mission2, 1L, nearCache.generation());
+        nearCache.get(mission1.getKey());
+        nearCache.populate(mission3.getKey(), mission3, 1L, nearCache.generation());
+
+        assertThat(nearCache.size(), equalTo(2));
+        assertThat(nearCache.get(mission1.getKey()), notNullValue());
+        assertThat(nearCache.get(mission2.getKey()), nullValue());
+        assertThat(nearCache.get(mission3.getKey()), notNullValue());
+    }
+
+    @Test
+    void testPopulateAfterInvalidationIsIgnored() {
+
+        MissionNearCache nearCache = new MissionNearCache(10);
+        Mission mission = mission("incident1", "responder1");
+        long generation = nearCache.generation();
+        // the mission is modified on the server while the remote read is in flight
+        nearCache.written(mission.getKey(), 2L);
+        nearCache.populate(mission.getKey(), mission, 1L, generation);
+
+        assertThat(nearCache.get(mission.getKey()), nullValue());
+        assertThat(nearCache.misses(), equalTo(1L));
+    }
+
+    @Test
+    void testEventForCachedVersionIsIgnored() {
+
+        MissionNearCache nearCache = new MissionNearCache(10);
+        Mission mission = mission("incident1", "responder1");
+        nearCache.populate(mission.getKey(), mission, 1L, nearCache.generation());
+        nearCache.written(mission.getKey(), 1L);
+
+        assertThat(nearCache.get(mission.getKey()), notNullValue());
+
+        nearCache.written(mission.getKey(), 2L);
+
+        assertThat(nearCache.get(mission.getKey()), nullValue());
+    }
+
+    @Test
+    void testEventForUncachedKeyInvalidates() {
+
+        MissionNearCache nearCache = new MissionNearCache(10);
+        Mission mission = mission("incident1", "responder1");
+        long generation = nearCache.generation();
+        // event for a write of this service instance, before the mission is read back
+        nearCache.written(mission.getKey(), 3L);
+        nearCache.populate(mission.getKey(), mission, 3L, generation);
+
+        assertThat(nearCache.get(mission.getKey()), nullValue());
+
+        nearCache.populate(mission.getKey(), mission, 3L, nearCache.generation());
+        nearCache.written(mission.getKey(), 3L);
+
+        assertThat(nearCache.getVersioned(mission.getKey()).version, equalTo(3L));
+    }
+
+    @Test
+    void testFailoverInvalidatesAll() {
+
+        MissionNearCache nearCache = new MissionNearCache(10);
+        Mission mission1 = mission("incident1", "responder1");
+        Mission mission2 = mission("incident2", "responder2");
+        nearCache.populate(mission1.getKey(), mission1, 1L, nearCache.generation());
+        nearCache.populate(mission2.getKey(), mission2, 1L, nearCache.generation());
+
+        nearCache.failover(mock(ClientCacheFailoverEvent.class));
+
+        assertThat(nearCache.size(), equalTo(0));
+    }
+
+    private Mission mission(String incidentId, String responderId) {
+        return new JsonObject().put("incidentId", incidentId).put("responderId", responderId)
+                .put("status", "CREATED").mapTo(Mission.class);
+    }
+}
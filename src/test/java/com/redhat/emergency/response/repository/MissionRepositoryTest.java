@@ -6,35 +6,61 @@ import static net.javacrumbs.jsonunit.JsonMatchers.jsonPartEquals;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.anyOf;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.openMocks;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
-import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
+import com.redhat.emergency.response.model.LocationHistory;
 import com.redhat.emergency.response.model.Mission;
+import com.redhat.emergency.response.model.MissionStatus;
+import com.redhat.emergency.response.model.MissionStep;
+import com.redhat.emergency.response.model.ResponderLocationHistory;
+import io.smallrye.mutiny.Multi;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import org.infinispan.client.hotrod.CacheTopologyInfo;
+import org.infinispan.client.hotrod.MetadataValue;
 import org.infinispan.client.hotrod.RemoteCache;
 import org.infinispan.client.hotrod.RemoteCacheManager;
 import org.infinispan.client.hotrod.RemoteCacheManagerAdmin;
-import org.infinispan.commons.util.CloseableIteratorSetAdapter;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
+import org.reactivestreams.Publisher;
 
 public class MissionRepositoryTest {
 
@@ -44,11 +70,23 @@ public class MissionRepositoryTest {
     RemoteCacheManager cacheManager;
 
     @Mock
-    RemoteCache<String, String> missionCache;
+    RemoteCache<String, Object> missionCache;
+
+    @Mock
+    RemoteCache<String, String> indexCache;
+
+    @Mock
+    RemoteCache<String, String> historyCache;
+
+    @Mock
+    RemoteCache<String, String> routeCache;
 
     @Mock
     RemoteCacheManagerAdmin cacheManagerAdmin;
 
+    @Captor
+    ArgumentCaptor<Object> objectCaptor;
+
     @Captor
     ArgumentCaptor<String> stringCaptor;
 
@@ -57,27 +95,50 @@ public class MissionRepositoryTest {
         openMocks(this);
         repository = new MissionRepository();
         setField(repository, "cacheName", "mission");
+        setField(repository, "indexCacheName", "mission-index");
+        setField(repository, "historyCacheName", "mission-history");
+        setField(repository, "historySegmentSize", 2);
+        setField(repository, "routeCacheName", "mission-route");
+        setField(repository, "routeLocalMaxEntries", 10);
+        setField(repository, "batchSize", 100);
+        setField(repository, "blockingTimeout", Duration.ofSeconds(5));
+        setField(repository, "updateMaxRetries", 3);
         setField(repository, "cacheManager", cacheManager);
         when(cacheManager.administration()).thenReturn(cacheManagerAdmin);
-        when(cacheManagerAdmin.<String, String>getOrCreateCache(eq("mission"), any(Configuration.class))).thenReturn(missionCache);
+        when(cacheManagerAdmin.<String, Object>getOrCreateCache(eq("mission"), any(Configuration.class))).thenReturn(missionCache);
+        when(cacheManagerAdmin.<String, String>getOrCreateCache(eq("mission-index"), any(Configuration.class))).thenReturn(indexCache);
+        when(missionCache.putAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(missionCache.clearAsync()).thenReturn(CompletableFuture.completedFuture(null));
+        when(indexCache.getAsync(any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(indexCache.getWithMetadataAsync(any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(indexCache.putIfAbsentAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(indexCache.putAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(indexCache.clearAsync()).thenReturn(CompletableFuture.completedFuture(null));
+        when(cacheManagerAdmin.<String, String>getOrCreateCache(eq("mission-history"), any(Configuration.class))).thenReturn(historyCache);
+        when(historyCache.getWithMetadataAsync(any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(historyCache.putIfAbsentAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(historyCache.clearAsync()).thenReturn(CompletableFuture.completedFuture(null));
+        when(cacheManagerAdmin.<String, String>getOrCreateCache(eq("mission-route"), any(Configuration.class))).thenReturn(routeCache);
+        when(routeCache.putAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(routeCache.clearAsync()).thenReturn(CompletableFuture.completedFuture(null));
     }
 
     @Test
     void testAdd() {
 
         JsonObject json = new JsonObject().put("incidentId", "incident123")
-                .put("incidentLat", new BigDecimal("30.12345").doubleValue()).put("incidentLong", new BigDecimal("-70.98765").doubleValue())
+                .put("incidentLat", 30.12345).put("incidentLong", -70.98765)
                 .put("responderId", "responder123")
-                .put("responderStartLat", new BigDecimal("31.12345").doubleValue()).put("responderStartLong", new BigDecimal("-71.98765").doubleValue())
-                .put("destinationLat", new BigDecimal("32.12345").doubleValue()).put("destinationLong", new BigDecimal("-72.98765").doubleValue())
+                .put("responderStartLat", 31.12345).put("responderStartLong", -71.98765)
+                .put("destinationLat", 32.12345).put("destinationLong", -72.98765)
                 .put("status", "CREATED");
 
         Mission mission = json.mapTo(Mission.class);
 
         repository.add(mission).await().indefinitely();
 
-        verify(missionCache).put(eq(mission.getKey()), stringCaptor.capture());
-        String value = stringCaptor.getValue();
+        verify(missionCache).putAsync(eq(mission.getKey()), objectCaptor.capture());
+        String value = (String) objectCaptor.getValue();
         assertThat(value, notNullValue());
         assertThat(value, jsonNodePresent("id"));
         assertThat(value, jsonPartEquals("id", "${json-unit.regex}[a-f0-9]{8}-[a-f0-9]{4}-[a-f0-9]{4}-[a-f0-9]{4}-[a-f0-9]{12}"));
@@ -88,111 +149,258 @@ public class MissionRepositoryTest {
         assertThat(value, jsonPartEquals("responderStartLong", -71.98765));
         assertThat(value, jsonPartEquals("destinationLat", 32.12345));
         assertThat(value, jsonPartEquals("destinationLong", -72.98765));
-        assertThat(value, jsonNodePresent("steps"));
-        assertThat(value, jsonNodeAbsent("steps[0]"));
-        assertThat(value, jsonNodePresent("responderLocationHistory"));
-        assertThat(value, jsonNodeAbsent("responderLocationHistory[0]"));
+        // the route is stored separately
+        assertThat(value, jsonNodeAbsent("steps"));
+        // the location history is stored separately
+        assertThat(value, jsonNodeAbsent("responderLocationHistory"));
+        assertThat(value, jsonPartEquals("historySize", 0));
         assertThat(value, jsonPartEquals("status", "CREATED"));
     }
 
     @Test
     void testGet() {
 
-        JsonObject json = new JsonObject().put("incidentId", "incident123")
-                .put("incidentLat", new BigDecimal("30.12345").doubleValue()).put("incidentLong", new BigDecimal("-70.98765").doubleValue())
+        JsonObject json = new JsonObject().put("id", "mission123").put("incidentId", "incident123")
+                .put("incidentLat", 30.12345).put("incidentLong", -70.98765)
                 .put("responderId", "responder123")
-                .put("responderStartLat", new BigDecimal("31.12345").doubleValue()).put("responderStartLong", new BigDecimal("-71.98765").doubleValue())
-                .put("destinationLat", new BigDecimal("32.12345").doubleValue()).put("destinationLong", new BigDecimal("-72.98765").doubleValue())
+                .put("responderStartLat", 31.12345).put("responderStartLong", -71.98765)
+                .put("destinationLat", 32.12345).put("destinationLong", -72.98765)
                 .put("status", "CREATED")
-                .put("responderLocationHistory", new JsonArray().add(new JsonObject().put("lat", new BigDecimal("30.98765").doubleValue())
-                        .put("lon", new BigDecimal("-70.12345").doubleValue()).put("timestamp", 12345L)))
-                .put("steps", new JsonArray().add(new JsonObject().put("lat", new BigDecimal("30.98765").doubleValue())
-                        .put("lon", new BigDecimal("-70.12345").doubleValue()).put("wayPoint", false).put("destination", false)));
+                .put("responderLocationHistory", new JsonArray().add(new JsonObject().put("lat", 30.98765)
+                        .put("lon", -70.12345).put("timestamp", 12345L)))
+                .put("steps", new JsonArray().add(new JsonObject().put("lat", 30.98765)
+                        .put("lon", -70.12345).put("wayPoint", false).put("destination", false)));
 
-        when(missionCache.get("key")).thenReturn(json.toString());
+        when(missionCache.getAsync("key")).thenReturn(CompletableFuture.completedFuture(json.toString()));
 
         Optional<Mission> mission = repository.get("key").await().indefinitely();
         assertThat(mission, notNullValue());
         assertThat(mission.isPresent(), equalTo(true));
         assertThat(mission.get().getIncidentId(), equalTo("incident123"));
         assertThat(mission.get().getResponderId(), equalTo("responder123"));
-        assertThat(mission.get().getIncidentLat(), equalTo(new BigDecimal("30.12345")));
-        assertThat(mission.get().getIncidentLong(), equalTo(new BigDecimal("-70.98765")));
-        assertThat(mission.get().getResponderStartLat(), equalTo(new BigDecimal("31.12345")));
-        assertThat(mission.get().getResponderStartLong(), equalTo(new BigDecimal("-71.98765")));
-        assertThat(mission.get().getDestinationLat(), equalTo(new BigDecimal("32.12345")));
-        assertThat(mission.get().getDestinationLong(), equalTo(new BigDecimal("-72.98765")));
+        assertThat(mission.get().getIncidentLat(), equalTo(30.12345));
+        assertThat(mission.get().getIncidentLong(), equalTo(-70.98765));
+        assertThat(mission.get().getResponderStartLat(), equalTo(31.12345));
+        assertThat(mission.get().getResponderStartLong(), equalTo(-71.98765));
+        assertThat(mission.get().getDestinationLat(), equalTo(32.12345));
+        assertThat(mission.get().getDestinationLong(), equalTo(-72.98765));
         assertThat(mission.get().getStatus(), equalTo("CREATED"));
         assertThat(mission.get().getResponderLocationHistory().size(), equalTo(1));
         assertThat(mission.get().getSteps().size(), equalTo(1));
-        verify(missionCache).get("key");
+        verify(missionCache).getAsync("key");
+    }
+
+    @Test
+    void testAddProtoStream() {
+
+        setField(repository, "format", "protostream");
+
+        JsonObject json = new JsonObject().put("id", "mission123").put("incidentId", "incident123")
+                .put("incidentLat", 30.12345).put("incidentLong", -70.98765)
+                .put("responderId", "responder123")
+                .put("responderStartLat", 31.12345).put("responderStartLong", -71.98765)
+                .put("destinationLat", 32.12345).put("destinationLong", -72.98765)
+                .put("status", "CREATED");
+
+        Mission mission = json.mapTo(Mission.class);
+
+        repository.add(mission).await().indefinitely();
+
+        verify(missionCache).putAsync(eq(mission.getKey()), objectCaptor.capture());
+        assertThat(objectCaptor.getValue(), sameInstance(mission));
+    }
+
+    @Test
+    void testGetProtoStream() {
+
+        setField(repository, "format", "protostream");
+
+        JsonObject json = new JsonObject().put("id", "mission123").put("incidentId", "incident123")
+                .put("incidentLat", 30.12345).put("incidentLong", -70.98765)
+                .put("responderId", "responder123")
+                .put("responderStartLat", 31.12345).put("responderStartLong", -71.98765)
+                .put("destinationLat", 32.12345).put("destinationLong", -72.98765)
+                .put("status", "CREATED");
+        Mission stored = json.mapTo(Mission.class);
+
+        when(missionCache.getAsync("key")).thenReturn(CompletableFuture.completedFuture(stored));
+
+        Optional<Mission> mission = repository.get("key").await().indefinitely();
+        assertThat(mission.isPresent(), equalTo(true));
+        assertThat(mission.get().getIncidentId(), equalTo("incident123"));
+        assertThat(mission.get().getResponderId(), equalTo("responder123"));
+        verify(missionCache).getAsync("key");
+    }
+
+    @Test
+    void testGetProtoStreamLegacyJson() {
+
+        setField(repository, "format", "protostream");
+
+        JsonObject json = new JsonObject().put("id", "mission123").put("incidentId", "incident123")
+                .put("incidentLat", 30.12345).put("incidentLong", -70.98765)
+                .put("responderId", "responder123")
+                .put("responderStartLat", 31.12345).put("responderStartLong", -71.98765)
+                .put("destinationLat", 32.12345).put("destinationLong", -72.98765)
+                .put("status", "CREATED");
+
+        when(missionCache.getAsync("key")).thenReturn(CompletableFuture.completedFuture(json.toString()));
+
+        Optional<Mission> mission = repository.get("key").await().indefinitely();
+        assertThat(mission.isPresent(), equalTo(true));
+        assertThat(mission.get().getIncidentId(), equalTo("incident123"));
+        assertThat(mission.get().getIncidentLat(), equalTo(30.12345));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testMigrate() {
+
+        setField(repository, "format", "protostream");
+
+        JsonObject json = new JsonObject().put("id", "mission123").put("incidentId", "incident123")
+                .put("incidentLat", 30.12345).put("incidentLong", -70.98765)
+                .put("responderId", "responder123")
+                .put("responderStartLat", 31.12345).put("responderStartLong", -71.98765)
+                .put("destinationLat", 32.12345).put("destinationLong", -72.98765)
+                .put("status", "CREATED");
+
+        MetadataValue<Object> legacy = mock(MetadataValue.class);
+        when(legacy.getValue()).thenReturn(json.toString());
+        when(legacy.getVersion()).thenReturn(5L);
+        MetadataValue<Object> migrated = mock(MetadataValue.class);
+        when(migrated.getValue()).thenReturn(json.mapTo(Mission.class));
+
+        when(missionCache.publishEntriesWithMetadata(null, 100)).thenReturn(Multi.createFrom().<Map.Entry<String, MetadataValue<Object>>>items(
+                new AbstractMap.SimpleEntry<>("incident123:responder123", legacy),
+                new AbstractMap.SimpleEntry<>("incident456:responder456", migrated)));
+        when(missionCache.replaceWithVersionAsync(eq("incident123:responder123"), any(), eq(5L))).thenReturn(CompletableFuture.completedFuture(true));
+
+        Integer count = repository.migrate().await().indefinitely();
+
+        assertThat(count, equalTo(1));
+        verify(missionCache).replaceWithVersionAsync(eq("incident123:responder123"), objectCaptor.capture(), eq(5L));
+        assertThat(objectCaptor.getValue(), instanceOf(Mission.class));
+        assertThat(((Mission) objectCaptor.getValue()).getIncidentId(), equalTo("incident123"));
+        verify(missionCache, never()).replaceWithVersionAsync(eq("incident456:responder456"), any(), anyLong());
+    }
+
+    @Test
+    void testMigrateJsonFormat() {
+
+        Integer count = repository.migrate().await().indefinitely();
+
+        assertThat(count, equalTo(0));
+        verify(missionCache, never()).publishEntriesWithMetadata(any(), anyInt());
     }
 
     @Test
     void testGetNotFound() {
 
-        when(missionCache.get("key")).thenReturn(null);
+        when(missionCache.getAsync("key")).thenReturn(CompletableFuture.completedFuture(null));
 
         Optional<Mission> mission = repository.get("key").await().indefinitely();
         assertThat(mission, notNullValue());
         assertThat(mission.isPresent(), is(false));
-        verify(missionCache).get("key");
+        verify(missionCache).getAsync("key");
+    }
+
+    @Test
+    void testGetWithoutId() {
+
+        JsonObject json = new JsonObject().put("incidentId", "incident123").put("responderId", "responder123");
+        when(missionCache.getAsync("key")).thenReturn(CompletableFuture.completedFuture(json.toString()));
+
+        Optional<Mission> mission = repository.get("key").await().indefinitely();
+        assertThat(mission.isPresent(), is(false));
     }
 
     @Test
     void testGetThrowsException() {
 
-        when(missionCache.get("key")).thenThrow(new RuntimeException("Exception!"));
+        when(missionCache.getAsync("key")).thenThrow(new RuntimeException("Exception!"));
+
+        Optional<Mission> mission = repository.get("key").await().indefinitely();
+        assertThat(mission, notNullValue());
+        assertThat(mission.isPresent(), is(false));
+        verify(missionCache).getAsync("key");
+    }
+
+    @Test
+    void testGetFailedFuture() {
+
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        future.completeExceptionally(new RuntimeException("Exception!"));
+        when(missionCache.getAsync("key")).thenReturn(future);
 
         Optional<Mission> mission = repository.get("key").await().indefinitely();
         assertThat(mission, notNullValue());
         assertThat(mission.isPresent(), is(false));
-        verify(missionCache).get("key");
     }
 
     @Test
     void testGetAll() {
 
-        JsonObject json1 = new JsonObject().put("incidentId", "incident123")
-                .put("incidentLat", new BigDecimal("30.12345").doubleValue()).put("incidentLong", new BigDecimal("-70.98765").doubleValue())
+        JsonObject json1 = new JsonObject().put("id", "mission123").put("incidentId", "incident123")
+                .put("incidentLat", 30.12345).put("incidentLong", -70.98765)
                 .put("responderId", "responder123")
-                .put("responderStartLat", new BigDecimal("31.12345").doubleValue()).put("responderStartLong", new BigDecimal("-71.98765").doubleValue())
-                .put("destinationLat", new BigDecimal("32.12345").doubleValue()).put("destinationLong", new BigDecimal("-72.98765").doubleValue())
+                .put("responderStartLat", 31.12345).put("responderStartLong", -71.98765)
+                .put("destinationLat", 32.12345).put("destinationLong", -72.98765)
                 .put("status", "CREATED")
-                .put("responderLocationHistory", new JsonArray().add(new JsonObject().put("lat", new BigDecimal("30.98765").doubleValue())
-                        .put("lon", new BigDecimal("-70.12345").doubleValue()).put("timestamp", 12345L)))
-                .put("steps", new JsonArray().add(new JsonObject().put("lat", new BigDecimal("30.98765").doubleValue())
-                        .put("lon", new BigDecimal("-70.12345").doubleValue()).put("wayPoint", false).put("destination", false)));
+                .put("responderLocationHistory", new JsonArray().add(new JsonObject().put("lat", 30.98765)
+                        .put("lon", -70.12345).put("timestamp", 12345L)))
+                .put("steps", new JsonArray().add(new JsonObject().put("lat", 30.98765)
+                        .put("lon", -70.12345).put("wayPoint", false).put("destination", false)));
 
-        JsonObject json2 = new JsonObject().put("incidentId", "incident456")
-                .put("incidentLat", new BigDecimal("30.12345").doubleValue()).put("incidentLong", new BigDecimal("-70.98765").doubleValue())
+        JsonObject json2 = new JsonObject().put("id", "mission456").put("incidentId", "incident456")
+                .put("incidentLat", 30.12345).put("incidentLong", -70.98765)
                 .put("responderId", "responder456")
-                .put("responderStartLat", new BigDecimal("31.12345").doubleValue()).put("responderStartLong", new BigDecimal("-71.98765").doubleValue())
-                .put("destinationLat", new BigDecimal("32.12345").doubleValue()).put("destinationLong", new BigDecimal("-72.98765").doubleValue())
+                .put("responderStartLat", 31.12345).put("responderStartLong", -71.98765)
+                .put("destinationLat", 32.12345).put("destinationLong", -72.98765)
                 .put("status", "CREATED")
-                .put("responderLocationHistory", new JsonArray().add(new JsonObject().put("lat", new BigDecimal("30.98765").doubleValue())
-                        .put("lon", new BigDecimal("-70.12345").doubleValue()).put("timestamp", 12345L)))
-                .put("steps", new JsonArray().add(new JsonObject().put("lat", new BigDecimal("30.98765").doubleValue())
-                        .put("lon", new BigDecimal("-70.12345").doubleValue()).put("wayPoint", false).put("destination", false)));
+                .put("responderLocationHistory", new JsonArray().add(new JsonObject().put("lat", 30.98765)
+                        .put("lon", -70.12345).put("timestamp", 12345L)))
+                .put("steps", new JsonArray().add(new JsonObject().put("lat", 30.98765)
+                        .put("lon", -70.12345).put("wayPoint", false).put("destination", false)));
 
-        when(missionCache.keySet()).thenReturn(new CloseableIteratorSetAdapter<>(new HashSet<>(Arrays.asList("incident123:responder123", "incident456:responder456"))));
-        when(missionCache.get("incident123:responder123")).thenReturn(json1.toString());
-        when(missionCache.get("incident456:responder456")).thenReturn(json2.toString());
+        when(missionCache.publishEntries(null, null, null, 100)).thenReturn(entries(
+                new AbstractMap.SimpleEntry<>("incident123:responder123", json1.toString()),
+                new AbstractMap.SimpleEntry<>("incident456:responder456", json2.toString())));
 
         List<Mission> missions = repository.getAll().await().indefinitely();
 
         assertThat(missions, notNullValue());
         assertThat(missions.size(), equalTo(2));
         assertThat(missions.get(0).getIncidentId(), anyOf(equalTo("incident123"), equalTo("incident456")));
-        verify(missionCache).keySet();
-        verify(missionCache).get("incident123:responder123");
-        verify(missionCache).get("incident456:responder456");
+        verify(missionCache).publishEntries(null, null, null, 100);
+        verify(missionCache, never()).keySet();
+        verify(missionCache, never()).get(any());
+    }
+
+    @Test
+    void testGetAllMultipleBatches() {
+
+        setField(repository, "batchSize", 2);
+
+        List<Map.Entry<String, Object>> stored = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            JsonObject json = new JsonObject().put("id", "mission" + i).put("incidentId", "incident" + i).put("responderId", "responder" + i).put("status", "CREATED");
+            stored.add(new AbstractMap.SimpleEntry<>("incident" + i + ":responder" + i, json.toString()));
+        }
+        stored.add(new AbstractMap.SimpleEntry<>("invalid", "not json"));
+        when(missionCache.publishEntries(null, null, null, 2)).thenReturn(Multi.createFrom().iterable(stored));
+
+        List<Mission> missions = repository.getAll().await().indefinitely();
+
+        assertThat(missions.size(), equalTo(5));
+        assertThat(missions.get(0).getIncidentId(), equalTo("incident0"));
+        assertThat(missions.get(4).getIncidentId(), equalTo("incident4"));
     }
 
     @Test
     void testGetAllCacheEmpty() {
 
-        when(missionCache.keySet()).thenReturn(new CloseableIteratorSetAdapter<>(Collections.emptySet()));
+        when(missionCache.publishEntries(null, null, null, 100)).thenReturn(entries());
 
         List<Mission> missions = repository.getAll().await().indefinitely();
 
@@ -200,50 +408,852 @@ public class MissionRepositoryTest {
         assertThat(missions.size(), equalTo(0));
     }
 
+    @Test
+    void testStream() {
+
+        when(missionCache.publishEntries(null, null, null, 100)).thenReturn(entries(
+                missionEntry("incident1", "responder1", "CREATED"),
+                new AbstractMap.SimpleEntry<>("invalid", "not json"),
+                missionEntry("incident2", "responder2", "UPDATED")));
+
+        List<Mission> missions = repository.stream().collectItems().asList().await().indefinitely();
+
+        assertThat(missions.size(), equalTo(2));
+        assertThat(missions.get(0).getIncidentId(), equalTo("incident1"));
+        assertThat(missions.get(1).getIncidentId(), equalTo("incident2"));
+    }
+
+    @Test
+    void testGetPage() {
+
+        CacheTopologyInfo topology = mock(CacheTopologyInfo.class);
+        when(topology.getNumSegments()).thenReturn(2);
+        when(missionCache.getCacheTopologyInfo()).thenReturn(topology);
+        when(missionCache.publishEntries(MissionRepository.KEYS_ONLY, null, Collections.singleton(0), 100)).thenAnswer(i -> keys(
+                "incident3:responder3", "incident1:responder1", "incident2:responder2"));
+        when(missionCache.publishEntries(MissionRepository.KEYS_ONLY, null, Collections.singleton(1), 100)).thenAnswer(i -> keys(
+                "incident4:responder4"));
+        when(missionCache.getAllAsync(new LinkedHashSet<>(Arrays.asList("incident1:responder1", "incident2:responder2"))))
+                .thenReturn(CompletableFuture.completedFuture(missions(missionEntry("incident2", "responder2", "CREATED"),
+                        missionEntry("incident1", "responder1", "CREATED"))));
+
+        MissionPage page = repository.getPage(null, 2, null, null).await().indefinitely();
+
+        assertThat(page.getMissions().size(), equalTo(2));
+        assertThat(page.getMissions().get(0).getIncidentId(), equalTo("incident1"));
+        assertThat(page.getMissions().get(1).getIncidentId(), equalTo("incident2"));
+        assertThat(page.getNext(), notNullValue());
+
+        when(missionCache.getAllAsync(new LinkedHashSet<>(Collections.singletonList("incident3:responder3"))))
+                .thenReturn(CompletableFuture.completedFuture(missions(missionEntry("incident3", "responder3", "CREATED"))));
+        when(missionCache.getAllAsync(new LinkedHashSet<>(Collections.singletonList("incident4:responder4"))))
+                .thenReturn(CompletableFuture.completedFuture(missions(missionEntry("incident4", "responder4", "CREATED"))));
+
+        MissionPage next = repository.getPage(page.getNext(), 2, null, null).await().indefinitely();
+
+        assertThat(next.getMissions().size(), equalTo(2));
+        assertThat(next.getMissions().get(0).getIncidentId(), equalTo("incident3"));
+        assertThat(next.getMissions().get(1).getIncidentId(), equalTo("incident4"));
+        assertThat(next.getNext(), equalTo(null));
+        // only the keys are iterated over, and only the missions of the pages are read
+        verify(missionCache, never()).publishEntries(null, null, Collections.singleton(0), 100);
+        verify(missionCache, never()).publishEntries(null, null, null, 100);
+    }
+
+    @Test
+    void testGetPageByIncident() {
+
+        CacheTopologyInfo topology = mock(CacheTopologyInfo.class);
+        when(topology.getNumSegments()).thenReturn(1);
+        when(missionCache.getCacheTopologyInfo()).thenReturn(topology);
+        when(missionCache.publishEntries(MissionRepository.KEYS_ONLY, null, Collections.singleton(0), 100)).thenAnswer(i -> keys(
+                "incident1:responder1", "incident2:responder2", "incident3:responder3"));
+        when(missionCache.getAllAsync(new LinkedHashSet<>(Collections.singletonList("incident2:responder2"))))
+                .thenReturn(CompletableFuture.completedFuture(missions(missionEntry("incident2", "responder2", "CREATED"))));
+
+        MissionPage page = repository.getPage(null, 10, null, "incident2").await().indefinitely();
+
+        assertThat(page.getMissions().size(), equalTo(1));
+        assertThat(page.getMissions().get(0).getIncidentId(), equalTo("incident2"));
+        assertThat(page.getNext(), equalTo(null));
+    }
+
+    @Test
+    void testGetPageByStatus() {
+
+        when(indexCache.getAsync("status:UPDATED")).thenReturn(CompletableFuture.completedFuture(
+                "incident3:responder3\nincident1:responder1\nincident2:responder2"));
+        when(missionCache.getAllAsync(new LinkedHashSet<>(Arrays.asList("incident1:responder1", "incident2:responder2"))))
+                .thenReturn(CompletableFuture.completedFuture(Map.of(
+                        "incident1:responder1", missionEntry("incident1", "responder1", "UPDATED").getValue(),
+                        "incident2:responder2", missionEntry("incident2", "responder2", "COMPLETED").getValue())));
+
+        MissionPage page = repository.getPage(null, 2, MissionStatus.UPDATED, null).await().indefinitely();
+
+        // incident2 is not updated anymore
+        assertThat(page.getMissions().size(), equalTo(1));
+        assertThat(page.getMissions().get(0).getIncidentId(), equalTo("incident1"));
+        assertThat(page.getNext(), notNullValue());
+        verify(missionCache, never()).publishEntries(any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void testGetPageInvalidCursor() {
+
+        assertThrows(IllegalArgumentException.class, () -> repository.getPage("bm90IGEgY3Vyc29y", 10, null, null).await().indefinitely());
+    }
+
     @Test
     void clear() {
 
         repository.clear().await().indefinitely();
 
-        verify(missionCache).clear();
+        verify(missionCache).clearAsync();
+        verify(indexCache).clearAsync();
     }
 
     @Test
     void testGetByResponderId() {
-        JsonObject json1 = new JsonObject().put("incidentId", "incident123")
-                .put("incidentLat", new BigDecimal("30.12345").doubleValue()).put("incidentLong", new BigDecimal("-70.98765").doubleValue())
+        JsonObject json1 = new JsonObject().put("id", "mission123").put("incidentId", "incident123")
+                .put("incidentLat", 30.12345).put("incidentLong", -70.98765)
                 .put("responderId", "responder123")
-                .put("responderStartLat", new BigDecimal("31.12345").doubleValue()).put("responderStartLong", new BigDecimal("-71.98765").doubleValue())
-                .put("destinationLat", new BigDecimal("32.12345").doubleValue()).put("destinationLong", new BigDecimal("-72.98765").doubleValue())
+                .put("responderStartLat", 31.12345).put("responderStartLong", -71.98765)
+                .put("destinationLat", 32.12345).put("destinationLong", -72.98765)
                 .put("status", "CREATED")
-                .put("responderLocationHistory", new JsonArray().add(new JsonObject().put("lat", new BigDecimal("30.98765").doubleValue())
-                        .put("lon", new BigDecimal("-70.12345").doubleValue()).put("timestamp", 12345L)))
-                .put("steps", new JsonArray().add(new JsonObject().put("lat", new BigDecimal("30.98765").doubleValue())
-                        .put("lon", new BigDecimal("-70.12345").doubleValue()).put("wayPoint", false).put("destination", false)));
+                .put("responderLocationHistory", new JsonArray().add(new JsonObject().put("lat", 30.98765)
+                        .put("lon", -70.12345).put("timestamp", 12345L)))
+                .put("steps", new JsonArray().add(new JsonObject().put("lat", 30.98765)
+                        .put("lon", -70.12345).put("wayPoint", false).put("destination", false)));
 
-        JsonObject json2 = new JsonObject().put("incidentId", "incident456")
-                .put("incidentLat", new BigDecimal("30.12345").doubleValue()).put("incidentLong", new BigDecimal("-70.98765").doubleValue())
+        JsonObject json2 = new JsonObject().put("id", "mission456").put("incidentId", "incident456")
+                .put("incidentLat", 30.12345).put("incidentLong", -70.98765)
                 .put("responderId", "responder456")
-                .put("responderStartLat", new BigDecimal("31.12345").doubleValue()).put("responderStartLong", new BigDecimal("-71.98765").doubleValue())
-                .put("destinationLat", new BigDecimal("32.12345").doubleValue()).put("destinationLong", new BigDecimal("-72.98765").doubleValue())
+                .put("responderStartLat", 31.12345).put("responderStartLong", -71.98765)
+                .put("destinationLat", 32.12345).put("destinationLong", -72.98765)
                 .put("status", "CREATED")
-                .put("responderLocationHistory", new JsonArray().add(new JsonObject().put("lat", new BigDecimal("30.98765").doubleValue())
-                        .put("lon", new BigDecimal("-70.12345").doubleValue()).put("timestamp", 12345L)))
-                .put("steps", new JsonArray().add(new JsonObject().put("lat", new BigDecimal("30.98765").doubleValue())
-                        .put("lon", new BigDecimal("-70.12345").doubleValue()).put("wayPoint", false).put("destination", false)));
+                .put("responderLocationHistory", new JsonArray().add(new JsonObject().put("lat", 30.98765)
+                        .put("lon", -70.12345).put("timestamp", 12345L)))
+                .put("steps", new JsonArray().add(new JsonObject().put("lat", 30.98765)
+                        .put("lon", -70.12345).put("wayPoint", false).put("destination", false)));
 
-        when(missionCache.keySet()).thenReturn(new CloseableIteratorSetAdapter<>(new HashSet<>(Arrays.asList("incident123:responder123", "incident456:responder456"))));
-        when(missionCache.get("incident123:responder123")).thenReturn(json1.toString());
-        when(missionCache.get("incident456:responder456")).thenReturn(json2.toString());
+        when(indexCache.getAsync("responder:responder456")).thenReturn(CompletableFuture.completedFuture("incident456:responder456"));
+        when(missionCache.getAllAsync(Collections.singleton("incident456:responder456")))
+                .thenReturn(CompletableFuture.completedFuture(Collections.singletonMap("incident456:responder456", json2.toString())));
 
         List<Mission> missions =  repository.getByResponderId("responder456").await().indefinitely();
 
         assertThat(missions, notNullValue());
         assertThat(missions.size(), equalTo(1));
         assertThat(missions.get(0).getIncidentId(), equalTo("incident456"));
-        verify(missionCache).keySet();
-        verify(missionCache).get("incident123:responder123");
-        verify(missionCache).get("incident456:responder456");
+        verify(indexCache).getAsync("responder:responder456");
+        verify(missionCache, never()).keySet();
+        verify(missionCache, never()).getAsync(any());
+    }
+
+    @Test
+    void testGetByResponderIdNotIndexed() {
+
+        when(indexCache.getAsync("responder:responder456")).thenReturn(CompletableFuture.completedFuture(null));
+
+        List<Mission> missions =  repository.getByResponderId("responder456").await().indefinitely();
+
+        assertThat(missions, notNullValue());
+        assertThat(missions.size(), equalTo(0));
+        verify(missionCache, never()).getAllAsync(any());
+    }
+
+    @Test
+    void testGetByStatus() {
+
+        JsonObject json = new JsonObject().put("id", "mission123").put("incidentId", "incident123")
+                .put("responderId", "responder123")
+                .put("status", "UPDATED");
+
+        when(indexCache.getAsync("status:UPDATED")).thenReturn(CompletableFuture.completedFuture("incident123:responder123"));
+        when(missionCache.getAllAsync(Collections.singleton("incident123:responder123")))
+                .thenReturn(CompletableFuture.completedFuture(Collections.singletonMap("incident123:responder123", json.toString())));
+
+        List<Mission> missions =  repository.getByStatus(MissionStatus.UPDATED).await().indefinitely();
+
+        assertThat(missions.size(), equalTo(1));
+        assertThat(missions.get(0).getIncidentId(), equalTo("incident123"));
+    }
+
+    @Test
+    void testAddNewMissionIsIndexed() {
+
+        JsonObject json = new JsonObject().put("id", "mission123").put("incidentId", "incident123")
+                .put("responderId", "responder123");
+        Mission mission = json.mapTo(Mission.class).status(MissionStatus.CREATED);
+
+        repository.add(mission).await().indefinitely();
+
+        verify(indexCache).putIfAbsentAsync("responder:responder123", "incident123:responder123");
+        verify(indexCache).putIfAbsentAsync("status:CREATED", "incident123:responder123");
+        verify(indexCache).putAsync("active:responder123", "incident123:responder123");
+        assertThat(mission.statusChanged(), is(false));
+    }
+
+    @Test
+    void testRouteRefreshes() {
+
+        repository.addRouteRefresh("incident123:responder123").await().indefinitely();
+        when(indexCache.getAsync("route-refresh")).thenReturn(CompletableFuture.completedFuture("incident123:responder123"));
+
+        Set<String> keys = repository.getRouteRefreshes().await().indefinitely();
+
+        verify(indexCache).putIfAbsentAsync("route-refresh", "incident123:responder123");
+        assertThat(keys, equalTo(Collections.singleton("incident123:responder123")));
+    }
+
+    @Test
+    void testAddStatusChangeIsIndexed() {
+
+        JsonObject json = new JsonObject().put("id", "mission123").put("incidentId", "incident123")
+                .put("responderId", "responder123")
+                .put("status", "CREATED");
+        Mission mission = json.mapTo(Mission.class).status(MissionStatus.UPDATED);
+
+        @SuppressWarnings("unchecked")
+        MetadataValue<String> created = mock(MetadataValue.class);
+        when(created.getValue()).thenReturn("incident456:responder456\nincident123:responder123");
+        when(created.getVersion()).thenReturn(3L);
+        when(indexCache.getWithMetadataAsync("status:CREATED")).thenReturn(CompletableFuture.completedFuture(created));
+        when(indexCache.replaceWithVersionAsync("status:CREATED", "incident456:responder456", 3L)).thenReturn(CompletableFuture.completedFuture(true));
+
+        repository.add(mission).await().indefinitely();
+
+        verify(indexCache).replaceWithVersionAsync("status:CREATED", "incident456:responder456", 3L);
+        verify(indexCache).putIfAbsentAsync("status:UPDATED", "incident123:responder123");
+        verify(indexCache, never()).putIfAbsentAsync(eq("responder:responder123"), any());
+    }
+
+    @Test
+    void testAddNoStatusChangeIsNotIndexed() {
+
+        JsonObject json = new JsonObject().put("id", "mission123").put("incidentId", "incident123")
+                .put("responderId", "responder123")
+                .put("status", "CREATED");
+        Mission mission = json.mapTo(Mission.class).status(MissionStatus.CREATED);
+
+        repository.add(mission).await().indefinitely();
+
+        verify(missionCache).putAsync(eq(mission.getKey()), any());
+        verifyNoInteractions(indexCache);
+    }
+
+    @Test
+    void testRebuildIndex() {
+
+        JsonObject json = new JsonObject().put("id", "mission123").put("incidentId", "incident123")
+                .put("responderId", "responder123")
+                .put("status", "CREATED");
+
+        when(missionCache.publishEntries(null, null, null, 100)).thenReturn(entries(new AbstractMap.SimpleEntry<>("incident123:responder123", json.toString())));
+
+        Integer count = repository.rebuildIndex().await().indefinitely();
+
+        assertThat(count, equalTo(1));
+        verify(indexCache).putIfAbsentAsync("responder:responder123", "incident123:responder123");
+        verify(indexCache).putIfAbsentAsync("status:CREATED", "incident123:responder123");
+        verify(indexCache).putAsync("active:responder123", "incident123:responder123");
+    }
+
+    @Test
+    void testAddCompletedMissionClearsActive() {
+
+        JsonObject json = new JsonObject().put("id", "mission123").put("incidentId", "incident123")
+                .put("responderId", "responder123")
+                .put("status", "UPDATED");
+        Mission mission = json.mapTo(Mission.class).status(MissionStatus.COMPLETED);
+
+        @SuppressWarnings("unchecked")
+        MetadataValue<String> active = mock(MetadataValue.class);
+        when(active.getValue()).thenReturn("incident123:responder123");
+        when(active.getVersion()).thenReturn(2L);
+        when(indexCache.getWithMetadataAsync("active:responder123")).thenReturn(CompletableFuture.completedFuture(active));
+        when(indexCache.removeWithVersionAsync("active:responder123", 2L)).thenReturn(CompletableFuture.completedFuture(true));
+
+        repository.add(mission).await().indefinitely();
+
+        verify(indexCache).putIfAbsentAsync("status:COMPLETED", "incident123:responder123");
+        verify(indexCache).removeWithVersionAsync("active:responder123", 2L);
+        verify(indexCache, never()).putAsync(any(), any());
+    }
+
+    @Test
+    void testGetActiveByResponderId() {
+
+        JsonObject json = new JsonObject().put("id", "mission123").put("incidentId", "incident123")
+                .put("responderId", "responder123")
+                .put("status", "UPDATED");
+
+        when(indexCache.getAsync("active:responder123")).thenReturn(CompletableFuture.completedFuture("incident123:responder123"));
+        when(missionCache.getAsync("incident123:responder123")).thenReturn(CompletableFuture.completedFuture(json.toString()));
+
+        Optional<Mission> mission = repository.getActiveByResponderId("responder123").await().indefinitely();
+
+        assertThat(mission.isPresent(), is(true));
+        assertThat(mission.get().getIncidentId(), equalTo("incident123"));
+        verify(missionCache, never()).getAllAsync(any());
+    }
+
+    @Test
+    void testGetActiveByResponderIdMissionCompleted() {
+
+        JsonObject json = new JsonObject().put("id", "mission123").put("incidentId", "incident123")
+                .put("responderId", "responder123")
+                .put("status", "COMPLETED");
+
+        when(indexCache.getAsync("active:responder123")).thenReturn(CompletableFuture.completedFuture("incident123:responder123"));
+        when(missionCache.getAsync("incident123:responder123")).thenReturn(CompletableFuture.completedFuture(json.toString()));
+
+        Optional<Mission> mission = repository.getActiveByResponderId("responder123").await().indefinitely();
+
+        assertThat(mission.isPresent(), is(false));
+    }
+
+    @Test
+    void testGetActiveByResponderIdNoActiveMission() {
+
+        Optional<Mission> mission = repository.getActiveByResponderId("responder123").await().indefinitely();
+
+        assertThat(mission.isPresent(), is(false));
+        verify(missionCache, never()).getAsync(any());
+    }
+
+    @Test
+    void testGetFromNearCache() {
+
+        setField(repository, "nearCacheEnabled", true);
+        setField(repository, "nearCacheMaxEntries", 10);
+
+        JsonObject json = new JsonObject().put("id", "mission123").put("incidentId", "incident123")
+                .put("responderId", "responder123")
+                .put("status", "CREATED");
+        @SuppressWarnings("unchecked")
+        MetadataValue<Object> value = mock(MetadataValue.class);
+        when(value.getValue()).thenReturn(json.toString());
+        when(value.getVersion()).thenReturn(1L);
+        when(missionCache.getWithMetadataAsync("incident123:responder123")).thenReturn(CompletableFuture.completedFuture(value));
+
+        Optional<Mission> first = repository.get("incident123:responder123").await().indefinitely();
+        Optional<Mission> second = repository.get("incident123:responder123").await().indefinitely();
+
+        assertThat(first.isPresent(), equalTo(true));
+        assertThat(second.isPresent(), equalTo(true));
+        assertThat(second.get(), not(sameInstance(first.get())));
+        assertThat(second.get().getResponderId(), equalTo("responder123"));
+        verify(missionCache, times(1)).getWithMetadataAsync("incident123:responder123");
+        verify(missionCache, never()).getAsync(any());
+        verify(missionCache).addClientListener(any(MissionNearCache.class));
+        assertThat(repository.nearCacheHits(), equalTo(1L));
+        assertThat(repository.nearCacheMisses(), equalTo(1L));
+    }
+
+    @Test
+    void testGetFromNearCacheAfterAdd() {
+
+        setField(repository, "nearCacheEnabled", true);
+        setField(repository, "nearCacheMaxEntries", 10);
+
+        JsonObject json = new JsonObject().put("id", "mission123").put("incidentId", "incident123")
+                .put("responderId", "responder123")
+                .put("status", "CREATED");
+        Mission mission = json.mapTo(Mission.class);
+        MetadataValue<Object> v5 = metadataValue(json.toString(), 5L);
+        when(missionCache.getWithMetadataAsync("incident123:responder123")).thenReturn(CompletableFuture.completedFuture(v5));
+
+        repository.add(mission).await().indefinitely();
+        // event for the write of this service instance
+        repository.nearCache.written("incident123:responder123", 5L);
+
+        Optional<Mission> cached = repository.get("incident123:responder123").await().indefinitely();
+        assertThat(cached.isPresent(), equalTo(true));
+        assertThat(cached.get().getId(), equalTo(mission.getId()));
+        // read back once written, for the version of the write
+        verify(missionCache, times(1)).getWithMetadataAsync("incident123:responder123");
+
+        // write by another service instance
+        repository.nearCache.written("incident123:responder123", 6L);
+        when(missionCache.getWithMetadataAsync("incident123:responder123")).thenReturn(CompletableFuture.completedFuture(null));
+
+        assertThat(repository.get("incident123:responder123").await().indefinitely().isPresent(), equalTo(false));
+        verify(missionCache, times(2)).getWithMetadataAsync("incident123:responder123");
+    }
+
+    @Test
+    void testAddNotCachedIfModifiedDuringReadBack() {
+
+        setField(repository, "nearCacheEnabled", true);
+        setField(repository, "nearCacheMaxEntries", 10);
+
+        JsonObject json = new JsonObject().put("id", "mission123").put("incidentId", "incident123")
+                .put("responderId", "responder123")
+                .put("status", "CREATED");
+        Mission mission = json.mapTo(Mission.class);
+        MetadataValue<Object> v5 = metadataValue(json.toString(), 5L);
+        CompletableFuture<MetadataValue<Object>> readBack = new CompletableFuture<>();
+        when(missionCache.getWithMetadataAsync("incident123:responder123")).thenReturn(readBack);
+
+        CompletableFuture<Void> added = repository.add(mission).subscribeAsCompletionStage();
+        // write by another service instance, while the mission is read back
+        repository.nearCache.written("incident123:responder123", 6L);
+        readBack.complete(v5);
+        added.join();
+
+        assertThat(repository.nearCache.size(), equalTo(0));
+    }
+
+    @Test
+    void testAddReadBackFailed() {
+
+        setField(repository, "nearCacheEnabled", true);
+        setField(repository, "nearCacheMaxEntries", 10);
+
+        JsonObject json = new JsonObject().put("id", "mission123").put("incidentId", "incident123")
+                .put("responderId", "responder123")
+                .put("status", "CREATED");
+        Mission mission = json.mapTo(Mission.class);
+        when(missionCache.getWithMetadataAsync("incident123:responder123")).thenReturn(CompletableFuture.failedFuture(new RuntimeException("error")));
+
+        repository.add(mission).await().indefinitely();
+
+        verify(missionCache).putAsync(eq("incident123:responder123"), any());
+        assertThat(repository.nearCache.size(), equalTo(0));
+    }
+
+    @Test
+    void testAddFailedInvalidatesNearCache() {
+
+        setField(repository, "nearCacheEnabled", true);
+        setField(repository, "nearCacheMaxEntries", 10);
+
+        JsonObject json = new JsonObject().put("id", "mission123").put("incidentId", "incident123")
+                .put("responderId", "responder123");
+        Mission mission = json.mapTo(Mission.class);
+        when(missionCache.putAsync(any(), any())).thenReturn(CompletableFuture.failedFuture(new RuntimeException("error")));
+
+        assertThrows(RuntimeException.class, () -> repository.add(mission).await().indefinitely());
+
+        assertThat(repository.nearCache.size(), equalTo(0));
+    }
+
+    @Test
+    void testAddAppendsLocationHistory() {
+
+        JsonObject json = new JsonObject().put("id", "mission123").put("incidentId", "incident123")
+                .put("responderId", "responder123")
+                .put("status", "CREATED");
+        Mission mission = json.mapTo(Mission.class)
+                .addLocation(new ResponderLocationHistory(30.12345, -70.98765, 1L))
+                .addLocation(new ResponderLocationHistory(30.23456, -70.87654, 2L))
+                .addLocation(new ResponderLocationHistory(30.34567, -70.76543, 3L));
+
+        repository.add(mission).await().indefinitely();
+
+        verify(historyCache).putIfAbsentAsync(eq("incident123:responder123:0"), stringCaptor.capture());
+        verify(historyCache).putIfAbsentAsync(eq("incident123:responder123:1"), stringCaptor.capture());
+        LocationHistory segment = LocationHistory.decode(stringCaptor.getAllValues().get(0));
+        assertThat(segment.size(), equalTo(2));
+        assertThat(segment.get(1).getTimestamp(), equalTo(2L));
+        assertThat(LocationHistory.decode(stringCaptor.getAllValues().get(1)).get(0).getTimestamp(), equalTo(3L));
+        verify(missionCache).putAsync(eq("incident123:responder123"), objectCaptor.capture());
+        assertThat(objectCaptor.getValue(), jsonPartEquals("historySize", 3));
+        assertThat(objectCaptor.getValue(), jsonPartEquals("lastLocation.timestamp", 3));
+        // stored with the mission, in case the append does not complete
+        assertThat(objectCaptor.getValue(), jsonPartEquals("newLocations[2].timestamp", 3));
+        assertThat(objectCaptor.getValue(), jsonNodeAbsent("responderLocationHistory"));
+        assertThat(mission.newLocations().isEmpty(), is(true));
+    }
+
+    @Test
+    void testAddAppendsToLastSegment() {
+
+        JsonObject json = new JsonObject().put("id", "mission123").put("incidentId", "incident123")
+                .put("responderId", "responder123")
+                .put("lastLocation", new JsonObject().put("lat", 30.12345).put("lon", -70.98765).put("timestamp", 1L))
+                .put("historySize", 1)
+                .put("status", "CREATED");
+        Mission mission = json.mapTo(Mission.class)
+                .addLocation(new ResponderLocationHistory(30.23456, -70.87654, 2L));
+
+        @SuppressWarnings("unchecked")
+        MetadataValue<String> segment = mock(MetadataValue.class);
+        when(segment.getValue()).thenReturn("[{\"lat\":30.12345,\"lon\":-70.98765,\"timestamp\":1}]");
+        when(segment.getVersion()).thenReturn(4L);
+        when(historyCache.getWithMetadataAsync("incident123:responder123:0")).thenReturn(CompletableFuture.completedFuture(segment));
+        when(historyCache.replaceWithVersionAsync(eq("incident123:responder123:0"), any(), eq(4L))).thenReturn(CompletableFuture.completedFuture(true));
+
+        repository.add(mission).await().indefinitely();
+
+        verify(historyCache).replaceWithVersionAsync(eq("incident123:responder123:0"), stringCaptor.capture(), eq(4L));
+        LocationHistory history = LocationHistory.decode(stringCaptor.getValue());
+        assertThat(history.get(0).getTimestamp(), equalTo(1L));
+        assertThat(history.get(1).getTimestamp(), equalTo(2L));
+        verify(historyCache, never()).putIfAbsentAsync(any(), any());
+    }
+
+    @Test
+    void testWithHistory() {
+
+        JsonObject json = new JsonObject().put("id", "mission123").put("incidentId", "incident123")
+                .put("responderId", "responder123")
+                .put("historySize", 3)
+                .put("status", "CREATED");
+        Mission mission = json.mapTo(Mission.class);
+
+        Map<String, String> segments = new HashMap<>();
+        segments.put("incident123:responder123:0", "[{\"lat\":30.12345,\"lon\":-70.98765,\"timestamp\":1},{\"lat\":30.23456,\"lon\":-70.87654,\"timestamp\":2}]");
+        segments.put("incident123:responder123:1", "[{\"lat\":30.34567,\"lon\":-70.76543,\"timestamp\":3}]");
+        when(historyCache.getAllAsync(new HashSet<>(Arrays.asList("incident123:responder123:0", "incident123:responder123:1"))))
+                .thenReturn(CompletableFuture.completedFuture(segments));
+        when(routeCache.getAllAsync(Collections.singleton("mission123"))).thenReturn(CompletableFuture.completedFuture(Collections.emptyMap()));
+
+        Mission result = repository.assemble(mission).await().indefinitely();
+
+        assertThat(result.getResponderLocationHistory().size(), equalTo(3));
+        assertThat(result.getResponderLocationHistory().get(0).getTimestamp(), equalTo(1L));
+        assertThat(result.getResponderLocationHistory().get(2).getTimestamp(), equalTo(3L));
+    }
+
+    @Test
+    void testAddMovesInlineHistory() {
+
+        JsonObject json = new JsonObject().put("id", "mission123").put("incidentId", "incident123")
+                .put("responderId", "responder123")
+                .put("status", "CREATED")
+                .put("responderLocationHistory", new JsonArray().add(new JsonObject().put("lat", 30.98765)
+                        .put("lon", -70.12345).put("timestamp", 12345L)));
+        when(missionCache.getAsync("incident123:responder123")).thenReturn(CompletableFuture.completedFuture(json.toString()));
+
+        Mission mission = repository.get("incident123:responder123").await().indefinitely().get();
+        assertThat(mission.getHistorySize(), equalTo(1));
+        repository.add(mission).await().indefinitely();
+
+        verify(historyCache).putIfAbsentAsync(eq("incident123:responder123:0"), stringCaptor.capture());
+        assertThat(LocationHistory.decode(stringCaptor.getValue()).get(0).getTimestamp(), equalTo(12345L));
+        verify(missionCache).putAsync(eq("incident123:responder123"), objectCaptor.capture());
+        assertThat(objectCaptor.getValue(), jsonPartEquals("historySize", 1));
+        assertThat(objectCaptor.getValue(), jsonNodeAbsent("responderLocationHistory"));
+    }
+
+    @Test
+    void testAddStoresRouteOnce() {
+
+        JsonObject json = new JsonObject().put("id", "f5a9bc5e-408c-4f86-8592-6f67bb73c5fd").put("incidentId", "incident123")
+                .put("responderId", "responder123");
+        Mission mission = json.mapTo(Mission.class).route(Arrays.asList(
+                MissionStep.builder(30.12345, -70.98765).build(),
+                MissionStep.builder(30.23456, -70.87654).destination(true).build()));
+
+        repository.add(mission).await().indefinitely();
+        repository.add(mission).await().indefinitely();
+
+        verify(routeCache).putAsync(eq("f5a9bc5e-408c-4f86-8592-6f67bb73c5fd"), stringCaptor.capture());
+        assertThat(stringCaptor.getValue(), jsonPartEquals("[1].destination", true));
+        assertThat(mission.routeChanged(), is(false));
+        verify(missionCache, times(2)).putAsync(eq("incident123:responder123"), objectCaptor.capture());
+        assertThat(objectCaptor.getValue(), jsonNodeAbsent("steps"));
+    }
+
+    @Test
+    void testAssembleRoute() {
+
+        JsonObject json = new JsonObject().put("id", "f5a9bc5e-408c-4f86-8592-6f67bb73c5fd").put("incidentId", "incident123")
+                .put("responderId", "responder123");
+        Mission mission = json.mapTo(Mission.class);
+        when(routeCache.getAllAsync(Collections.singleton("f5a9bc5e-408c-4f86-8592-6f67bb73c5fd"))).thenReturn(CompletableFuture.completedFuture(
+                Collections.singletonMap("f5a9bc5e-408c-4f86-8592-6f67bb73c5fd",
+                        "[{\"lat\":30.12345,\"lon\":-70.98765,\"wayPoint\":false,\"destination\":true}]")));
+
+        repository.assemble(mission).await().indefinitely();
+        Mission other = json.mapTo(Mission.class);
+        repository.assemble(other).await().indefinitely();
+
+        assertThat(mission.getSteps().size(), equalTo(1));
+        assertThat(mission.getSteps().get(0).isDestination(), is(true));
+        assertThat(other.getSteps().size(), equalTo(1));
+        // same route version, the second read is served locally
+        verify(routeCache).getAllAsync(any());
+    }
+
+    @Test
+    void testAssembleRefreshedRoute() {
+
+        JsonObject json = new JsonObject().put("id", "f5a9bc5e-408c-4f86-8592-6f67bb73c5fd").put("incidentId", "incident123")
+                .put("responderId", "responder123").put("routeVersion", 1);
+        when(routeCache.getAllAsync(Collections.singleton("f5a9bc5e-408c-4f86-8592-6f67bb73c5fd"))).thenReturn(CompletableFuture.completedFuture(
+                Collections.singletonMap("f5a9bc5e-408c-4f86-8592-6f67bb73c5fd",
+                        "[{\"lat\":30.12345,\"lon\":-70.98765,\"wayPoint\":false,\"destination\":true}]")));
+        repository.assemble(json.mapTo(Mission.class)).await().indefinitely();
+
+        // the route was replaced, e.g. by the route refresher of another service instance
+        when(routeCache.getAllAsync(Collections.singleton("f5a9bc5e-408c-4f86-8592-6f67bb73c5fd"))).thenReturn(CompletableFuture.completedFuture(
+                Collections.singletonMap("f5a9bc5e-408c-4f86-8592-6f67bb73c5fd",
+                        "[{\"lat\":30.12345,\"lon\":-70.98765,\"wayPoint\":true,\"destination\":false},"
+                                + "{\"lat\":30.23456,\"lon\":-70.87654,\"wayPoint\":false,\"destination\":true}]")));
+        Mission refreshed = json.copy().put("routeVersion", 2).mapTo(Mission.class);
+        repository.assemble(refreshed).await().indefinitely();
+        Mission other = json.copy().put("routeVersion", 2).mapTo(Mission.class);
+        repository.assemble(other).await().indefinitely();
+
+        assertThat(refreshed.getSteps().size(), equalTo(2));
+        assertThat(other.getSteps().size(), equalTo(2));
+        verify(routeCache, times(2)).getAllAsync(any());
+    }
+
+    @Test
+    void testAddMovesInlineRoute() {
+
+        JsonObject json = new JsonObject().put("id", "f5a9bc5e-408c-4f86-8592-6f67bb73c5fd").put("incidentId", "incident123")
+                .put("responderId", "responder123")
+                .put("steps", new JsonArray().add(new JsonObject().put("lat", 30.98765)
+                        .put("lon", -70.12345).put("wayPoint", false).put("destination", true)));
+        when(missionCache.getAsync("incident123:responder123")).thenReturn(CompletableFuture.completedFuture(json.toString()));
+
+        Mission mission = repository.get("incident123:responder123").await().indefinitely().get();
+        assertThat(mission.getSteps().size(), equalTo(1));
+        repository.add(mission).await().indefinitely();
+
+        verify(routeCache).putAsync(eq("f5a9bc5e-408c-4f86-8592-6f67bb73c5fd"), stringCaptor.capture());
+        assertThat(stringCaptor.getValue(), jsonPartEquals("[0].destination", true));
+        verify(missionCache).putAsync(eq("incident123:responder123"), objectCaptor.capture());
+        assertThat(objectCaptor.getValue(), jsonNodeAbsent("steps"));
+    }
+
+    @Test
+    void testUpdate() {
+
+        JsonObject json = new JsonObject().put("id", "mission123").put("incidentId", "incident123")
+                .put("responderId", "responder123")
+                .put("historySize", 2)
+                .put("status", "CREATED");
+        MetadataValue<Object> v1 = metadataValue(json.toString(), 1L);
+        when(missionCache.getWithMetadataAsync("incident123:responder123")).thenReturn(CompletableFuture.completedFuture(v1));
+        when(missionCache.replaceWithVersionAsync(eq("incident123:responder123"), any(), eq(1L))).thenReturn(CompletableFuture.completedFuture(true));
+
+        Optional<Mission> updated = repository.update("incident123:responder123", m -> m.addLocation(
+                new ResponderLocationHistory(30.12345, -70.98765, 3L))).await().indefinitely();
+
+        assertThat(updated.isPresent(), is(true));
+        assertThat(updated.get().getHistorySize(), equalTo(3));
+        verify(missionCache).replaceWithVersionAsync(eq("incident123:responder123"), objectCaptor.capture(), eq(1L));
+        assertThat(objectCaptor.getValue(), jsonPartEquals("historySize", 3));
+        assertThat(objectCaptor.getValue(), jsonPartEquals("newLocations[0].timestamp", 3));
+        // third location, first of the second segment
+        verify(historyCache).putIfAbsentAsync(eq("incident123:responder123:1"), any());
+        verify(missionCache, never()).putAsync(any(), any());
+        assertThat(repository.updates(), equalTo(1L));
+        assertThat(repository.updateConflicts(), equalTo(0L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testUpdateRetriesOnConflict() {
+
+        JsonObject json = new JsonObject().put("id", "mission123").put("incidentId", "incident123")
+                .put("responderId", "responder123")
+                .put("historySize", 1)
+                .put("status", "CREATED");
+        MetadataValue<Object> v1 = metadataValue(json.toString(), 1L);
+        MetadataValue<Object> v2 = metadataValue(json.copy().put("historySize", 2).put("status", "UPDATED").toString(), 2L);
+        when(missionCache.getWithMetadataAsync("incident123:responder123")).thenReturn(CompletableFuture.completedFuture(v1),
+                CompletableFuture.completedFuture(v2));
+        when(missionCache.replaceWithVersionAsync(eq("incident123:responder123"), any(), eq(1L))).thenReturn(CompletableFuture.completedFuture(false));
+        when(missionCache.replaceWithVersionAsync(eq("incident123:responder123"), any(), eq(2L))).thenReturn(CompletableFuture.completedFuture(true));
+
+        Optional<Mission> updated = repository.update("incident123:responder123", m -> m.addLocation(
+                new ResponderLocationHistory(30.12345, -70.98765, 3L))).await().indefinitely();
+
+        assertThat(updated.isPresent(), is(true));
+        assertThat(updated.get().getHistorySize(), equalTo(3));
+        assertThat(updated.get().getStatus(), equalTo("UPDATED"));
+        // the location is only appended by the attempt that wrote the mission
+        verify(historyCache, never()).putIfAbsentAsync(eq("incident123:responder123:0"), any());
+        verify(historyCache).putIfAbsentAsync(eq("incident123:responder123:1"), any());
+        assertThat(repository.updates(), equalTo(1L));
+        assertThat(repository.updateConflicts(), equalTo(1L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testUpdateAppendsNewLocationsOfCurrentVersion() {
+
+        // written by an update interrupted before it appended its location
+        JsonObject json = new JsonObject().put("id", "mission123").put("incidentId", "incident123")
+                .put("responderId", "responder123")
+                .put("historySize", 2)
+                .put("newLocations", new JsonArray().add(new JsonObject().put("lat", 30.23456).put("lon", -70.87654).put("timestamp", 2L)))
+                .put("status", "CREATED");
+        MetadataValue<Object> v1 = metadataValue(json.toString(), 1L);
+        when(missionCache.getWithMetadataAsync("incident123:responder123")).thenReturn(CompletableFuture.completedFuture(v1));
+        when(missionCache.replaceWithVersionAsync(eq("incident123:responder123"), any(), eq(1L))).thenReturn(CompletableFuture.completedFuture(true));
+        @SuppressWarnings("unchecked")
+        MetadataValue<String> segment = mock(MetadataValue.class);
+        when(segment.getValue()).thenReturn("[{\"lat\":30.12345,\"lon\":-70.98765,\"timestamp\":1}]");
+        when(segment.getVersion()).thenReturn(4L);
+        // read again, once complete, before the next segment is written
+        @SuppressWarnings("unchecked")
+        MetadataValue<String> complete = mock(MetadataValue.class);
+        when(complete.getValue()).thenReturn("[{\"lat\":30.12345,\"lon\":-70.98765,\"timestamp\":1},"
+                + "{\"lat\":30.23456,\"lon\":-70.87654,\"timestamp\":2}]");
+        when(historyCache.getWithMetadataAsync("incident123:responder123:0")).thenReturn(CompletableFuture.completedFuture(segment),
+                CompletableFuture.completedFuture(complete));
+        when(historyCache.replaceWithVersionAsync(eq("incident123:responder123:0"), any(), eq(4L))).thenReturn(CompletableFuture.completedFuture(true));
+
+        repository.update("incident123:responder123", m -> m.addLocation(
+                new ResponderLocationHistory(30.34567, -70.76543, 3L))).await().indefinitely();
+
+        // the location of the current version is appended before the mission is written without it
+        InOrder inOrder = inOrder(historyCache, missionCache);
+        inOrder.verify(historyCache).replaceWithVersionAsync(eq("incident123:responder123:0"), (String) objectCaptor.capture(), eq(4L));
+        inOrder.verify(missionCache).replaceWithVersionAsync(eq("incident123:responder123"), objectCaptor.capture(), eq(1L));
+        inOrder.verify(historyCache).putIfAbsentAsync(eq("incident123:responder123:1"), any());
+        LocationHistory history = LocationHistory.decode((String) objectCaptor.getAllValues().get(0));
+        assertThat(history.size(), equalTo(2));
+        assertThat(history.get(1).getTimestamp(), equalTo(2L));
+        assertThat(objectCaptor.getAllValues().get(1), jsonPartEquals("historySize", 3));
+        assertThat(objectCaptor.getAllValues().get(1), jsonPartEquals("newLocations[0].timestamp", 3));
+        assertThat(objectCaptor.getAllValues().get(1), jsonNodeAbsent("newLocations[1]"));
+    }
+
+    @Test
+    void testUpdateFailsOnLocationHistoryConflict() {
+
+        JsonObject json = new JsonObject().put("id", "mission123").put("incidentId", "incident123")
+                .put("responderId", "responder123")
+                .put("historySize", 2)
+                .put("newLocations", new JsonArray().add(new JsonObject().put("lat", 30.23456).put("lon", -70.87654).put("timestamp", 2L)))
+                .put("status", "CREATED");
+        MetadataValue<Object> v1 = metadataValue(json.toString(), 1L);
+        when(missionCache.getWithMetadataAsync("incident123:responder123")).thenReturn(CompletableFuture.completedFuture(v1));
+        // the first location of the history is missing
+        when(historyCache.getWithMetadataAsync("incident123:responder123:0")).thenReturn(CompletableFuture.completedFuture(null));
+
+        assertThrows(LocationHistoryConflictException.class, () -> repository.update("incident123:responder123", m -> m.addLocation(
+                new ResponderLocationHistory(30.34567, -70.76543, 3L))).await().indefinitely());
+
+        verify(missionCache, never()).replaceWithVersionAsync(any(), any(), anyLong());
+        verify(historyCache, never()).putIfAbsentAsync(any(), any());
+    }
+
+    @Test
+    void testUpdateFailsAfterMaxRetries() {
+
+        JsonObject json = new JsonObject().put("id", "mission123").put("incidentId", "incident123")
+                .put("responderId", "responder123")
+                .put("status", "CREATED");
+        MetadataValue<Object> v1 = metadataValue(json.toString(), 1L);
+        when(missionCache.getWithMetadataAsync("incident123:responder123")).thenReturn(CompletableFuture.completedFuture(v1));
+        when(missionCache.replaceWithVersionAsync(eq("incident123:responder123"), any(), eq(1L))).thenReturn(CompletableFuture.completedFuture(false));
+
+        assertThrows(MissionUpdateConflictException.class, () -> repository.update("incident123:responder123",
+                m -> m.status(MissionStatus.UPDATED)).await().indefinitely());
+
+        verify(missionCache, times(4)).replaceWithVersionAsync(eq("incident123:responder123"), any(), eq(1L));
+        verifyNoInteractions(indexCache);
+        assertThat(repository.updateConflicts(), equalTo(4L));
+        assertThat(repository.updateFailures(), equalTo(1L));
+    }
+
+    @Test
+    void testUpdateNotFound() {
+
+        when(missionCache.getWithMetadataAsync("incident123:responder123")).thenReturn(CompletableFuture.completedFuture(null));
+
+        Optional<Mission> updated = repository.update("incident123:responder123", m -> m.status(MissionStatus.UPDATED)).await().indefinitely();
+
+        assertThat(updated.isPresent(), is(false));
+        verify(missionCache, never()).replaceWithVersionAsync(any(), any(), anyLong());
+    }
+
+    @Test
+    void testUpdateWithNearCacheVersion() {
+
+        setField(repository, "nearCacheEnabled", true);
+        setField(repository, "nearCacheMaxEntries", 10);
+
+        JsonObject json = new JsonObject().put("id", "mission123").put("incidentId", "incident123")
+                .put("responderId", "responder123")
+                .put("status", "CREATED");
+        MetadataValue<Object> v1 = metadataValue(json.toString(), 1L);
+        when(missionCache.getWithMetadataAsync("incident123:responder123")).thenReturn(CompletableFuture.completedFuture(v1));
+        when(missionCache.replaceWithVersionAsync(eq("incident123:responder123"), any(), anyLong())).thenReturn(CompletableFuture.completedFuture(true));
+
+        repository.get("incident123:responder123").await().indefinitely();
+        // the first update is read back with the version of its write
+        MetadataValue<Object> v2 = metadataValue(json.copy().put("status", "UPDATED").toString(), 2L);
+        when(missionCache.getWithMetadataAsync("incident123:responder123")).thenReturn(CompletableFuture.completedFuture(v2));
+        repository.update("incident123:responder123", m -> m.status(MissionStatus.UPDATED)).await().indefinitely();
+        // event for the update
+        repository.nearCache.written("incident123:responder123", 2L);
+        repository.update("incident123:responder123", m -> m.status(MissionStatus.COMPLETED)).await().indefinitely();
+
+        verify(missionCache, times(3)).getWithMetadataAsync("incident123:responder123");
+        verify(missionCache).replaceWithVersionAsync(eq("incident123:responder123"), any(), eq(1L));
+        verify(missionCache).replaceWithVersionAsync(eq("incident123:responder123"), objectCaptor.capture(), eq(2L));
+        assertThat(objectCaptor.getValue(), jsonPartEquals("status", "COMPLETED"));
+    }
+
+    @Test
+    void testUpdateConflictInvalidatesNearCache() {
+
+        setField(repository, "nearCacheEnabled", true);
+        setField(repository, "nearCacheMaxEntries", 10);
+        setField(repository, "updateMaxRetries", 0);
+
+        JsonObject json = new JsonObject().put("id", "mission123").put("incidentId", "incident123")
+                .put("responderId", "responder123")
+                .put("status", "CREATED");
+        MetadataValue<Object> v1 = metadataValue(json.toString(), 1L);
+        when(missionCache.getWithMetadataAsync("incident123:responder123")).thenReturn(CompletableFuture.completedFuture(v1));
+        when(missionCache.replaceWithVersionAsync(eq("incident123:responder123"), any(), anyLong())).thenReturn(CompletableFuture.completedFuture(false));
+
+        repository.get("incident123:responder123").await().indefinitely();
+        assertThrows(MissionUpdateConflictException.class,
+                () -> repository.update("incident123:responder123", m -> m.status(MissionStatus.UPDATED)).await().indefinitely());
+
+        assertThat(repository.nearCache.size(), equalTo(0));
+    }
+
+    @SuppressWarnings("unchecked")
+    private MetadataValue<Object> metadataValue(Object value, long version) {
+        MetadataValue<Object> metadataValue = mock(MetadataValue.class);
+        when(metadataValue.getValue()).thenReturn(value);
+        when(metadataValue.getVersion()).thenReturn(version);
+        return metadataValue;
+    }
+
+    private Map.Entry<String, Object> missionEntry(String incidentId, String responderId, String status) {
+        JsonObject json = new JsonObject().put("id", "mission-" + incidentId).put("incidentId", incidentId).put("responderId", responderId).put("status", status);
+        return new AbstractMap.SimpleEntry<>(incidentId + ":" + responderId, json.toString());
+    }
+
+    @SafeVarargs
+    private Publisher<Map.Entry<String, Object>> entries(Map.Entry<String, Object>... entries) {
+        List<Map.Entry<String, Object>> list = new ArrayList<>();
+        for (Map.Entry<String, Object> entry : entries) {
+            list.add(entry);
+        }
+        return Multi.createFrom().iterable(list);
+    }
+
+    private Publisher<Map.Entry<String, Object>> keys(String... keys) {
+        List<Map.Entry<String, Object>> list = new ArrayList<>();
+        for (String key : keys) {
+            list.add(new AbstractMap.SimpleEntry<>(key, new byte[0]));
+        }
+        return Multi.createFrom().iterable(list);
+    }
+
+    @SafeVarargs
+    private Map<String, Object> missions(Map.Entry<String, Object>... entries) {
+        Map<String, Object> missions = new HashMap<>();
+        for (Map.Entry<String, Object> entry : entries) {
+            missions.put(entry.getKey(), entry.getValue());
+        }
+        return missions;
     }
 
     private void setField(Object targetObject, String name, Object value) {
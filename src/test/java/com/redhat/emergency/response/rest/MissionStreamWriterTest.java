@@ -0,0 +1,132 @@
+package com.redhat.emergency.response.rest;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.notNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.redhat.emergency.response.model.Mission;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.reactivestreams.Subscription;
+
+public class MissionStreamWriterTest {
+
+    @Mock
+    Context context;
+
+    @Mock
+    HttpServerResponse response;
+
+    @Mock
+    Subscription subscription;
+
+    @Captor
+    ArgumentCaptor<Handler<Void>> handlerCaptor;
+
+    private final List<Handler<Void>> tasks = new ArrayList<>();
+
+    private MissionStreamWriter writer;
+
+    @BeforeEach
+    void init() {
+        openMocks(this);
+        doAnswer(i -> tasks.add(i.getArgument(0))).when(context).runOnContext(any());
+        when(response.setChunked(true)).thenReturn(response);
+        when(response.putHeader(anyString(), anyString())).thenReturn(response);
+        when(response.setStatusCode(200)).thenReturn(response);
+        writer = new MissionStreamWriter(context, response, true);
+    }
+
+    @Test
+    void testWritesOnContext() {
+
+        writer.onSubscribe(subscription);
+        writer.onNext(mission("mission1"));
+        writer.onComplete();
+
+        verify(subscription, never()).request(1);
+        verify(response, never()).write(anyString());
+
+        runTasks();
+
+        verify(response).write(anyString());
+        verify(response).end("");
+        verify(subscription, times(2)).request(1);
+    }
+
+    @Test
+    void testRequestsOnceWhenWriteQueueFull() {
+
+        writer.onSubscribe(subscription);
+        runTasks();
+        verify(subscription, times(1)).request(1);
+
+        when(response.writeQueueFull()).thenReturn(true);
+        writer.onNext(mission("mission1"));
+        runTasks();
+
+        // no mission is requested until the queue is drained
+        verify(subscription, times(1)).request(1);
+        verify(response).drainHandler(handlerCaptor.capture());
+
+        when(response.writeQueueFull()).thenReturn(false);
+        handlerCaptor.getValue().handle(null);
+
+        verify(subscription, times(2)).request(1);
+        verify(response).drainHandler(isNull());
+
+        writer.onNext(mission("mission2"));
+        runTasks();
+
+        verify(subscription, times(3)).request(1);
+        verify(response, times(2)).write(anyString());
+        verify(response, times(1)).drainHandler(notNull());
+    }
+
+    @Test
+    void testErrorBeforeFirstMission() {
+
+        when(response.setStatusCode(500)).thenReturn(response);
+        writer.onSubscribe(subscription);
+        writer.onError(new IllegalStateException());
+        runTasks();
+
+        verify(response).setStatusCode(500);
+        verify(response).end();
+        verify(response, never()).setChunked(true);
+        verify(response).closeHandler(any());
+        verify(response, never()).write(eq("["));
+        assertThat(tasks.size(), equalTo(0));
+    }
+
+    private void runTasks() {
+        while (!tasks.isEmpty()) {
+            tasks.remove(0).handle(null);
+        }
+    }
+
+    private Mission mission(String id) {
+        return new JsonObject().put("id", id).put("incidentId", "incident1").put("responderId", "responder1")
+                .put("status", "CREATED").mapTo(Mission.class);
+    }
+}
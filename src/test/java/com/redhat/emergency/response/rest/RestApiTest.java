@@ -7,18 +7,29 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.anyOf;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
 
+import com.redhat.emergency.response.map.RoutePlanner;
 import com.redhat.emergency.response.model.Mission;
+import com.redhat.emergency.response.model.MissionStatus;
+import com.redhat.emergency.response.repository.MissionPage;
 import com.redhat.emergency.response.repository.MissionRepository;
 import io.quarkus.test.junit.QuarkusTest;
 import io.quarkus.test.junit.mockito.InjectMock;
 import io.restassured.RestAssured;
 import io.restassured.http.Header;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
 import io.vertx.core.json.Json;
 import org.junit.jupiter.api.Test;
@@ -29,6 +40,9 @@ public class RestApiTest {
     @InjectMock
     MissionRepository repository;
 
+    @InjectMock
+    RoutePlanner routePlanner;
+
     @Test
     void testGetAll() {
 
@@ -48,7 +62,8 @@ public class RestApiTest {
                 "\"steps\":[],\"status\":\"CREATED\"}";
         Mission mission2 = Json.decodeValue(m2, Mission.class);
 
-        when(repository.getAll()).thenReturn(Uni.createFrom().emitter(emitter -> emitter.complete(Arrays.asList(mission1, mission2))));
+        when(repository.stream()).thenReturn(Multi.createFrom().items(mission1, mission2));
+        when(repository.assemble(any(Mission.class))).thenAnswer(i -> Uni.createFrom().item(i.<Mission>getArgument(0)));
 
         String response = RestAssured.get("/api/missions").then()
                 .assertThat()
@@ -62,33 +77,140 @@ public class RestApiTest {
         assertThat(response, jsonNodePresent("[1]"));
         assertThat(response, jsonNodeAbsent("[2]"));
         assertThat(response, jsonPartMatches("[0].id", anyOf(equalTo("f5a9bc5e-408c-4f86-8592-6f67bb73c5fd"), equalTo("f5a9bc5e-408c-4f86-8592-6f67bb73c5ff"))));
-        verify(repository).getAll();
+        verify(repository).stream();
+        verify(repository, times(2)).assemble(any(Mission.class));
+        verify(repository, never()).assemble(anyList());
+        verify(repository, never()).getAll();
     }
 
     @Test
-    void testClear() {
+    void testGetAllNdjson() {
 
-        when(repository.clear()).thenReturn(Uni.createFrom().emitter(emitter -> emitter.complete(null)));
+        String m1 = "{\"id\":\"f5a9bc5e-408c-4f86-8592-6f67bb73c5fd\",\"incidentId\":\"5d9b2d3a-136f-414f-96ba-1b2a445fee5d\"," +
+                "\"responderId\":\"64\",\"steps\":[],\"status\":\"CREATED\"}";
+        Mission mission1 = Json.decodeValue(m1, Mission.class);
 
-        RestAssured.given().header(new Header("Accept", "application/json")).post("/api/missions/clear").then()
+        String m2 = "{\"id\":\"f5a9bc5e-408c-4f86-8592-6f67bb73c5ff\",\"incidentId\":\"5d9b2d3a-136f-414f-96ba-1b2a445fee5f\"," +
+                "\"responderId\":\"68\",\"steps\":[],\"status\":\"CREATED\"}";
+        Mission mission2 = Json.decodeValue(m2, Mission.class);
+
+        when(repository.stream()).thenReturn(Multi.createFrom().items(mission1, mission2));
+        when(repository.assemble(any(Mission.class))).thenAnswer(i -> Uni.createFrom().item(i.<Mission>getArgument(0)));
+
+        String response = RestAssured.given().header(new Header("Accept", "application/x-ndjson")).get("/api/missions").then()
                 .assertThat()
-                .statusCode(204);
+                .statusCode(200)
+                .contentType("application/x-ndjson")
+                .extract()
+                .asString();
 
-        verify(repository).clear();
+        String[] lines = response.split("\n");
+        assertThat(lines.length, equalTo(2));
+        assertThat(lines[0], jsonPartMatches("id", equalTo("f5a9bc5e-408c-4f86-8592-6f67bb73c5fd")));
+        assertThat(lines[1], jsonPartMatches("id", equalTo("f5a9bc5e-408c-4f86-8592-6f67bb73c5ff")));
+    }
 
+    @Test
+    void testGetAllEmpty() {
+
+        when(repository.stream()).thenReturn(Multi.createFrom().empty());
+
+        RestAssured.get("/api/missions").then()
+                .assertThat()
+                .statusCode(200)
+                .contentType("application/json")
+                .body("size()", equalTo(0));
     }
 
     @Test
-    void missionByResponder() {
+    void testGetPage() {
 
         String m1 = "{\"id\":\"f5a9bc5e-408c-4f86-8592-6f67bb73c5fd\",\"incidentId\":\"5d9b2d3a-136f-414f-96ba-1b2a445fee5d\"," +
                 "\"responderId\":\"64\",\"responderStartLat\":\"40.12345\",\"responderStartLong\":\"-80.98765\"," +
                 "\"incidentLat\":\"30.12345\",\"incidentLong\":\"-70.98765\"," +
                 "\"destinationLat\":\"50.12345\",\"destinationLong\":\"-90.98765\"," +
-                "\"responderLocationHistory\":[{\"lat\":30.78452,\"lon\":-70.85252,\"timestamp\":1593872667576}]," +
-                "\"steps\":[],\"status\":\"COMPLETED\"}";
+                "\"steps\":[],\"status\":\"UPDATED\"}";
         Mission mission1 = Json.decodeValue(m1, Mission.class);
 
+        when(repository.getPage("abc", 1, MissionStatus.UPDATED, null))
+                .thenReturn(Uni.createFrom().item(new MissionPage(Collections.singletonList(mission1), "def")));
+        when(repository.assemble(anyList())).thenAnswer(i -> Uni.createFrom().item(i.<List<Mission>>getArgument(0)));
+
+        String response = RestAssured.given().queryParam("cursor", "abc").queryParam("limit", 1).queryParam("status", "UPDATED")
+                .get("/api/missions").then()
+                .assertThat()
+                .statusCode(200)
+                .contentType("application/json")
+                .header("X-Next-Cursor", equalTo("def"))
+                .extract()
+                .asString();
+
+        assertThat(response, jsonPartMatches("[0].id", equalTo("f5a9bc5e-408c-4f86-8592-6f67bb73c5fd")));
+        assertThat(response, jsonNodeAbsent("[1]"));
+        verify(repository).getPage("abc", 1, MissionStatus.UPDATED, null);
+        verify(repository, never()).getAll();
+    }
+
+    @Test
+    void testGetLastPage() {
+
+        when(repository.getPage(null, 100, null, "incident1"))
+                .thenReturn(Uni.createFrom().item(new MissionPage(Collections.emptyList(), null)));
+        when(repository.assemble(anyList())).thenAnswer(i -> Uni.createFrom().item(i.<List<Mission>>getArgument(0)));
+
+        RestAssured.given().queryParam("incidentId", "incident1").get("/api/missions").then()
+                .assertThat()
+                .statusCode(200)
+                .header("X-Next-Cursor", nullValue())
+                .body("size()", equalTo(0));
+
+        verify(repository).getPage(null, 100, null, "incident1");
+    }
+
+    @Test
+    void testGetPageInvalidParameters() {
+
+        RestAssured.given().queryParam("limit", 0).get("/api/missions").then().assertThat().statusCode(400);
+        RestAssured.given().queryParam("limit", "ten").get("/api/missions").then().assertThat().statusCode(400);
+        RestAssured.given().queryParam("status", "UNKNOWN").get("/api/missions").then().assertThat().statusCode(400);
+
+        verify(repository, never()).getPage(any(), anyInt(), any(), any());
+    }
+
+    @Test
+    void testGetPageInvalidCursor() {
+
+        when(repository.getPage("abc", 100, null, null)).thenReturn(Uni.createFrom().failure(new IllegalArgumentException("Invalid cursor")));
+
+        RestAssured.given().queryParam("cursor", "abc").get("/api/missions").then().assertThat().statusCode(400);
+    }
+
+    @Test
+    void testClear() {
+
+        when(repository.clear()).thenReturn(Uni.createFrom().emitter(emitter -> emitter.complete(null)));
+
+        RestAssured.given().header(new Header("Accept", "application/json")).post("/api/missions/clear").then()
+                .assertThat()
+                .statusCode(204);
+
+        verify(repository).clear();
+
+    }
+
+    @Test
+    void testClearRoutes() {
+
+        RestAssured.given().post("/api/routes/clear").then()
+                .assertThat()
+                .statusCode(204);
+
+        verify(routePlanner).invalidateRoutes();
+    }
+
+    @Test
+    void missionByResponder() {
+
         String m2 = "{\"id\":\"f5a9bc5e-408c-4f86-8592-6f67bb73c5ff\",\"incidentId\":\"5d9b2d3a-136f-414f-96ba-1b2a445fee5f\"," +
                 "\"responderId\":\"64\",\"responderStartLat\":\"40.12345\",\"responderStartLong\":\"-80.98765\"," +
                 "\"incidentLat\":\"30.12345\",\"incidentLong\":\"-70.98765\"," +
@@ -97,7 +219,8 @@ public class RestApiTest {
                 "\"steps\":[],\"status\":\"CREATED\"}";
         Mission mission2 = Json.decodeValue(m2, Mission.class);
 
-        when(repository.getByResponderId("64")).thenReturn(Uni.createFrom().emitter(emitter -> emitter.complete(Arrays.asList(mission1, mission2))));
+        when(repository.getActiveByResponderId("64")).thenReturn(Uni.createFrom().item(Optional.of(mission2)));
+        when(repository.assemble(any(Mission.class))).thenAnswer(i -> Uni.createFrom().item(i.<Mission>getArgument(0)));
 
         RestAssured.given().header(new Header("Accept", "application/json")).get("/api/missions/responders/64").then()
                 .assertThat()
@@ -105,46 +228,30 @@ public class RestApiTest {
                 .contentType("application/json")
                 .body("id", equalTo("f5a9bc5e-408c-4f86-8592-6f67bb73c5ff"));
 
-        verify(repository).getByResponderId("64");
+        verify(repository).getActiveByResponderId("64");
     }
 
     @Test
     void missionByResponderNoCurrentMission() {
 
-        String m1 = "{\"id\":\"f5a9bc5e-408c-4f86-8592-6f67bb73c5fd\",\"incidentId\":\"5d9b2d3a-136f-414f-96ba-1b2a445fee5d\"," +
-                "\"responderId\":\"64\",\"responderStartLat\":\"40.12345\",\"responderStartLong\":\"-80.98765\"," +
-                "\"incidentLat\":\"30.12345\",\"incidentLong\":\"-70.98765\"," +
-                "\"destinationLat\":\"50.12345\",\"destinationLong\":\"-90.98765\"," +
-                "\"responderLocationHistory\":[{\"lat\":30.78452,\"lon\":-70.85252,\"timestamp\":1593872667576}]," +
-                "\"steps\":[],\"status\":\"COMPLETED\"}";
-        Mission mission1 = Json.decodeValue(m1, Mission.class);
-
-        String m2 = "{\"id\":\"f5a9bc5e-408c-4f86-8592-6f67bb73c5ff\",\"incidentId\":\"5d9b2d3a-136f-414f-96ba-1b2a445fee5f\"," +
-                "\"responderId\":\"64\",\"responderStartLat\":\"40.12345\",\"responderStartLong\":\"-80.98765\"," +
-                "\"incidentLat\":\"30.12345\",\"incidentLong\":\"-70.98765\"," +
-                "\"destinationLat\":\"50.12345\",\"destinationLong\":\"-90.98765\"," +
-                "\"responderLocationHistory\":[{\"lat\":30.78452,\"lon\":-70.85252,\"timestamp\":1593872667576}]," +
-                "\"steps\":[],\"status\":\"COMPLETED\"}";
-        Mission mission2 = Json.decodeValue(m2, Mission.class);
-
-        when(repository.getByResponderId("64")).thenReturn(Uni.createFrom().emitter(emitter -> emitter.complete(Arrays.asList(mission1, mission2))));
+        when(repository.getActiveByResponderId("64")).thenReturn(Uni.createFrom().item(Optional.empty()));
 
         RestAssured.given().header(new Header("Accept", "application/json")).get("/api/missions/responders/64").then()
                 .assertThat()
                 .statusCode(204);
 
-        verify(repository).getByResponderId("64");
+        verify(repository).getActiveByResponderId("64");
     }
 
     @Test
     void missionByResponderNoMission() {
 
-        when(repository.getByResponderId("64")).thenReturn(Uni.createFrom().emitter(emitter -> emitter.complete(Collections.emptyList())));
+        when(repository.getActiveByResponderId("64")).thenReturn(Uni.createFrom().item(Optional.empty()));
 
         RestAssured.given().header(new Header("Accept", "application/json")).get("/api/missions/responders/64").then()
                 .assertThat()
                 .statusCode(204);
 
-        verify(repository).getByResponderId("64");
+        verify(repository).getActiveByResponderId("64");
     }
 }
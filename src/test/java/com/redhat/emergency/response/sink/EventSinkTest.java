@@ -8,7 +8,7 @@ import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 
-import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import javax.enterprise.inject.Any;
 import javax.inject.Inject;
 
@@ -41,13 +41,13 @@ public class EventSinkTest {
     @Test
     void testMissionStarted() {
 
-        InMemorySink<String> results = connector.sink("mission-event");
+        InMemorySink<byte[]> results = connector.sink("mission-event");
 
         JsonObject json = new JsonObject().put("incidentId", "incident123")
-                .put("incidentLat", new BigDecimal("30.12345").doubleValue()).put("incidentLong", new BigDecimal("-70.98765").doubleValue())
+                .put("incidentLat", 30.12345).put("incidentLong", -70.98765)
                 .put("responderId", "responder123")
-                .put("responderStartLat", new BigDecimal("31.12345").doubleValue()).put("responderStartLong", new BigDecimal("-71.98765").doubleValue())
-                .put("destinationLat", new BigDecimal("32.12345").doubleValue()).put("destinationLong", new BigDecimal("-72.98765").doubleValue())
+                .put("responderStartLat", 31.12345).put("responderStartLong", -71.98765)
+                .put("destinationLat", 32.12345).put("destinationLong", -72.98765)
                 .put("status", "CREATED");
 
         Mission mission = json.mapTo(Mission.class);
@@ -55,8 +55,8 @@ public class EventSinkTest {
         eventSink.missionStarted(mission).await().indefinitely();
 
         assertThat(results.received().size(), equalTo(1));
-        Message<String> message = results.received().get(0);
-        String value = message.getPayload();
+        Message<byte[]> message = results.received().get(0);
+        String value = new String(message.getPayload(), StandardCharsets.UTF_8);
         assertThat(value, jsonPartEquals("incidentId", "incident123"));
         assertThat(value, jsonNodePresent("id"));
         assertThat(value, jsonPartEquals("id", "${json-unit.regex}[a-f0-9]{8}-[a-f0-9]{4}-[a-f0-9]{4}-[a-f0-9]{4}-[a-f0-9]{12}"));
@@ -95,13 +95,13 @@ public class EventSinkTest {
     @Test
     void testMissionPickedUp() {
 
-        InMemorySink<String> results = connector.sink("mission-event");
+        InMemorySink<byte[]> results = connector.sink("mission-event");
 
         JsonObject json = new JsonObject().put("incidentId", "incident123")
-                .put("incidentLat", new BigDecimal("30.12345").doubleValue()).put("incidentLong", new BigDecimal("-70.98765").doubleValue())
+                .put("incidentLat", 30.12345).put("incidentLong", -70.98765)
                 .put("responderId", "responder123")
-                .put("responderStartLat", new BigDecimal("31.12345").doubleValue()).put("responderStartLong", new BigDecimal("-71.98765").doubleValue())
-                .put("destinationLat", new BigDecimal("32.12345").doubleValue()).put("destinationLong", new BigDecimal("-72.98765").doubleValue())
+                .put("responderStartLat", 31.12345).put("responderStartLong", -71.98765)
+                .put("destinationLat", 32.12345).put("destinationLong", -72.98765)
                 .put("status", "PICKEDUP");
 
         Mission mission = json.mapTo(Mission.class);
@@ -109,8 +109,8 @@ public class EventSinkTest {
         eventSink.missionPickedUp(mission).await().indefinitely();
 
         assertThat(results.received().size(), equalTo(1));
-        Message<String> message = results.received().get(0);
-        String value = message.getPayload();
+        Message<byte[]> message = results.received().get(0);
+        String value = new String(message.getPayload(), StandardCharsets.UTF_8);
         assertThat(value, jsonPartEquals("incidentId", "incident123"));
         assertThat(value, jsonNodePresent("id"));
         assertThat(value, jsonPartEquals("id", "${json-unit.regex}[a-f0-9]{8}-[a-f0-9]{4}-[a-f0-9]{4}-[a-f0-9]{4}-[a-f0-9]{12}"));
@@ -150,13 +150,13 @@ public class EventSinkTest {
     @Test
     void testMissionCompleted() {
 
-        InMemorySink<String> results = connector.sink("mission-event");
+        InMemorySink<byte[]> results = connector.sink("mission-event");
 
         JsonObject json = new JsonObject().put("incidentId", "incident123")
-                .put("incidentLat", new BigDecimal("30.12345").doubleValue()).put("incidentLong", new BigDecimal("-70.98765").doubleValue())
+                .put("incidentLat", 30.12345).put("incidentLong", -70.98765)
                 .put("responderId", "responder123")
-                .put("responderStartLat", new BigDecimal("31.12345").doubleValue()).put("responderStartLong", new BigDecimal("-71.98765").doubleValue())
-                .put("destinationLat", new BigDecimal("32.12345").doubleValue()).put("destinationLong", new BigDecimal("-72.98765").doubleValue())
+                .put("responderStartLat", 31.12345).put("responderStartLong", -71.98765)
+                .put("destinationLat", 32.12345).put("destinationLong", -72.98765)
                 .put("status", "COMPLETED");
 
         Mission mission = json.mapTo(Mission.class);
@@ -164,8 +164,8 @@ public class EventSinkTest {
         eventSink.missionCompleted(mission).await().indefinitely();
 
         assertThat(results.received().size(), equalTo(1));
-        Message<String> message = results.received().get(0);
-        String value = message.getPayload();
+        Message<byte[]> message = results.received().get(0);
+        String value = new String(message.getPayload(), StandardCharsets.UTF_8);
         assertThat(value, jsonPartEquals("incidentId", "incident123"));
         assertThat(value, jsonNodePresent("id"));
         assertThat(value, jsonPartEquals("id", "${json-unit.regex}[a-f0-9]{8}-[a-f0-9]{4}-[a-f0-9]{4}-[a-f0-9]{4}-[a-f0-9]{12}"));
@@ -0,0 +1,155 @@
+package com.redhat.emergency.response.sink;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+import java.util.Collections;
+
+import com.redhat.emergency.response.model.Mission;
+import com.redhat.emergency.response.model.MissionStep;
+import com.redhat.emergency.response.model.ResponderLocationHistory;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+
+public class MissionBroadcasterTest {
+
+    @Captor
+    ArgumentCaptor<Buffer> bufferCaptor;
+
+    @Captor
+    ArgumentCaptor<Handler<Void>> closeHandlerCaptor;
+
+    MissionBroadcaster broadcaster;
+
+    @BeforeEach
+    void init() {
+        openMocks(this);
+        broadcaster = new MissionBroadcaster();
+        broadcaster.maxBufferSize = 1024;
+    }
+
+    @Test
+    void testPublish() {
+        HttpServerResponse all = response();
+        HttpServerResponse responder123 = response();
+        HttpServerResponse responder456 = response();
+        broadcaster.subscribe(all, null);
+        broadcaster.subscribe(responder123, "responder123");
+        broadcaster.subscribe(responder456, "responder456");
+
+        broadcaster.publish(mission("responder123", "UPDATED"));
+
+        verify(all, times(2)).write(bufferCaptor.capture());
+        String event = bufferCaptor.getValue().toString();
+        assertThat(event, startsWith("event: updated\ndata: {"));
+        assertThat(event, containsString("\"responderId\":\"responder123\""));
+        verify(responder123, times(2)).write(any(Buffer.class));
+        // only the heartbeat sent when subscribing
+        verify(responder456, times(1)).write(any(Buffer.class));
+        verify(all).setWriteQueueMaxSize(1024);
+        verify(all).putHeader("Content-Type", "text/event-stream");
+    }
+
+    @Test
+    void testPublishNoClients() {
+        Mission mission = mock(Mission.class);
+        when(mission.getResponderId()).thenReturn("responder123");
+
+        broadcaster.publish(mission);
+
+        verify(mission, never()).toJsonBytes();
+    }
+
+    @Test
+    void testPublishEventDocument() {
+        HttpServerResponse response = response();
+        broadcaster.subscribe(response, null);
+        Mission mission = mission("responder123", "UPDATED")
+                .addLocation(new ResponderLocationHistory(30.1234, -70.4321, 12345L))
+                .route(Collections.singletonList(new MissionStep()));
+
+        broadcaster.publish(mission);
+
+        verify(response, times(2)).write(bufferCaptor.capture());
+        String event = bufferCaptor.getValue().toString();
+        assertThat(event, endsWith("\n\n"));
+        JsonObject data = new JsonObject(event.substring("event: updated\ndata: ".length(), event.length() - 2));
+        assertThat(data.getJsonArray("responderLocationHistory").size(), equalTo(1));
+        assertThat(data.getJsonArray("steps").size(), equalTo(1));
+        // the fields only stored in the repository are not sent to the clients
+        assertThat(data.fieldNames(), not(hasItem("newLocations")));
+        assertThat(data.fieldNames(), not(hasItem("lastLocation")));
+        assertThat(data.fieldNames(), not(hasItem("historySize")));
+        assertThat(data.fieldNames(), not(hasItem("routeVersion")));
+    }
+
+    @Test
+    void testSlowClientIsDisconnected() {
+        HttpServerResponse slow = response();
+        HttpServerResponse fast = response();
+        broadcaster.subscribe(slow, null);
+        broadcaster.subscribe(fast, null);
+        when(slow.writeQueueFull()).thenReturn(true);
+
+        broadcaster.publish(mission("responder123", "CREATED"));
+        broadcaster.publish(mission("responder123", "UPDATED"));
+
+        verify(slow).close();
+        verify(slow, times(1)).write(any(Buffer.class));
+        verify(fast, times(3)).write(any(Buffer.class));
+        assertThat(broadcaster.clients(), equalTo(1L));
+        assertThat(broadcaster.disconnectedClients(), equalTo(1L));
+    }
+
+    @Test
+    void testClosedClientIsRemoved() {
+        HttpServerResponse response = response();
+        broadcaster.subscribe(response, "responder123");
+        verify(response).closeHandler(closeHandlerCaptor.capture());
+
+        closeHandlerCaptor.getValue().handle(null);
+
+        assertThat(broadcaster.clients(), equalTo(0L));
+        broadcaster.publish(mission("responder123", "COMPLETED"));
+        verify(response, times(1)).write(any(Buffer.class));
+    }
+
+    @Test
+    void testHeartbeat() {
+        HttpServerResponse response = response();
+        broadcaster.subscribe(response, "responder123");
+
+        broadcaster.heartbeat();
+
+        verify(response, times(2)).write(bufferCaptor.capture());
+        assertThat(bufferCaptor.getValue().toString(), equalTo(":\n\n"));
+    }
+
+    private HttpServerResponse response() {
+        return mock(HttpServerResponse.class, RETURNS_SELF);
+    }
+
+    private Mission mission(String responderId, String status) {
+        return new JsonObject().put("incidentId", "incident123").put("responderId", responderId).put("status", status)
+                .mapTo(Mission.class);
+    }
+}
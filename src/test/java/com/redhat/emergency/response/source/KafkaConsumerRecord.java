@@ -47,6 +47,7 @@ public class KafkaConsumerRecord<K,V> implements io.vertx.kafka.client.consumer.
     }
 
     @Override
+    @Deprecated
     public long checksum() {
         return 0;
     }
@@ -5,25 +5,30 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.openMocks;
 
-import java.math.BigDecimal;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import javax.enterprise.inject.Any;
 import javax.inject.Inject;
 
 import com.redhat.emergency.response.map.RoutePlanner;
 import com.redhat.emergency.response.map.RoutePlannerException;
+import com.redhat.emergency.response.map.RoutePlannerUnavailableException;
+import com.redhat.emergency.response.map.RouteRequest;
 import com.redhat.emergency.response.model.Location;
 import com.redhat.emergency.response.model.Mission;
 import com.redhat.emergency.response.model.MissionStatus;
 import com.redhat.emergency.response.model.MissionStep;
 import com.redhat.emergency.response.repository.MissionRepository;
 import com.redhat.emergency.response.sink.EventSink;
+import com.redhat.emergency.response.sink.MissionBroadcaster;
 import io.quarkus.test.junit.QuarkusTest;
 import io.quarkus.test.junit.mockito.InjectMock;
 import io.smallrye.mutiny.Uni;
@@ -50,6 +55,12 @@ public class MessageCommandSourceTest {
     @InjectMock
     MissionSourceRebalanceListener rebalanceListener;
 
+    @InjectMock
+    MissionBroadcaster broadcaster;
+
+    @InjectMock
+    MissionRouteRefresher routeRefresher;
+
     @Inject @Any
     InMemoryConnector connector;
 
@@ -59,6 +70,9 @@ public class MessageCommandSourceTest {
     @Captor
     ArgumentCaptor<Location> locationCaptor;
 
+    @Captor
+    ArgumentCaptor<List<RouteRequest>> routeRequestsCaptor;
+
     InMemorySource<Message<String>> source;
 
     @BeforeEach
@@ -91,13 +105,13 @@ public class MessageCommandSourceTest {
         Mission mission = missionCaptor.getValue();
         assertThat(mission, notNullValue());
         assertThat(mission.getIncidentId(), equalTo("incident123"));
-        assertThat(mission.getIncidentLat(), equalTo(new BigDecimal("30.12345")));
-        assertThat(mission.getIncidentLong(), equalTo(new BigDecimal("-70.98765")));
+        assertThat(mission.getIncidentLat(), equalTo(30.12345));
+        assertThat(mission.getIncidentLong(), equalTo(-70.98765));
         assertThat(mission.getResponderId(), equalTo("responder123"));
-        assertThat(mission.getResponderStartLat(), equalTo(new BigDecimal("40.12345")));
-        assertThat(mission.getResponderStartLong(), equalTo(new BigDecimal("-80.98765")));
-        assertThat(mission.getDestinationLat(), equalTo(new BigDecimal("50.12345")));
-        assertThat(mission.getDestinationLong(), equalTo(new BigDecimal("-90.98765")));
+        assertThat(mission.getResponderStartLat(), equalTo(40.12345));
+        assertThat(mission.getResponderStartLong(), equalTo(-80.98765));
+        assertThat(mission.getDestinationLat(), equalTo(50.12345));
+        assertThat(mission.getDestinationLong(), equalTo(-90.98765));
         assertThat(mission.getSteps().size(), equalTo(2));
         assertThat(mission.getStatus(), equalTo(MissionStatus.CREATED.name()));
         verify(routePlanner).getDirections(locationCaptor.capture(),locationCaptor.capture(), locationCaptor.capture());
@@ -107,23 +121,24 @@ public class MessageCommandSourceTest {
         assertThat(location1, notNullValue());
         assertThat(location2, notNullValue());
         assertThat(location3, notNullValue());
-        assertThat(location1.getLatitude(), equalTo(new BigDecimal("40.12345")));
-        assertThat(location1.getLongitude(), equalTo(new BigDecimal("-80.98765")));
-        assertThat(location2.getLatitude(), equalTo(new BigDecimal("50.12345")));
-        assertThat(location2.getLongitude(), equalTo(new BigDecimal("-90.98765")));
-        assertThat(location3.getLatitude(), equalTo(new BigDecimal("30.12345")));
-        assertThat(location3.getLongitude(), equalTo(new BigDecimal("-70.98765")));
+        assertThat(location1.getLatitude(), equalTo(40.12345));
+        assertThat(location1.getLongitude(), equalTo(-80.98765));
+        assertThat(location2.getLatitude(), equalTo(50.12345));
+        assertThat(location2.getLongitude(), equalTo(-90.98765));
+        assertThat(location3.getLatitude(), equalTo(30.12345));
+        assertThat(location3.getLongitude(), equalTo(-70.98765));
+        verify(broadcaster).publish(mission);
         verify(eventSink).missionStarted(missionCaptor.capture());
         mission = missionCaptor.getValue();
         assertThat(mission, notNullValue());
         assertThat(mission.getIncidentId(), equalTo("incident123"));
-        assertThat(mission.getIncidentLat(), equalTo(new BigDecimal("30.12345")));
-        assertThat(mission.getIncidentLong(), equalTo(new BigDecimal("-70.98765")));
+        assertThat(mission.getIncidentLat(), equalTo(30.12345));
+        assertThat(mission.getIncidentLong(), equalTo(-70.98765));
         assertThat(mission.getResponderId(), equalTo("responder123"));
-        assertThat(mission.getResponderStartLat(), equalTo(new BigDecimal("40.12345")));
-        assertThat(mission.getResponderStartLong(), equalTo(new BigDecimal("-80.98765")));
-        assertThat(mission.getDestinationLat(), equalTo(new BigDecimal("50.12345")));
-        assertThat(mission.getDestinationLong(), equalTo(new BigDecimal("-90.98765")));
+        assertThat(mission.getResponderStartLat(), equalTo(40.12345));
+        assertThat(mission.getResponderStartLong(), equalTo(-80.98765));
+        assertThat(mission.getDestinationLat(), equalTo(50.12345));
+        assertThat(mission.getDestinationLong(), equalTo(-90.98765));
         assertThat(mission.getSteps().size(), equalTo(2));
         assertThat(mission.getStatus(), equalTo(MissionStatus.CREATED.name()));
     }
@@ -241,11 +256,212 @@ public class MessageCommandSourceTest {
         assertThat(location1, notNullValue());
         assertThat(location2, notNullValue());
         assertThat(location3, notNullValue());
-        assertThat(location1.getLatitude(), equalTo(new BigDecimal("40.12345")));
-        assertThat(location1.getLongitude(), equalTo(new BigDecimal("-80.98765")));
-        assertThat(location2.getLatitude(), equalTo(new BigDecimal("50.12345")));
-        assertThat(location2.getLongitude(), equalTo(new BigDecimal("-90.98765")));
-        assertThat(location3.getLatitude(), equalTo(new BigDecimal("30.12345")));
-        assertThat(location3.getLongitude(), equalTo(new BigDecimal("-70.98765")));
+        assertThat(location1.getLatitude(), equalTo(40.12345));
+        assertThat(location1.getLongitude(), equalTo(-80.98765));
+        assertThat(location2.getLatitude(), equalTo(50.12345));
+        assertThat(location2.getLongitude(), equalTo(-90.98765));
+        assertThat(location3.getLatitude(), equalTo(30.12345));
+        assertThat(location3.getLongitude(), equalTo(-70.98765));
+    }
+
+    @Test
+    void testProcessMessageWhenRoutePlannerUnavailable()  {
+
+        String payload = "{\"incidentId\":\"incident123\",\"responderId\":\"responder123\",\"responderStartLat\":40.12345,"
+                + "\"responderStartLong\":-80.98765,\"incidentLat\":30.12345,\"incidentLong\":-70.98765,"
+                + "\"destinationLat\":50.12345,\"destinationLong\":-90.98765,\"processId\":\"0\"}";
+
+        when(routePlanner.getDirections(any(Location.class), any(Location.class), any(Location.class)))
+                .thenReturn(Uni.createFrom().failure(new RoutePlannerUnavailableException("MapBox API circuit breaker is open")));
+        when(repository.add(any(Mission.class))).thenReturn(Uni.createFrom().emitter(emitter -> emitter.complete(null)));
+        when(eventSink.missionStarted(any(Mission.class))).thenReturn(Uni.createFrom().emitter(emitter -> emitter.complete(null)));
+        when(routeRefresher.schedule(any(Mission.class))).thenReturn(Uni.createFrom().voidItem());
+
+        MessageWithAck<String> message = MessageWithAck.of(payload, "topic", 10, 20, true, "application/json", "CreateMissionCommand");
+        source.send(message);
+
+        assertThat(message.acked(), is(true));
+        verify(rebalanceListener, never()).pause(any(String.class), any(Integer.class), any(Long.class));
+        verify(repository).add(missionCaptor.capture());
+        Mission mission = missionCaptor.getValue();
+        assertThat(mission.getSteps().size(), equalTo(3));
+        assertThat(mission.getSteps().get(0).getLat(), equalTo(40.1235));
+        assertThat(mission.getSteps().get(1).isWayPoint(), is(true));
+        assertThat(mission.getSteps().get(2).isDestination(), is(true));
+        verify(routeRefresher).schedule(mission);
+        verify(eventSink).missionStarted(mission);
+    }
+
+    @Test
+    void testProcessMessageRouteNotRefreshed()  {
+
+        String payload = "{\"incidentId\":\"incident123\",\"responderId\":\"responder123\",\"responderStartLat\":40.12345,"
+                + "\"responderStartLong\":-80.98765,\"incidentLat\":30.12345,\"incidentLong\":-70.98765,"
+                + "\"destinationLat\":50.12345,\"destinationLong\":-90.98765,\"processId\":\"0\"}";
+
+        when(routePlanner.getDirections(any(Location.class), any(Location.class), any(Location.class)))
+                .thenReturn(Uni.createFrom().item(Arrays.asList(new MissionStep(), new MissionStep())));
+        when(repository.add(any(Mission.class))).thenReturn(Uni.createFrom().emitter(emitter -> emitter.complete(null)));
+        when(eventSink.missionStarted(any(Mission.class))).thenReturn(Uni.createFrom().emitter(emitter -> emitter.complete(null)));
+
+        MessageWithAck<String> message = MessageWithAck.of(payload, "topic", 10, 20, true, "application/json", "CreateMissionCommand");
+        source.send(message);
+
+        assertThat(message.acked(), is(true));
+        verify(routeRefresher, never()).schedule(any(Mission.class));
+    }
+
+    @Test
+    void testProcessMessagesInBatch()  {
+
+        String payload = "{\"incidentId\":\"incident123\",\"responderId\":\"responder123\",\"responderStartLat\":40.12345,"
+                + "\"responderStartLong\":-80.98765,\"incidentLat\":30.12345,\"incidentLong\":-70.98765,"
+                + "\"destinationLat\":50.12345,\"destinationLong\":-90.98765,\"processId\":\"0\"}";
+
+        CompletableFuture<Void> added = new CompletableFuture<>();
+        when(routePlanner.getDirections(any(Location.class), any(Location.class), any(Location.class)))
+                .thenReturn(Uni.createFrom().item(Arrays.asList(new MissionStep(), new MissionStep())));
+        when(routePlanner.getDirections(anyList())).thenReturn(List.of(Uni.createFrom().item(Arrays.asList(new MissionStep(), new MissionStep(), new MissionStep())),
+                Uni.createFrom().failure(new RoutePlannerException("no route"))));
+        when(repository.add(any(Mission.class))).thenReturn(Uni.createFrom().completionStage(added));
+        when(eventSink.missionStarted(any(Mission.class))).thenReturn(Uni.createFrom().emitter(emitter -> emitter.complete(null)));
+        when(rebalanceListener.pause(any(String.class), any(Integer.class), any(Long.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        MessageWithAck<String> message1 = MessageWithAck.of(payload, "topic", 10, 20, true, "application/json", "CreateMissionCommand");
+        MessageWithAck<String> message2 = MessageWithAck.of(payload, "topic", 10, 21, true, "application/json", "CreateMissionCommand");
+        MessageWithAck<String> message3 = MessageWithAck.of(payload, "topic", 10, 22, true, "application/json", "WrongMessageType");
+        MessageWithAck<String> message4 = MessageWithAck.of(payload, "topic", 10, 23, true, "application/json", "CreateMissionCommand");
+        source.send(message1);
+        // received while the first message is processed, the next messages are processed together
+        source.send(message2);
+        source.send(message3);
+        source.send(message4);
+
+        assertThat(message1.acked(), is(false));
+        verify(routePlanner, never()).getDirections(anyList());
+        added.complete(null);
+
+        assertThat(message1.acked(), is(true));
+        assertThat(message2.acked(), is(true));
+        assertThat(message3.acked(), is(true));
+        assertThat(message4.acked(), is(false));
+        verify(routePlanner).getDirections(any(Location.class), any(Location.class), any(Location.class));
+        verify(routePlanner).getDirections(routeRequestsCaptor.capture());
+        assertThat(routeRequestsCaptor.getValue().size(), equalTo(2));
+        assertThat(routeRequestsCaptor.getValue().get(0).getOrigin().getLatitude(), equalTo(40.12345));
+        assertThat(routeRequestsCaptor.getValue().get(0).getWaypoint().getLatitude(), equalTo(30.12345));
+        assertThat(routeRequestsCaptor.getValue().get(0).getDestination().getLatitude(), equalTo(50.12345));
+        verify(rebalanceListener).setOffset("topic", 10, 21);
+        verify(rebalanceListener).setOffset("topic", 10, 22);
+        verify(rebalanceListener).pause("topic", 10, 23);
+        verify(repository, times(2)).add(any(Mission.class));
+        verify(eventSink, times(2)).missionStarted(any(Mission.class));
+    }
+
+    @Test
+    void testProcessMessagesInBatchStopsAtPause()  {
+
+        String payload = "{\"incidentId\":\"incident123\",\"responderId\":\"responder123\",\"responderStartLat\":40.12345,"
+                + "\"responderStartLong\":-80.98765,\"incidentLat\":30.12345,\"incidentLong\":-70.98765,"
+                + "\"destinationLat\":50.12345,\"destinationLong\":-90.98765,\"processId\":\"0\"}";
+
+        CompletableFuture<Void> added = new CompletableFuture<>();
+        when(routePlanner.getDirections(any(Location.class), any(Location.class), any(Location.class)))
+                .thenReturn(Uni.createFrom().item(Arrays.asList(new MissionStep(), new MissionStep())));
+        when(routePlanner.getDirections(anyList())).thenReturn(List.of(Uni.createFrom().failure(new RoutePlannerException("no route")),
+                Uni.createFrom().item(Arrays.asList(new MissionStep(), new MissionStep(), new MissionStep())),
+                Uni.createFrom().item(Arrays.asList(new MissionStep(), new MissionStep(), new MissionStep()))));
+        when(repository.add(any(Mission.class))).thenReturn(Uni.createFrom().completionStage(added));
+        when(eventSink.missionStarted(any(Mission.class))).thenReturn(Uni.createFrom().emitter(emitter -> emitter.complete(null)));
+        when(rebalanceListener.pause(any(String.class), any(Integer.class), any(Long.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        MessageWithAck<String> message1 = MessageWithAck.of(payload, "topic", 10, 20, true, "application/json", "CreateMissionCommand");
+        MessageWithAck<String> message2 = MessageWithAck.of(payload, "topic", 10, 21, true, "application/json", "CreateMissionCommand");
+        MessageWithAck<String> message3 = MessageWithAck.of(payload, "topic", 10, 22, true, "application/json", "CreateMissionCommand");
+        MessageWithAck<String> message4 = MessageWithAck.of(payload, "topic", 10, 23, true, "application/json", "CreateMissionCommand");
+        source.send(message1);
+        source.send(message2);
+        source.send(message3);
+        source.send(message4);
+        added.complete(null);
+
+        // the partition is paused on the second message: its later messages are consumed again when it resumes
+        assertThat(message1.acked(), is(true));
+        assertThat(message2.acked(), is(false));
+        assertThat(message3.acked(), is(false));
+        assertThat(message4.acked(), is(false));
+        verify(rebalanceListener).setOffset("topic", 10, 21);
+        verify(rebalanceListener, never()).setOffset("topic", 10, 22);
+        verify(rebalanceListener, never()).setOffset("topic", 10, 23);
+        verify(rebalanceListener).pause("topic", 10, 21);
+        verify(rebalanceListener, times(1)).pause(any(String.class), any(Integer.class), any(Long.class));
+        verify(repository, times(1)).add(any(Mission.class));
+        verify(eventSink, times(1)).missionStarted(any(Mission.class));
+    }
+
+    @Test
+    void testProcessMessagesInBatchSkipsOnlyPausedPartition()  {
+
+        String payload = "{\"incidentId\":\"incident123\",\"responderId\":\"responder123\",\"responderStartLat\":40.12345,"
+                + "\"responderStartLong\":-80.98765,\"incidentLat\":30.12345,\"incidentLong\":-70.98765,"
+                + "\"destinationLat\":50.12345,\"destinationLong\":-90.98765,\"processId\":\"0\"}";
+
+        CompletableFuture<Void> added = new CompletableFuture<>();
+        when(routePlanner.getDirections(any(Location.class), any(Location.class), any(Location.class)))
+                .thenReturn(Uni.createFrom().item(Arrays.asList(new MissionStep(), new MissionStep())));
+        when(routePlanner.getDirections(anyList())).thenReturn(List.of(Uni.createFrom().failure(new RoutePlannerException("no route")),
+                Uni.createFrom().item(Arrays.asList(new MissionStep(), new MissionStep(), new MissionStep())),
+                Uni.createFrom().item(Arrays.asList(new MissionStep(), new MissionStep(), new MissionStep())),
+                Uni.createFrom().item(Arrays.asList(new MissionStep(), new MissionStep(), new MissionStep()))));
+        when(repository.add(any(Mission.class))).thenReturn(Uni.createFrom().completionStage(added));
+        when(eventSink.missionStarted(any(Mission.class))).thenReturn(Uni.createFrom().emitter(emitter -> emitter.complete(null)));
+        when(rebalanceListener.pause(any(String.class), any(Integer.class), any(Long.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        MessageWithAck<String> message1 = MessageWithAck.of(payload, "topic", 10, 20, true, "application/json", "CreateMissionCommand");
+        MessageWithAck<String> message2 = MessageWithAck.of(payload, "topic", 10, 21, true, "application/json", "CreateMissionCommand");
+        MessageWithAck<String> message3 = MessageWithAck.of(payload, "topic", 11, 5, true, "application/json", "CreateMissionCommand");
+        MessageWithAck<String> message4 = MessageWithAck.of(payload, "topic", 10, 22, true, "application/json", "CreateMissionCommand");
+        MessageWithAck<String> message5 = MessageWithAck.of(payload, "topic", 11, 6, true, "application/json", "CreateMissionCommand");
+        source.send(message1);
+        source.send(message2);
+        source.send(message3);
+        source.send(message4);
+        source.send(message5);
+        added.complete(null);
+
+        // partition 10 is paused on the second message, the messages of partition 11 are processed
+        assertThat(message1.acked(), is(true));
+        assertThat(message2.acked(), is(false));
+        assertThat(message3.acked(), is(true));
+        assertThat(message4.acked(), is(false));
+        assertThat(message5.acked(), is(true));
+        verify(rebalanceListener).setOffset("topic", 10, 21);
+        verify(rebalanceListener, never()).setOffset("topic", 10, 22);
+        verify(rebalanceListener).setOffset("topic", 11, 5);
+        verify(rebalanceListener).setOffset("topic", 11, 6);
+        verify(rebalanceListener).pause("topic", 10, 21);
+        verify(rebalanceListener, times(1)).pause(any(String.class), any(Integer.class), any(Long.class));
+        verify(repository, times(3)).add(any(Mission.class));
+        verify(eventSink, times(3)).missionStarted(any(Mission.class));
+    }
+
+    @Test
+    void testProcessMessageOfPausedPartition()  {
+
+        String payload = "{\"incidentId\":\"incident123\",\"responderId\":\"responder123\",\"responderStartLat\":40.12345,"
+                + "\"responderStartLong\":-80.98765,\"incidentLat\":30.12345,\"incidentLong\":-70.98765,"
+                + "\"destinationLat\":50.12345,\"destinationLong\":-90.98765,\"processId\":\"0\"}";
+
+        when(rebalanceListener.isPaused("topic", 10)).thenReturn(true);
+
+        MessageWithAck<String> message = MessageWithAck.of(payload, "topic", 10, 20, true, "application/json", "CreateMissionCommand");
+        source.send(message);
+
+        // the message was received before the partition was paused, it is consumed again when the partition resumes
+        assertThat(message.acked(), is(false));
+        verify(rebalanceListener, never()).setOffset(any(String.class), any(Integer.class), any(Long.class));
+        verify(routePlanner, never()).getDirections(any(Location.class), any(Location.class), any(Location.class));
+        verify(routePlanner, never()).getDirections(anyList());
+        verify(repository, never()).add(any(Mission.class));
     }
 }
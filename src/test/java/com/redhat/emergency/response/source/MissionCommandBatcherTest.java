@@ -0,0 +1,105 @@
+package com.redhat.emergency.response.source;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import io.smallrye.mutiny.Uni;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+
+public class MissionCommandBatcherTest {
+
+    private final AtomicLong requested = new AtomicLong();
+
+    private final List<List<String>> batches = new ArrayList<>();
+
+    private CompletableFuture<Void> processed;
+
+    private MissionCommandBatcher batcher;
+
+    @BeforeEach
+    void init() {
+        processed = new CompletableFuture<>();
+        batcher = new MissionCommandBatcher(3, messages -> {
+            batches.add(messages.stream().map(Message::getPayload).collect(Collectors.toList()));
+            return Uni.createFrom().completionStage(processed);
+        });
+        batcher.onSubscribe(new Subscription() {
+            @Override
+            public void request(long n) {
+                requested.addAndGet(n);
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+    }
+
+    @Test
+    void testMessagesReceivedWhileProcessingAreBatched() {
+        assertThat(requested.get(), equalTo(3L));
+
+        batcher.onNext(Message.of("1"));
+        batcher.onNext(Message.of("2"));
+        batcher.onNext(Message.of("3"));
+
+        assertThat(batches.size(), equalTo(1));
+        assertThat(batches.get(0), contains("1"));
+
+        processed.complete(null);
+
+        assertThat(batches.size(), equalTo(2));
+        assertThat(batches.get(1), contains("2", "3"));
+        assertThat(requested.get(), equalTo(6L));
+
+        batcher.onNext(Message.of("4"));
+
+        assertThat(batches.size(), equalTo(3));
+        assertThat(batches.get(2), contains("4"));
+        assertThat(requested.get(), equalTo(7L));
+    }
+
+    @Test
+    void testProcessingContinuesAfterFailure() {
+        processed.completeExceptionally(new IllegalStateException());
+
+        batcher.onNext(Message.of("1"));
+        batcher.onNext(Message.of("2"));
+
+        assertThat(batches.size(), equalTo(2));
+        assertThat(requested.get(), equalTo(5L));
+    }
+
+    @Test
+    void testStreamFailureIsRecorded() {
+        IllegalStateException failure = new IllegalStateException();
+
+        assertThat(batcher.terminated(), is(false));
+
+        batcher.onError(failure);
+
+        assertThat(batcher.terminated(), is(true));
+        assertThat(batcher.failure(), sameInstance(failure));
+    }
+
+    @Test
+    void testStreamCompletionIsRecorded() {
+        batcher.onComplete();
+
+        assertThat(batcher.terminated(), is(true));
+        assertThat(batcher.failure(), nullValue());
+    }
+}
@@ -0,0 +1,60 @@
+package com.redhat.emergency.response.source;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.smallrye.mutiny.Uni;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class MissionCommandHealthCheckTest {
+
+    private MissionCommandHealthCheck healthCheck;
+
+    private MissionCommandBatcher batcher;
+
+    @BeforeEach
+    void init() {
+        batcher = new MissionCommandBatcher(1, messages -> Uni.createFrom().nullItem());
+        healthCheck = new MissionCommandHealthCheck();
+        healthCheck.source = mock(MissionCommandSource.class);
+        when(healthCheck.source.batcher()).thenReturn(batcher);
+    }
+
+    @Test
+    void testUpWhileConsuming() {
+        HealthCheckResponse response = healthCheck.call();
+
+        assertThat(response.getName(), equalTo("mission-command"));
+        assertThat(response.getState(), equalTo(HealthCheckResponse.State.UP));
+    }
+
+    @Test
+    void testDownWhenStreamFailed() {
+        batcher.onError(new IllegalStateException("broker unreachable"));
+
+        HealthCheckResponse response = healthCheck.call();
+
+        assertThat(response.getState(), equalTo(HealthCheckResponse.State.DOWN));
+        assertThat(response.getData().isPresent(), is(true));
+        assertThat(response.getData().get().get("reason"), equalTo("failed: broker unreachable"));
+    }
+
+    @Test
+    void testDownWhenStreamCompleted() {
+        batcher.onComplete();
+
+        assertThat(healthCheck.call().getState(), equalTo(HealthCheckResponse.State.DOWN));
+    }
+
+    @Test
+    void testDownWhenNotSubscribed() {
+        when(healthCheck.source.batcher()).thenReturn(null);
+
+        assertThat(healthCheck.call().getState(), equalTo(HealthCheckResponse.State.DOWN));
+    }
+}
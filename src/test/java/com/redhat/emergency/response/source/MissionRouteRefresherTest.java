@@ -0,0 +1,129 @@
+package com.redhat.emergency.response.source;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+import com.redhat.emergency.response.map.RoutePlanner;
+import com.redhat.emergency.response.map.RoutePlannerUnavailableException;
+import com.redhat.emergency.response.model.Location;
+import com.redhat.emergency.response.model.Mission;
+import com.redhat.emergency.response.model.MissionStep;
+import com.redhat.emergency.response.repository.MissionRepository;
+import com.redhat.emergency.response.sink.MissionBroadcaster;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+
+public class MissionRouteRefresherTest {
+
+    @Captor
+    ArgumentCaptor<UnaryOperator<Mission>> mutationCaptor;
+
+    MissionRouteRefresher refresher;
+
+    RoutePlanner routePlanner;
+
+    MissionRepository repository;
+
+    MissionBroadcaster broadcaster;
+
+    @BeforeEach
+    void init() {
+        openMocks(this);
+        routePlanner = mock(RoutePlanner.class);
+        repository = mock(MissionRepository.class);
+        broadcaster = mock(MissionBroadcaster.class);
+        refresher = new MissionRouteRefresher();
+        refresher.routePlanner = routePlanner;
+        refresher.repository = repository;
+        refresher.broadcaster = broadcaster;
+        when(repository.addRouteRefresh(any(String.class))).thenReturn(Uni.createFrom().voidItem());
+        when(repository.removeRouteRefresh(any(String.class))).thenReturn(Uni.createFrom().voidItem());
+    }
+
+    @Test
+    void testRefresh() {
+        Mission mission = mission();
+        List<MissionStep> route = List.of(new MissionStep(), new MissionStep(), new MissionStep(), new MissionStep());
+        when(routePlanner.isAvailable()).thenReturn(true);
+        when(routePlanner.getDirections(any(Location.class), any(Location.class), any(Location.class))).thenReturn(Uni.createFrom().item(route));
+        when(repository.update(eq(mission.getKey()), any())).thenReturn(Uni.createFrom().item(Optional.of(mission)));
+        refresher.schedule(mission).await().indefinitely();
+
+        int refreshed = refresher.refresh().await().indefinitely();
+
+        assertThat(refreshed, equalTo(1));
+        assertThat(refresher.pendingRefreshes(), equalTo(0L));
+        verify(repository).addRouteRefresh(mission.getKey());
+        verify(repository).update(eq(mission.getKey()), mutationCaptor.capture());
+        assertThat(mutationCaptor.getValue().apply(mission()).getSteps().size(), equalTo(4));
+        verify(repository).removeRouteRefresh(mission.getKey());
+        verify(broadcaster).publish(mission);
+    }
+
+    @Test
+    void testLoad() {
+        Mission mission = mission();
+        when(repository.getRouteRefreshes()).thenReturn(Uni.createFrom().item(Set.of(mission.getKey(), "incident456:responder456")));
+        when(repository.get(mission.getKey())).thenReturn(Uni.createFrom().item(Optional.of(mission)));
+        when(repository.get("incident456:responder456")).thenReturn(Uni.createFrom().item(Optional.empty()));
+
+        int loaded = refresher.load().await().indefinitely();
+
+        assertThat(loaded, equalTo(1));
+        assertThat(refresher.pendingRefreshes(), equalTo(1L));
+        // the refresh of a removed mission is dropped
+        verify(repository).removeRouteRefresh("incident456:responder456");
+        verify(repository, never()).removeRouteRefresh(mission.getKey());
+    }
+
+    @Test
+    void testRefreshWhenRoutePlannerNotAvailable() {
+        refresher.schedule(mission()).await().indefinitely();
+        when(routePlanner.isAvailable()).thenReturn(false);
+
+        int refreshed = refresher.refresh().await().indefinitely();
+
+        assertThat(refreshed, equalTo(0));
+        assertThat(refresher.pendingRefreshes(), equalTo(1L));
+        verify(routePlanner, never()).getDirections(any(Location.class), any(Location.class), any(Location.class));
+    }
+
+    @Test
+    void testRefreshFails() {
+        refresher.schedule(mission()).await().indefinitely();
+        when(routePlanner.isAvailable()).thenReturn(true);
+        when(routePlanner.getDirections(any(Location.class), any(Location.class), any(Location.class)))
+                .thenReturn(Uni.createFrom().failure(new RoutePlannerUnavailableException("MapBox API circuit breaker is open")));
+
+        int refreshed = refresher.refresh().await().indefinitely();
+
+        assertThat(refreshed, equalTo(0));
+        assertThat(refresher.pendingRefreshes(), equalTo(1L));
+        verify(repository, never()).update(any(String.class), any());
+        verify(repository, never()).removeRouteRefresh(any(String.class));
+    }
+
+    private Mission mission() {
+        return new JsonObject().put("incidentId", "incident123").put("responderId", "responder123")
+                .put("responderStartLat", 40.12345).put("responderStartLong", -80.98765)
+                .put("incidentLat", 30.12345).put("incidentLong", -70.98765)
+                .put("destinationLat", 50.12345).put("destinationLong", -90.98765)
+                .put("status", "CREATED").mapTo(Mission.class);
+    }
+}
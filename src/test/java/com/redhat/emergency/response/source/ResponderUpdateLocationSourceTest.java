@@ -4,18 +4,21 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.openMocks;
 
 import java.util.Optional;
+import java.util.function.UnaryOperator;
 import javax.enterprise.inject.Any;
 import javax.inject.Inject;
 
 import com.redhat.emergency.response.model.Mission;
 import com.redhat.emergency.response.repository.MissionRepository;
 import com.redhat.emergency.response.sink.EventSink;
+import com.redhat.emergency.response.sink.MissionBroadcaster;
 import io.quarkus.test.junit.QuarkusTest;
 import io.quarkus.test.junit.mockito.InjectMock;
 import io.smallrye.mutiny.Uni;
@@ -34,6 +37,9 @@ public class ResponderUpdateLocationSourceTest {
     @InjectMock
     EventSink eventSink;
 
+    @InjectMock
+    MissionBroadcaster broadcaster;
+
     @Inject
     @Any
     InMemoryConnector connector;
@@ -61,17 +67,17 @@ public class ResponderUpdateLocationSourceTest {
                 "}";
 
         Mission mission = new Mission();
-        when(repository.get("incident:responder")).thenReturn(Uni.createFrom().item(Optional.of(mission)));
-        when(repository.add(any(Mission.class))).thenReturn(Uni.createFrom().emitter(emitter -> emitter.complete(null)));
+        when(repository.update(eq("incident:responder"), any())).thenAnswer(i -> Uni.createFrom().item(Optional.of(i.<UnaryOperator<Mission>>getArgument(1).apply(mission))));
 
         MessageWithAck<String> message = MessageWithAck.of(payload, "topic", 10, 20, true, "application/json", "ResponderLocationUpdatedEvent");
         source.send(message);
 
-        verify(repository).get("incident:responder");
+        verify(repository).update(eq("incident:responder"), any());
         assertThat(mission.getResponderLocationHistory().size(), equalTo(1));
+        verify(broadcaster).publish(mission);
         verify(eventSink, never()).missionPickedUp(any());
         verify(eventSink, never()).missionCompleted(any());
-        verify(repository).add(mission);
+        verify(repository, never()).add(any(Mission.class));
         assertThat(message.acked(), is(true));
     }
 
@@ -90,19 +96,21 @@ public class ResponderUpdateLocationSourceTest {
                 "}";
 
         Mission mission = new Mission();
-        when(repository.get("incident:responder")).thenReturn(Uni.createFrom().item(Optional.of(mission)));
-        when(repository.add(any(Mission.class))).thenReturn(Uni.createFrom().emitter(emitter -> emitter.complete(null)));
+        when(repository.update(eq("incident:responder"), any())).thenAnswer(i -> Uni.createFrom().item(Optional.of(i.<UnaryOperator<Mission>>getArgument(1).apply(mission))));
 
+        when(repository.assemble(any(Mission.class))).thenAnswer(i -> Uni.createFrom().item(i.<Mission>getArgument(0)));
         when(eventSink.missionPickedUp(any(Mission.class))).thenReturn(Uni.createFrom().emitter(emitter -> emitter.complete(null)));
 
         MessageWithAck<String> message = MessageWithAck.of(payload, "topic", 10, 20, true, "application/json", "ResponderLocationUpdatedEvent");
         source.send(message);
 
-        verify(repository).get("incident:responder");
+        verify(repository).update(eq("incident:responder"), any());
         assertThat(mission.getResponderLocationHistory().size(), equalTo(1));
         verify(eventSink).missionPickedUp(any());
+        assertThat(mission.getStatus(), equalTo("UPDATED"));
+        verify(repository).assemble(mission);
         verify(eventSink, never()).missionCompleted(any());
-        verify(repository).add(mission);
+        verify(repository, never()).add(any(Mission.class));
         assertThat(message.acked(), is(true));
     }
 
@@ -121,19 +129,21 @@ public class ResponderUpdateLocationSourceTest {
                 "}";
 
         Mission mission = new Mission();
-        when(repository.get("incident:responder")).thenReturn(Uni.createFrom().item(Optional.of(mission)));
-        when(repository.add(any(Mission.class))).thenReturn(Uni.createFrom().emitter(emitter -> emitter.complete(null)));
+        when(repository.update(eq("incident:responder"), any())).thenAnswer(i -> Uni.createFrom().item(Optional.of(i.<UnaryOperator<Mission>>getArgument(1).apply(mission))));
 
+        when(repository.assemble(any(Mission.class))).thenAnswer(i -> Uni.createFrom().item(i.<Mission>getArgument(0)));
         when(eventSink.missionCompleted(any(Mission.class))).thenReturn(Uni.createFrom().emitter(emitter -> emitter.complete(null)));
 
         MessageWithAck<String> message = MessageWithAck.of(payload, "topic", 10, 20, true, "application/json", "ResponderLocationUpdatedEvent");
         source.send(message);
 
-        verify(repository).get("incident:responder");
+        verify(repository).update(eq("incident:responder"), any());
         assertThat(mission.getResponderLocationHistory().size(), equalTo(1));
         verify(eventSink, never()).missionPickedUp(any());
         verify(eventSink).missionCompleted(any());
-        verify(repository).add(mission);
+        assertThat(mission.getStatus(), equalTo("COMPLETED"));
+        verify(repository).assemble(mission);
+        verify(repository, never()).add(any(Mission.class));
         assertThat(message.acked(), is(true));
     }
 
@@ -153,7 +163,7 @@ public class ResponderUpdateLocationSourceTest {
         MessageWithAck<String> message = MessageWithAck.of(payload, "topic", 10, 20, false, "application/json", "ResponderLocationUpdatedEvent");
         source.send(message);
 
-        verify(repository, never()).get(any());
+        verify(repository, never()).update(any(), any());
         verify(eventSink, never()).missionPickedUp(any());
         verify(eventSink, never()).missionCompleted(any());
         verify(repository, never()).add(any(Mission.class));
@@ -176,7 +186,7 @@ public class ResponderUpdateLocationSourceTest {
         MessageWithAck<String> message = MessageWithAck.of(payload, "topic", 10, 20, true, "application/json", "WrongMessageType");
         source.send(message);
 
-        verify(repository, never()).get(any());
+        verify(repository, never()).update(any(), any());
         verify(eventSink, never()).missionPickedUp(any());
         verify(eventSink, never()).missionCompleted(any());
         verify(repository, never()).add(any(Mission.class));
@@ -199,7 +209,7 @@ public class ResponderUpdateLocationSourceTest {
         MessageWithAck<String> message = MessageWithAck.of(payload, "topic", 10, 20, true, "application/avro", "ResponderLocationUpdatedEvent");
         source.send(message);
 
-        verify(repository, never()).get(any());
+        verify(repository, never()).update(any(), any());
         verify(eventSink, never()).missionPickedUp(any());
         verify(eventSink, never()).missionCompleted(any());
         verify(repository, never()).add(any(Mission.class));
@@ -222,7 +232,7 @@ public class ResponderUpdateLocationSourceTest {
         MessageWithAck<String> message = MessageWithAck.of(payload, "topic", 10, 20, true, null, "ResponderLocationUpdatedEvent");
         source.send(message);
 
-        verify(repository, never()).get(any());
+        verify(repository, never()).update(any(), any());
         verify(eventSink, never()).missionPickedUp(any());
         verify(eventSink, never()).missionCompleted(any());
         verify(repository, never()).add(any(Mission.class));
@@ -245,7 +255,7 @@ public class ResponderUpdateLocationSourceTest {
         MessageWithAck<String> message = MessageWithAck.of(payload, "topic", 10, 20, true, "application/json", "ResponderLocationUpdatedEvent");
         source.send(message);
 
-        verify(repository, never()).get(any());
+        verify(repository, never()).update(any(), any());
         verify(eventSink, never()).missionPickedUp(any());
         verify(eventSink, never()).missionCompleted(any());
         verify(repository, never()).add(any(Mission.class));
@@ -266,13 +276,13 @@ public class ResponderUpdateLocationSourceTest {
                 "    \"continue\": true\n" +
                 "}";
 
-        when(repository.get("incident:responder")).thenReturn(Uni.createFrom().item(Optional.empty()));
-        when(repository.add(any(Mission.class))).thenReturn(Uni.createFrom().emitter(emitter -> emitter.complete(null)));
+        when(repository.update(eq("incident:responder"), any())).thenReturn(Uni.createFrom().item(Optional.empty()));
 
         MessageWithAck<String> message = MessageWithAck.of(payload, "topic", 10, 20, true, "application/json", "ResponderLocationUpdatedEvent");
         source.send(message);
 
-        verify(repository).get("incident:responder");
+        verify(repository).update(eq("incident:responder"), any());
+        verify(broadcaster, never()).publish(any());
         verify(eventSink, never()).missionPickedUp(any());
         verify(eventSink, never()).missionCompleted(any());
         verify(repository, never()).add(any(Mission.class));
@@ -293,13 +303,12 @@ public class ResponderUpdateLocationSourceTest {
                 "    \"continue\": true\n" +
                 "}";
 
-        when(repository.get("incident:responder")).thenThrow(new RuntimeException("Exception!"));
-        when(repository.add(any(Mission.class))).thenReturn(Uni.createFrom().emitter(emitter -> emitter.complete(null)));
+        when(repository.update(eq("incident:responder"), any())).thenThrow(new RuntimeException("Exception!"));
 
         MessageWithAck<String> message = MessageWithAck.of(payload, "topic", 10, 20, true, "application/json", "ResponderLocationUpdatedEvent");
         source.send(message);
 
-        verify(repository).get("incident:responder");
+        verify(repository).update(eq("incident:responder"), any());
         verify(eventSink, never()).missionPickedUp(any());
         verify(eventSink, never()).missionCompleted(any());
         verify(repository, never()).add(any(Mission.class));